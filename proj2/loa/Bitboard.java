@@ -0,0 +1,262 @@
+package loa;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static loa.Piece.*;
+import static loa.Square.*;
+
+/** The contents of a Lines of Action board as two bitboards, one for
+ *  each side, in which bit S.index() is set iff square S holds one of
+ *  that side's pieces.  The number of pieces on a line through a square
+ *  is the population count of the occupied squares masked by a line
+ *  mask computed once for all boards, so that legal moves are generated
+ *  directly rather than by trying every pair of squares.  Making and
+ *  unmaking a move only flips bits.  The contents also have a Zobrist
+ *  key: the exclusive or of a fixed random number for each piece on each
+ *  square, which moves update by flipping the numbers for the squares
+ *  they change.
+ *  @author Hamza Kamran
+ */
+final class Bitboard {
+
+    /** Return the contents of the square with index SQ. */
+    Piece get(int sq) {
+        long bit = 1L << sq;
+        if ((_white & bit) != 0) {
+            return WP;
+        } else if ((_black & bit) != 0) {
+            return BP;
+        } else {
+            return EMP;
+        }
+    }
+
+    /** Set the square with index SQ to V. */
+    void set(int sq, Piece v) {
+        long bit = 1L << sq;
+        if ((_white & bit) != 0) {
+            _key ^= KEYS[WP.ordinal()][sq];
+        } else if ((_black & bit) != 0) {
+            _key ^= KEYS[BP.ordinal()][sq];
+        }
+        _white &= ~bit;
+        _black &= ~bit;
+        if (v == WP) {
+            _white |= bit;
+            _key ^= KEYS[WP.ordinal()][sq];
+        } else if (v == BP) {
+            _black |= bit;
+            _key ^= KEYS[BP.ordinal()][sq];
+        }
+    }
+
+    /** Set my contents to those of OTHER. */
+    void copyFrom(Bitboard other) {
+        _white = other._white;
+        _black = other._black;
+        _key = other._key;
+    }
+
+    /** Return the Zobrist key of my contents. */
+    long key() {
+        return _key;
+    }
+
+    /** Return the squares holding SIDE's pieces. */
+    long pieces(Piece side) {
+        return side == WP ? _white : _black;
+    }
+
+    /** Return the number of pieces, of either side, on the line through
+     *  the square with index SQ in direction DIR (and its opposite), as
+     *  for Square.moveDest. */
+    int lineCount(int sq, int dir) {
+        return Long.bitCount((_white | _black) & LINES[dir & 3][sq]);
+    }
+
+    /** Return true iff the move from the square with index FROM to that
+     *  with index TO is legal for SIDE. */
+    boolean isLegal(int from, int to, Piece side) {
+        long own = pieces(side), opp = pieces(side.opposite());
+        int dir = DIRECTIONS[from][to];
+        return dir >= 0 && (own & (1L << from)) != 0
+            && DESTINATIONS[dir][from][lineCount(from, dir)] == to
+            && (own & (1L << to)) == 0 && (opp & BETWEEN[from][to]) == 0;
+    }
+
+    /** Store the legal moves for SIDE in MOVES, starting at MOVES[0], and
+     *  return how many there are.  MOVES must have room for MAX_MOVES. */
+    int legalMoves(Piece side, Move[] moves) {
+        long own = pieces(side), opp = pieces(side.opposite());
+        long occupied = _white | _black;
+        int n = 0;
+        for (long rest = own; rest != 0; rest &= rest - 1) {
+            int from = Long.numberOfTrailingZeros(rest);
+            for (int dir = 0; dir < 8; dir += 1) {
+                int count = Long.bitCount(occupied & LINES[dir & 3][from]);
+                int to = DESTINATIONS[dir][from][count];
+                if (to >= 0 && (own & (1L << to)) == 0
+                    && (opp & BETWEEN[from][to]) == 0) {
+                    moves[n] = Move.mv(ALL_SQUARES[from], ALL_SQUARES[to]);
+                    n += 1;
+                }
+            }
+        }
+        return n;
+    }
+
+    /** Store the sizes of the groups of SIDE's pieces, the sets of them
+     *  connected through adjacent squares (diagonals included), in
+     *  SIZES, starting at SIZES[0], and return how many there are.
+     *  SIZES may be null if only the number is wanted; otherwise, it
+     *  must have room for NUM_SQUARES sizes.  Each group is found by a
+     *  flood fill that grows a set of squares in all eight directions
+     *  at once by shifting and masking, until it stops growing. */
+    int groups(Piece side, int[] sizes) {
+        long rest = pieces(side);
+        int n = 0;
+        while (rest != 0) {
+            long group = rest & -rest;
+            for (long next = grow(group) & rest; next != group;
+                 next = grow(group) & rest) {
+                group = next;
+            }
+            if (sizes != null) {
+                sizes[n] = Long.bitCount(group);
+            }
+            n += 1;
+            rest &= ~group;
+        }
+        return n;
+    }
+
+    /** Return the squares in SET and those adjacent to them. */
+    private static long grow(long set) {
+        long row = set | (set << 1) & ~FILE_A | (set >>> 1) & ~FILE_H;
+        return row | row << BOARD_SIZE | row >>> BOARD_SIZE;
+    }
+
+    /** Move the piece on the square with index FROM to that with index
+     *  TO, and return true iff it captures a piece there. */
+    boolean makeMove(int from, int to) {
+        long both = (1L << from) | (1L << to), dest = 1L << to;
+        boolean capture;
+        if ((_white & (1L << from)) != 0) {
+            capture = (_black & dest) != 0;
+            _white ^= both;
+            _black &= ~dest;
+            _key ^= KEYS[WP.ordinal()][from] ^ KEYS[WP.ordinal()][to]
+                ^ (capture ? KEYS[BP.ordinal()][to] : 0);
+        } else {
+            capture = (_white & dest) != 0;
+            _black ^= both;
+            _white &= ~dest;
+            _key ^= KEYS[BP.ordinal()][from] ^ KEYS[BP.ordinal()][to]
+                ^ (capture ? KEYS[WP.ordinal()][to] : 0);
+        }
+        return capture;
+    }
+
+    /** Undo the move of a piece from the square with index FROM to that
+     *  with index TO, restoring the captured piece iff CAPTURE. */
+    void retract(int from, int to, boolean capture) {
+        long both = (1L << from) | (1L << to), dest = 1L << to;
+        if ((_white & dest) != 0) {
+            _white ^= both;
+            _key ^= KEYS[WP.ordinal()][from] ^ KEYS[WP.ordinal()][to];
+            if (capture) {
+                _black |= dest;
+                _key ^= KEYS[BP.ordinal()][to];
+            }
+        } else {
+            _black ^= both;
+            _key ^= KEYS[BP.ordinal()][from] ^ KEYS[BP.ordinal()][to];
+            if (capture) {
+                _white |= dest;
+                _key ^= KEYS[WP.ordinal()][to];
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Bitboard && ((Bitboard) obj)._white == _white
+            && ((Bitboard) obj)._black == _black;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(_key);
+    }
+
+    /** An upper bound on the number of legal moves in any position. */
+    static final int MAX_MOVES = 8 * NUM_SQUARES;
+
+    /** The squares in columns a and h. */
+    private static final long FILE_A = 0x0101010101010101L,
+        FILE_H = FILE_A << (BOARD_SIZE - 1);
+
+    /** Seed of the Zobrist numbers, which are the same in every run. */
+    private static final long KEY_SEED = 0x4c4f41L;
+
+    /** KEYS[P.ordinal()][S] is the Zobrist number of piece P on the square
+     *  with index S. */
+    private static final long[][] KEYS = new long[2][NUM_SQUARES];
+
+    /** The Zobrist number of white's being on move. */
+    static final long WHITE_TO_MOVE;
+
+    static {
+        Random keys = new Random(KEY_SEED);
+        for (long[] row : KEYS) {
+            for (int s = 0; s < NUM_SQUARES; s += 1) {
+                row[s] = keys.nextLong();
+            }
+        }
+        WHITE_TO_MOVE = keys.nextLong();
+    }
+
+    /** LINES[D][S] is the mask of the squares on the line through the
+     *  square with index S in direction D and its opposite, D + 4,
+     *  including S itself, for 0 <= D < 4. */
+    private static final long[][] LINES = new long[4][NUM_SQUARES];
+
+    /** DESTINATIONS[D][S][N] is the index of the square N squares from
+     *  the square with index S in direction D, or -1 if there is none. */
+    private static final int[][][] DESTINATIONS =
+        new int[8][NUM_SQUARES][BOARD_SIZE + 1];
+
+    /** BETWEEN[S][T] is the mask of the squares strictly between the
+     *  squares with indices S and T, if they share a line. */
+    private static final long[][] BETWEEN = new long[NUM_SQUARES][NUM_SQUARES];
+
+    /** DIRECTIONS[S][T] is the direction from the square with index S to
+     *  that with index T, or -1 if they do not share a line. */
+    private static final int[][] DIRECTIONS = new int[NUM_SQUARES][NUM_SQUARES];
+
+    static {
+        for (Square from : ALL_SQUARES) {
+            int s = from.index();
+            Arrays.fill(DIRECTIONS[s], -1);
+            for (int dir = 0; dir < 8; dir += 1) {
+                Arrays.fill(DESTINATIONS[dir][s], -1);
+                LINES[dir & 3][s] |= 1L << s;
+                long between = 0;
+                for (int n = 1; from.moveDest(dir, n) != null; n += 1) {
+                    int t = from.moveDest(dir, n).index();
+                    LINES[dir & 3][s] |= 1L << t;
+                    DESTINATIONS[dir][s][n] = t;
+                    DIRECTIONS[s][t] = dir;
+                    BETWEEN[s][t] = between;
+                    between |= 1L << t;
+                }
+            }
+        }
+    }
+
+    /** The squares holding white and black pieces. */
+    private long _white, _black;
+    /** The Zobrist key of _white and _black. */
+    private long _key;
+}
@@ -51,11 +51,13 @@ class Board {
     void initialize(Piece[][] contents, Piece side) {
         _turn = side;
         _moveLimit = DEFAULT_MOVE_LIMIT;
-        for (int i = 0; i < contents.length; i++) {
-            System.arraycopy(contents[i], 0, _board,
-                    i * BOARD_SIZE, BOARD_SIZE);
+        for (int r = 0; r < contents.length; r++) {
+            for (int c = 0; c < BOARD_SIZE; c++) {
+                _bits.set(sq(c, r).index(), contents[r][c]);
+            }
         }
         _subsetsInitialized = false;
+        forgetRegions();
 
     }
 
@@ -64,31 +66,38 @@ class Board {
         initialize(INITIAL_PIECES, BP);
     }
 
-    /** Set my state to a copy of BOARD. */
+    /** Set my state to a copy of BOARD, including the moves made on it,
+     *  so that movesMade() and the move limit agree with BOARD's. */
     void copyFrom(Board board) {
         if (board !=  this) {
             _moveLimit = board._moveLimit;
             _turn = board._turn;
-            System.arraycopy(board._board, 0, this._board,
-                    0, board._board.length);
+            _bits.copyFrom(board._bits);
+            _moves.clear();
+            _moves.addAll(board._moves);
+            if (_regionHistory.length < board._regionHistory.length) {
+                _regionHistory = new int[board._regionHistory.length];
+            }
+            _subsetsInitialized = false;
+            forgetRegions();
         }
     }
 
     /** Return the contents of the square at SQ. */
     Piece get(Square sq) {
-        return _board[sq.index()];
+        return _bits.get(sq.index());
     }
 
     /** Set the square at SQ to V and set the side that is to move next
      *  to NEXT, if NEXT is not null. */
     void set(Square sq, Piece v, Piece next) {
-        int posn = sq.index();
-        this._board[posn] = v;
+        _bits.set(sq.index(), v);
 
         if (next != null) {
             _turn = next;
         }
         _subsetsInitialized = false;
+        forgetRegions();
     }
 
     /** Set the square at SQ to V, without modifying the side that
@@ -112,17 +121,21 @@ class Board {
      *  the capturing move. */
     void makeMove(Move move) {
         assert isLegal(move);
-        Square firstS = move.getFrom();
-        Piece firstP = get(firstS);
-        Square endS = move.getTo();
-        Piece endP = get(endS);
-
-        if (firstP != endP && endP != EMP) {
+        if (_regionHistory.length == _moves.size()) {
+            _regionHistory = Arrays.copyOf(_regionHistory,
+                                           2 * _regionHistory.length);
+        }
+        _regionHistory[_moves.size()] =
+            (_whiteRegions + 1) * REGION_RADIX + _blackRegions + 1;
+        if (_bits.makeMove(move.getFrom().index(), move.getTo().index())) {
             move = move.captureMove();
+            _whiteRegions = _blackRegions = UNCOUNTED;
+        } else if (_turn == WP) {
+            _whiteRegions = UNCOUNTED;
+        } else {
+            _blackRegions = UNCOUNTED;
         }
         _moves.add(move);
-        set(endS, firstP);
-        set(firstS, EMP);
         _turn = _turn.opposite();
         _subsetsInitialized = false;
     }
@@ -131,20 +144,12 @@ class Board {
      *  that move.  Requires that movesMade () > 0. */
     void retract() {
         assert movesMade() > 0;
-        Move lastMove = _moves.get(_moves.size() - 1);
-        Square firstS = lastMove.getFrom();
-        Piece firstP = get(firstS);
-        Square endS = lastMove.getTo();
-        Piece endP = get(endS);
-
-        if (lastMove.isCapture()) {
-            set(firstS, endP);
-            set(endS, endP.opposite());
-        } else {
-            set(firstS, endP);
-            set(endS, EMP);
-        }
-        _moves.remove(_moves.size() - 1);
+        Move lastMove = _moves.remove(_moves.size() - 1);
+        _bits.retract(lastMove.getFrom().index(), lastMove.getTo().index(),
+                      lastMove.isCapture());
+        int regions = _regionHistory[_moves.size()];
+        _whiteRegions = regions / REGION_RADIX - 1;
+        _blackRegions = regions % REGION_RADIX - 1;
         _turn = _turn.opposite();
         _subsetsInitialized = false;
         _winnerKnown = false;
@@ -159,30 +164,7 @@ class Board {
     /** Return true iff FROM - TO is a legal move for the player currently on
      *  move. */
     boolean isLegal(Square from, Square to) {
-        if (from.index() < 0 || from.index() >= ALL_SQUARES.length) {
-            return false;
-        }
-        if (to.index() < 0 || to.index() >= ALL_SQUARES.length) {
-            return false;
-        }
-        if (!from.isValidMove(to)) {
-            return false;
-        }
-        if (get(from) == EMP) {
-            return false;
-        }
-        if (blocked(from, to)) {
-            return false;
-        }
-        if (get(from) != _turn) {
-            return false;
-        }
-        if (get(from) == get(to)) {
-            return false;
-        }
-        int dir = from.direction(to);
-        int distance = from.distance(to);
-        return getPiecesInLine(dir, from) == distance;
+        return _bits.isLegal(from.index(), to.index(), _turn);
     }
 
     /** Return true iff MOVE is legal for the player currently on move.
@@ -193,18 +175,16 @@ class Board {
 
     /** Return a sequence of all legal moves from this position. */
     List<Move> legalMoves() {
-        List<Move> moves = new ArrayList<Move>();
-
-        for (int i = 0; i < ALL_SQUARES.length; i++) {
-            for (int j = 0; j < ALL_SQUARES.length; j++) {
-                if (i != j) {
-                    if (isLegal(ALL_SQUARES[i], ALL_SQUARES[j])) {
-                        moves.add(Move.mv(ALL_SQUARES[i], ALL_SQUARES[j]));
-                    }
-                }
-            }
-        }
-        return moves;
+        Move[] moves = new Move[MAX_MOVES];
+        return new ArrayList<>(Arrays.asList(moves)
+                               .subList(0, legalMoves(moves)));
+    }
+
+    /** Store all legal moves from this position in MOVES, starting at
+     *  MOVES[0], and return how many there are.  MOVES must have room
+     *  for MAX_MOVES moves.  Unlike legalMoves(), allocates nothing. */
+    int legalMoves(Move[] moves) {
+        return _bits.legalMoves(_turn, moves);
     }
 
     /** Return true iff the game is over (either player has all his
@@ -215,15 +195,39 @@ class Board {
 
     /** Return true iff SIDE's pieces are continguous. */
     boolean piecesContiguous(Piece side) {
-        int size = getRegionSizes(side).size();
-        return getRegionSizes(side).size() == 1;
+        return regionCount(side) == 1;
+    }
+
+    /** Return the number of contiguous regions of SIDE's pieces.  The
+     *  numbers for both sides are kept from move to move: a move
+     *  without a capture leaves the other side's number alone, and
+     *  retract restores the numbers from before the move, so that only
+     *  the regions of a side whose pieces have moved are counted again. */
+    int regionCount(Piece side) {
+        if (side == WP) {
+            if (_whiteRegions == UNCOUNTED) {
+                _whiteRegions = _bits.groups(WP, null);
+            }
+            return _whiteRegions;
+        } else {
+            if (_blackRegions == UNCOUNTED) {
+                _blackRegions = _bits.groups(BP, null);
+            }
+            return _blackRegions;
+        }
+    }
+
+    /** Forget the numbers of regions, here and before each move made,
+     *  after a change other than a move. */
+    private void forgetRegions() {
+        _whiteRegions = _blackRegions = UNCOUNTED;
+        Arrays.fill(_regionHistory, 0);
     }
 
     /** Return the winning side, if any.  If the game is not over, result is
      *  null.  If the game has ended in a tie, returns EMP. */
     Piece winner() {
         if (!_winnerKnown) {
-            computeRegions();
             if (piecesContiguous(_turn)
                     && piecesContiguous(_turn.opposite())) {
                 _winner = _turn.opposite();
@@ -254,12 +258,20 @@ class Board {
     @Override
     public boolean equals(Object obj) {
         Board b = (Board) obj;
-        return Arrays.deepEquals(_board, b._board) && _turn == b._turn;
+        return _bits.equals(b._bits) && _turn == b._turn;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(_board) * 2 + _turn.hashCode();
+        return Long.hashCode(key());
+    }
+
+    /** Return the Zobrist key of this position: a 64-bit hash of its
+     *  contents and side to move that makeMove and retract update in
+     *  constant time. */
+    long key() {
+        return _turn == WP ? _bits.key() ^ Bitboard.WHITE_TO_MOVE
+            : _bits.key();
     }
 
     @Override
@@ -277,26 +289,6 @@ class Board {
         return out.toString();
     }
 
-    /** Return true if a move from FROM to TO is blocked by an opposing
-     *  piece or by a friendly piece on the target square. */
-    private boolean blocked(Square from, Square to) {
-        if (get(to) == get(from)) {
-            return true;
-        } else {
-            int direction = from.direction(to);
-            int distance = from.distance(to);
-            for (int i = distance - 1; i > 0; i--) {
-                Square sq = from.moveDest(direction, i);
-                if (sq != null) {
-                    if (get(sq) == get(from).opposite()) {
-                        return true;
-                    }
-                }
-            }
-            return false;
-        }
-    }
-
     /** Return the size of the as-yet unvisited cluster of squares
      *  containing P at and adjacent to SQ.  VISITED indicates squares that
      *  have already been processed or are in different clusters.  Update
@@ -325,20 +317,12 @@ class Board {
         }
         _whiteRegionSizes.clear();
         _blackRegionSizes.clear();
-        boolean[][] visited = new boolean[BOARD_SIZE][BOARD_SIZE];
-        for (Square sq: ALL_SQUARES) {
-            if (get(sq) == WP) {
-                int whiteSize = numContig(sq, visited, WP);
-                if (whiteSize != 0) {
-                    _whiteRegionSizes.add(whiteSize);
-                }
-            }
-            if (get(sq) == BP) {
-                int blackSize = numContig(sq, visited, BP);
-                if (blackSize != 0) {
-                    _blackRegionSizes.add(blackSize);
-                }
-            }
+        int[] sizes = new int[NUM_SQUARES];
+        for (int i = _bits.groups(WP, sizes) - 1; i >= 0; i -= 1) {
+            _whiteRegionSizes.add(sizes[i]);
+        }
+        for (int i = _bits.groups(BP, sizes) - 1; i >= 0; i -= 1) {
+            _blackRegionSizes.add(sizes[i]);
         }
 
         Collections.sort(_whiteRegionSizes, Collections.reverseOrder());
@@ -369,12 +353,13 @@ class Board {
         } else if (piecesContiguous(maximizer.opposite())) {
             return -WINNING_VALUE;
         }
-        int value = -getRegionSizes(maximizer).size()
-                + getRegionSizes(maximizer.opposite()).size();
+        int value = -regionCount(maximizer)
+                + regionCount(maximizer.opposite());
+        int noise = (int) ((key() >>> 1) % NOISE);
         if (value > 0) {
-            return value + (int) (Math.random() * 100);
+            return value + noise;
         } else if (value < 0) {
-            return value - (int) (Math.random() * 100);
+            return value - noise;
         } else {
             return 0;
         }
@@ -407,19 +392,7 @@ class Board {
      * defined as (direction + 4) % 8.
      */
     protected int getPiecesInLine(int direction, Square from) {
-        int pieces = 1;
-        int oppositedir = (direction + 4) % 8;
-        for (int i = 1; i < BOARD_SIZE; i++) {
-            Square indirection = from.moveDest(direction, i);
-            Square awaydirection = from.moveDest(oppositedir, i);
-            if (indirection != null && get(indirection) != EMP) {
-                pieces = pieces + 1;
-            }
-            if (awaydirection != null && get(awaydirection) != EMP) {
-                pieces = pieces + 1;
-            }
-        }
-        return pieces;
+        return _bits.lineCount(from.index(), direction);
     }
     /** The standard initial configuration for Lines of Action (bottom row
      *  first). */
@@ -434,8 +407,11 @@ class Board {
         { EMP, BP,  BP,  BP,  BP,  BP,  BP,  EMP }
     };
 
-    /** Current contents of the board. Square S is at _board[S.index()]. */
-    protected Piece[] _board = new Piece[BOARD_SIZE * BOARD_SIZE];
+    /** An upper bound on the number of legal moves in any position. */
+    static final int MAX_MOVES = Bitboard.MAX_MOVES;
+
+    /** Current contents of the board, as bitboards. */
+    private final Bitboard _bits = new Bitboard();
 
 
     /** Maximizer for the heuristic functions. */
@@ -455,6 +431,15 @@ class Board {
     /** True iff subsets computation is up-to-date. */
     private boolean _subsetsInitialized;
 
+    /** Numbers of contiguous regions of white and black pieces, or
+     *  UNCOUNTED. */
+    private int _whiteRegions = UNCOUNTED, _blackRegions = UNCOUNTED;
+
+    /** _regionHistory[K] holds _whiteRegions and _blackRegions as they
+     *  were before move K, as (_whiteRegions + 1) * REGION_RADIX
+     *  + _blackRegions + 1. */
+    private int[] _regionHistory = new int[2 * DEFAULT_MOVE_LIMIT];
+
     /** List of the sizes of continguous clusters of pieces, by color. */
     private final ArrayList<Integer>
         _whiteRegionSizes = new ArrayList<>(),
@@ -463,4 +448,15 @@ class Board {
     /** A position-score magnitude indicating a win (for white if positive,
      *  black if negative). */
     private static final int WINNING_VALUE = Integer.MAX_VALUE - 20;
+
+    /** Value of _whiteRegions or _blackRegions when not yet counted. */
+    private static final int UNCOUNTED = -1;
+
+    /** Base in which _regionHistory holds the numbers of regions. */
+    private static final int REGION_RADIX = NUM_SQUARES + 2;
+
+    /** Bound on the noise that boardState adds to its value.  It is taken
+     *  from the key rather than chosen at random, so that a position
+     *  always has the same value, as transposition tables require. */
+    private static final int NOISE = 100;
 }
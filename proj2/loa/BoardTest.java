@@ -3,6 +3,7 @@
 package loa;
 import org.junit.Test;
 import java.util.List;
+import java.util.Random;
 import static loa.Square.BOARD_SIZE;
 import static org.junit.Assert.*;
 import static loa.Piece.*;
@@ -224,4 +225,206 @@ public class BoardTest {
         List<Move> allMoves = b.legalMoves();
         assertEquals(37, allMoves.size());
     }
+
+    /** Return true iff FROM-TO is legal on B, found by walking the line
+     *  through FROM square by square. */
+    private static boolean slowIsLegal(Board b, Square from, Square to) {
+        if (!from.isValidMove(to) || b.get(from) != b.turn()
+            || b.get(to) == b.turn()) {
+            return false;
+        }
+        int dir = from.direction(to), pieces = 0;
+        for (int i = 1; i < BOARD_SIZE; i += 1) {
+            Square s1 = from.moveDest(dir, i),
+                s2 = from.moveDest((dir + 4) % 8, i);
+            pieces += (s1 != null && b.get(s1) != EMP ? 1 : 0)
+                + (s2 != null && b.get(s2) != EMP ? 1 : 0);
+            if (i < from.distance(to) && b.get(s1) == b.turn().opposite()) {
+                return false;
+            }
+        }
+        return pieces + 1 == from.distance(to);
+    }
+
+    /**
+     * Test that generated moves agree with a square-by-square search.
+     */
+    @Test
+    public void testLegalMovesMatchSlowSearch() {
+        for (Piece[][] contents : new Piece[][][] { BOARD1, BOARD2, BOARD3,
+                                                    BOARD4 }) {
+            for (Piece turn : new Piece[] { BP, WP }) {
+                Board b = new Board(contents, turn);
+                List<Move> moves = b.legalMoves();
+                int expected = 0;
+                for (Square from : Square.ALL_SQUARES) {
+                    for (Square to : Square.ALL_SQUARES) {
+                        boolean legal = slowIsLegal(b, from, to);
+                        assertEquals(from + "-" + to, legal,
+                                     b.isLegal(from, to));
+                        if (legal) {
+                            assertTrue(moves.contains(mv(from, to)));
+                            expected += 1;
+                        }
+                    }
+                }
+                assertEquals(expected, moves.size());
+            }
+        }
+    }
+
+    /**
+     * Test perft counts, which check generation, making and retraction.
+     */
+    @Test
+    public void testPerft() {
+        Board b = new Board();
+        Board b0 = new Board();
+        assertEquals(36, Perft.perft(b, 1));
+        assertEquals(1244, Perft.perft(b, 2));
+        assertEquals(44952, Perft.perft(b, 3));
+        assertEquals(b0, b);
+        assertEquals(0, b.movesMade());
+    }
+
+    /**
+     * Test that keys follow moves and retractions and depend only on the
+     * position, not on how it was reached.
+     */
+    @Test
+    public void testKeys() {
+        Board b = new Board();
+        long initial = b.key();
+        b.makeMove(mv("b1-b3"));
+        b.makeMove(mv("h2-f2"));
+        b.makeMove(mv("c1-c3"));
+        Board b2 = new Board();
+        b2.makeMove(mv("c1-c3"));
+        b2.makeMove(mv("h2-f2"));
+        b2.makeMove(mv("b1-b3"));
+        assertEquals(b2, b);
+        assertEquals(b2.key(), b.key());
+        b.retract();
+        assertNotEquals(b2.key(), b.key());
+        b.retract();
+        b.retract();
+        assertEquals(initial, b.key());
+        assertNotEquals(new Board(Board.INITIAL_PIECES, WP).key(), initial);
+    }
+
+    /**
+     * Test that a search with a transposition table finds a legal move,
+     * leaves its board alone, and searches fewer positions than one
+     * without.
+     */
+    @Test
+    public void testSearchWithTable() {
+        Board b = new Board(BOARD1, BP);
+        Board b0 = new Board(BOARD1, BP);
+        MachinePlayer plain = new MachinePlayer(null, null, null);
+        MachinePlayer cached =
+            new MachinePlayer(null, null, new TranspositionTable(16));
+        assertTrue(b.isLegal(plain.searchForMove(b, 4)));
+        assertTrue(b.isLegal(cached.searchForMove(b, 4)));
+        assertEquals(b0, b);
+        assertEquals(b0.key(), b.key());
+        assertTrue(cached.nodes() < plain.nodes());
+    }
+
+    /**
+     * Test that a search with a time limit stops near the limit with a
+     * legal move, having completed at least one depth.
+     */
+    @Test
+    public void testTimedSearch() {
+        Board b = new Board(BOARD2, WP);
+        MachinePlayer player =
+            new MachinePlayer(null, null, new TranspositionTable(16));
+        long start = System.currentTimeMillis();
+        Move move = player.searchForMove(b, MachinePlayer.MAX_DEPTH, 200);
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertTrue(b.isLegal(move));
+        assertTrue(player.depthReached() >= 1);
+        assertEquals(new Board(BOARD2, WP), b);
+    }
+
+    /**
+     * Test that a search in several threads finds a legal move and
+     * leaves its board alone.
+     */
+    @Test
+    public void testParallelSearch() {
+        Board b = new Board(BOARD1, WP);
+        MachinePlayer player =
+            new MachinePlayer(null, null, new TranspositionTable(16));
+        player.setThreads(4);
+        assertTrue(b.isLegal(player.searchForMove(b, 3)));
+        assertTrue(b.isLegal(player.searchForMove(b, MachinePlayer.MAX_DEPTH,
+                                                  100)));
+        assertEquals(new Board(BOARD1, WP), b);
+    }
+
+    /**
+     * Test that a copy of a board has its moves, so that it agrees with
+     * it about the move limit and can retract them.
+     */
+    @Test
+    public void testCopyKeepsMoves() {
+        Board b = new Board();
+        b.makeMove(mv("b1-b3"));
+        b.makeMove(mv("h2-f2"));
+        b.makeMove(mv("c1-c3"));
+        Board copy = new Board(b);
+        assertEquals(b, copy);
+        assertEquals(3, copy.movesMade());
+        copy.retract();
+        copy.retract();
+        copy.retract();
+        assertEquals(new Board(), copy);
+        assertEquals(2, copy.regionCount(BP));
+        assertEquals(2, copy.regionCount(WP));
+        assertEquals(3, b.movesMade());
+    }
+
+    /**
+     * Test that the numbers of regions kept across moves and retractions
+     * agree with counts made from scratch with numContig.
+     */
+    @Test
+    public void testRegionCounts() {
+        Random random = new Random(25);
+        Move[] moves = new Move[Board.MAX_MOVES];
+        Board b = new Board();
+        for (int k = 0; k < 40 && !b.gameOver(); k += 1) {
+            for (Piece side : new Piece[] { WP, BP }) {
+                assertEquals(slowRegionCount(b, side), b.regionCount(side));
+            }
+            b.makeMove(moves[random.nextInt(b.legalMoves(moves))]);
+            if (random.nextInt(4) == 0) {
+                b.retract();
+            }
+        }
+        while (b.movesMade() > 0) {
+            b.retract();
+            for (Piece side : new Piece[] { WP, BP }) {
+                assertEquals(slowRegionCount(b, side), b.regionCount(side));
+            }
+        }
+        Board b2 = new Board(BOARD2, BP);
+        assertEquals(1, b2.regionCount(BP));
+        assertEquals(9, (int) b2.getRegionSizes(BP).get(0));
+    }
+
+    /** Return the number of regions of SIDE's pieces on B, counted with
+     *  numContig. */
+    private static int slowRegionCount(Board b, Piece side) {
+        boolean[][] visited = new boolean[BOARD_SIZE][BOARD_SIZE];
+        int count = 0;
+        for (Square sq : Square.ALL_SQUARES) {
+            if (b.numContig(sq, visited, side) > 0) {
+                count += 1;
+            }
+        }
+        return count;
+    }
 }
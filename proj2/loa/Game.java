@@ -109,9 +109,9 @@ class Game {
                 System.out.printf("%s%n", _board);
                 break;
             case "autowhite":
-                autoCommand("white");
+                autoCommand("white", command.group(2));
                 break;
-            case "autoblack": autoCommand("black");
+            case "autoblack": autoCommand("black", command.group(2));
                 break;
             case "manualwhite": manualCommand("white");
                 break;
@@ -119,7 +119,8 @@ class Game {
                 break;
             case "manual": manualCommand(command.group(2).toLowerCase());
                 break;
-            case "auto": autoCommand(command.group(2).toLowerCase());
+            case "auto": autoCommand(command.group(2).toLowerCase(),
+                                     command.group(3));
                 break;
             case "quit": quit();
                 break;
@@ -133,6 +134,8 @@ class Game {
                     break;
             case "limit": limitCommand(command.group(2));
                 break;
+            case "threads": threadsCommand(command.group(2));
+                break;
             case "?": case "help":
                 help();
                 break;
@@ -184,20 +187,41 @@ class Game {
         }
     }
 
-    /** Set player PLAYER ("white" or "black") to be an automated player. */
-    private void autoCommand(String player) {
+    /** Set player PLAYER ("white" or "black") to be an automated player,
+     *  allowed TIME seconds per move, or searching to a fixed depth if
+     *  TIME is empty. */
+    private void autoCommand(String player, String time) {
+        long limit;
+        try {
+            limit = time.isEmpty() ? 0
+                : Math.round(Double.parseDouble(time) * MILLISEC);
+        } catch (NumberFormatException excp) {
+            limit = -1;
+        }
+        if (limit < 0 || limit == 0 && !time.isEmpty()) {
+            error("invalid time limit: %s%n", time);
+            return;
+        }
         switch (player) {
         case "white":
             _white = _autoPlayerTemplate.create(WP, this);
+            _whiteTime = limit;
             break;
         case "black":
             _black = _autoPlayerTemplate.create(BP, this);
+            _blackTime = limit;
             break;
         default:
             error("unknown player: %s%n", player);
         }
     }
 
+    /** Return the number of milliseconds an automated player of SIDE
+     *  may take per move, or 0 if it searches to a fixed depth. */
+    long timeLimit(Piece side) {
+        return side == WP ? _whiteTime : _blackTime;
+    }
+
     /** Seed random-number generator with SEED (as a long). */
     private void seedCommand(String seed) {
         try {
@@ -235,6 +259,26 @@ class Game {
         }
     }
 
+    /** Set the number of threads used by automated players' searches
+     *  to the numeral in THREADS, which must be positive. */
+    private void threadsCommand(String threads) {
+        try {
+            int n = Integer.parseInt(threads);
+            if (n <= 0) {
+                error("invalid number of threads: %s%n", threads);
+            } else {
+                _threads = n;
+            }
+        } catch (NumberFormatException excp) {
+            error("invalid number of threads: %s%n", threads);
+        }
+    }
+
+    /** Return the number of threads automated players use to search. */
+    int threads() {
+        return _threads;
+    }
+
     /** Perform the move designated by LINE, if a valid move.  Return
      *  true iff LINE has the syntax of a move. */
     private boolean processMove(String line) {
@@ -338,6 +382,11 @@ class Game {
     private Player _white;
     /** Player of black pieces. */
     private Player _black;
+    /** Milliseconds per move allowed the automated players of white
+     *  and black, or 0 for searches to a fixed depth. */
+    private long _whiteTime, _blackTime;
+    /** Number of threads used by automated players' searches. */
+    private int _threads = 1;
     /** A player to handle commands when game not started. Does not
      *  actually generate moves. */
     private Player _nonplayer;
@@ -1,6 +1,14 @@
 /* Skeleton Copyright (C) 2015, 2020 Paul N. Hilfinger and the Regents of the
  University of California.  All rights reserved. */
 package loa;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static loa.Piece.*;
 
 /** An automated Player.
@@ -13,6 +21,23 @@ class MachinePlayer extends Player {
     private static final int WINNING_VALUE = Integer.MAX_VALUE - 20;
     /** A magnitude greater than a normal value. */
     private static final int INFTY = Integer.MAX_VALUE;
+    /** Log base 2 of the number of entries in the transposition table. */
+    static final int TABLE_BITS = 20;
+    /** The deepest search made within a time limit. */
+    static final int MAX_DEPTH = 32;
+    /** Number of positions searched between checks of the time. */
+    private static final int CHECK_INTERVAL = 1024;
+    /** Number of nanoseconds in a millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /** Runs the searches of the threads other than the caller's.  Its
+     *  threads are daemons, so that they do not keep the program alive. */
+    private static final ExecutorService HELPERS =
+        Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            return thread;
+        });
 
     /** A new MachinePlayer with no piece or controller (intended to produce
      *  a template). */
@@ -22,7 +47,15 @@ class MachinePlayer extends Player {
 
     /** A MachinePlayer that plays the SIDE pieces in GAME. */
     MachinePlayer(Piece side, Game game) {
+        this(side, game,
+             side == null ? null : new TranspositionTable(TABLE_BITS));
+    }
+
+    /** A MachinePlayer that plays the SIDE pieces in GAME, remembering
+     *  the positions it has searched in TABLE, unless it is null. */
+    MachinePlayer(Piece side, Game game, TranspositionTable table) {
         super(side, game);
+        _table = table;
     }
 
     @Override
@@ -30,7 +63,6 @@ class MachinePlayer extends Player {
         Move choice;
 
         assert side() == getGame().getBoard().turn();
-        int depth;
         choice = searchForMove();
         getGame().reportMove(choice);
         return choice.toString();
@@ -46,72 +78,270 @@ class MachinePlayer extends Player {
         return false;
     }
 
-    /** Return a move after searching the game tree to DEPTH>0 moves
-     *  from the current position. Assumes the game is not over. */
+    /** Use THREADS > 0 threads in each search.  The threads share my
+     *  transposition table, so without one only one thread is used. */
+    void setThreads(int threads) {
+        _threads = threads;
+    }
+
+    /** Return a move after searching the game tree from the current
+     *  position, to depth chooseDepth() or for as long as the game
+     *  allows my side. Assumes the game is not over. */
     private Move searchForMove() {
-        int value;
         assert side() == getBoard().turn();
-        _foundMove = null;
-        if (side() == WP) {
-            value = findMove(getBoard(), chooseDepth(), true, 1, -INFTY, INFTY);
+        setThreads(getGame().threads());
+        long limit = getGame().timeLimit(side());
+        if (limit > 0) {
+            return searchForMove(getBoard(), MAX_DEPTH, limit);
         } else {
-            value = findMove(getBoard(),
-                    chooseDepth(), true, -1, -INFTY, INFTY);
+            return searchForMove(getBoard(), chooseDepth());
+        }
+    }
+
+    /** Return a move for the side to move on BOARD after searching the
+     *  game tree to DEPTH>0 moves from it, leaving BOARD unchanged.
+     *  Assumes the game is not over. */
+    Move searchForMove(Board board, int depth) {
+        start(board);
+        iterate(depth);
+        return finish();
+    }
+
+    /** Return a move for the side to move on BOARD after searching the
+     *  game tree from it to depths 1, 2, ..., up to MAXDEPTH, until
+     *  MILLIS milliseconds have passed, leaving BOARD unchanged.  The
+     *  move is the best one found by the deepest search completed;
+     *  a search cut off by the time limit is abandoned, except that
+     *  the search to depth 1 is always completed.  Each search tries
+     *  first the best move of the one before.  Assumes the game is
+     *  not over. */
+    Move searchForMove(Board board, int maxDepth, long millis) {
+        long start = System.nanoTime();
+        long budget = millis * NANOS_PER_MILLI;
+        start(board);
+        _depthReached = 0;
+        for (int depth = 1; depth <= maxDepth; depth += 1) {
+            if (!iterate(depth)) {
+                break;
+            }
+            _depthReached = depth;
+            _deadline = start + budget;
+            if (System.nanoTime() - start > budget / 2) {
+                break;
+            }
         }
-        return _foundMove;
-    }
-
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _foundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _foundMove. If the game is over
-     *  on BOARD, does not set _foundMove. */
-    private int findMove(Board board, int depth, boolean saveMove,
-                         int sense, int alpha, int beta) {
-        if (depth == 0) {
-            return board.boardState();
+        return finish();
+    }
+
+    /** Prepare to search BOARD: one Search of BOARD itself, and one of a
+     *  copy of it for each other thread. */
+    private void start(Board board) {
+        _deadline = Long.MAX_VALUE;
+        if (_table != null) {
+            _table.newSearch();
         }
-        if (sense == 1) {
-            bestscore = -INFTY;
-            nextbestscore = -INFTY;
-        } else if (sense == -1) {
-            bestscore = INFTY;
-            nextbestscore = INFTY;
+        int threads = _table == null ? 1 : _threads;
+        _searches = new Search[threads];
+        _searches[0] = new Search(board, 0);
+        for (int i = 1; i < threads; i += 1) {
+            _searches[i] = new Search(new Board(board), i);
         }
+    }
 
-        for (Move move : board.legalMoves()) {
-            if (board.isLegal(move)) {
+    /** Search to DEPTH, and return true unless the time ran out first.
+     *  This is Lazy SMP: while the first Search searches to DEPTH, the
+     *  others search the same position to DEPTH or DEPTH + 1 in other
+     *  threads, each trying the moves from the position in a different
+     *  order.  They share only the transposition table, through which
+     *  they pass their results to each other.  The others stop once the
+     *  first is done. */
+    private boolean iterate(int depth) {
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < _searches.length; i += 1) {
+            Search helper = _searches[i];
+            int helperDepth = depth + i % 2;
+            helper._stopped = false;
+            helpers.add(HELPERS.submit(() -> helper.search(helperDepth)));
+        }
+        boolean done = _searches[0].search(depth);
+        for (int i = 1; i < _searches.length; i += 1) {
+            _searches[i].stop();
+        }
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new IllegalStateException(excp);
+            }
+        }
+        return done;
+    }
+
+    /** Return the move found by the last search, after adding up the
+     *  positions searched in all threads. */
+    private Move finish() {
+        for (Search search : _searches) {
+            _nodes += search._nodes;
+        }
+        Move move = _searches[0]._foundMove;
+        _searches = null;
+        return move;
+    }
+
+    /** Return the number of positions searched so far, in all threads. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the depth of the deepest search completed by the last
+     *  search with a time limit. */
+    int depthReached() {
+        return _depthReached;
+    }
+
+    /** The search of one position by one thread. */
+    private class Search {
+
+        /** A search of BOARD by thread number ID, where 0 is the thread
+         *  whose move is chosen. */
+        Search(Board board, int id) {
+            _board = board;
+            _random = id == 0 ? null : new Random(id);
+        }
+
+        /** Search my board to DEPTH, setting _foundMove to the best move
+         *  found and returning true, unless stopped first, in which
+         *  case return false and leave _foundMove alone. */
+        boolean search(int depth) {
+            if (_moves == null || _moves.length <= depth) {
+                _moves = new Move[depth + 1][Board.MAX_MOVES];
+            }
+            findMove(_board, depth, true, _board.turn() == WP ? 1 : -1,
+                     -INFTY, INFTY);
+            return !_stopped;
+        }
+
+        /** Stop my search as soon as possible. */
+        void stop() {
+            _stopped = true;
+        }
+
+        /** Find a move from position BOARD and return its value, recording
+         *  the move found in _foundMove iff SAVEMOVE. The move
+         *  should have maximal value or have value > BETA if SENSE==1,
+         *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
+         *  DEPTH levels.  Searching at level 0 simply returns a static
+         *  estimate of the board value and does not set _foundMove. If the
+         *  game is over on BOARD, does not set _foundMove.  If SAVEMOVE,
+         *  the move in _foundMove, if any, is tried first; otherwise, the
+         *  best move recorded for BOARD in the transposition table, if
+         *  any, is, and the search is cut short if the table already
+         *  gives its value, or enough of it, at DEPTH or deeper.  Once
+         *  stopped, or once the time passes _deadline, returns a
+         *  meaningless value without setting _foundMove. */
+        private int findMove(Board board, int depth, boolean saveMove,
+                             int sense, int alpha, int beta) {
+            _nodes += 1;
+            if (_stopped || _nodes % CHECK_INTERVAL == 0
+                && System.nanoTime() > _deadline) {
+                _stopped = true;
+                return 0;
+            }
+            if (depth == 0) {
+                return board.boardState();
+            }
+            long key = board.key();
+            long entry = _table == null ? 0 : _table.find(key);
+            Move hint = saveMove ? _foundMove : null;
+            if (entry != 0) {
+                if (hint == null) {
+                    hint = TranspositionTable.move(entry);
+                }
+                if (!saveMove && TranspositionTable.depth(entry) >= depth) {
+                    int score = TranspositionTable.score(entry);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER && score >= beta
+                        || bound == TranspositionTable.UPPER
+                           && score <= alpha) {
+                        return score;
+                    }
+                }
+            }
+
+            Move[] moves = _moves[depth];
+            int n = board.legalMoves(moves);
+            if (saveMove && _random != null) {
+                for (int i = n - 1; i > 0; i -= 1) {
+                    int k = _random.nextInt(i + 1);
+                    Move move = moves[i];
+                    moves[i] = moves[k];
+                    moves[k] = move;
+                }
+            }
+            for (int i = 0; hint != null && i < n; i += 1) {
+                if (moves[i] == hint) {
+                    moves[i] = moves[0];
+                    moves[0] = hint;
+                    break;
+                }
+            }
+            int alpha0 = alpha, beta0 = beta;
+            int bestScore = sense == 1 ? -INFTY : INFTY;
+            Move best = null;
+            for (int i = 0; i < n; i += 1) {
+                Move move = moves[i];
                 board.makeMove(move);
                 int score = findMove(board, depth - 1, false,
                         -sense, alpha, beta);
                 board.retract();
-                if (sense == 1 && score > bestscore) {
-                    bestscore = score;
-                } else if (sense == -1 && score < bestscore) {
-                    bestscore = score;
+                if (_stopped) {
+                    return 0;
                 }
-                if (saveMove && score > nextbestscore) {
-                    nextbestscore = score;
-                    _foundMove = move;
-
-                } else if (saveMove && score < nextbestscore) {
-                    nextbestscore = score;
-                    _foundMove = move;
+                if (sense == 1 && score > bestScore
+                    || sense == -1 && score < bestScore) {
+                    bestScore = score;
+                    best = move;
                 }
-
                 if (sense == 1) {
-                    alpha = Math.max(bestscore, alpha);
+                    alpha = Math.max(bestScore, alpha);
                 } else {
-                    beta = Math.min(bestscore, beta);
+                    beta = Math.min(bestScore, beta);
                 }
                 if (alpha >= beta) {
                     break;
                 }
             }
+            if (saveMove) {
+                _foundMove = best;
+            }
+            if (_table != null && best != null) {
+                int bound = bestScore <= alpha0 ? TranspositionTable.UPPER
+                    : bestScore >= beta0 ? TranspositionTable.LOWER
+                    : TranspositionTable.EXACT;
+                _table.store(key, depth, bound, bestScore, best);
+            }
+            return bestScore;
         }
-        return bestscore;
+
+        /** The position searched. */
+        private final Board _board;
+
+        /** Source of the order of the moves from _board, or null to
+         *  leave them in the order generated. */
+        private final Random _random;
+
+        /** Used to convey moves discovered by findMove. */
+        private Move _foundMove;
+
+        /** _moves[D] holds the moves generated at depth D. */
+        private Move[][] _moves;
+
+        /** Number of positions searched. */
+        private long _nodes;
+
+        /** True iff this search is to stop. */
+        private volatile boolean _stopped;
     }
 
     /** Return a search depth for the current position. */
@@ -119,12 +349,21 @@ class MachinePlayer extends Player {
         return 5;
     }
 
-    /** Used to convey moves discovered by findMove. */
-    private Move _foundMove;
+    /** Positions searched, or null if none are remembered. */
+    private final TranspositionTable _table;
+
+    /** Number of threads in each search. */
+    private int _threads = 1;
+
+    /** The searches in progress, the first in the calling thread. */
+    private Search[] _searches;
+
+    /** The value of System.nanoTime() at which to abandon a search. */
+    private volatile long _deadline;
 
-    /** Stores best score. */
-    private int bestscore;
+    /** Depth of the deepest search completed within a time limit. */
+    private int _depthReached;
 
-    /** Stores the best score among the next moves. */
-    private int nextbestscore;
+    /** Number of positions searched so far. */
+    private long _nodes;
 }
@@ -0,0 +1,59 @@
+package loa;
+
+/** A perft benchmark of move generation.  Usage:
+ *
+ *      java loa.Perft DEPTH...
+ *
+ *  For each DEPTH, counts the positions reached by every sequence of
+ *  DEPTH legal moves from the standard initial position, making and
+ *  retracting each move on one Board, and reports how many there are
+ *  and how many were counted per second.  Game ends are not detected,
+ *  so the counts test move generation alone.
+ *  @author Hamza Kamran
+ */
+public class Perft {
+
+    /** Run the benchmark at each depth in ARGS. */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java loa.Perft DEPTH...");
+            System.exit(1);
+        }
+        for (String arg : args) {
+            int depth = Integer.parseInt(arg);
+            Board board = new Board();
+            long start = System.nanoTime();
+            long nodes = perft(board, depth);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("perft(%d): %12d nodes %8.2f s %12.0f nodes/s%n",
+                              depth, nodes, seconds, nodes / seconds);
+        }
+    }
+
+    /** Return the number of positions reached by every sequence of DEPTH
+     *  legal moves from BOARD, which is left unchanged. */
+    static long perft(Board board, int depth) {
+        return perft(board, depth, new Move[depth][Board.MAX_MOVES]);
+    }
+
+    /** Return perft(BOARD, DEPTH), using MOVES[K] to hold the moves at
+     *  depth K. */
+    private static long perft(Board board, int depth, Move[][] moves) {
+        if (depth == 0) {
+            return 1;
+        }
+        Move[] here = moves[depth - 1];
+        int n = board.legalMoves(here);
+        if (depth == 1) {
+            return n;
+        }
+        long nodes = 0;
+        for (int i = 0; i < n; i += 1) {
+            board.makeMove(here[i]);
+            nodes += perft(board, depth - 1, moves);
+            board.retract();
+        }
+        return nodes;
+    }
+
+}
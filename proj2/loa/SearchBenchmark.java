@@ -0,0 +1,162 @@
+package loa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** A benchmark of MachinePlayer's search.  Usage:
+ *
+ *      java loa.SearchBenchmark DEPTH...
+ *      java loa.SearchBenchmark --time SECONDS...
+ *      java loa.SearchBenchmark --threads DEPTH THREADS...
+ *      java loa.SearchBenchmark --eval DEPTH
+ *
+ *  For each DEPTH, searches each position of a fixed suite to DEPTH,
+ *  once without a transposition table and once with one, and reports
+ *  the positions searched and the time taken by each.  With --time,
+ *  searches the initial position by iterative deepening for each
+ *  number of SECONDS, and reports the depth reached.  With --threads,
+ *  searches the suite to DEPTH with a table using each number of
+ *  THREADS, and reports the time taken and the speedup over the first.
+ *  With --eval, evaluates (as a search's leaves are) every position
+ *  reached by up to DEPTH moves from each position of the suite, and
+ *  reports the evaluations per second.
+ *  @author Hamza Kamran
+ */
+public class SearchBenchmark {
+
+    /** Run the benchmark at each depth, time, or number of threads in
+     *  ARGS. */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java loa.SearchBenchmark DEPTH..."
+                               + " | --time SECONDS..."
+                               + " | --threads DEPTH THREADS..."
+                               + " | --eval DEPTH");
+            System.exit(1);
+        }
+        if (args[0].equals("--time")) {
+            for (int i = 1; i < args.length; i += 1) {
+                timed(Double.parseDouble(args[i]));
+            }
+            return;
+        }
+        List<Board> suite = suite();
+        if (args[0].equals("--threads")) {
+            int depth = Integer.parseInt(args[1]);
+            long first = 0;
+            for (int i = 2; i < args.length; i += 1) {
+                int threads = Integer.parseInt(args[i]);
+                long[] result = run(suite, depth,
+                        new TranspositionTable(MachinePlayer.TABLE_BITS),
+                        threads);
+                first = first == 0 ? result[1] : first;
+                System.out.printf("depth %d, %2d threads: %12d nodes %8.2f s"
+                                  + " (%.2fx)%n", depth, threads, result[0],
+                                  result[1] / 1e9, (double) first / result[1]);
+            }
+            return;
+        }
+        if (args[0].equals("--eval")) {
+            int depth = Integer.parseInt(args[1]);
+            long start = System.nanoTime();
+            long evaluations = 0;
+            for (Board board : suite) {
+                evaluations += evaluate(board, depth,
+                                        new Move[depth][Board.MAX_MOVES]);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d evaluations %8.2f s %12.0f evaluations/s%n",
+                              evaluations, seconds, evaluations / seconds);
+            return;
+        }
+        for (String arg : args) {
+            int depth = Integer.parseInt(arg);
+            long[] plain = run(suite, depth, null, 1);
+            long[] table = run(suite, depth,
+                    new TranspositionTable(MachinePlayer.TABLE_BITS), 1);
+            System.out.printf("depth %d: %12d nodes %8.2f s without table,"
+                              + " %12d nodes %8.2f s with table"
+                              + " (%.1fx fewer nodes, %.1fx faster)%n",
+                              depth, plain[0], plain[1] / 1e9,
+                              table[0], table[1] / 1e9,
+                              (double) plain[0] / table[0],
+                              (double) plain[1] / table[1]);
+        }
+    }
+
+    /** Return the positions searched: the initial position and those
+     *  reached from it by PLIES[K] random moves, for each K. */
+    static List<Board> suite() {
+        List<Board> suite = new ArrayList<>();
+        for (int plies : PLIES) {
+            Random random = new Random(SEED);
+            Board board = new Board();
+            Move[] moves = new Move[Board.MAX_MOVES];
+            for (int k = 0; k < plies && !board.gameOver(); k += 1) {
+                board.makeMove(moves[random.nextInt(board.legalMoves(moves))]);
+            }
+            if (!board.gameOver()) {
+                suite.add(board);
+            }
+        }
+        return suite;
+    }
+
+    /** Search the initial position for SECONDS seconds and report the
+     *  depth reached. */
+    private static void timed(double seconds) {
+        MachinePlayer player = new MachinePlayer(null, null,
+                new TranspositionTable(MachinePlayer.TABLE_BITS));
+        long start = System.nanoTime();
+        Move move = player.searchForMove(new Board(), MachinePlayer.MAX_DEPTH,
+                                         Math.round(seconds * 1000));
+        System.out.printf("%6.2f s: depth %2d, %12d nodes in %6.2f s,"
+                          + " move %s%n", seconds, player.depthReached(),
+                          player.nodes(),
+                          (System.nanoTime() - start) / 1e9, move);
+    }
+
+    /** Evaluate BOARD and each position reached from it by up to DEPTH
+     *  moves, using MOVES[K] to hold the moves at depth K, and return
+     *  the number of evaluations. */
+    private static long evaluate(Board board, int depth, Move[][] moves) {
+        board.boardState();
+        board.gameOver();
+        long evaluations = 1;
+        if (depth > 0) {
+            Move[] here = moves[depth - 1];
+            int n = board.legalMoves(here);
+            for (int i = 0; i < n; i += 1) {
+                board.makeMove(here[i]);
+                evaluations += evaluate(board, depth - 1, moves);
+                board.retract();
+            }
+        }
+        return evaluations;
+    }
+
+    /** Search each board in SUITE to DEPTH with TABLE (null for none),
+     *  using THREADS threads, and return the total number of positions
+     *  searched and the nanoseconds taken. */
+    private static long[] run(List<Board> suite, int depth,
+                              TranspositionTable table, int threads) {
+        MachinePlayer player = new MachinePlayer(null, null, table);
+        player.setThreads(threads);
+        long start = System.nanoTime();
+        for (Board board : suite) {
+            if (table != null) {
+                table.clear();
+            }
+            player.searchForMove(new Board(board), depth);
+        }
+        return new long[] { player.nodes(), System.nanoTime() - start };
+    }
+
+    /** Lengths of the random games reaching the positions of the suite. */
+    private static final int[] PLIES = { 0, 6, 12, 18, 24 };
+
+    /** Seed of the random games. */
+    private static final long SEED = 61;
+
+}
@@ -0,0 +1,122 @@
+package loa;
+
+import java.util.Arrays;
+
+import static loa.Square.*;
+
+/** A fixed-size table of the results of searches of positions, indexed
+ *  by their Zobrist keys (see Board.key), so that a search need not
+ *  repeat the search of a position it reaches again by another order of
+ *  moves.  Each entry holds a position's key, the depth to which it was
+ *  searched, its score, whether the score is exact or only a lower or
+ *  upper bound (when the search was cut off by alpha-beta pruning), and
+ *  the best move found.  Each key has one slot, whose entry is replaced
+ *  only by one from a deeper or equally deep search, or by any entry
+ *  once the entry is left from an earlier search.  Entries are packed
+ *  into single longs and checked against their keys when found, so
+ *  that searches in several threads may share a table without locks.
+ *  @author Hamza Kamran
+ */
+final class TranspositionTable {
+
+    /** Bound type of an exact score. */
+    static final int EXACT = 0;
+    /** Bound type of a score that is at most the real score. */
+    static final int LOWER = 1;
+    /** Bound type of a score that is at least the real score. */
+    static final int UPPER = 2;
+
+    /** A table with 2**BITS entries. */
+    TranspositionTable(int bits) {
+        int size = 1 << bits;
+        _mask = size - 1;
+        _keys = new long[size];
+        _entries = new long[size];
+    }
+
+    /** Start a new search, whose entries replace those of earlier ones
+     *  regardless of depth. */
+    void newSearch() {
+        _age = (_age + 1) & AGE_MASK;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_entries, 0);
+    }
+
+    /** Return the entry for the position with key KEY, or 0 if there is
+     *  none.  The parts of the entry are extracted by depth, score,
+     *  bound, and move. */
+    long find(long key) {
+        int slot = (int) key & _mask;
+        long entry = _entries[slot];
+        return (_keys[slot] ^ entry) == key ? entry : 0;
+    }
+
+    /** Return the depth searched in ENTRY. */
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the score in ENTRY. */
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    /** Return the bound type (EXACT, LOWER, or UPPER) of ENTRY. */
+    static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the best move in ENTRY, or null if none. */
+    static Move move(long entry) {
+        int move = (int) (entry >>> MOVE_SHIFT) - 1;
+        return move < 0 ? null
+            : Move.mv(ALL_SQUARES[move / NUM_SQUARES],
+                      ALL_SQUARES[move % NUM_SQUARES]);
+    }
+
+    /** Record that the position with key KEY, searched to DEPTH > 0, has
+     *  score SCORE of bound type BOUND and best move BEST (null if none),
+     *  unless its slot holds a deeper entry from this search. */
+    void store(long key, int depth, int bound, int score, Move best) {
+        int slot = (int) key & _mask;
+        long old = _entries[slot];
+        if (depth(old) > depth
+            && (int) (old >>> AGE_SHIFT & AGE_MASK) == _age) {
+            return;
+        }
+        long move = best == null ? 0
+            : best.getFrom().index() * NUM_SQUARES + best.getTo().index() + 1;
+        long entry = (score & 0xffffffffL)
+            | (long) depth << DEPTH_SHIFT
+            | (long) bound << BOUND_SHIFT
+            | (long) _age << AGE_SHIFT
+            | move << MOVE_SHIFT;
+        _keys[slot] = key ^ entry;
+        _entries[slot] = entry;
+    }
+
+    /** Positions of the fields of an entry: the score is in the low 32
+     *  bits, followed by the depth, bound type, age, and move. */
+    private static final int
+        DEPTH_SHIFT = 32, BOUND_SHIFT = 40, AGE_SHIFT = 42, MOVE_SHIFT = 50;
+    /** Masks of the depth, bound type, and age fields once shifted. */
+    private static final int
+        DEPTH_MASK = 0xff, BOUND_MASK = 0x3, AGE_MASK = 0xff;
+
+    /** Mask selecting the slot of a key. */
+    private final int _mask;
+    /** The keys of the positions in each slot, xored with their
+     *  entries, so that an entry torn by racing stores fails to match
+     *  any key. */
+    private final long[] _keys;
+    /** The entries: a position's score, depth (0 for an empty slot),
+     *  bound type, search, and best move (FROM * NUM_SQUARES + TO + 1,
+     *  or 0), packed as described at DEPTH_SHIFT. */
+    private final long[] _entries;
+    /** The current search, modulo 256. */
+    private int _age;
+}
@@ -0,0 +1,1497 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+import static gitlet.Main.*;
+
+/** Stopwatch benchmarks for Gitlet's storage.  Usage:
+ *
+ *      java gitlet.Benchmark pack N...
+ *      java gitlet.Benchmark delta N...
+ *      java gitlet.Benchmark index N...
+ *      java gitlet.Benchmark ids N...
+ *      java gitlet.Benchmark log N...
+ *      java gitlet.Benchmark codec N...
+ *      java gitlet.Benchmark tree N...
+ *      java gitlet.Benchmark status N...
+ *      java gitlet.Benchmark checkout N...
+ *      java gitlet.Benchmark mergebase N...
+ *      java gitlet.Benchmark commit N...
+ *      java gitlet.Benchmark serve N...
+ *      java gitlet.Benchmark chunk N...
+ *      java gitlet.Benchmark compress N...
+ *      java gitlet.Benchmark prune N...
+ *      java gitlet.Benchmark bitmap N...
+ *      java gitlet.Benchmark fetch N...
+ *
+ *  run in an empty scratch directory (the benchmarks create and delete
+ *  a .gitlet repository there).  "pack" builds a synthetic linear
+ *  history of N commits for each N, times reading every commit and
+ *  random commit lookups against loose objects, runs gc, and times them
+ *  again against the pack.  "delta" commits N one-line edits of a 5 MB file
+ *  and reports the space used by the stored versions and the time to
+ *  check out random ones.  "index" times global-log and find, which use
+ *  the commit index, against reading every commit.  "ids" times
+ *  resolving abbreviated ids against a CommitIdTable of N random ids,
+ *  and against the linear scan that checkout and reset used to do.
+ *  "log" times log over a packed linear history of N commits, which
+ *  walks the commit graph, against the recursive log it replaced and a
+ *  walk that reads each commit, and repeated walks of its most recent
+ *  commits, with and without the commit cache.  "codec"
+ *  encodes and decodes N commits of a hundred files each with
+ *  CommitCodec and with Java serialization, and compares their sizes.
+ *  "tree" times commits that change one file in a repository of N
+ *  files, and diffs between them, with trees and with the whole-map
+ *  copies that commits used to make.  "status" times status in a
+ *  working directory of N committed files, with no stat cache, with a
+ *  warm one, and after changing a few files, and add of an unchanged
+ *  file.  "checkout" times switching between two branches whose N files
+ *  all differ, and add of N changed files, with 1, 4 and 16 workers (see
+ *  Workers).  "mergebase" builds a commit graph of N commits spread over
+ *  many branches that often merge one another, and times finding the
+ *  split points of random pairs of branch heads by generation number,
+ *  against a search that first collects every ancestor of one head, and
+ *  ancestry checks with and without pruning by generation.  "commit"
+ *  times N rounds of add and commit of a changed file with syncing to
+ *  disk turned on and off (see Durable).  "serve" times N rounds of add
+ *  and commit run as separate gitlet processes, through Client and a
+ *  server (see Server), and as requests sent straight to the server.
+ *  "chunk" adds, commits and checks out a corpus of about N MB of VM
+ *  images and log files, with large files stored whole and as chunks
+ *  (see Chunker), and reports the space used and the throughput.
+ *  "compress" adds and commits a synthetic source tree of N files, and
+ *  checks them all out again, with each compression codec (see
+ *  Compression), and reports the space used and the throughput.
+ *  "prune" builds a repository of about N objects on several branches,
+ *  removes half of the branches, and times gc --prune (see Prune).
+ *  "bitmap" builds and packs a history of N commits with a branch forked
+ *  halfway, adds a few loose commits, and times counting the commits and
+ *  objects that one branch has and the other lacks with reachability
+ *  bitmaps (see Bitmaps), by walking the whole history, and (commits
+ *  only) by walking parent chains.  "fetch" builds and packs a history
+ *  of N commits, copies it, and times fetching a few new commits into
+ *  the copy and pushing a few more to it (see Remote), against copying
+ *  the whole repository.
+ *  @author hamza
+ */
+public class Benchmark {
+
+    /** Run the benchmark named ARGS[0] with sizes ARGS[1..]. */
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java gitlet.Benchmark NAME N...");
+            System.exit(1);
+        }
+        if (GITLET_DIR.exists()) {
+            System.err.println("Run the benchmarks in an empty directory.");
+            System.exit(1);
+        }
+        for (int i = 1; i < args.length; i += 1) {
+            int n = Integer.parseInt(args[i]);
+            switch (args[0]) {
+            case "pack":
+                pack(n);
+                break;
+            case "delta":
+                delta(n);
+                break;
+            case "index":
+                index(n);
+                break;
+            case "ids":
+                ids(n);
+                break;
+            case "log":
+                log(n);
+                break;
+            case "codec":
+                codec(n);
+                break;
+            case "tree":
+                tree(n);
+                break;
+            case "status":
+                status(n);
+                break;
+            case "checkout":
+                checkout(n);
+                break;
+            case "mergebase":
+                mergeBase(n);
+                break;
+            case "commit":
+                commit(n);
+                break;
+            case "serve":
+                serve(n);
+                break;
+            case "chunk":
+                chunk(n);
+                break;
+            case "compress":
+                compress(n);
+                break;
+            case "prune":
+                prune(n);
+                break;
+            case "bitmap":
+                bitmap(n);
+                break;
+            case "fetch":
+                fetch(n);
+                break;
+            default:
+                System.err.printf("Unknown benchmark: %s%n", args[0]);
+                System.exit(1);
+            }
+            clean(GITLET_DIR);
+        }
+    }
+
+    /** Compare loose and packed repositories of N commits. */
+    static void pack(int n) throws IOException {
+        List<String> ids = linearHistory(n);
+        System.out.printf("pack: %d commits%n", n);
+        report("loose", ids);
+        long start = System.nanoTime();
+        ObjectStore.gc();
+        System.out.printf("  gc: %.1f ms%n", millisSince(start));
+        report("packed", ids);
+    }
+
+    /** Commit N one-line edits of a DELTA_FILE_SIZE-byte file, then report
+     *  disk usage and checkout latency. */
+    static void delta(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        Random rand = new Random(61);
+        StringBuilder text = new StringBuilder();
+        for (int k = 0; text.length() < DELTA_FILE_SIZE; k += 1) {
+            text.append(String.format("key%07d = %08d\n", k,
+                                      rand.nextInt(100000000)));
+        }
+        byte[] contents = text.toString().getBytes();
+        File file = Utils.join(CWD, "config.txt");
+        List<String> ids = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i += 1) {
+            int line = rand.nextInt(contents.length / LINE_LENGTH);
+            byte[] value = String.format("%08d", rand.nextInt(100000000))
+                .getBytes();
+            System.arraycopy(value, 0, contents,
+                             (line + 1) * LINE_LENGTH - value.length - 1,
+                             value.length);
+            Utils.writeContents(file, contents);
+            Commands.add("config.txt");
+            new Commit(getHead(), "edit " + i, LocalDateTime.now());
+            ids.add(getHead());
+        }
+        double commitTime = millisSince(start) / n;
+        long stored = 0;
+        for (File blob : CONTENT_DIR.listFiles()) {
+            stored += blob.length();
+        }
+        start = System.nanoTime();
+        for (int k = 0; k < CHECKOUTS; k += 1) {
+            Commands.checkoutFile("config.txt",
+                                  ids.get(rand.nextInt(ids.size())));
+        }
+        double checkoutTime = millisSince(start) / CHECKOUTS;
+        System.out.printf("delta: %d edits of a %d-byte file%n",
+                          n, contents.length);
+        System.out.printf("  stored: %.1f MB (full copies: %.1f MB)%n",
+                          stored / 1e6, (double) n * contents.length / 1e6);
+        System.out.printf("  add+commit: %.1f ms  checkout: %.1f ms%n",
+                          commitTime, checkoutTime);
+        file.delete();
+    }
+
+    /** Time building the commit index for a history of N commits, and
+     *  global-log and find with the index, against reading every
+     *  commit (which is what both commands used to do). */
+    static void index(int n) throws IOException {
+        List<String> ids = linearHistory(n);
+        System.out.printf("index: %d commits%n", n);
+        long start = System.nanoTime();
+        readAll(ids);
+        System.out.printf("  read all commits: %8.1f ms%n",
+                          millisSince(start));
+        start = System.nanoTime();
+        CommitIndex.get();
+        System.out.printf("  rebuild index:    %8.1f ms%n",
+                          millisSince(start));
+        start = System.nanoTime();
+        quietly(Commands::globalLog);
+        System.out.printf("  global-log:       %8.1f ms%n",
+                          millisSince(start));
+        start = System.nanoTime();
+        quietly(() -> Commands.find("commit " + (n / 2)));
+        System.out.printf("  find:             %8.1f ms%n",
+                          millisSince(start));
+    }
+
+    /** Time resolving random 8-digit abbreviations among N commit ids. */
+    static void ids(int n) throws IOException {
+        Random rand = new Random(61);
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            all.add(Utils.sha1("commit " + i));
+        }
+        File dir = Files.createTempDirectory("ids").toFile();
+        CommitIdTable table = new CommitIdTable(dir);
+        long start = System.nanoTime();
+        table.add(all);
+        table.merge();
+        System.out.printf("ids: %d commits%n  build table: %8.1f ms%n",
+                          n, millisSince(start));
+        start = System.nanoTime();
+        for (int k = 0; k < LOOKUPS; k += 1) {
+            String prefix = all.get(rand.nextInt(n)).substring(0, 8);
+            if (table.startingWith(prefix, 2).isEmpty()) {
+                throw new IllegalStateException("missing id");
+            }
+        }
+        System.out.printf("  table resolve: %8.2f us%n",
+                          millisSince(start) * 1000.0 / LOOKUPS);
+        int scans = Math.max(1, LOOKUPS / 100);
+        start = System.nanoTime();
+        for (int k = 0; k < scans; k += 1) {
+            String prefix = all.get(rand.nextInt(n)).substring(0, 8);
+            int found = 0;
+            for (String id : all) {
+                if (id.startsWith(prefix)) {
+                    found += 1;
+                }
+            }
+            if (found == 0) {
+                throw new IllegalStateException("missing id");
+            }
+        }
+        System.out.printf("  linear scan:   %8.2f us (names already in "
+                          + "memory)%n", millisSince(start) * 1000.0 / scans);
+        clean(dir);
+    }
+
+    /** Time log over a packed linear history of N commits. */
+    static void log(int n) throws IOException {
+        List<String> ids = linearHistory(n);
+        ObjectStore.gc();
+        String head = ids.get(ids.size() - 1);
+        System.out.printf("log: %d commits%n", n);
+        ObjectStore.clearCache();
+        long start = System.nanoTime();
+        try {
+            quietly(() -> recursiveLog(head));
+            System.out.printf("  recursive log:    %8.1f ms%n",
+                              millisSince(start));
+        } catch (StackOverflowError excp) {
+            System.out.printf("  recursive log:    StackOverflowError after "
+                              + "%.1f ms%n", millisSince(start));
+        }
+        start = System.nanoTime();
+        CommitGraph graph = CommitGraph.get();
+        System.out.printf("  build graph:      %8.1f ms (index and graph)%n",
+                          millisSince(start));
+        start = System.nanoTime();
+        int walked = 0;
+        for (int k = graph.find(head); k >= 0; k = graph.parent(k)) {
+            walked += graph.indexRecord(k) >= 0 ? 1 : 0;
+        }
+        System.out.printf("  graph:            %8.1f ms (walk only, %d "
+                          + "commits)%n", millisSince(start), walked);
+        for (int k = 1; k <= 2; k += 1) {
+            ObjectStore.clearCache();
+            start = System.nanoTime();
+            quietly(() -> Commands.log(head));
+            System.out.printf("  graph log %d:      %8.1f ms%n",
+                              k, millisSince(start));
+        }
+        ObjectStore.clearCache();
+        start = System.nanoTime();
+        quietly(() -> {
+            for (int k = graph.find(head); k >= 0; k = graph.parent(k)) {
+                ObjectStore.readCommit(graph.id(k));
+            }
+        });
+        System.out.printf("  commit objects:   %8.1f ms (walk only)%n",
+                          millisSince(start));
+        String recent = ids.get(Math.max(0, ids.size() - RECENT));
+        for (boolean cached : new boolean[] { false, true }) {
+            start = System.nanoTime();
+            for (int k = 0; k < REPEATS; k += 1) {
+                if (!cached) {
+                    ObjectStore.clearCache();
+                }
+                quietly(() -> {
+                    for (int j = graph.find(head); j >= 0;
+                         j = graph.parent(j)) {
+                        String id = graph.id(j);
+                        ObjectStore.readCommit(id);
+                        if (id.equals(recent)) {
+                            break;
+                        }
+                    }
+                });
+            }
+            System.out.printf("  last %d commits, %s: %8.2f ms%n", RECENT,
+                              cached ? "cached  " : "uncached",
+                              millisSince(start) / REPEATS);
+        }
+    }
+
+    /** Compare CommitCodec with Java serialization on N commits. */
+    static void codec(int n) {
+        Main.initialize();
+        List<Commit> legacy = new ArrayList<>();
+        List<Commit> commits = new ArrayList<>();
+        HashMap<String, String> mapping = new HashMap<>();
+        String tree = Tree.EMPTY;
+        String parent = Utils.sha1("root");
+        LocalDateTime time = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = 0; i < n; i += 1) {
+            String name = "src/file" + (i % FILES) + ".java",
+                sha = Utils.sha1("version " + i);
+            mapping.put(name, sha);
+            tree = Tree.update(tree, Map.of(name, sha));
+            legacy.add(new Commit("commit " + i, parent, time.plusMinutes(i),
+                                  new HashMap<>(mapping)));
+            commits.add(new Commit("commit " + i, parent, time.plusMinutes(i),
+                                   tree));
+            parent = Utils.sha1("commit " + i);
+        }
+        System.out.printf("codec: %d commits of %d files%n", n, FILES);
+        for (int round = 0; round < 2; round += 1) {
+            codecRound("serialization", legacy, Utils::serialize,
+                       b -> Utils.deserialize(b, Commit.class));
+            codecRound("CommitCodec", commits, CommitCodec::encode,
+                       CommitCodec::decode);
+        }
+    }
+
+    /** Time commits that change one file of N, and diffs between them,
+     *  against copying and serializing the whole file map as commits used
+     *  to. */
+    static void tree(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        HashMap<String, String> mapping = new HashMap<>();
+        for (int i = 0; i < n; i += 1) {
+            mapping.put("file" + i + ".txt", Utils.sha1("version 0 " + i));
+        }
+        long start = System.nanoTime();
+        String tree = Tree.write(mapping);
+        System.out.printf("tree: %d files%n  write whole tree:  %8.1f ms%n",
+                          n, millisSince(start));
+        Commit root = new Commit("root", getHead(), LocalDateTime.now(), tree);
+        byte[] bytes = CommitCodec.encode(root);
+        String head = Utils.sha1(bytes);
+        ObjectStore.writeCommit(head, bytes);
+        Utils.writeContents(HEAD, head);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "master"), head);
+        Random rand = new Random(61);
+        List<String> trees = new ArrayList<>();
+        start = System.nanoTime();
+        for (int k = 0; k <= COMMITS; k += 1) {
+            if (k == 1) {
+                start = System.nanoTime();
+            }
+            String name = "file" + rand.nextInt(n) + ".txt";
+            Utils.writeContents(Utils.join(STAGING_DIR, name),
+                                Utils.sha1("version " + k + " " + name));
+            new Commit(getHead(), "edit " + k, LocalDateTime.now());
+            trees.add(ObjectStore.readCommit(getHead()).getTree());
+        }
+        System.out.printf("  commit (trees):    %8.2f ms%n",
+                          millisSince(start) / COMMITS);
+        start = System.nanoTime();
+        for (int k = 1; k < trees.size(); k += 1) {
+            if (Tree.diff(trees.get(k - 1), trees.get(k)).size() != 1) {
+                throw new IllegalStateException("bad diff");
+            }
+        }
+        System.out.printf("  diff (trees):      %8.3f ms%n",
+                          millisSince(start) / COMMITS);
+        start = System.nanoTime();
+        for (int k = 0; k < COMMITS; k += 1) {
+            String name = "file" + rand.nextInt(n) + ".txt";
+            HashMap<String, String> copy = Utils.deepClone(mapping);
+            copy.put(name, Utils.sha1("version " + k + " " + name));
+            Commit old = new Commit("edit " + k, head, LocalDateTime.now(),
+                                    copy);
+            bytes = Utils.serialize(old);
+            Blob.write(bytes, null);
+            mapping = copy;
+        }
+        System.out.printf("  commit (old maps): %8.2f ms  (%d bytes each)%n",
+                          millisSince(start) / COMMITS, bytes.length);
+        HashMap<String, String> previous = Utils.deepClone(mapping);
+        mapping.put("file0.txt", Utils.sha1("changed"));
+        start = System.nanoTime();
+        for (int k = 0; k < COMMITS; k += 1) {
+            int changed = 0;
+            for (Map.Entry<String, String> e : mapping.entrySet()) {
+                if (!e.getValue().equals(previous.get(e.getKey()))) {
+                    changed += 1;
+                }
+            }
+            if (changed != 1) {
+                throw new IllegalStateException("bad diff");
+            }
+        }
+        System.out.printf("  diff (old maps):   %8.3f ms%n",
+                          millisSince(start) / COMMITS);
+    }
+
+    /** Time status in a working directory of N committed files. */
+    static void status(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        HashMap<String, String> mapping = new HashMap<>();
+        for (int i = 0; i < n; i += 1) {
+            String name = "file" + i + ".txt", contents = "version 0 " + i;
+            Utils.writeContents(Utils.join(CWD, name), contents);
+            mapping.put(name, Utils.sha1(contents));
+        }
+        Commit root = new Commit("root", getHead(), LocalDateTime.now(),
+                                 Tree.write(mapping));
+        byte[] bytes = CommitCodec.encode(root);
+        String head = Utils.sha1(bytes);
+        ObjectStore.writeCommit(head, bytes);
+        Utils.writeContents(HEAD, head);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "master"), head);
+        System.out.printf("status: %d files%n", n);
+        long start = System.nanoTime();
+        for (String name : CWD.list()) {
+            Files.readAttributes(Utils.join(CWD, name).toPath(),
+                                 BasicFileAttributes.class);
+        }
+        System.out.printf("  list+stat only: %6.1f ms%n", millisSince(start));
+        timeStatus("no cache");
+        for (int k = 1; k <= 3; k += 1) {
+            timeStatus("warm " + k);
+        }
+        for (int k = 0; k < CHANGED; k += 1) {
+            Utils.writeContents(Utils.join(CWD, "file" + (k * 7) + ".txt"),
+                                "changed");
+        }
+        timeStatus(CHANGED + " changed");
+        timeStatus("warm");
+        start = System.nanoTime();
+        Commands.add("file1.txt");
+        System.out.printf("  add unchanged: %8.1f ms%n", millisSince(start));
+        for (int i = 0; i < n; i += 1) {
+            Utils.join(CWD, "file" + i + ".txt").delete();
+        }
+    }
+
+    /** Time checkouts between two branches of N files that all differ,
+     *  and add of N changed files, with various numbers of workers. */
+    static void checkout(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        Utils.writeContents(HEAD_BRANCH, "master");
+        String[] heads = new String[2];
+        for (int v = 1; v >= 0; v -= 1) {
+            HashMap<String, String> mapping = new HashMap<>();
+            for (int i = 0; i < n; i += 1) {
+                String name = "file" + i + ".txt";
+                String contents = "version " + v + " of " + name + "\n";
+                Utils.writeContents(Utils.join(CWD, name), contents);
+                mapping.put(name, Blob.write(contents.getBytes(), null));
+            }
+            Commit commit = new Commit("version " + v, getHead(),
+                                       LocalDateTime.now(),
+                                       Tree.write(mapping));
+            byte[] bytes = CommitCodec.encode(commit);
+            heads[v] = Utils.sha1(bytes);
+            ObjectStore.writeCommit(heads[v], bytes);
+        }
+        Utils.writeContents(HEAD, heads[0]);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "master"), heads[0]);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "other"), heads[1]);
+        quietly(() -> {
+            try {
+                Commands.status();
+            } catch (IOException excp) {
+                throw new IllegalStateException(excp);
+            }
+        });
+        System.out.printf("checkout: %d files%n", n);
+        int saved = Workers.count();
+        for (int workers : WORKERS) {
+            Workers.setCount(workers);
+            long start = System.nanoTime();
+            Commands.checkoutBranch("other");
+            double there = millisSince(start);
+            start = System.nanoTime();
+            Commands.checkoutBranch("master");
+            double back = millisSince(start);
+            for (int i = 0; i < n; i += 1) {
+                Utils.writeContents(Utils.join(CWD, "file" + i + ".txt"),
+                                    "added with " + workers + " " + i);
+            }
+            StatCache.reload();
+            start = System.nanoTime();
+            Commands.add(".");
+            double add = millisSince(start);
+            System.out.printf("  %2d workers: checkout %8.1f ms  "
+                              + "back %8.1f ms  add . %8.1f ms%n",
+                              workers, there, back, add);
+            Commands.reset(heads[0]);
+        }
+        Workers.setCount(saved);
+        for (int i = 0; i < n; i += 1) {
+            Utils.join(CWD, "file" + i + ".txt").delete();
+        }
+    }
+
+    /** Time N adds and commits of a changed file, with and without
+     *  syncing to disk. */
+    static void commit(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        System.out.printf("commit: %d commits%n", n);
+        boolean saved = Durable.enabled();
+        for (boolean durable : new boolean[] { false, true, false, true }) {
+            Durable.setEnabled(durable);
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i += 1) {
+                Utils.writeContents(Utils.join(CWD, "file.txt"),
+                                    "version " + i + " " + durable + "\n");
+                Commands.add("file.txt");
+                Durable.sync();
+                new Commit(getHead(), "commit " + i, LocalDateTime.now());
+            }
+            double time = millisSince(start);
+            System.out.printf("  durable %-5s: %8.1f ms  %8.1f commits/s%n",
+                              durable, time, n * 1000 / time);
+        }
+        Durable.setEnabled(saved);
+        Utils.join(CWD, "file.txt").delete();
+    }
+
+    /** Time N rounds of add and commit of a changed file as separate
+     *  processes, with and without a server. */
+    static void serve(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        System.out.printf("serve: %d add+commit rounds%n", n);
+        timeRounds("processes", n, args -> javaRun(Main.class, args));
+        Process server = javaStart(Main.class, "serve");
+        try {
+            while (!SOCKET.exists()) {
+                Thread.sleep(SERVER_POLL);
+            }
+            timeRounds("client", n, args -> javaRun(Client.class, args));
+            timeRounds("requests", n,
+                       args -> Client.send(args,
+                                           OutputStream.nullOutputStream()));
+            Server.stop();
+            server.waitFor();
+        } catch (InterruptedException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            server.destroy();
+        }
+        Utils.join(CWD, "file.txt").delete();
+    }
+
+    /** Add and commit, then check out, a corpus of about N MB of VM
+     *  images and log files, storing large files whole and as chunked
+     *  blobs, and report the space used and the throughput of each. */
+    static void chunk(int n) throws IOException {
+        Random rand = new Random(61);
+        List<String> names = new ArrayList<>();
+        List<byte[]> versions = new ArrayList<>();
+        byte[] image = vmImage(rand, n << 17);
+        names.add("base.img");
+        versions.add(image);
+        byte[] patched = new byte[image.length + BLOCK_SIZE * 16];
+        System.arraycopy(image, 0, patched, 0, BLOCK_SIZE);
+        System.arraycopy(image, BLOCK_SIZE, patched, BLOCK_SIZE * 17,
+                         image.length - BLOCK_SIZE);
+        for (int k = 0; k < CHANGED * 5; k += 1) {
+            byte[] block = new byte[BLOCK_SIZE];
+            rand.nextBytes(block);
+            System.arraycopy(block, 0, patched,
+                             rand.nextInt(patched.length / BLOCK_SIZE)
+                             * BLOCK_SIZE, BLOCK_SIZE);
+        }
+        names.add("patched.img");
+        versions.add(patched);
+        byte[] clone = image.clone();
+        byte[] tail = new byte[image.length / 8];
+        rand.nextBytes(tail);
+        System.arraycopy(tail, 0, clone, image.length - tail.length,
+                         tail.length);
+        names.add("clone.img");
+        versions.add(clone);
+        StringBuilder log = new StringBuilder();
+        for (int v = 1; v <= LOG_VERSIONS; v += 1) {
+            while (log.length() < (long) v * (n << 20) / 16) {
+                log.append(String.format(
+                    "2024-05-%02d %02d:%02d:%02d INFO worker-%d request "
+                    + "%08x done in %d ms%n", 1 + rand.nextInt(28),
+                    rand.nextInt(24), rand.nextInt(60), rand.nextInt(60),
+                    rand.nextInt(16), rand.nextInt(), rand.nextInt(500)));
+            }
+            names.add("app.log");
+            versions.add(log.toString().getBytes());
+        }
+        names.add("app.log.1");
+        versions.add(versions.get(versions.size() - LOG_VERSIONS));
+        long logical = 0;
+        for (byte[] version : versions) {
+            logical += version.length;
+        }
+        System.out.printf("chunk: %.1f MB in %d versions of files%n",
+                          logical / 1e6, versions.size());
+        long saved = Blob.chunkThreshold();
+        for (boolean chunked : new boolean[] { false, true }) {
+            Blob.setChunkThreshold(chunked ? saved : Long.MAX_VALUE);
+            Main.initialize();
+            Commit.init();
+            List<String> shas = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int k = 0; k < versions.size(); k += 1) {
+                File file = Utils.join(CWD, names.get(k));
+                Utils.writeContents(file, versions.get(k));
+                Commands.add(names.get(k));
+                new Commit(getHead(), "version " + k, LocalDateTime.now());
+                shas.add(Blob.hash(file));
+            }
+            double add = millisSince(start);
+            long stored = 0;
+            for (File blob : CONTENT_DIR.listFiles()) {
+                stored += blob.length();
+            }
+            File out = Utils.join(CWD, "checkout.tmp");
+            start = System.nanoTime();
+            for (String sha : shas) {
+                Blob.copyTo(sha, out);
+            }
+            double checkout = millisSince(start);
+            out.delete();
+            System.out.printf("  %-7s: stored %7.1f MB (dedup %5.2fx)  "
+                              + "add+commit %6.1f MB/s  "
+                              + "checkout %6.1f MB/s%n",
+                              chunked ? "chunked" : "whole", stored / 1e6,
+                              (double) logical / stored,
+                              logical / add / 1e3, logical / checkout / 1e3);
+            for (String name : new HashSet<>(names)) {
+                Utils.join(CWD, name).delete();
+            }
+            clean(GITLET_DIR);
+        }
+        Blob.setChunkThreshold(saved);
+    }
+
+    /** Add, commit and check out N synthetic source files with each
+     *  codec, and report the space used and the throughput of each. */
+    static void compress(int n) throws IOException {
+        Random rand = new Random(61);
+        List<byte[]> sources = new ArrayList<>();
+        long logical = 0;
+        for (int i = 0; i < n; i += 1) {
+            sources.add(sourceFile(rand, i));
+            logical += sources.get(i).length;
+        }
+        System.out.printf("compress: %d files, %.1f MB%n", n, logical / 1e6);
+        Codec saved = Compression.codec();
+        for (Codec codec : Compression.CODECS) {
+            Compression.setCodec(codec);
+            Main.initialize();
+            Commit.init();
+            for (int i = 0; i < n; i += 1) {
+                Utils.writeContents(Utils.join(CWD, "File" + i + ".java"),
+                                    sources.get(i));
+            }
+            StatCache.reload();
+            long start = System.nanoTime();
+            Commands.add(".");
+            new Commit(getHead(), "sources", LocalDateTime.now());
+            double write = millisSince(start);
+            long stored = 0;
+            for (File dir : new File[] { CONTENT_DIR, COMMIT_DIR,
+                                         TREE_DIR }) {
+                for (File object : dir.listFiles()) {
+                    stored += object.length();
+                }
+            }
+            Map<String, String> files =
+                ObjectStore.readCommit(getHead()).files();
+            start = System.nanoTime();
+            for (Map.Entry<String, String> e : files.entrySet()) {
+                Blob.copyTo(e.getValue(), Utils.join(CWD, e.getKey()));
+            }
+            double read = millisSince(start);
+            System.out.printf("  %-12s: stored %7.2f MB (%5.2fx)  "
+                              + "add+commit %6.1f MB/s  "
+                              + "checkout %6.1f MB/s%n",
+                              codec.name(), stored / 1e6,
+                              (double) logical / stored,
+                              logical / write / 1e3, logical / read / 1e3);
+            for (int i = 0; i < n; i += 1) {
+                Utils.join(CWD, "File" + i + ".java").delete();
+            }
+            clean(GITLET_DIR);
+            StatCache.reload();
+        }
+        Compression.setCodec(saved);
+    }
+
+    /** Build a repository of about N objects on PRUNE_BRANCHES branches,
+     *  each a history of commits that change CHANGED of PRUNE_FILES
+     *  files, remove half of the branches, and time gc --prune. */
+    static void prune(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        boolean saved = Durable.enabled();
+        Durable.setEnabled(false);
+        String root = getHead();
+        LocalDateTime time = LocalDateTime.of(2020, 1, 1, 0, 0);
+        int commits = Math.max(1, n / (2 * CHANGED) / PRUNE_BRANCHES);
+        long start = System.nanoTime();
+        for (int b = 0; b < PRUNE_BRANCHES; b += 1) {
+            Random rand = new Random(b);
+            String parent = root;
+            String tree = Tree.EMPTY;
+            for (int i = 0; i < commits; i += 1) {
+                Map<String, String> changes = new HashMap<>();
+                for (int c = 0; c < CHANGED; c += 1) {
+                    String contents = "branch " + b + " commit " + i
+                        + " change " + c + "\n";
+                    changes.put("file" + rand.nextInt(PRUNE_FILES) + ".txt",
+                                Blob.write(contents.getBytes(), null));
+                }
+                tree = Tree.update(tree, changes);
+                byte[] bytes = CommitCodec.encode(
+                    new Commit("branch " + b + " commit " + i, parent,
+                               time.plusMinutes(i), tree));
+                parent = Utils.sha1(bytes);
+                ObjectStore.writeCommit(parent, bytes);
+            }
+            Utils.writeContents(Utils.join(ALL_BRANCHES, "branch" + b),
+                                parent);
+        }
+        Utils.writeContents(HEAD, Utils.readContentsAsString(
+                                Utils.join(ALL_BRANCHES, "branch0")));
+        Utils.writeContents(HEAD_BRANCH, "branch0");
+        for (int b = PRUNE_BRANCHES / 2; b < PRUNE_BRANCHES; b += 1) {
+            Utils.join(ALL_BRANCHES, "branch" + b).delete();
+        }
+        double build = millisSince(start);
+        int before = objectCount();
+        start = System.nanoTime();
+        long reclaimed = Prune.prune();
+        double pruned = millisSince(start);
+        System.out.printf("prune: %d objects in %d commits on %d branches "
+                          + "(built in %.1f s)%n", before,
+                          commits * PRUNE_BRANCHES, PRUNE_BRANCHES,
+                          build / 1000);
+        System.out.printf("  gc --prune: %.1f s  removed %d objects, "
+                          + "%.1f MB (%d workers)%n", pruned / 1000,
+                          before - objectCount(), reclaimed / 1e6,
+                          Workers.count());
+        Durable.setEnabled(saved);
+    }
+
+    /** Build and pack a history of N commits that each change CHANGED of
+     *  PRUNE_FILES files, with a branch of TOPIC commits forked from its
+     *  middle, add LOOSE commits to master, and time counting the commits
+     *  and objects of one branch that another lacks, with bitmaps, by
+     *  walking all of history, and by walking the parents of commits. */
+    static void bitmap(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        boolean saved = Durable.enabled();
+        Durable.setEnabled(false);
+        Random rand = new Random(n);
+        long start = System.nanoTime();
+        List<String> master = grow(getHead(), n, "master", rand);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "master"),
+                            master.get(n - 1));
+        List<String> topic = grow(master.get(n / 2), TOPIC, "topic", rand);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "topic"),
+                            topic.get(TOPIC - 1));
+        double build = millisSince(start);
+        start = System.nanoTime();
+        ObjectStore.gc();
+        double gc = millisSince(start);
+        start = System.nanoTime();
+        Bitmaps.build();
+        double bitmaps = millisSince(start);
+        System.out.printf("bitmap: %d commits, %d objects (built in %.1f s)"
+                          + "%n  gc: %.1f s; building bitmaps alone: "
+                          + "%.1f s, %d bitmaps in %.1f KB%n",
+                          n + TOPIC + 1, objectCount(), build / 1000,
+                          gc / 1000, bitmaps / 1000, Bitmaps.get().size(),
+                          BITMAPS.length() / 1024.0);
+        List<String> loose = grow(master.get(n - 1), LOOSE, "loose", rand);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "master"),
+                            loose.get(LOOSE - 1));
+        String[][] queries = {
+            { "topic", "master" }, { "master", "topic" }, { "master", null }
+        };
+        System.out.printf("  %-15s %10s %10s %10s%n", "count",
+                          "bitmaps", "walk", "parents");
+        for (String[] query : queries) {
+            String a = Utils.readContentsAsString(
+                Utils.join(ALL_BRANCHES, query[0]));
+            String b = query[1] == null ? null : Utils.readContentsAsString(
+                Utils.join(ALL_BRANCHES, query[1]));
+            ObjectStore.clearCache();
+            Bitmaps.reload();
+            start = System.nanoTime();
+            Bitmaps.Reach reach = difference(Bitmaps.get(), a, b);
+            double fast = millisSince(start);
+            ObjectStore.clearCache();
+            start = System.nanoTime();
+            Bitmaps.Reach walked = difference(
+                new Bitmaps(ObjectStore.pack(), null, new BitSet()), a, b);
+            double slow = millisSince(start);
+            ObjectStore.clearCache();
+            start = System.nanoTime();
+            Set<String> commits = ancestors(a);
+            if (b != null) {
+                commits.removeAll(ancestors(b));
+            }
+            double parents = millisSince(start);
+            if (reach.commits() != walked.commits()
+                || reach.size() != walked.size()
+                || reach.commits() != commits.size()) {
+                throw new IllegalStateException("counts differ");
+            }
+            System.out.printf("  %-15s %7.1f ms %7.1f ms %7.1f ms"
+                              + "  (%d commits, %d objects)%n",
+                              query[0] + (b == null ? "" : " " + query[1]),
+                              fast, slow, parents, reach.commits(),
+                              reach.size());
+        }
+        Durable.setEnabled(saved);
+    }
+
+    /** Build and pack a history of N commits that each change one of
+     *  PRUNE_FILES files, copy the repository into a subdirectory, and
+     *  add FETCHED commits here.  Time fetching them into the copy, run
+     *  as a gitlet process, and pushing FETCHED more from here to the
+     *  copy, against copying the whole repository. */
+    static void fetch(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        boolean saved = Durable.enabled();
+        Durable.setEnabled(false);
+        Random rand = new Random(n);
+        long start = System.nanoTime();
+        List<String> history = grow(getHead(), n, 1, "old", rand);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "master"),
+                            history.get(n - 1));
+        CommitIdTable.get();
+        CommitGraph.get();
+        ObjectStore.gc();
+        double build = millisSince(start);
+        File clone = Utils.join(CWD, "clone");
+        start = System.nanoTime();
+        long copied = copy(GITLET_DIR, Utils.join(clone, ".gitlet"));
+        double copy = millisSince(start);
+        System.out.printf("fetch: %d commits, %d objects (built in %.1f s)%n"
+                          + "  copy repository: %8.1f ms %10d bytes%n",
+                          n + 1, objectCount(), build / 1000, copy, copied);
+
+        List<String> added = grow(history.get(n - 1), FETCHED, 1, "new",
+                                  rand);
+        Remote.register(added);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "master"),
+                            added.get(FETCHED - 1));
+        javaRun(clone, Main.class, "add-remote", "origin", "../.gitlet");
+        start = System.nanoTime();
+        javaRun(clone, Main.class, "fetch", "origin", "master");
+        double fetched = millisSince(start);
+        File tracking = Utils.join(clone, ".gitlet", "branches",
+                                   "AllBranches", "origin", "master");
+        if (!tracking.isFile() || !Utils.readContentsAsString(tracking)
+            .equals(added.get(FETCHED - 1))) {
+            throw new IllegalStateException("fetch failed");
+        }
+        long received = 0;
+        int objects = 0;
+        for (String sub : new String[] { "committed", "trees", "content" }) {
+            File[] files = Utils.join(clone, ".gitlet", sub).listFiles();
+            for (File file : files == null ? new File[0] : files) {
+                if (file.getName().length() == Utils.UID_LENGTH) {
+                    received += file.length();
+                    objects += 1;
+                }
+            }
+        }
+        start = System.nanoTime();
+        javaRun(clone, Main.class, "fetch", "origin", "master");
+        double again = millisSince(start);
+        System.out.printf("  fetch %d commits: %8.1f ms %10d bytes "
+                          + "(%d objects)%n  fetch, up to date: %6.1f ms%n",
+                          FETCHED, fetched, received, objects, again);
+
+        added = grow(added.get(FETCHED - 1), FETCHED, 1, "pushed", rand);
+        Remote.register(added);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "master"),
+                            added.get(FETCHED - 1));
+        Remote.addRemote("clone", "clone/.gitlet");
+        start = System.nanoTime();
+        long pushed = Remote.push("clone", "master");
+        System.out.printf("  push %d commits:  %8.1f ms %10d bytes%n",
+                          FETCHED, millisSince(start), pushed);
+        clean(clone);
+        Durable.setEnabled(saved);
+    }
+
+    /** Copy FROM, and everything under it if it is a directory, to TO,
+     *  and return the number of bytes copied. */
+    private static long copy(File from, File to) throws IOException {
+        if (!from.isDirectory()) {
+            Files.copy(from.toPath(), to.toPath());
+            return from.length();
+        }
+        to.mkdirs();
+        long bytes = 0;
+        for (String name : Objects.requireNonNull(from.list())) {
+            bytes += copy(Utils.join(from, name), Utils.join(to, name));
+        }
+        return bytes;
+    }
+
+    /** Return the objects reachable from commit A and not from commit B
+     *  (if not null), as found with BITMAPS. */
+    private static Bitmaps.Reach difference(Bitmaps bitmaps, String a,
+                                            String b) {
+        Bitmaps.Reach reach = bitmaps.reach(a);
+        if (b != null) {
+            reach.remove(bitmaps.reach(b));
+        }
+        return reach;
+    }
+
+    /** Return the ids of commit ID and its ancestors, found by reading each
+     *  commit for its parents. */
+    private static Set<String> ancestors(String id) {
+        Set<String> result = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            String k = stack.pop();
+            if (result.add(k)) {
+                Commit commit = ObjectStore.readCommit(k);
+                if (commit.getParent() != null) {
+                    stack.push(commit.getParent());
+                }
+                if (commit.getSecondParent() != null) {
+                    stack.push(commit.getSecondParent());
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Write a history of N commits on top of commit PARENT, each changing
+     *  CHANGED of PRUNE_FILES files chosen using RAND and named after
+     *  LABEL, and return their ids, oldest first. */
+    private static List<String> grow(String parent, int n, String label,
+                                     Random rand) {
+        return grow(parent, n, CHANGED, label, rand);
+    }
+
+    /** Write a history of N commits on top of commit PARENT, each changing
+     *  CHANGES of PRUNE_FILES files chosen using RAND and named after
+     *  LABEL, and return their ids, oldest first. */
+    private static List<String> grow(String parent, int n, int changes,
+                                     String label, Random rand) {
+        String tree = ObjectStore.readCommit(parent).getTree();
+        LocalDateTime time = LocalDateTime.of(2020, 1, 1, 0, 0);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            Map<String, String> changed = new HashMap<>();
+            for (int c = 0; c < changes; c += 1) {
+                String contents = label + " commit " + i + " change " + c
+                    + "\n";
+                changed.put("file" + rand.nextInt(PRUNE_FILES) + ".txt",
+                            Blob.write(contents.getBytes(), null));
+            }
+            tree = Tree.update(tree, changed);
+            byte[] bytes = CommitCodec.encode(
+                new Commit(label + " commit " + i, parent,
+                           time.plusMinutes(i), tree));
+            parent = Utils.sha1(bytes);
+            ObjectStore.writeCommit(parent, bytes);
+            ids.add(parent);
+        }
+        Utils.writeContents(HEAD, parent);
+        return ids;
+    }
+
+    /** Return the number of objects in the repository. */
+    private static int objectCount() {
+        int n = 0;
+        for (byte type : ObjectStore.TYPES) {
+            n += ObjectStore.ids(type).size();
+        }
+        return n;
+    }
+
+    /** Return the text of the Ith synthetic Java source file, using RAND:
+     *  a class of a few dozen commented methods whose names and bodies
+     *  vary. */
+    private static byte[] sourceFile(Random rand, int i) {
+        StringBuilder text = new StringBuilder();
+        text.append("package gitlet;\n\nimport java.util.List;\n\n")
+            .append("/** Synthetic class number ").append(i)
+            .append(".\n *  @author hamza\n */\nclass File").append(i)
+            .append(" {\n");
+        int methods = 10 + rand.nextInt(40);
+        for (int m = 0; m < methods; m += 1) {
+            String name = WORDS[rand.nextInt(WORDS.length)]
+                + WORDS[rand.nextInt(WORDS.length)].toUpperCase()
+                  .charAt(0) + m;
+            text.append("\n    /** Return the ")
+                .append(WORDS[rand.nextInt(WORDS.length)])
+                .append(" of the ").append(WORDS[rand.nextInt(WORDS.length)])
+                .append(" in LIST. */\n    static int ").append(name)
+                .append("(List<Integer> list) {\n")
+                .append("        int result = ").append(rand.nextInt(1000))
+                .append(";\n        for (int k = 0; k < list.size(); ")
+                .append("k += 1) {\n");
+            for (int s = rand.nextInt(6); s >= 0; s -= 1) {
+                text.append("            result = result * ")
+                    .append(rand.nextInt(100)).append(" + list.get(k) ")
+                    .append("% ").append(1 + rand.nextInt(50)).append(";\n");
+            }
+            text.append("        }\n        return result;\n    }\n");
+        }
+        return text.append("}\n").toString().getBytes();
+    }
+
+    /** Return SIZE bytes of synthetic disk image: a sequence of
+     *  BLOCK_SIZE-byte blocks that are empty, drawn from a small pool of
+     *  common blocks, or random, using RAND. */
+    private static byte[] vmImage(Random rand, int size) {
+        byte[][] pool = new byte[POOL_BLOCKS][BLOCK_SIZE];
+        for (byte[] block : pool) {
+            rand.nextBytes(block);
+        }
+        byte[] image = new byte[size];
+        byte[] block = new byte[BLOCK_SIZE];
+        for (int off = 0; off + BLOCK_SIZE <= size; off += BLOCK_SIZE) {
+            int kind = rand.nextInt(10);
+            if (kind >= 7) {
+                rand.nextBytes(block);
+                System.arraycopy(block, 0, image, off, BLOCK_SIZE);
+            } else if (kind >= 4) {
+                System.arraycopy(pool[rand.nextInt(POOL_BLOCKS)], 0,
+                                 image, off, BLOCK_SIZE);
+            }
+        }
+        return image;
+    }
+
+    /** A way of running a gitlet command. */
+    private interface Runner {
+        /** Run the command ARGS. */
+        void run(String... args) throws IOException;
+    }
+
+    /** Time and report, as LABEL, N rounds of changing a file, then adding
+     *  and committing it using RUNNER. */
+    private static void timeRounds(String label, int n, Runner runner)
+        throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i += 1) {
+            Utils.writeContents(Utils.join(CWD, "file.txt"),
+                                label + " " + i + "\n");
+            runner.run("add", "file.txt");
+            runner.run("commit", label + " " + i);
+        }
+        double time = millisSince(start);
+        System.out.printf("  %-9s: %9.1f ms  %7.2f ms/round%n", label, time,
+                          time / n);
+    }
+
+    /** Start the main program of class MAIN with arguments ARGS in the
+     *  current directory, discarding its output. */
+    private static Process javaStart(Class<?> main, String... args)
+        throws IOException {
+        return javaStart(CWD, main, args);
+    }
+
+    /** Start the main program of class MAIN with arguments ARGS in
+     *  directory DIR, discarding its output. */
+    private static Process javaStart(File dir, Class<?> main,
+                                     String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Utils.join(System.getProperty("java.home"), "bin",
+                               "java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(main.getName());
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command).directory(dir)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectErrorStream(true).start();
+    }
+
+    /** Run the main program of class MAIN with arguments ARGS in the
+     *  current directory, as for javaStart, and wait for it to finish. */
+    private static void javaRun(Class<?> main, String... args)
+        throws IOException {
+        javaRun(CWD, main, args);
+    }
+
+    /** Run the main program of class MAIN with arguments ARGS in
+     *  directory DIR, as for javaStart, and wait for it to finish. */
+    private static void javaRun(File dir, Class<?> main, String... args)
+        throws IOException {
+        try {
+            javaStart(dir, main, args).waitFor();
+        } catch (InterruptedException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Time merge-base queries on a synthetic graph of N commits. */
+    static void mergeBase(int n) {
+        Main.initialize();
+        Random rand = new Random(61);
+        CommitGraph graph = new CommitGraph(COMMIT_GRAPH);
+        List<String> ids = new ArrayList<>();
+        List<Commit> commits = new ArrayList<>();
+        String[] tips = new String[BRANCHES];
+        LocalDateTime time = LocalDateTime.now();
+        for (int k = 0; k < n; k += 1) {
+            int b = rand.nextInt(BRANCHES);
+            Commit commit = new Commit("c" + k, tips[b], time, Tree.EMPTY);
+            if (k > 0 && rand.nextInt(MERGE_ODDS) == 0) {
+                String other = tips[rand.nextInt(BRANCHES)];
+                if (other != null && !other.equals(tips[b])) {
+                    commit.secondParent = other;
+                }
+            }
+            String id = Utils.sha1("commit " + k);
+            ids.add(id);
+            commits.add(commit);
+            tips[b] = id;
+            if (k == 0) {
+                Arrays.fill(tips, id);
+            }
+        }
+        long start = System.nanoTime();
+        graph.append(ids, commits, Collections.nCopies(n, -1));
+        System.out.printf("mergebase: %d commits, %d branches%n", n,
+                          BRANCHES);
+        System.out.printf("  build graph:      %8.1f ms%n",
+                          millisSince(start));
+        int[] a = new int[LOOKUPS], b = new int[LOOKUPS];
+        for (int q = 0; q < LOOKUPS; q += 1) {
+            a[q] = graph.find(tips[rand.nextInt(BRANCHES)]);
+            b[q] = graph.find(tips[rand.nextInt(BRANCHES)]);
+        }
+        int[] fast = new int[LOOKUPS];
+        start = System.nanoTime();
+        for (int q = 0; q < LOOKUPS; q += 1) {
+            fast[q] = graph.mergeBase(a[q], b[q]);
+        }
+        System.out.printf("  by generation:    %8.1f us/query%n",
+                          millisSince(start) * 1000 / LOOKUPS);
+        int[] slow = new int[LOOKUPS];
+        start = System.nanoTime();
+        for (int q = 0; q < LOOKUPS; q += 1) {
+            slow[q] = fullSearchBase(graph, a[q], b[q]);
+        }
+        double slowTime = millisSince(start);
+        int older = 0;
+        for (int q = 0; q < LOOKUPS; q += 1) {
+            if (slow[q] != fast[q]
+                && graph.mergeBase(slow[q], fast[q]) == slow[q]) {
+                older += 1;
+            }
+        }
+        System.out.printf("  all ancestors:    %8.1f us/query "
+                          + "(%d of %d split points not the latest)%n",
+                          slowTime * 1000 / LOOKUPS, older, LOOKUPS);
+        int agree = 0;
+        start = System.nanoTime();
+        for (int q = 0; q < LOOKUPS; q += 1) {
+            if (graph.isAncestor(a[q], b[q])) {
+                agree += 1;
+            }
+        }
+        System.out.printf("  is-ancestor:      %8.1f us/query "
+                          + "(%d of %d true)%n",
+                          millisSince(start) * 1000 / LOOKUPS, agree,
+                          LOOKUPS);
+        start = System.nanoTime();
+        for (int q = 0; q < LOOKUPS; q += 1) {
+            if (isAncestorByWalk(graph, a[q], b[q])) {
+                agree -= 1;
+            }
+        }
+        System.out.printf("  ... unpruned:     %8.1f us/query "
+                          + "(%d disagreements)%n",
+                          millisSince(start) * 1000 / LOOKUPS, agree);
+    }
+
+    /** Return true iff commit A is an ancestor of commit B in GRAPH,
+     *  found by walking every ancestor of B. */
+    private static boolean isAncestorByWalk(CommitGraph graph, int a,
+                                            int b) {
+        HashSet<Integer> seen = new HashSet<>();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        stack.push(b);
+        while (!stack.isEmpty()) {
+            int k = stack.pop();
+            if (k == a) {
+                return true;
+            }
+            if (k >= 0 && seen.add(k)) {
+                stack.push(graph.parent(k));
+                stack.push(graph.secondParent(k));
+            }
+        }
+        return false;
+    }
+
+    /** Return a common ancestor of commits A and B in GRAPH found as
+     *  merge used to find split points: collect every ancestor of A,
+     *  then search breadth first from B for the nearest of them. */
+    private static int fullSearchBase(CommitGraph graph, int a, int b) {
+        HashSet<Integer> ancestors = new HashSet<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(a);
+        while (!queue.isEmpty()) {
+            int k = queue.poll();
+            if (k >= 0 && ancestors.add(k)) {
+                queue.add(graph.parent(k));
+                queue.add(graph.secondParent(k));
+            }
+        }
+        HashSet<Integer> seen = new HashSet<>();
+        queue.add(b);
+        while (!queue.isEmpty()) {
+            int k = queue.poll();
+            if (k >= 0 && seen.add(k)) {
+                if (ancestors.contains(k)) {
+                    return k;
+                }
+                queue.add(graph.parent(k));
+                queue.add(graph.secondParent(k));
+            }
+        }
+        return -1;
+    }
+
+    /** Time one status from a freshly loaded stat cache, and report it
+     *  labeled LABEL. */
+    private static void timeStatus(String label) {
+        StatCache.reload();
+        long start = System.nanoTime();
+        quietly(() -> {
+            try {
+                Commands.status();
+            } catch (IOException excp) {
+                throw new IllegalStateException(excp);
+            }
+        });
+        System.out.printf("  %-14s %8.1f ms%n", label + ":",
+                          millisSince(start));
+    }
+
+    /** Time encoding COMMITS with ENCODE and decoding them again with
+     *  DECODE, and report the results labeled LABEL. */
+    private static void codecRound(String label, List<Commit> commits,
+                                   Function<Commit, byte[]> encode,
+                                   Function<byte[], Commit> decode) {
+        List<byte[]> encoded = new ArrayList<>();
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (Commit commit : commits) {
+            byte[] data = encode.apply(commit);
+            bytes += data.length;
+            encoded.add(data);
+        }
+        double encodeTime = millisSince(start);
+        start = System.nanoTime();
+        for (byte[] data : encoded) {
+            decode.apply(data);
+        }
+        double decodeTime = millisSince(start);
+        int n = commits.size();
+        System.out.printf("  %-13s %6d bytes/commit  encode: %8.0f/s  "
+                          + "decode: %8.0f/s%n", label, bytes / n,
+                          n / encodeTime * 1000, n / decodeTime * 1000);
+    }
+
+    /** Print the log from the commit with id ID, recursing on its parent
+     *  as log used to do. */
+    private static void recursiveLog(String id) {
+        Commit commit = ObjectStore.readCommit(id);
+        System.out.println("===");
+        System.out.println("commit " + id);
+        System.out.println("Date: "
+                           + commit.getDateTime().format(
+                               Commands.DATE_FORMAT) + " -0800");
+        System.out.println(commit.getMessage());
+        if (commit.getParent() != null) {
+            System.out.println();
+            recursiveLog(commit.getParent());
+        }
+    }
+
+    /** Print timings of the storage-bound operations for a repository
+     *  labeled LABEL whose commits are IDS. */
+    private static void report(String label, List<String> ids) {
+        Random rand = new Random(61);
+        long start = System.nanoTime();
+        readAll(ids);
+        double scan = millisSince(start);
+        start = System.nanoTime();
+        for (int k = 0; k < LOOKUPS; k += 1) {
+            ObjectStore.readCommit(ids.get(rand.nextInt(ids.size())));
+        }
+        double lookup = millisSince(start) * 1000.0 / LOOKUPS;
+        System.out.printf("  %-6s read all commits: %8.1f ms"
+                          + "  lookup: %6.1f us%n", label, scan, lookup);
+    }
+
+    /** Read every commit listed in the object database, as global-log
+     *  did before the commit index, and check that they are the commits
+     *  IDS. */
+    private static void readAll(List<String> ids) {
+        List<String> all = ObjectStore.commitIds();
+        for (String id : all) {
+            ObjectStore.readCommit(id);
+        }
+        if (all.size() != ids.size() + 1) {
+            throw new IllegalStateException("missing commits");
+        }
+    }
+
+    /** Initialize a repository in the current directory holding a
+     *  linear history of N commits, each of which changes one of a
+     *  hundred files, and return the commits' ids, oldest first. */
+    static List<String> linearHistory(int n) throws IOException {
+        Main.initialize();
+        Commit.init();
+        List<String> ids = new ArrayList<>();
+        String parent = Utils.readContentsAsString(HEAD);
+        String tree = Tree.EMPTY;
+        LocalDateTime time = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = 0; i < n; i += 1) {
+            String contents = "version " + i + "\n";
+            String sha = Blob.write(contents.getBytes(), null);
+            tree = Tree.update(tree, Map.of("file" + (i % FILES) + ".txt",
+                                            sha));
+            Commit commit = new Commit("commit " + i, parent,
+                                       time.plusMinutes(i), tree);
+            byte[] bytes = CommitCodec.encode(commit);
+            parent = Utils.sha1(bytes);
+            ObjectStore.writeCommit(parent, bytes);
+            ids.add(parent);
+        }
+        Utils.writeContents(HEAD, parent);
+        Utils.writeContents(Utils.join(ALL_BRANCHES, "master"), parent);
+        return ids;
+    }
+
+    /** Run BODY with standard output discarded. */
+    static void quietly(Runnable body) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            body.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /** Return the milliseconds elapsed since the System.nanoTime value
+     *  START. */
+    static double millisSince(long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** Delete FILE and, if it is a directory, everything under it. */
+    static void clean(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                clean(child);
+            }
+        }
+        file.delete();
+        ObjectStore.pack().close();
+    }
+
+    /** Milliseconds between checks for the server to start. */
+    private static final int SERVER_POLL = 50;
+    /** Number of branches in the prune benchmark. */
+    private static final int PRUNE_BRANCHES = 4;
+    /** Number of files on each branch in the prune benchmark. */
+    private static final int PRUNE_FILES = 1000;
+    /** Number of commits on the topic branch of the bitmap benchmark. */
+    private static final int TOPIC = 100;
+    /** Number of commits fetched and pushed by the fetch benchmark. */
+    private static final int FETCHED = 10;
+    /** Number of loose commits in the bitmap benchmark. */
+    private static final int LOOSE = 10;
+    /** Words used in the names and comments of synthetic source. */
+    private static final String[] WORDS = {
+        "count", "index", "branch", "commit", "blob", "tree", "length",
+        "parent", "head", "entry", "node", "value", "offset", "total",
+    };
+    /** Size of a block of a synthetic disk image. */
+    private static final int BLOCK_SIZE = 4096;
+    /** Number of distinct common blocks in a synthetic disk image. */
+    private static final int POOL_BLOCKS = 256;
+    /** Number of versions of the growing log file in the chunk
+     *  benchmark. */
+    private static final int LOG_VERSIONS = 4;
+    /** Number of branches in the mergebase benchmark. */
+    private static final int BRANCHES = 100;
+    /** One in this many commits in the mergebase benchmark is a merge. */
+    private static final int MERGE_ODDS = 10;
+    /** Numbers of workers to time checkouts with. */
+    private static final int[] WORKERS = { 1, 4, 16 };
+    /** Number of distinct files in synthetic histories. */
+    private static final int FILES = 100;
+    /** Number of random lookups to time. */
+    private static final int LOOKUPS = 1000;
+    /** Size of the file edited by the delta benchmark. */
+    private static final int DELTA_FILE_SIZE = 5 << 20;
+    /** Length of each line of that file. */
+    private static final int LINE_LENGTH = 22;
+    /** Number of random checkouts to time. */
+    private static final int CHECKOUTS = 20;
+    /** Number of recent commits walked by repeated logs. */
+    private static final int RECENT = 1000;
+    /** Number of repeated logs to time. */
+    private static final int REPEATS = 20;
+    /** Number of commits timed by the tree benchmark. */
+    private static final int COMMITS = 50;
+    /** Number of files changed by the status benchmark. */
+    private static final int CHANGED = 10;
+}
@@ -0,0 +1,412 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static gitlet.Main.*;
+
+/** Reachability bitmaps: for selected packed commits, the set of packed
+ *  objects (commits, trees and blobs) reachable from each, so that the
+ *  objects reachable from any commit are found by walking only down to
+ *  the nearest commits that have bitmaps, and "what does A have that B
+ *  lacks" is a difference of two sets.
+ *
+ *  The bitmaps number the packed objects in the order in which a walk of
+ *  the history, oldest commits first, reaches them, so that the objects
+ *  of old history get low, dense numbers, and the bitmaps of commits
+ *  share long runs of ones, which EWAH (see Ewah) keeps in a few words.
+ *  They live in the file BITMAPS, as
+ *
+ *      MAGIC VERSION OBJECTS COUNT ORDER COMMITS BITMAP...
+ *
+ *  where VERSION, OBJECTS (the size of the pack) and COUNT (the number
+ *  of BITMAPs) are 4-byte ints, ORDER gives as 4-byte ints the number of
+ *  the object at each position of the pack, COMMITS is the bitmap of the
+ *  commits, and each BITMAP is the 20-byte binary id of a commit, the
+ *  4-byte length of its bitmap, and the bitmap.  Bitmaps are stored
+ *  EWAH-encoded, each preceded by its 4-byte length.  They are built by
+ *  gc for the packed commits at HEAD and the branch heads and those
+ *  whose generations are multiples of SPACING, and discarded whenever
+ *  the pack changes.
+ *  @author hamza
+ */
+class Bitmaps {
+
+    /** Return the bitmaps of the current repository, reading them when
+     *  first used.  If there are none, or they do not match the pack,
+     *  the result has no bitmaps, and queries walk the whole history. */
+    static Bitmaps get() {
+        if (current == null) {
+            current = load();
+        }
+        return current;
+    }
+
+    /** Forget the current repository's bitmaps, so that the next get
+     *  reads them from their file again. */
+    static void reload() {
+        current = null;
+    }
+
+    /** Delete the current repository's bitmaps. */
+    static void discard() {
+        current = null;
+        BITMAPS.delete();
+    }
+
+    /** Build the bitmaps of the commits in the current repository's
+     *  pack, replacing any there were. */
+    static void build() {
+        discard();
+        Pack pack = ObjectStore.pack();
+        if (pack.size() == 0) {
+            return;
+        }
+        int[] order = new int[pack.size()];
+        Arrays.fill(order, -1);
+        Bitmaps bitmaps =
+            new Bitmaps(pack, IntBuffer.wrap(order), new BitSet());
+        Set<String> heads = new HashSet<>(CommitIndex.heads());
+        CommitGraph graph = CommitGraph.get();
+        for (int k = 0; k < graph.size(); k += 1) {
+            String id = graph.id(k);
+            if ((graph.generation(k) % SPACING == 0 || heads.contains(id))
+                && pack.position(id, Pack.COMMIT) >= 0) {
+                Reach reach = bitmaps.reach(id);
+                if (reach.others.isEmpty()) {
+                    bitmaps.stored.put(id, Ewah.encode(reach.bits));
+                }
+            }
+        }
+        for (int k = 0; k < order.length; k += 1) {
+            if (order[k] < 0) {
+                order[k] = bitmaps.next;
+                bitmaps.next += 1;
+            }
+            if (pack.type(k) == Pack.COMMIT) {
+                bitmaps.commits.set(order[k]);
+            }
+        }
+        try {
+            bitmaps.write(order);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The count command: print the number of commits and of objects
+     *  reachable from A, a branch name or commit id, and not from B, if
+     *  B is not null. */
+    static void count(String a, String b) {
+        Bitmaps bitmaps = get();
+        Reach reach = bitmaps.reach(resolve(a));
+        if (b != null) {
+            reach.remove(bitmaps.reach(resolve(b)));
+        }
+        System.out.printf("%d commits, %d objects%n",
+                          reach.commits(), reach.size());
+    }
+
+    /** Bitmaps of the objects in PACK, numbered as given by ORDER (null if
+     *  there are no bitmaps), where COMMITS has the numbers of the
+     *  commits.  Objects not yet numbered in ORDER (-1) are numbered as
+     *  they are reached. */
+    Bitmaps(Pack pack, IntBuffer order, BitSet commits) {
+        this.pack = pack;
+        this.order = order;
+        this.commits = commits;
+    }
+
+    /** Return the number of commits that have bitmaps. */
+    int size() {
+        return stored.size();
+    }
+
+    /** Return the objects reachable from the commit with id TIP. */
+    Reach reach(String tip) {
+        return reach(List.of(tip));
+    }
+
+    /** Return the objects reachable from the commits with ids TIPS.
+     *  Commits are walked first, stopping at those that have bitmaps,
+     *  whose objects are added whole, and then the trees of the commits
+     *  walked are, skipping the subtrees already found. */
+    Reach reach(Collection<String> tips) {
+        Reach reach = new Reach();
+        List<String> trees = new ArrayList<>();
+        Deque<String> stack = new ArrayDeque<>(tips);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (reach.contains(id, Pack.COMMIT)) {
+                continue;
+            }
+            byte[] bitmap = stored.get(id);
+            if (bitmap != null) {
+                reach.bits.or(Ewah.decode(bitmap));
+                continue;
+            }
+            reach.add(id, Pack.COMMIT);
+            Commit commit = ObjectStore.readCommit(id);
+            trees.add(commit.getTree());
+            if (commit.getSecondParent() != null) {
+                stack.push(commit.getSecondParent());
+            }
+            if (commit.getParent() != null) {
+                stack.push(commit.getParent());
+            }
+        }
+        for (String tree : trees) {
+            Tree.walk(tree, node -> reach.add(node, Pack.TREE),
+                      sha -> addBlob(reach, sha));
+        }
+        return reach;
+    }
+
+    /** The set of objects reachable from some commit: the packed ones as
+     *  a bitmap, and the others by id. */
+    class Reach {
+
+        /** Return the number of objects in this set. */
+        int size() {
+            return bits.cardinality() + others.size();
+        }
+
+        /** Return the number of commits in this set. */
+        int commits() {
+            BitSet packed = (BitSet) bits.clone();
+            packed.and(commits);
+            int n = packed.cardinality();
+            for (String key : others) {
+                n += key.startsWith(COMMIT_KEY) ? 1 : 0;
+            }
+            return n;
+        }
+
+        /** Add the objects in OTHER to this set. */
+        void add(Reach other) {
+            bits.or(other.bits);
+            others.addAll(other.others);
+        }
+
+        /** Call ACTION with the type and id of each object in this set,
+         *  the packed ones first, in the order of their numbers. */
+        void forEach(BiConsumer<Byte, String> action) {
+            int[] positions = bits.isEmpty() ? null : positions();
+            for (int bit = bits.nextSetBit(0); bit >= 0;
+                 bit = bits.nextSetBit(bit + 1)) {
+                int k = positions[bit];
+                action.accept(pack.type(k), pack.id(k));
+            }
+            for (String key : others) {
+                action.accept(Byte.parseByte(key.substring(0, 1)),
+                              key.substring(1));
+            }
+        }
+
+        /** Remove the objects in OTHER from this set. */
+        void remove(Reach other) {
+            bits.andNot(other.bits);
+            others.removeAll(other.others);
+        }
+
+        /** Add the object of type TYPE with id ID, and return true iff it
+         *  was not already present. */
+        boolean add(String id, byte type) {
+            int bit = bit(id, type);
+            if (bit < 0) {
+                return others.add(type + id);
+            } else if (bits.get(bit)) {
+                return false;
+            }
+            bits.set(bit);
+            return true;
+        }
+
+        /** Return true iff the object of type TYPE with id ID is
+         *  present. */
+        boolean contains(String id, byte type) {
+            int bit = bit(id, type);
+            return bit < 0 ? others.contains(type + id) : bits.get(bit);
+        }
+
+        /** The packed objects, by number. */
+        private final BitSet bits = new BitSet();
+        /** The other objects, as their types followed by their ids. */
+        private final Set<String> others = new HashSet<>();
+    }
+
+    /** Add to REACH the blob with id SHA and those it is stored in terms
+     *  of (see Blob.references), if not yet present. */
+    private static void addBlob(Reach reach, String sha) {
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(sha);
+        try {
+            while (!stack.isEmpty()) {
+                String id = stack.pop();
+                if (reach.add(id, Pack.BLOB)) {
+                    for (String ref : Blob.references(id)) {
+                        stack.push(ref);
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the number of the object of type TYPE with id ID in the
+     *  bitmaps, numbering it if it is not yet numbered, or -1 if it is not
+     *  packed or there are no bitmaps. */
+    private int bit(String id, byte type) {
+        if (order == null) {
+            return -1;
+        }
+        int k = pack.position(id, type);
+        if (k < 0) {
+            return -1;
+        }
+        int bit = order.get(k);
+        if (bit < 0) {
+            bit = next;
+            next += 1;
+            order.put(k, bit);
+        }
+        return bit;
+    }
+
+    /** Return the position in the pack of each numbered object, by
+     *  number. */
+    private int[] positions() {
+        if (positions == null) {
+            positions = new int[pack.size()];
+            for (int k = 0; k < positions.length; k += 1) {
+                positions[order.get(k)] = k;
+            }
+        }
+        return positions;
+    }
+
+    /** Return the id of the commit named by NAME, a branch name or a
+     *  (possibly abbreviated) commit id. */
+    private static String resolve(String name) {
+        File branch = Utils.join(ALL_BRANCHES, name);
+        if (branch.isFile()) {
+            return Utils.readContentsAsString(branch);
+        }
+        return CommitIdTable.resolve(name);
+    }
+
+    /** Return the bitmaps in BITMAPS, or an empty set if there are none
+     *  or they do not match the pack. */
+    private static Bitmaps load() {
+        Pack pack = ObjectStore.pack();
+        Bitmaps none = new Bitmaps(pack, null, new BitSet());
+        if (!BITMAPS.isFile()) {
+            return none;
+        }
+        ByteBuffer buf;
+        try (FileChannel chan = FileChannel.open(BITMAPS.toPath())) {
+            buf = chan.map(FileChannel.MapMode.READ_ONLY, 0, chan.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        byte[] magic = new byte[MAGIC.length];
+        buf.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || buf.getInt() != VERSION
+            || buf.getInt() != pack.size()) {
+            return none;
+        }
+        int count = buf.getInt();
+        IntBuffer order = buf.slice(HEADER_SIZE, 4 * pack.size())
+            .asIntBuffer();
+        buf.position(HEADER_SIZE + 4 * pack.size());
+        Bitmaps bitmaps =
+            new Bitmaps(pack, order, Ewah.decode(bytes(buf)));
+        byte[] sha = new byte[Utils.SHA_BYTES];
+        for (int k = 0; k < count; k += 1) {
+            buf.get(sha);
+            bitmaps.stored.put(Utils.toHex(sha), bytes(buf));
+        }
+        return bitmaps;
+    }
+
+    /** Return the bytes of the length-prefixed field at the position of
+     *  BUF, advancing past it. */
+    private static byte[] bytes(ByteBuffer buf) {
+        byte[] result = new byte[buf.getInt()];
+        buf.get(result);
+        return result;
+    }
+
+    /** Write these bitmaps, whose objects are numbered by ORDER, to
+     *  BITMAPS. */
+    private void write(int[] order) throws IOException {
+        byte[] commitBits = Ewah.encode(commits);
+        int size = HEADER_SIZE + 4 * order.length + 4 + commitBits.length;
+        for (byte[] bitmap : stored.values()) {
+            size += Utils.SHA_BYTES + 4 + bitmap.length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put(MAGIC).putInt(VERSION).putInt(order.length)
+            .putInt(stored.size());
+        for (int bit : order) {
+            buf.putInt(bit);
+        }
+        buf.putInt(commitBits.length).put(commitBits);
+        for (Map.Entry<String, byte[]> e : stored.entrySet()) {
+            buf.put(Utils.fromHex(e.getKey())).putInt(e.getValue().length)
+                .put(e.getValue());
+        }
+        File tmp = Utils.join(PACK_DIR, "pack.bmp.tmp");
+        Utils.writeContents(tmp, buf.array());
+        Files.move(tmp.toPath(), BITMAPS.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        Durable.written(BITMAPS);
+    }
+
+    /** The bitmaps of the current repository, once read. */
+    private static Bitmaps current;
+
+    /** Marks the start of the bitmaps file. */
+    private static final byte[] MAGIC = { 'G', 'B', 'M', 'P' };
+    /** Current version of the file format. */
+    private static final int VERSION = 1;
+    /** Size of the file header. */
+    private static final int HEADER_SIZE = MAGIC.length + 12;
+    /** Commits whose generations are multiples of SPACING get bitmaps. */
+    private static final int SPACING = 100;
+    /** Start of the keys of commits in Reach.others. */
+    private static final String COMMIT_KEY = String.valueOf(Pack.COMMIT);
+
+    /** The pack whose objects the bitmaps hold. */
+    private final Pack pack;
+    /** The number of the object at each position of the pack, or null if
+     *  there are no bitmaps. */
+    private final IntBuffer order;
+    /** The numbers of the commits. */
+    private final BitSet commits;
+    /** The encoded bitmap of each commit that has one, by id. */
+    private final Map<String, byte[]> stored = new HashMap<>();
+    /** The next number to give an object. */
+    private int next;
+    /** The inverse of order, once computed. */
+    private int[] positions;
+}
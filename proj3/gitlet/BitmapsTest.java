@@ -0,0 +1,82 @@
+package gitlet;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of reachability bitmaps and the count command.
+ *  @author hamza
+ */
+public class BitmapsTest {
+
+    @Test
+    public void ewahRoundTrips() {
+        Random random = new Random(61);
+        BitSet sparse = new BitSet(), dense = new BitSet(),
+            mixed = new BitSet();
+        for (int k = 0; k < 100000; k += 1) {
+            if (random.nextInt(1000) == 0) {
+                sparse.set(k);
+            }
+            if (k < 60000 || random.nextInt(1000) == 0) {
+                dense.set(k);
+            }
+            if (random.nextBoolean()) {
+                mixed.set(k);
+            }
+        }
+        for (BitSet bits : new BitSet[] {
+                new BitSet(), sparse, dense, mixed }) {
+            assertEquals(bits, Ewah.decode(Ewah.encode(bits)));
+        }
+        assertTrue(Ewah.encode(dense).length < 2000);
+    }
+
+    @Test
+    public void countsAgreeWithAndWithoutBitmaps() throws Exception {
+        File dir = tempDir();
+        File a = Utils.join(dir, "a.txt");
+        gitlet(dir, "init");
+        Utils.writeContents(a, "one");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "first");
+        gitlet(dir, "branch", "other");
+        gitlet(dir, "checkout", "other");
+        Utils.writeContents(Utils.join(dir, "b.txt"), "b");
+        gitlet(dir, "add", "b.txt");
+        gitlet(dir, "commit", "on other");
+        gitlet(dir, "checkout", "master");
+        Utils.writeContents(a, "two");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "second");
+        for (boolean packed : new boolean[] { false, true }) {
+            if (packed) {
+                gitlet(dir, "gc");
+                assertTrue(Utils.join(dir, ".gitlet", "pack", "pack.bmp")
+                           .isFile());
+            }
+            assertEquals("1 commits, 3 objects\n",
+                         gitlet(dir, "count", "master", "other"));
+            assertEquals("1 commits, 3 objects\n",
+                         gitlet(dir, "count", "other", "master"));
+            assertEquals("3 commits, 7 objects\n",
+                         gitlet(dir, "count", "master"));
+        }
+        Utils.writeContents(Utils.join(dir, "c.txt"), "c");
+        gitlet(dir, "add", "c.txt");
+        gitlet(dir, "commit", "third");
+        assertEquals("2 commits, 6 objects\n",
+                     gitlet(dir, "count", "master", "other"));
+        String first = gitlet(dir, "find", "first").trim();
+        assertEquals("0 commits, 0 objects\n",
+                     gitlet(dir, "count", first.substring(0, 8), "master"));
+        assertEquals("No commit with that id exists.\n",
+                     gitlet(dir, "count", "nosuchbranch"));
+        Benchmark.clean(dir);
+    }
+
+}
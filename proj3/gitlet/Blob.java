@@ -0,0 +1,427 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+
+/** The contents of tracked files, as kept in the object database.
+ *
+ *  Files are hashed, stored, and checked out as byte streams through a
+ *  fixed-size buffer, so they may be binary and of any size.  Only files
+ *  of at most DELTA_LIMIT bytes are ever held in memory, to build or
+ *  apply deltas.
+ *
+ *  A blob's id is always the SHA-1 of the file's full contents, but the
+ *  stored object is one of three forms, told apart by a first byte that
+ *  is never part of the contents.  A full blob is
+ *
+ *      FULL CONTENTS
+ *
+ *  A delta blob is
+ *
+ *      DELTA DEPTH BASE DELTA
+ *
+ *  where BASE is the 20-byte id of another blob (normally the previous
+ *  version of the same file), DELTA rebuilds the contents from BASE (see
+ *  Delta), and DEPTH is the number of deltas that must be applied to get
+ *  from the nearest full blob to this one.  Chains are cut off at
+ *  MAX_DEPTH by storing a full blob, which bounds the cost of reading any
+ *  version.  A chunked blob is
+ *
+ *      CHUNKED (ID LENGTH)...
+ *
+ *  listing the ids and 4-byte lengths of the blobs that, concatenated,
+ *  make up the contents.  Files of at least the chunk threshold (see
+ *  setChunkThreshold) that are not stored as deltas are cut into chunks
+ *  by Chunker, and each chunk is stored as a blob of its own, so that
+ *  content repeated within a file, across files, or between versions of
+ *  a file too large for deltas, is stored only once.  A chunked blob
+ *  counts as a full blob in delta chains.
+ *  @author hamza
+ */
+class Blob {
+
+    /** Return the full contents of the blob with id SHA. */
+    static byte[] read(String sha) {
+        List<byte[]> deltas = new ArrayList<>();
+        byte[] stored = ObjectStore.readBlob(sha);
+        while (kind(stored) == DELTA) {
+            deltas.add(stored);
+            stored = ObjectStore.readBlob(base(stored));
+        }
+        byte[] result = kind(stored) == CHUNKED ? join(stored)
+            : Arrays.copyOfRange(stored, 1, stored.length);
+        for (int k = deltas.size() - 1; k >= 0; k -= 1) {
+            byte[] delta = deltas.get(k);
+            result = Delta.apply(result,
+                                 Arrays.copyOfRange(delta, HEADER_SIZE,
+                                                    delta.length));
+        }
+        return result;
+    }
+
+    /** Return the id that FILE's contents would have as a blob. */
+    static String hash(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return hash(in);
+        }
+    }
+
+    /** Return the id that the rest of the contents of IN would have as a
+     *  blob. */
+    static String hash(InputStream in) throws IOException {
+        MessageDigest md = sha1();
+        byte[] buf = new byte[BUFFER_SIZE];
+        for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+            md.update(buf, 0, n);
+        }
+        return Utils.toHex(md.digest());
+    }
+
+    /** Store the contents of FILE, if not already present, and return its
+     *  id.  As for write, BASE is the id of a blob from which the contents
+     *  may be stored as a delta, or null.  Large files are hashed while
+     *  they are copied, or cut into chunks, into the object database. */
+    static String store(File file, String base) throws IOException {
+        if (base != null && file.length() >= MIN_DELTA_SIZE
+            && file.length() <= DELTA_LIMIT) {
+            return write(Utils.readContents(file), base);
+        }
+        if (file.length() >= chunkThreshold) {
+            return storeChunked(file);
+        }
+        File tmp = Durable.tempFile("blob");
+        try {
+            MessageDigest md = sha1();
+            byte[] buf = new byte[BUFFER_SIZE];
+            try (InputStream in = new FileInputStream(file);
+                 OutputStream out = Compression.encoder(
+                     new FileOutputStream(tmp), 1 + file.length())) {
+                out.write(FULL);
+                for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                    md.update(buf, 0, n);
+                    out.write(buf, 0, n);
+                }
+            }
+            String sha = Utils.toHex(md.digest());
+            ObjectStore.moveBlob(tmp, sha);
+            return sha;
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /** Return a stream over the full contents of the blob with id SHA,
+     *  which the caller must close.  Full blobs are streamed from the
+     *  object database, chunked blobs a chunk at a time, and delta blobs
+     *  are rebuilt in memory. */
+    static InputStream open(String sha) throws IOException {
+        InputStream in = new BufferedInputStream(ObjectStore.openBlob(sha),
+                                                 BUFFER_SIZE);
+        in.mark(HEADER_SIZE);
+        byte[] header = in.readNBytes(HEADER_SIZE);
+        in.reset();
+        if (kind(header) == DELTA) {
+            in.close();
+            return new ByteArrayInputStream(read(sha));
+        }
+        if (kind(header) == CHUNKED) {
+            in.close();
+            byte[] stored = ObjectStore.readBlob(sha);
+            return new SequenceInputStream(new Enumeration<>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return next < stored.length;
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    String id = chunkId(stored, next);
+                    next += CHUNK_ENTRY_SIZE;
+                    return new ByteArrayInputStream(read(id));
+                }
+
+                /** Offset in STORED of the next chunk's entry. */
+                private int next = 1;
+            });
+        }
+        in.skipNBytes(1);
+        return in;
+    }
+
+    /** Write the full contents of the blob with id SHA to FILE, creating
+     *  or overwriting it as needed. */
+    static void copyTo(String sha, File file) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream in = open(sha);
+             OutputStream out = new FileOutputStream(file)) {
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                out.write(buf, 0, n);
+            }
+        }
+    }
+
+    /** Store CONTENTS, if not already present, and return its id.  If
+     *  BASE is the id of an existing blob (such as the previous version of
+     *  the same file), CONTENTS may be stored as a delta from it.  BASE
+     *  may be null. */
+    static String write(byte[] contents, String base) {
+        String sha = Utils.sha1(contents);
+        if (ObjectStore.hasBlob(sha)) {
+            return sha;
+        }
+        byte[] stored = null;
+        if (base != null && contents.length >= MIN_DELTA_SIZE
+            && ObjectStore.hasBlob(base)
+            && length(base) <= DELTA_LIMIT) {
+            int depth = depth(base) + 1;
+            if (depth <= MAX_DEPTH) {
+                byte[] delta = Delta.create(read(base), contents);
+                if (HEADER_SIZE + delta.length < contents.length / 2) {
+                    ByteArrayOutputStream out =
+                        new ByteArrayOutputStream(HEADER_SIZE + delta.length);
+                    out.write(DELTA);
+                    out.write(depth);
+                    out.write(Utils.fromHex(base), 0, Utils.SHA_BYTES);
+                    out.write(delta, 0, delta.length);
+                    stored = out.toByteArray();
+                }
+            }
+        }
+        if (stored == null && contents.length >= chunkThreshold) {
+            Chunks chunks = new Chunks();
+            chunks.add(contents, contents.length);
+            stored = chunks.finish();
+        }
+        ObjectStore.writeBlob(sha, stored == null ? full(contents) : stored);
+        return sha;
+    }
+
+    /** Store files of at least THRESHOLD bytes that are not stored as
+     *  deltas as chunked blobs.  The default is 1 MB, or the value of the
+     *  system property gitlet.chunk.threshold. */
+    static void setChunkThreshold(long threshold) {
+        chunkThreshold = threshold;
+    }
+
+    /** Return the size from which files are stored as chunked blobs. */
+    static long chunkThreshold() {
+        return chunkThreshold;
+    }
+
+    /** Return the ids of the blobs that the blob with id SHA is stored in
+     *  terms of: the base of a delta blob, the chunks of a chunked blob,
+     *  and none for a full blob. */
+    static List<String> references(String sha) throws IOException {
+        byte[] header;
+        try (InputStream in = ObjectStore.openBlob(sha)) {
+            header = in.readNBytes(HEADER_SIZE);
+        }
+        List<String> result = new ArrayList<>();
+        if (kind(header) == DELTA) {
+            result.add(base(header));
+        } else if (kind(header) == CHUNKED) {
+            byte[] stored = ObjectStore.readBlob(sha);
+            for (int k = 1; k < stored.length; k += CHUNK_ENTRY_SIZE) {
+                result.add(chunkId(stored, k));
+            }
+        }
+        return result;
+    }
+
+    /** Return the length of the delta chain behind the blob with id SHA
+     *  (0 for a full or chunked blob), reading only the start of its
+     *  stored form. */
+    static int depth(String sha) {
+        byte[] start;
+        try (InputStream in = ObjectStore.openBlob(sha)) {
+            start = in.readNBytes(2);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return start.length == 2 && start[0] == DELTA ? start[1] : 0;
+    }
+
+    /** Store the contents of FILE as a chunked blob, if not already
+     *  present, and return its id. */
+    private static String storeChunked(File file) throws IOException {
+        MessageDigest md = sha1();
+        Chunks chunks = new Chunks();
+        byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                md.update(buf, 0, n);
+                chunks.add(buf, n);
+            }
+        }
+        byte[] stored = chunks.finish();
+        String sha = Utils.toHex(md.digest());
+        if (!ObjectStore.hasBlob(sha)) {
+            ObjectStore.writeBlob(sha, stored);
+        }
+        return sha;
+    }
+
+    /** The list of chunks of a chunked blob being stored. */
+    private static class Chunks {
+
+        /** Cut the first LEN bytes of BUF, which follow the bytes added so
+         *  far, into chunks, storing each chunk as it is completed. */
+        void add(byte[] buf, int len) {
+            for (int off = 0; off < len; ) {
+                int n = chunker.cut(buf, off, len - off);
+                if (n < 0) {
+                    chunk.write(buf, off, len - off);
+                    return;
+                }
+                chunk.write(buf, off, n);
+                store();
+                off += n;
+            }
+        }
+
+        /** Store the last chunk and return the stored form of the chunked
+         *  blob. */
+        byte[] finish() {
+            if (chunk.size() > 0) {
+                store();
+            }
+            return list.toByteArray();
+        }
+
+        /** Store the current chunk, if not already present, and add it to
+         *  the list. */
+        private void store() {
+            byte[] contents = chunk.toByteArray();
+            String id = Utils.sha1(contents);
+            if (!ObjectStore.hasBlob(id)) {
+                ObjectStore.writeBlob(id, full(contents));
+            }
+            list.write(Utils.fromHex(id), 0, Utils.SHA_BYTES);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                list.write(contents.length >>> shift);
+            }
+            chunk.reset();
+        }
+
+        /** Finds the chunk boundaries. */
+        private final Chunker chunker = new Chunker();
+        /** The current chunk so far. */
+        private final ByteArrayOutputStream chunk =
+            new ByteArrayOutputStream(Chunker.MAX_SIZE);
+        /** The stored form of the chunked blob so far. */
+        private final ByteArrayOutputStream list = new ByteArrayOutputStream();
+        {
+            list.write(CHUNKED);
+        }
+    }
+
+    /** Return the length of the contents of the blob with id SHA if it is
+     *  a full or chunked blob, or of its stored form if it is a delta
+     *  blob (whose contents are never longer than DELTA_LIMIT). */
+    private static long length(String sha) {
+        long size = ObjectStore.blobSize(sha) - 1;
+        if (size > DELTA_LIMIT) {
+            return size;
+        }
+        byte[] stored = ObjectStore.readBlob(sha);
+        if (kind(stored) != CHUNKED) {
+            return size;
+        }
+        long length = 0;
+        for (int k = 1; k < stored.length; k += CHUNK_ENTRY_SIZE) {
+            long chunk = 0;
+            for (int j = Utils.SHA_BYTES; j < CHUNK_ENTRY_SIZE; j += 1) {
+                chunk = (chunk << 8) | (stored[k + j] & 0xff);
+            }
+            length += chunk;
+        }
+        return length;
+    }
+
+    /** Return the full contents of the chunked blob STORED. */
+    private static byte[] join(byte[] stored) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int k = 1; k < stored.length; k += CHUNK_ENTRY_SIZE) {
+            byte[] chunk = read(chunkId(stored, k));
+            out.write(chunk, 0, chunk.length);
+        }
+        return out.toByteArray();
+    }
+
+    /** Return the id of the chunk listed at offset K in the chunked blob
+     *  STORED. */
+    private static String chunkId(byte[] stored, int k) {
+        return Utils.toHex(Arrays.copyOfRange(stored, k, k + Utils.SHA_BYTES));
+    }
+
+    /** Return a new SHA-1 digester. */
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException(
+                "System does not support SHA-1");
+        }
+    }
+
+    /** Return the stored form of a full blob of CONTENTS. */
+    private static byte[] full(byte[] contents) {
+        byte[] stored = new byte[1 + contents.length];
+        stored[0] = FULL;
+        System.arraycopy(contents, 0, stored, 1, contents.length);
+        return stored;
+    }
+
+    /** Return the kind of blob, FULL, DELTA, or CHUNKED, whose stored
+     *  form begins with HEADER. */
+    private static byte kind(byte[] header) {
+        if (header.length == 0
+            || header[0] != FULL && header[0] != CHUNKED
+               && (header[0] != DELTA || header.length < HEADER_SIZE)) {
+            throw Utils.error("corrupt blob");
+        }
+        return header[0];
+    }
+
+    /** Return the id of the base of the delta blob STORED. */
+    private static String base(byte[] stored) {
+        return Utils.toHex(Arrays.copyOfRange(stored, 2, HEADER_SIZE));
+    }
+
+    /** Marks the start of a full blob. */
+    static final byte FULL = 1;
+    /** Marks the start of a delta blob. */
+    static final byte DELTA = 2;
+    /** Marks the start of a chunked blob. */
+    static final byte CHUNKED = 3;
+    /** Size of a delta blob's header. */
+    private static final int HEADER_SIZE = 2 + Utils.SHA_BYTES;
+    /** Size of each entry in a chunked blob's list. */
+    private static final int CHUNK_ENTRY_SIZE = Utils.SHA_BYTES + 4;
+    /** Longest allowed delta chain. */
+    static final int MAX_DEPTH = 50;
+    /** Files smaller than this are always stored in full. */
+    private static final int MIN_DELTA_SIZE = 512;
+    /** Files larger than this are always stored in full, and streamed. */
+    static final int DELTA_LIMIT = 16 << 20;
+    /** Size of the buffer used to stream contents. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Files at least this large are stored as chunked blobs unless they
+     *  are stored as deltas. */
+    private static long chunkThreshold =
+        Long.getLong("gitlet.chunk.threshold", 1 << 20);
+}
@@ -0,0 +1,129 @@
+package gitlet;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of storing and checking out file contents.
+ *  @author hamza
+ */
+public class BlobTest {
+
+    @Test
+    public void binaryRoundTrip() throws Exception {
+        File dir = tempDir();
+        byte[] contents = new byte[70000];
+        for (int i = 0; i < contents.length; i += 1) {
+            contents[i] = (byte) (i * 7);
+        }
+        File file = Utils.join(dir, "data.bin");
+        Utils.writeContents(file, contents);
+        gitlet(dir, "init");
+        gitlet(dir, "add", "data.bin");
+        gitlet(dir, "commit", "binary");
+        contents[100] += 1;
+        Utils.writeContents(file, contents);
+        gitlet(dir, "add", "data.bin");
+        gitlet(dir, "commit", "edited");
+        Utils.writeContents(file, "junk");
+        gitlet(dir, "checkout", "--", "data.bin");
+        assertArrayEquals(contents, Utils.readContents(file));
+        Benchmark.clean(dir);
+    }
+
+    /** Files that begin as the stored forms of blobs of each kind do are
+     *  stored and checked out as they are. */
+    @Test
+    public void kindRoundTrip() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        byte[] kinds = { Blob.FULL, Blob.DELTA, Blob.CHUNKED };
+        for (int k = 0; k < kinds.length; k += 1) {
+            byte[] contents = new byte[52];
+            Arrays.fill(contents, (byte) 'a');
+            contents[0] = kinds[k];
+            contents[1] = 1;
+            File file = Utils.join(dir, "kind" + k + ".bin");
+            Utils.writeContents(file, contents);
+            gitlet(dir, "add", file.getName());
+            gitlet(dir, "commit", "kind " + k);
+            file.delete();
+            gitlet(dir, "checkout", "--", file.getName());
+            assertArrayEquals(contents, Utils.readContents(file));
+        }
+        Benchmark.clean(dir);
+    }
+
+    /** A 2 GB sparse file is added and checked out by a JVM whose
+     *  heap is an eighth of its size. */
+    @Test
+    public void hugeFile() throws Exception {
+        File dir = tempDir();
+        File file = Utils.join(dir, "huge.bin");
+        long size = 2L << 30;
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            f.setLength(size);
+            f.write("start".getBytes());
+            f.seek(size - 3);
+            f.write("end".getBytes());
+        }
+        String sha = Blob.hash(file);
+        gitlet(dir, "init");
+        gitletWithHeap(dir, "256m", "add", "huge.bin");
+        gitletWithHeap(dir, "256m", "commit", "huge");
+        file.delete();
+        gitletWithHeap(dir, "256m", "checkout", "--", "huge.bin");
+        assertEquals(size, file.length());
+        assertEquals(sha, Blob.hash(file));
+        Benchmark.clean(dir);
+    }
+
+    /** Return the total size of the loose blobs in DIR's repository. */
+    private static long stored(File dir) {
+        long size = 0;
+        for (File blob : Utils.join(dir, ".gitlet", "content").listFiles()) {
+            size += blob.length();
+        }
+        return size;
+    }
+
+    /** Copies of a large file with small insertions and deletions are
+     *  stored as chunks that they mostly share. */
+    @Test
+    public void chunkedDedup() throws Exception {
+        File dir = tempDir();
+        byte[] contents = new byte[3 << 20];
+        new Random(61).nextBytes(contents);
+        byte[] edited = new byte[contents.length + 1];
+        System.arraycopy(contents, 0, edited, 1, 1 << 20);
+        System.arraycopy(contents, (1 << 20) + 100, edited, (1 << 20) + 1,
+                         contents.length - (1 << 20) - 100);
+        File a = Utils.join(dir, "a.img"), b = Utils.join(dir, "b.img");
+        Utils.writeContents(a, contents);
+        gitlet(dir, "init");
+        gitlet(dir, "add", "a.img");
+        gitlet(dir, "commit", "a");
+        long size = stored(dir);
+        assertTrue(size < contents.length + 4096);
+        Utils.writeContents(b, edited, contents);
+        gitlet(dir, "add", "b.img");
+        gitlet(dir, "commit", "b");
+        assertTrue(stored(dir) - size < contents.length / 4);
+        a.delete();
+        b.delete();
+        gitlet(dir, "checkout", "--", "a.img");
+        gitlet(dir, "checkout", "--", "b.img");
+        assertArrayEquals(contents, Utils.readContents(a));
+        byte[] both = Utils.readContents(b);
+        assertArrayEquals(edited, Arrays.copyOf(both, edited.length));
+        assertArrayEquals(contents, Arrays.copyOfRange(both, edited.length,
+                                                       both.length));
+        Benchmark.clean(dir);
+    }
+
+}
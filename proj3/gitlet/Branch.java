@@ -2,6 +2,9 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static gitlet.Main.*;
 
@@ -22,17 +25,34 @@ public class Branch {
     public static void branch(String name) {
         File newbranch = Utils.join(ALL_BRANCHES, name);
         if (newbranch.exists()) {
-            System.out.println("A branch with that name already exists.");
-            System.exit(0);
+            throw Utils.error("A branch with that name already exists.");
         } else {
+            String headNodeSHA = Utils.readContentsAsString(HEAD);
             try {
-                newbranch.createNewFile();
+                Refs.update(newbranch, headNodeSHA);
             } catch (IOException e) {
                 System.out.println("Cannot create branch with name: " + name);
             }
-            String headNodeSHA = Utils.readContentsAsString(HEAD);
-            Utils.writeContents(newbranch, headNodeSHA);
         }
 
     }
+
+    /** Return the file of every branch, including the branches fetched
+     *  from remotes, which are kept in a directory of ALL_BRANCHES for
+     *  each remote (see Remote). */
+    static List<File> branchFiles() {
+        List<File> result = new ArrayList<>();
+        File[] dirs = ALL_BRANCHES.listFiles(File::isDirectory);
+        List<File> branchDirs = new ArrayList<>(List.of(ALL_BRANCHES));
+        branchDirs.addAll(Arrays.asList(dirs == null ? new File[0] : dirs));
+        for (File dir : branchDirs) {
+            List<String> branches = Utils.plainFilenamesIn(dir);
+            if (branches != null) {
+                for (String branch : branches) {
+                    result.add(Utils.join(dir, branch));
+                }
+            }
+        }
+        return result;
+    }
 }
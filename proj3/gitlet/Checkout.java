@@ -0,0 +1,148 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static gitlet.Main.*;
+
+/** Brings the working directory from one commit's files to another's,
+ *  as checkout of a branch and reset do.
+ *
+ *  The two trees are diffed once (see Tree.diff), and only the files
+ *  that differ between them, plus tracked files whose working copies
+ *  the stat cache shows to have been changed, are written or deleted.
+ *  Nothing in the working directory is touched until every check has
+ *  passed and every new file's contents are ready: the contents are
+ *  first written, in parallel (see Workers), to temporary files in
+ *  CHECKOUT_DIR, and if any of those writes fails, the temporary files
+ *  are removed and the first failure (in order of file name) is
+ *  reported, leaving the working directory as it was.  Only then are the
+ *  temporary files renamed over the working files and the deleted files
+ *  removed.
+ *  @author hamza
+ */
+class Checkout {
+
+    /** Make the working files tracked in the tree with id FROM into the
+     *  files of the tree with id TO.  It is an error for a file of TO
+     *  that is not tracked in FROM to be in the way. */
+    static void run(String from, String to) throws IOException {
+        run(from, to, true);
+    }
+
+    /** As for run(FROM, TO), but if RESTORE is false, leave alone files
+     *  that are the same in FROM and TO even if their working copies have
+     *  been changed. */
+    static void run(String from, String to, boolean restore)
+        throws IOException {
+        List<Tree.Change> changes;
+        try (Trace.Phase phase = Trace.phase("diff")) {
+            changes = Tree.diff(from, to);
+        }
+        for (Tree.Change change : changes) {
+            if (change.before == null && change.after != null
+                && Utils.join(CWD, change.name).isFile()) {
+                throw Utils.error(UNTRACKED_IN_THE_WAY);
+            }
+        }
+        StatCache cache = StatCache.get();
+        List<String> names = new ArrayList<>();
+        List<String> shas = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        Set<String> changed = new HashSet<>();
+        for (Tree.Change change : changes) {
+            changed.add(change.name);
+            if (change.after == null) {
+                deleted.add(change.name);
+            }
+        }
+        if (restore) {
+            Trace.Phase phase = Trace.phase("scan");
+            for (Map.Entry<String, String> e : Tree.files(to).entrySet()) {
+                String name = e.getKey(), sha = e.getValue();
+                if (changed.contains(name)
+                    || !sha.equals(cache.hash(name))) {
+                    names.add(name);
+                    shas.add(sha);
+                }
+            }
+            phase.close();
+        } else {
+            for (Tree.Change change : changes) {
+                if (change.after != null) {
+                    names.add(change.name);
+                    shas.add(change.after);
+                }
+            }
+        }
+        List<File> temps;
+        try (Trace.Phase phase = Trace.phase("write")) {
+            temps = stage(shas);
+        }
+        List<Callable<Void>> moves = new ArrayList<>();
+        for (int k = 0; k < names.size(); k += 1) {
+            File tmp = temps.get(k), file = Utils.join(CWD, names.get(k));
+            moves.add(() -> {
+                Files.move(tmp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+                return null;
+            });
+        }
+        try (Trace.Phase phase = Trace.phase("move")) {
+            Workers.run(moves);
+        }
+        for (String name : deleted) {
+            File file = Utils.join(CWD, name);
+            if (file.exists()) {
+                Utils.restrictedDelete(file);
+            }
+            cache.forget(name);
+        }
+        for (int k = 0; k < names.size(); k += 1) {
+            cache.record(names.get(k), shas.get(k));
+        }
+        cache.save();
+    }
+
+    /** Write the contents of the blobs with ids SHAS to new temporary
+     *  files in CHECKOUT_DIR, in parallel, and return them in the same
+     *  order.  If any write fails, deletes them all and throws the first
+     *  failure. */
+    private static List<File> stage(List<String> shas) throws IOException {
+        CHECKOUT_DIR.mkdir();
+        List<File> temps = new ArrayList<>(shas.size());
+        List<Callable<Void>> writes = new ArrayList<>();
+        for (int k = 0; k < shas.size(); k += 1) {
+            File tmp = Utils.join(CHECKOUT_DIR, Integer.toString(k));
+            String sha = shas.get(k);
+            temps.add(tmp);
+            writes.add(() -> {
+                Blob.copyTo(sha, tmp);
+                return null;
+            });
+        }
+        try {
+            Workers.run(writes);
+        } catch (IOException | RuntimeException excp) {
+            for (File tmp : temps) {
+                tmp.delete();
+            }
+            throw excp;
+        }
+        return temps;
+    }
+
+    /** Message for a checkout that would overwrite an untracked file. */
+    static final String UNTRACKED_IN_THE_WAY =
+        " There is an untracked file in the way; delete it, or add and"
+        + " commit it first.";
+}
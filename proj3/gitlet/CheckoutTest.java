@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of checkout, reset and add of many files through Checkout and
+ *  Workers.
+ *  @author hamza
+ */
+public class CheckoutTest {
+
+    /** Write CONTENTS to the file NAME in DIR. */
+    private static void write(File dir, String name, String contents) {
+        Utils.writeContents(Utils.join(dir, name), contents);
+    }
+
+    /** Return the contents of the file NAME in DIR, or null if there is
+     *  none. */
+    private static String read(File dir, String name) {
+        File file = Utils.join(dir, name);
+        return file.isFile() ? Utils.readContentsAsString(file) : null;
+    }
+
+    @Test
+    public void switchBranches() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        write(dir, "a.txt", "a");
+        write(dir, "b.txt", "b");
+        write(dir, "c.txt", "c");
+        gitlet(dir, "add", ".");
+        gitlet(dir, "commit", "three files");
+        gitlet(dir, "branch", "other");
+        write(dir, "a.txt", "A");
+        write(dir, "d.txt", "d");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "add", "d.txt");
+        gitlet(dir, "rm", "b.txt");
+        gitlet(dir, "commit", "change");
+        write(dir, "c.txt", "local edit");
+        gitlet(dir, "checkout", "other");
+        assertEquals("a", read(dir, "a.txt"));
+        assertEquals("b", read(dir, "b.txt"));
+        assertEquals("c", read(dir, "c.txt"));
+        assertNull(read(dir, "d.txt"));
+        gitlet(dir, "checkout", "master");
+        assertEquals("A", read(dir, "a.txt"));
+        assertNull(read(dir, "b.txt"));
+        assertEquals("d", read(dir, "d.txt"));
+        String status = gitlet(dir, "status");
+        assertTrue(status.contains(
+            "=== Modifications Not Staged For Commit ===\n\n"));
+        assertTrue(status.contains("=== Untracked Files ===\n\n"));
+        assertFalse(Utils.join(dir, ".gitlet", "checkout").list().length
+                    > 0);
+        String id = gitlet(dir, "find", "three files").trim();
+        gitlet(dir, "reset", id.substring(0, 8));
+        assertEquals("a", read(dir, "a.txt"));
+        assertEquals("b", read(dir, "b.txt"));
+        assertNull(read(dir, "d.txt"));
+        Benchmark.clean(dir);
+    }
+
+    /** A checkout that would overwrite an untracked file must change
+     *  nothing. */
+    @Test
+    public void untrackedInTheWay() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        write(dir, "a.txt", "a");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "one");
+        gitlet(dir, "branch", "other");
+        write(dir, "a.txt", "A");
+        write(dir, "b.txt", "b");
+        gitlet(dir, "add", ".");
+        gitlet(dir, "commit", "two");
+        gitlet(dir, "checkout", "other");
+        write(dir, "b.txt", "untracked");
+        assertEquals(Checkout.UNTRACKED_IN_THE_WAY + "\n",
+                     gitlet(dir, "checkout", "master"));
+        assertEquals("a", read(dir, "a.txt"));
+        assertEquals("untracked", read(dir, "b.txt"));
+        assertTrue(gitlet(dir, "status").contains("=== Branches ===\n"
+                                                  + "master\n*other\n"));
+        Benchmark.clean(dir);
+    }
+
+    @Test
+    public void addAll() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        for (int k = 0; k < 20; k += 1) {
+            write(dir, "f" + k + ".txt", "file " + k);
+        }
+        gitlet(dir, "add", ".");
+        gitlet(dir, "commit", "twenty files");
+        write(dir, "f3.txt", "changed");
+        write(dir, "new.txt", "new");
+        gitlet(dir, "add", ".");
+        assertEquals(List.of("f3.txt", "new.txt"),
+                     Utils.plainFilenamesIn(Utils.join(dir, ".gitlet",
+                                                       "staged")));
+        Benchmark.clean(dir);
+    }
+
+    /** Of several failed tasks, the first in order is reported. */
+    @Test
+    public void firstFailureInOrder() {
+        int saved = Workers.count();
+        Workers.setCount(4);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int k = 0; k < 50; k += 1) {
+                int n = k;
+                tasks.add(() -> {
+                    if (n == 7 || n == 30) {
+                        throw new IOException("task " + n);
+                    }
+                    Thread.sleep(n % 3);
+                    return n;
+                });
+            }
+            try {
+                Workers.run(tasks);
+                fail("expected a failure");
+            } catch (IOException excp) {
+                assertEquals("task 7", excp.getMessage());
+            }
+            tasks.subList(7, 50).clear();
+            assertEquals(List.of(0, 1, 2, 3, 4, 5, 6), run(tasks));
+        } finally {
+            Workers.setCount(saved);
+        }
+    }
+
+    /** Return the results of TASKS, run by Workers. */
+    private static List<Integer> run(List<Callable<Integer>> tasks) {
+        try {
+            return Workers.run(tasks);
+        } catch (IOException excp) {
+            throw new AssertionError(excp);
+        }
+    }
+
+}
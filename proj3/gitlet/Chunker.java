@@ -0,0 +1,76 @@
+package gitlet;
+
+import java.util.Random;
+
+/** Content-defined chunking: splits a byte stream into chunks whose
+ *  boundaries depend only on the bytes around them, so that an insertion
+ *  or deletion changes only the chunks it touches, and the same content
+ *  is cut into the same chunks wherever it occurs.
+ *
+ *  A Gear hash (hash = 2 * hash + GEAR[byte]) is rolled over the stream;
+ *  since each byte is shifted out after 64 more, the top bits of the
+ *  hash depend only on the last WINDOW bytes.  A chunk ends where those
+ *  bits are all 0, which happens once every 2**MASK_BITS bytes on
+ *  average, but no chunk is shorter than MIN_SIZE bytes (except the
+ *  last) or longer than MAX_SIZE.  No boundary can come in a chunk's
+ *  first MIN_SIZE bytes, so all but the last WINDOW of those are skipped
+ *  without hashing.
+ *  @author hamza
+ */
+class Chunker {
+
+    /** Return the number of the LEN bytes of DATA starting at OFF that
+     *  complete the current chunk, after which the next chunk begins, or
+     *  -1 if all of them belong to the current chunk. */
+    int cut(byte[] data, int off, int len) {
+        int end = off + len;
+        int i = off;
+        if (size < MIN_SIZE - WINDOW) {
+            int skip = Math.min(MIN_SIZE - WINDOW - size, len);
+            size += skip;
+            i += skip;
+        }
+        for (; i < end; i += 1) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            size += 1;
+            if (size >= MIN_SIZE
+                && ((hash & MASK) == 0 || size >= MAX_SIZE)) {
+                size = 0;
+                return i + 1 - off;
+            }
+        }
+        return -1;
+    }
+
+    /** Return a table of 256 random 64-bit values, one for each byte.  It
+     *  must never change: chunks cut with a different table would not
+     *  match those already stored. */
+    private static long[] gear() {
+        Random rand = new Random(GEAR_SEED);
+        long[] gear = new long[256];
+        for (int b = 0; b < gear.length; b += 1) {
+            gear[b] = rand.nextLong();
+        }
+        return gear;
+    }
+
+    /** Shortest chunk. */
+    static final int MIN_SIZE = 16 << 10;
+    /** Longest chunk. */
+    static final int MAX_SIZE = 256 << 10;
+    /** Number of bits of the hash that must be 0 at a boundary. */
+    private static final int MASK_BITS = 16;
+    /** The bits of the hash that must be 0 at a boundary. */
+    private static final long MASK = -1L << (64 - MASK_BITS);
+    /** Number of trailing bytes the top bits of the hash depend on. */
+    private static final int WINDOW = 64;
+    /** Seed of the random values in GEAR. */
+    private static final long GEAR_SEED = 0x6769746c6574L;
+    /** Random value added to the hash for each byte value. */
+    private static final long[] GEAR = gear();
+
+    /** Rolling hash of the bytes so far. */
+    private long hash;
+    /** Number of bytes in the current chunk so far. */
+    private int size;
+}
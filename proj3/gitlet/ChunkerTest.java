@@ -0,0 +1,92 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of content-defined chunking.
+ *  @author hamza
+ */
+public class ChunkerTest {
+
+    /** Return the chunks that DATA is cut into, fed to a Chunker in
+     *  pieces of at most STEP bytes. */
+    private static List<String> chunks(byte[] data, int step) {
+        List<String> result = new ArrayList<>();
+        Chunker chunker = new Chunker();
+        int start = 0;
+        for (int off = 0; off < data.length; ) {
+            int len = Math.min(step, data.length - off);
+            int n = chunker.cut(data, off, len);
+            if (n < 0) {
+                off += len;
+            } else {
+                off += n;
+                int size = off - start;
+                assertTrue(size >= Chunker.MIN_SIZE);
+                assertTrue(size <= Chunker.MAX_SIZE);
+                result.add(Utils.sha1(Arrays.copyOfRange(data, start, off)));
+                start = off;
+            }
+        }
+        result.add(Utils.sha1(Arrays.copyOfRange(data, start, data.length)));
+        return result;
+    }
+
+    @Test
+    public void boundariesIndependentOfReads() {
+        byte[] data = new byte[4 << 20];
+        new Random(61).nextBytes(data);
+        List<String> whole = chunks(data, data.length);
+        assertTrue(whole.size() > 20);
+        assertEquals(whole, chunks(data, 1000));
+        assertEquals(whole, chunks(data, 65536));
+    }
+
+    @Test
+    public void insertionChangesFewChunks() {
+        byte[] data = new byte[4 << 20];
+        new Random(62).nextBytes(data);
+        byte[] edited = new byte[data.length + 10];
+        System.arraycopy(data, 0, edited, 10, 1 << 20);
+        System.arraycopy(data, 1 << 20, edited, (1 << 20) + 20,
+                         data.length - (1 << 20) - 10);
+        List<String> before = chunks(data, 65536);
+        Set<String> after = new HashSet<>(chunks(edited, 65536));
+        int changed = 0;
+        for (String chunk : before) {
+            if (!after.contains(chunk)) {
+                changed += 1;
+            }
+        }
+        assertTrue(changed <= 4);
+    }
+
+    @Test
+    public void repeatedContentCutAlike() {
+        byte[] block = new byte[1 << 20];
+        new Random(63).nextBytes(block);
+        byte[] data = new byte[3 * block.length + 777];
+        System.arraycopy(block, 0, data, 0, block.length);
+        System.arraycopy(block, 0, data, block.length + 777, block.length);
+        System.arraycopy(block, 0, data, 2 * block.length + 777,
+                         block.length);
+        List<String> chunks = chunks(data, 65536);
+        assertTrue(new HashSet<>(chunks).size() < chunks.size() * 2 / 3);
+    }
+
+    @Test
+    public void zerosCutAtMaxSize() {
+        byte[] data = new byte[Chunker.MAX_SIZE * 5];
+        List<String> chunks = chunks(data, data.length);
+        assertEquals(6, chunks.size());
+        assertEquals(2, new HashSet<>(chunks).size());
+    }
+
+}
@@ -0,0 +1,63 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/** A thin client for Gitlet.  Usage: java gitlet.Client ARGS, where ARGS
+ *  are as for Main.  If a Gitlet server (see Server) is running for the
+ *  repository in the current directory, the command is sent to it and
+ *  its output printed; otherwise the command runs here, as Main would
+ *  run it.
+ *  @author hamza
+ */
+public class Client {
+
+    /** Run the command ARGS, by way of the server if there is one. */
+    public static void main(String... args) throws IOException {
+        int status = args.length == 0 ? NO_SERVER : send(args, System.out);
+        if (status == NO_SERVER) {
+            Main.main(args);
+        } else if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /** Send the command ARGS to the server for the repository in the
+     *  current directory, copy what it prints to OUTPUT, and return its
+     *  exit status, or NO_SERVER if no server is running. */
+    static int send(String[] args, OutputStream output) throws IOException {
+        if (!Main.SOCKET.exists()) {
+            return NO_SERVER;
+        }
+        SocketChannel chan;
+        try {
+            chan = SocketChannel.open(
+                UnixDomainSocketAddress.of(Main.SOCKET.toPath()));
+        } catch (IOException excp) {
+            return NO_SERVER;
+        }
+        try (chan) {
+            DataOutputStream out =
+                new DataOutputStream(Channels.newOutputStream(chan));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            DataInputStream in =
+                new DataInputStream(Channels.newInputStream(chan));
+            int status = in.readInt();
+            output.write(in.readNBytes(in.readInt()));
+            output.flush();
+            return status;
+        }
+    }
+
+    /** Status returned by send when there is no server. */
+    static final int NO_SERVER = -1;
+}
@@ -0,0 +1,27 @@
+package gitlet;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/** A compression method for objects in the object database (see
+ *  Compression).
+ *  @author hamza
+ */
+interface Codec {
+
+    /** Return the number that marks objects compressed by this codec.
+     *  Codecs whose output is decompressed alike share a number. */
+    byte id();
+
+    /** Return this codec's name, as given to the gitlet.codec
+     *  property. */
+    String name();
+
+    /** Return a stream that writes the compressed form of what is written
+     *  to it to OUT, and closes OUT when it is closed. */
+    OutputStream compress(OutputStream out);
+
+    /** Return a stream over the decompressed form of IN, which closes IN
+     *  when it is closed. */
+    InputStream decompress(InputStream in);
+}
@@ -1,9 +1,17 @@
 package gitlet;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 
 import static gitlet.Main.*;
 
@@ -17,7 +25,9 @@ public class Commands {
 
 
     /**  Adds a copy of the file as it currently exists to the staging area
-     *   see the description of the commit command). For this reason, adding
+     *   see the description of the commit command). The copy is stored
+     *   in the object database right away, and the staging area records
+     *   only its id. For this reason, adding
      *   a file is also called staging the file for addition. Staging an
      *   already-staged file overwrites the previous entry in the staging
      *   area with the new contents. The staging area should be somewhere in
@@ -26,44 +36,71 @@ public class Commands {
      *   remove it from the staging area if it is already there (as can happen
      *   when a file is changed, added, and then changed back). The file will
      *   no longer be staged for removal (see gitlet rm), if it was at the time
-     *   of the command.
+     *   of the command. Adding "." adds every file in the working
+     *   directory (see addAll).
      * @param filename kjdshfkjhdfs
      *   */
 
     public static void add(String filename) throws IOException {
+        if (filename.equals(".")) {
+            addAll();
+            return;
+        }
         File addedFile = Utils.join(CWD, filename);
         if (!addedFile.exists()) {
-            System.out.println("File does not exist.");
-            System.exit(0);
+            throw Utils.error("File does not exist.");
         }
         File staged = Utils.join(STAGING_DIR, filename);
         File removeFile = Utils.join(STAGING_DIR_REMOVAL, filename);
         String commitSHA = Utils.readContentsAsString(HEAD);
-        Commit lastCommit = Utils.readObject(Utils.join(COMMIT_DIR,
-                commitSHA), Commit.class);
+        Commit lastCommit = ObjectStore.readCommit(commitSHA);
         if (removeFile.exists()) {
             removeFile.delete();
         }
-        if (lastCommit.mapping != null
-                && lastCommit.mapping.containsKey(filename)) {
-            String fileSHA = lastCommit.mapping.get(filename);
-            String contents = Utils.readContentsAsString(Utils.join(
-                    CONTENT_DIR, fileSHA));
-            String cwdcontents = Utils.readContentsAsString(addedFile);
-            if (cwdcontents.equals(contents)) {
-                if (staged.exists()) {
-                    staged.delete();
-                }
-                if (!removeFile.exists()) {
-                    removeFile.delete();
-                }
-            } else {
-                Utils.writeContents(staged, cwdcontents);
+        String fileSHA = lastCommit.fileId(filename);
+        StatCache cache = StatCache.get();
+        String sha = cache.hash(filename);
+        if (fileSHA != null && fileSHA.equals(sha)) {
+            if (staged.exists()) {
+                staged.delete();
             }
+        } else if (ObjectStore.hasBlob(sha)) {
+            Utils.writeContents(staged, sha);
         } else {
-            String contentsAsString = Utils.readContentsAsString(addedFile);
-            Utils.writeContents(staged, contentsAsString);
+            Utils.writeContents(staged, Blob.store(addedFile, fileSHA));
         }
+        cache.save();
+    }
+
+    /** Add every file in the working directory, as for add, hashing and
+     *  storing the files that may have changed in parallel (see
+     *  Workers). */
+    static void addAll() throws IOException {
+        StatCache cache = StatCache.get();
+        Map<String, String> shas =
+            cache.hashAll(Utils.plainFilenamesIn(CWD));
+        Commit lastCommit = ObjectStore.readCommit(getHead());
+        List<Callable<Void>> stores = new ArrayList<>();
+        for (Map.Entry<String, String> e : shas.entrySet()) {
+            String filename = e.getKey(), sha = e.getValue();
+            File staged = Utils.join(STAGING_DIR, filename);
+            Utils.join(STAGING_DIR_REMOVAL, filename).delete();
+            String fileSHA = lastCommit.fileId(filename);
+            if (sha.equals(fileSHA)) {
+                staged.delete();
+            } else if (ObjectStore.hasBlob(sha)) {
+                Utils.writeContents(staged, sha);
+            } else {
+                File addedFile = Utils.join(CWD, filename);
+                stores.add(() -> {
+                    Utils.writeContents(staged,
+                                        Blob.store(addedFile, fileSHA));
+                    return null;
+                });
+            }
+        }
+        Workers.run(stores);
+        cache.save();
     }
 
     /**
@@ -79,86 +116,70 @@ public class Commands {
     public static void remove(String filename) throws IOException {
         File file = Utils.join(STAGING_DIR, filename);
         String commitID = Utils.readContentsAsString(HEAD);
-        Commit lastCommit = Utils.readObject(Utils.join(
-                COMMIT_DIR, commitID), Commit.class);
-        if (!file.exists() && lastCommit.mapping != null
-                && !lastCommit.mapping.containsKey(filename)) {
-            System.out.println("No reason to remove the file.");
-            System.exit(0);
+        Commit lastCommit = ObjectStore.readCommit(commitID);
+        if (!file.exists() && !lastCommit.tracks(filename)) {
+            throw Utils.error("No reason to remove the file.");
         }
 
         if (file.exists()) {
             file.delete();
         }
-        if (lastCommit.mapping != null
-                && lastCommit.mapping.containsKey(filename)) {
+        if (lastCommit.tracks(filename)) {
             Utils.join(STAGING_DIR_REMOVAL, filename).createNewFile();
             Utils.restrictedDelete(Utils.join(CWD, filename));
         }
     }
 
-    /** Does log.
+    /** Starting at the commit with id LASTCOMMIT, displays information
+     *  about each commit backwards along the chain of first parents until
+     *  the initial commit.  The history is walked iteratively in the
+     *  commit graph, and messages come from the commit index, so no
+     *  commit is read, and output is buffered.
      * @param lastCommit hjdfk */
 
     public static void log(String lastCommit) {
-
-        File commitFile = Utils.join(COMMIT_DIR, lastCommit);
-        Commit thisCommit = Utils.readObject(commitFile, Commit.class);
-        String parentsha = thisCommit.parent;
-        if (parentsha == null) {
-            System.out.println("===");
-            System.out.println("commit " + lastCommit);
-            String dateStr = thisCommit.dateTime.format(
-                    DateTimeFormatter.ofPattern("EE MMM dd HH:mm:ss yyyy"));
-            System.out.println("Date: " + dateStr + " -0800");
-            System.out.println(thisCommit.message);
-        } else {
-            System.out.println("===");
-            System.out.println("commit " + lastCommit);
-            String dateStr = thisCommit.dateTime.format(
-                    DateTimeFormatter.ofPattern("EE MMM dd HH:mm:ss yyyy"));
-            System.out.println("Date: " + dateStr + " -0800");
-            System.out.println(thisCommit.message);
-            System.out.println();
-            log(parentsha);
+        PrintWriter out = output();
+        CommitGraph graph = CommitGraph.get();
+        CommitIndex index = CommitIndex.get();
+        boolean first = true;
+        for (int k = graph.find(lastCommit); k >= 0; k = graph.parent(k)) {
+            if (!first) {
+                out.println();
+            }
+            first = false;
+            out.println("===");
+            out.println("commit " + graph.id(k));
+            if (graph.secondParent(k) >= 0) {
+                out.println(mergeLine(graph.id(graph.parent(k)),
+                                      graph.id(graph.secondParent(k))));
+            }
+            String dateStr = graph.time(k).format(DATE_FORMAT);
+            out.println("Date: " + dateStr + " -0800");
+            out.println(index.message(graph.indexRecord(k)));
         }
+        out.flush();
     }
 
-    /** used for glonbakjdshfkjdfs.
+    /** Like log, except displays information about all commits ever
+     *  made, in the order they were made.  Reads only the commit index,
+     *  not the commits themselves.
      */
     public static void globalLog() {
-
-        if (COMMIT_DIR.exists() && COMMIT_DIR.listFiles() != null) {
-            for (String commitFile : Objects.requireNonNull(
-                    Utils.plainFilenamesIn(COMMIT_DIR),
-                    "Commit dir cannot be null")) {
-                if (!commitFile.equals("HEAD")) {
-                    File filewithcommit = Utils.join(COMMIT_DIR, commitFile);
-                    Commit thisCommit = Utils.readObject(filewithcommit,
-                            Commit.class);
-                    String parentsha = thisCommit.parent;
-                    if (parentsha == null) {
-                        System.out.println("===");
-                        System.out.println("commit " + commitFile);
-                        String dateStr = thisCommit.dateTime.format(
-                                DateTimeFormatter.ofPattern(
-                                        "EE MMM dd HH:mm:ss yyyy"));
-                        System.out.println("Date: " + dateStr + " -0800");
-                        System.out.println(thisCommit.message);
-                        System.out.println();
-                    } else {
-                        System.out.println("===");
-                        System.out.println("commit " + commitFile);
-                        String dateStr = thisCommit.dateTime.format(
-                                DateTimeFormatter.ofPattern(
-                                        "EE MMM dd HH:mm:ss yyyy"));
-                        System.out.println("Date: " + dateStr + " -0800");
-                        System.out.println(thisCommit.message);
-                        System.out.println();
-                    }
-                }
+        PrintWriter out = output();
+        CommitIndex index = CommitIndex.get();
+        for (int k = 0; k < index.size(); k += 1) {
+            out.println("===");
+            out.println("commit " + index.id(k));
+            if (index.secondParent(k) != null) {
+                out.println(mergeLine(index.parent(k),
+                                      index.secondParent(k)));
             }
+            String dateStr = index.time(k).format(DATE_FORMAT);
+            out.println("Date: " + dateStr + " -0800");
+            out.println(index.message(k));
+            out.println();
         }
+        out.flush();
     }
 
     /** Prints out the ids of all commits that have the given commit message,
@@ -166,28 +187,21 @@ public class Commands {
      *  If there are multiple such commits, it prints the ids out on separate
      *  lines.
      *  The commit message is a single operand. For multilword messages,
-     *  quotation used.
+     *  quotation used.  Answered from the commit index.
      *  @param message kjbjhb */
 
     public static void find(String message) {
-        if (COMMIT_DIR.exists() && COMMIT_DIR.listFiles() != null) {
-            boolean commitExists = false;
-            for (String commitFile : Objects.requireNonNull(
-                    Utils.plainFilenamesIn(COMMIT_DIR),
-                    "Commit dir cannot be null")) {
-                if (!commitFile.equals("HEAD")) {
-                    File filewithcommit = Utils.join(COMMIT_DIR, commitFile);
-                    Commit thisCommit = Utils.readObject(filewithcommit,
-                            Commit.class);
-                    if (thisCommit.message.equals(message)) {
-                        System.out.println(commitFile);
-                        commitExists = true;
-                    }
-                }
-            }
-            if (!commitExists) {
-                System.out.println("Found no commit with that message.");
-            }
+        CommitIndex index = CommitIndex.get();
+        List<String> ids = new ArrayList<>();
+        for (int k : index.find(message)) {
+            ids.add(index.id(k));
+        }
+        if (ids.isEmpty()) {
+            System.out.println("Found no commit with that message.");
+        }
+        Collections.sort(ids);
+        for (String id : ids) {
+            System.out.println(id);
         }
     }
 
@@ -214,18 +228,14 @@ public class Commands {
      === Untracked Files ===
      random.stuff
      .*/
-    public static void status() {
+    public static void status() throws IOException {
         String headbranch = Utils.readContentsAsString(HEAD_BRANCH);
         System.out.println("=== Branches ===");
-        if (ALL_BRANCHES.exists() && ALL_BRANCHES.list() != null
-            && Objects.requireNonNull(ALL_BRANCHES.list()).length != 0) {
-            for (String branchname: Objects.requireNonNull(
-                    ALL_BRANCHES.list())) {
-                if (headbranch.equals(branchname)) {
-                    System.out.println("*" + branchname);
-                } else {
-                    System.out.println(branchname);
-                }
+        for (String branchname : branchNames()) {
+            if (headbranch.equals(branchname)) {
+                System.out.println("*" + branchname);
+            } else {
+                System.out.println(branchname);
             }
         }
         System.out.println();
@@ -248,9 +258,20 @@ public class Commands {
             }
         }
         System.out.println();
+        List<String> modifications = new ArrayList<>();
+        List<String> untracked = new ArrayList<>();
+        StatCache cache = StatCache.get();
+        cache.scan(modifications, untracked);
+        cache.save();
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for (String line : modifications) {
+            System.out.println(line);
+        }
         System.out.println();
         System.out.println("=== Untracked Files ===");
+        for (String filename : untracked) {
+            System.out.println(filename);
+        }
         System.out.println();
     }
 
@@ -267,28 +288,16 @@ public class Commands {
 
     public static void checkoutFile(String filename, String commitid)
             throws IOException {
-        File commitfile = Utils.join(COMMIT_DIR, commitid);
-        if (!commitfile.exists()) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
+        if (!ObjectStore.hasCommit(commitid)) {
+            throw Utils.error("No commit with that id exists.");
         }
-        Commit headCommit = Utils.readObject(commitfile, Commit.class);
-        if (headCommit.mapping == null
-                || !headCommit.mapping.containsKey(filename)) {
-            System.out.println("File does not exist in the commit.");
-            System.exit(0);
+        Commit headCommit = ObjectStore.readCommit(commitid);
+        String filesha = headCommit.fileId(filename);
+        if (filesha == null) {
+            throw Utils.error("File does not exist in the commit.");
         } else {
             File cwdfile = Utils.join(CWD, filename);
-            String filesha = headCommit.mapping.get(filename);
-            String filecontents = Utils.readContentsAsString(Utils.join(
-                    CONTENT_DIR, filesha));
-            if (cwdfile.exists()) {
-                Utils.writeContents(cwdfile, filecontents);
-            } else if (!cwdfile.exists()) {
-                File newcwdfile =  Utils.join(CWD, filename);
-                newcwdfile.createNewFile();
-                Utils.writeContents(newcwdfile, filecontents);
-            }
+            Blob.copyTo(filesha, cwdfile);
         }
     }
     /** For Default, we simply pass in HeadCommit in CHECKOUTFILE.
@@ -301,31 +310,14 @@ public class Commands {
       *  the commit with the given id, and puts it in the
      * working directory, overwriting the version of the
       * file that's already there if there is one. The
-     * new version of the file is not staged.
+     * new version of the file is not staged. COMMITID may be any
+      * unique prefix of a commit id.
       * @param commitid dfjkjdf
       * @param filename jdkjfdk*/
 
     public static void checkoutCommit(String filename,
                                       String commitid) throws IOException {
-        int counter = 0;
-        String id = "";
-        for (String commitName: Objects.requireNonNull(
-                Utils.plainFilenamesIn(COMMIT_DIR),
-                "COMMIT DIRECTORY IS NULL.")) {
-            if (commitName.startsWith(commitid)) {
-                counter = counter + 1;
-                id = commitName;
-            }
-        }
-        if (counter == 0) {
-            System.out.println(" No commit with that id exists.");
-            System.exit(0);
-        } else if (counter > 1) {
-            System.out.println("More than 1 commits with the given name.");
-            System.exit(0);
-        } else {
-            checkoutFile(filename, id);
-        }
+        checkoutFile(filename, CommitIdTable.resolve(commitid));
     }
 
     /** 3- Takes all files in the commit at the head of the given
@@ -336,7 +328,8 @@ public class Commands {
      * (HEAD). Any files that are tracked in the current
     * but are not present in the checked-out branch are deleted.
      * The staging area is cleared, unless the checked-out
-    * branch is the current branch (see Failure cases).
+    * branch is the current branch (see Failure cases). Only the files
+     * that differ are written, in parallel, by Checkout.
      * @param checkoutbranch dhkjhdf */
     public static void checkoutBranch(String checkoutbranch)
             throws IOException {
@@ -345,57 +338,14 @@ public class Commands {
         checkdir(checkoutbranch);
         String checkoutcommitID = Utils.readContentsAsString(
                 Utils.join(ALL_BRANCHES, checkoutbranch));
-        Commit checkoutcommit = Utils.readObject(Utils.join(
-                COMMIT_DIR, checkoutcommitID), Commit.class);
-        Commit currentcommit = Utils.readObject(Utils.join(
-                COMMIT_DIR, currentcommitID), Commit.class);
-        if (checkoutcommit.mapping == null) {
-            checker(checkoutcommit, currentcommit);
-
-        } else {
-            for (String checkoutfile : checkoutcommit.
-                    mapping.keySet()) {
-                for (String fileinCWD : Objects.requireNonNull(
-                        Utils.plainFilenamesIn(CWD))) {
-                    if (fileinCWD.equals(checkoutfile)) {
-                        if (currentcommit.mapping != null
-                                && !currentcommit.mapping.containsKey(
-                                        checkoutfile)) {
-                            System.out.println(" There is an untracked file in"
-                                    + " the way; delete it, or add and"
-                                    + " commit it first.");
-                            System.exit(0);
-                        }
-                    }
-                }
-                String fileID = checkoutcommit.mapping.get(checkoutfile);
-                String contents = Utils.readContentsAsString(
-                        Utils.join(CONTENT_DIR, fileID));
-                Utils.writeContents(Utils.join(CWD, checkoutfile), contents);
-            }
-            if (currentcommit.mapping != null) {
-                for (String currentfile : currentcommit.mapping.keySet()) {
-                    if (!checkoutcommit.mapping.containsKey(currentfile)) {
-                        File todelete = Utils.join(CWD, currentfile);
-                        if (todelete.exists()) {
-                            Utils.restrictedDelete(todelete);
-                        }
-                    }
-                }
-            }
-            for (String checkoutfile : checkoutcommit.mapping.keySet()) {
-                checkoutCommit(checkoutfile, checkoutcommitID);
-            }
-            for (String currentfile : currentcommit.mapping.keySet()) {
-                if (!checkoutcommit.mapping.containsKey(currentfile)) {
-                    File todelete = Utils.join(CWD, currentfile);
-                    if (todelete.exists()) {
-                        Utils.restrictedDelete(todelete);
-                    }
-                }
-            }
-        }
-        deletedir(checkoutbranch);
+        Commit checkoutcommit = ObjectStore.readCommit(checkoutcommitID);
+        Commit currentcommit = ObjectStore.readCommit(currentcommitID);
+        Checkout.run(currentcommit.getTree(), checkoutcommit.getTree());
+        Map<File, String> refs = new LinkedHashMap<>();
+        refs.put(HEAD, checkoutcommitID);
+        refs.put(HEAD_BRANCH, checkoutbranch);
+        Refs.unstage(refs);
+        Refs.update(refs);
     }
 
     /** Checks the commits against one another.
@@ -403,9 +353,8 @@ public class Commands {
      * @param currentcommit  dkjfdskjfds
      */
     public static void checker(Commit checkoutcommit, Commit currentcommit) {
-        if (currentcommit.mapping != null) {
-            for (String currentfile : currentcommit.mapping.
-                    keySet()) {
+        if (currentcommit != null) {
+            for (String currentfile : currentcommit.files().keySet()) {
                 File todelete = Utils.join(CWD, currentfile);
                 if (todelete.exists()) {
                     Utils.restrictedDelete(todelete);
@@ -419,34 +368,30 @@ public class Commands {
     public static void checkdir(String checkoutbranch) {
         String currentBranch = Utils.readContentsAsString(HEAD_BRANCH);
         if (checkoutbranch.equals(currentBranch)) {
-            System.out.println("No need to checkout the current branch");
-            System.exit(0);
+            throw Utils.error("No need to checkout the current branch");
         }
-        if (!Objects.requireNonNull(Utils.plainFilenamesIn(
-                ALL_BRANCHES)).contains(checkoutbranch)) {
-            System.out.println("No such branch exists.");
-            System.exit(0);
+        if (!branchNames().contains(checkoutbranch)) {
+            throw Utils.error("No such branch exists.");
         }
     }
 
-    /** Deletes directories.
-     * @param checkoutbranch jdkjdfk */
-    public static void deletedir(String checkoutbranch) {
-        List<String> files = Utils.plainFilenamesIn(STAGING_DIR);
-        if (files != null && files.size() != 0) {
-            for (String filename : files) {
-                Utils.join(STAGING_DIR, filename).delete();
-            }
-        }
-        List<String> filesforremoval = Utils.plainFilenamesIn(
-                STAGING_DIR_REMOVAL);
-        if (filesforremoval != null && filesforremoval.size() != 0) {
-            for (String filename : filesforremoval) {
-                Utils.join(STAGING_DIR_REMOVAL, filename).delete();
+    /** Return the names of all branches, including those fetched from
+     *  remotes, which are named REMOTE/BRANCH (see Remote). */
+    static List<String> branchNames() {
+        List<String> names = new ArrayList<>();
+        String[] entries = ALL_BRANCHES.list();
+        for (String name : entries == null ? new String[0] : entries) {
+            File entry = Utils.join(ALL_BRANCHES, name);
+            if (entry.isDirectory()) {
+                List<String> fetched = Utils.plainFilenamesIn(entry);
+                for (String branch : Objects.requireNonNull(fetched)) {
+                    names.add(name + "/" + branch);
+                }
+            } else {
+                names.add(name);
             }
         }
-
-        Utils.writeContents(HEAD_BRANCH, checkoutbranch);
+        return names;
     }
 
     /** Deletes the branch with the given name. This only
@@ -455,17 +400,15 @@ public class Commands {
      *  delete all commits that were
      *  created under the branch, or anything like that.
      *  @param branchname dkj d*/
-    public static void rmbranch(String branchname) {
+    public static void rmbranch(String branchname) throws IOException {
         if (branchname.equals(Utils.readContentsAsString(HEAD_BRANCH))) {
-            System.out.println("Cannot remove the current branch.");
-            System.exit(0);
+            throw Utils.error("Cannot remove the current branch.");
         }
         File branchFile = Utils.join(ALL_BRANCHES, branchname);
         if (!branchFile.exists()) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            throw Utils.error("A branch with that name does not exist.");
         } else {
-            branchFile.delete();
+            Refs.update(branchFile, null);
         }
     }
 
@@ -475,51 +418,48 @@ public class Commands {
      *   to that commit node.
      *   See the intro for an example of what happens to the head pointer
      *   after using reset.
-     *   The [commit id] may be abbreviated as for checkout. The staging a
+     *   The [commit id] may be abbreviated as for checkout, and is
+     *   resolved through the CommitIdTable. The staging a
      *   rea is cleared. The
      *   command is essentially checkout of an arbitrary commit that also
      *   changes the current
-     *   branch head.
+     *   branch head, and like checkout it writes only the files that
+     *   differ (see Checkout).
      *   @param commitSHA igjg*/
     public static void reset(String commitSHA) throws IOException {
-        int counter = 0;
-        String id = "";
-        for (String commitName: Objects.requireNonNull(
-                Utils.plainFilenamesIn(COMMIT_DIR),
-                "COMMIT DIRECTORY IS NULL.")) {
-            if (commitName.startsWith(commitSHA)) {
-                counter = counter + 1;
-                id = commitName;
-            }
-        }
-        if (counter == 0) {
-            System.out.println(" No commit with that id exists.");
-            System.exit(0);
-        } else if (counter > 1) {
-            System.out.println("More than 1 commits with the given name.");
-            System.exit(0);
-        } else {
-            Commit checkoutcommit = Utils.readObject(
-                    Utils.join(COMMIT_DIR, id), Commit.class);
-            for (String filename : checkoutcommit.mapping.keySet()) {
-                checkoutCommit(filename, id);
-            }
-        }
-        List<String> files = Utils.plainFilenamesIn(STAGING_DIR);
-        if (files != null && files.size() != 0) {
-            for (String filename: files) {
-                Utils.join(STAGING_DIR, filename).delete();
-            }
-        }
-        List<String> filesforremoval = Utils.plainFilenamesIn(
-                STAGING_DIR_REMOVAL);
-        if (filesforremoval != null && filesforremoval.size() != 0) {
-            for (String filename: filesforremoval) {
-                Utils.join(STAGING_DIR_REMOVAL, filename).delete();
-            }
-        }
+        String id = CommitIdTable.resolve(commitSHA);
+        Commit checkoutcommit = ObjectStore.readCommit(id);
+        Commit currentcommit = ObjectStore.readCommit(getHead());
+        Checkout.run(currentcommit.getTree(), checkoutcommit.getTree());
         String branch = Utils.readContentsAsString(HEAD_BRANCH);
-        Utils.writeContents(Utils.join(BRANCHES_DIR, branch), id);
-        Utils.writeContents(HEAD, id);
+        Map<File, String> refs = new LinkedHashMap<>();
+        refs.put(Utils.join(ALL_BRANCHES, branch), id);
+        refs.put(HEAD, id);
+        Refs.unstage(refs);
+        Refs.update(refs);
     }
+
+    /** Return the line that log shows for a merge commit whose parents
+     *  have ids PARENT and SECOND. */
+    private static String mergeLine(String parent, String second) {
+        return "Merge: " + parent.substring(0, MERGE_ID_LENGTH) + " "
+            + second.substring(0, MERGE_ID_LENGTH);
+    }
+
+    /** Return a buffered writer on the standard output, which the caller
+     *  must flush (but not close). */
+    static PrintWriter output() {
+        return new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out), OUTPUT_BUFFER_SIZE));
+    }
+
+    /** Number of digits of parent ids shown for merge commits. */
+    private static final int MERGE_ID_LENGTH = 7;
+
+    /** Size of the buffer for long outputs. */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /** Format of commit dates in logs. */
+    static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("EE MMM dd HH:mm:ss yyyy");
 }
@@ -7,9 +7,13 @@ import java.io.Serializable;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 
 import static gitlet.Main.*;
 
@@ -63,6 +67,36 @@ public class Commit implements Serializable {
         this.dateTime = epochObject;
     }
 
+    /** A commit with message MESSAGETOSAVE, parent COMMITPARENT (null for
+     *  none), time DATETIME, and files MAP, as decoded by CommitCodec.
+     *  @param messagetosave kdsjfkldsjfk
+     *  @param commitParent jdksjkdfj
+     *  @param datetime kdsfjkfd
+     *  @param map jdkfjdkf */
+    Commit(String messagetosave, String commitParent, LocalDateTime datetime,
+           HashMap<String, String> map) {
+        this.message = messagetosave;
+        this.parent = commitParent;
+        this.dateTime = datetime;
+        this.mapping = map;
+    }
+
+    /** A commit with message MESSAGETOSAVE, parent COMMITPARENT (null for
+     *  none), time DATETIME, and the files of the tree with id TREEID, as
+     *  decoded by CommitCodec.
+     *  @param messagetosave kdsjfkldsjfk
+     *  @param commitParent jdksjkdfj
+     *  @param datetime kdsfjkfd
+     *  @param treeId jdkfjdkf */
+    Commit(String messagetosave, String commitParent, LocalDateTime datetime,
+           String treeId) {
+        this.message = messagetosave;
+        this.parent = commitParent;
+        this.dateTime = datetime;
+        this.mapping = null;
+        this.tree = treeId;
+    }
+
     /** constructor that takes in a message, a Localdatetime object,
      * and commit parents SHA-1 String.
      * @param datetime kdsfjkfd
@@ -70,35 +104,30 @@ public class Commit implements Serializable {
      * @param commitParent jdksjkdfj */
     public Commit(String commitParent, String messagetosave,
                   LocalDateTime datetime) throws IOException {
+        this(commitParent, null, messagetosave, datetime);
+    }
+
+    /** A new commit of the staged changes, as for the constructor above,
+     *  whose second parent is SECOND (null for none), as made by merge.
+     *  @param commitParent jdksjkdfj
+     *  @param second kdjfkdj
+     *  @param messagetosave jkdjkfj
+     *  @param datetime kdsfjkfd */
+    Commit(String commitParent, String second, String messagetosave,
+           LocalDateTime datetime) throws IOException {
         this.message = messagetosave;
         this.parent = commitParent;
-        this.dateTime = datetime;
-        Commit parentCommit = Utils.readObject(
-                Utils.join(COMMIT_DIR, commitParent), Commit.class);
-        if (parentCommit.mapping == null) {
-            this.mapping = new HashMap<String, String>();
-        } else {
-            this.mapping = Utils.deepClone(parentCommit.mapping);
-        }
+        this.secondParent = second;
+        this.dateTime = datetime.truncatedTo(ChronoUnit.MILLIS);
+        Commit parentCommit = ObjectStore.readCommit(commitParent);
+        HashMap<String, String> changes = new HashMap<>();
         List<String> stagedFilenames = Utils.plainFilenamesIn(STAGING_DIR);
 
         if (stagedFilenames != null && stagedFilenames.size() != 0) {
             for (String filename : stagedFilenames) {
                 File file = Utils.join(STAGING_DIR, filename);
-                String filecontents = Utils.readContentsAsString(file);
-                String updatedFileSHA = Utils.sha1(filecontents);
-                this.mapping.put(filename, updatedFileSHA);
-                File addChangedtoContents = Utils.join(
-                        CONTENT_DIR, updatedFileSHA);
-                try {
-                    addChangedtoContents.createNewFile();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    System.out.println("Cannot Create file with name: "
-                            + filename);
-                }
-                Utils.writeContents(addChangedtoContents, filecontents);
-                boolean deleted = file.delete();
+                String updatedFileSHA = Utils.readContentsAsString(file);
+                changes.put(filename, updatedFileSHA);
             }
         }
         if (STAGING_DIR_REMOVAL.list() != null
@@ -106,55 +135,92 @@ public class Commit implements Serializable {
                         STAGING_DIR_REMOVAL.list()).length != 0) {
             for (String forRemoval : Objects.requireNonNull(
                     Utils.plainFilenamesIn(STAGING_DIR_REMOVAL))) {
-                this.mapping.remove(forRemoval);
-                File removed = Utils.join(STAGING_DIR_REMOVAL, forRemoval);
-                removed.delete();
+                changes.put(forRemoval, null);
             }
         }
-        byte[] serializedCommit = Utils.serialize(this);
-        String id = Utils.sha1(serializedCommit);
-        File commitFile = Utils.join(COMMIT_DIR, id);
-        commitFile.createNewFile();
-        Utils.writeObject(commitFile, this);
-        Utils.writeContents(HEAD, id);
+        this.mapping = null;
+        try (Trace.Phase phase = Trace.phase("tree")) {
+            this.tree = Tree.update(parentCommit.getTree(), changes);
+        }
+        byte[] encodedCommit = CommitCodec.encode(this);
+        String id = Utils.sha1(encodedCommit);
+        try (Trace.Phase phase = Trace.phase("index")) {
+            ObjectStore.writeCommit(id, encodedCommit);
+            CommitIndex.add(id, this);
+            CommitGraph.add(id, this);
+        }
         String currentBranch = Utils.readContentsAsString(HEAD_BRANCH);
         File thisBranch = Utils.join(ALL_BRANCHES, currentBranch);
         if (!thisBranch.exists()) {
-            System.out.println("WTF current Branch: "
-                    + currentBranch + " doesnt exist!!!!");
-            System.exit(0);
+            throw Utils.error("WTF current Branch: %s doesnt exist!!!!",
+                              currentBranch);
+        }
+        Map<File, String> refs = new LinkedHashMap<>();
+        refs.put(HEAD, id);
+        refs.put(thisBranch, id);
+        try (Trace.Phase phase = Trace.phase("refs")) {
+            Refs.unstage(refs);
+            Refs.update(refs);
         }
-        Utils.writeContents(thisBranch, id);
     }
 
     /** The init method that uses the default constructor. */
     public static void init() {
-        byte[] serializedBlank = Utils.serialize(BLANK);
-        String id = Utils.sha1(serializedBlank);
-        File commitFile = Utils.join(COMMIT_DIR, id);
+        byte[] encodedBlank = CommitCodec.encode(BLANK);
+        String id = Utils.sha1(encodedBlank);
+        ObjectStore.writeCommit(id, encodedBlank);
+        CommitIndex.add(id, BLANK);
+        CommitGraph.add(id, BLANK);
+        Map<File, String> refs = new LinkedHashMap<>();
+        refs.put(HEAD, id);
+        refs.put(Utils.join(ALL_BRANCHES, "master"), id);
+        refs.put(HEAD_BRANCH, "master");
         try {
-            commitFile.createNewFile();
+            Refs.update(refs);
         } catch (IOException e) {
             e.printStackTrace();
-            System.out.println("Cannot create commit with id: " + id);
+            System.out.println("Cannot create the initial commit");
         }
-        Utils.writeContents(commitFile, serializedBlank);
-        Utils.writeContents(HEAD, id);
-        File headBranch = Utils.join(ALL_BRANCHES, "master");
-        try {
-            headBranch.createNewFile();
-        } catch (IOException e) {
-            e.printStackTrace();
-            System.out.println("Cannot Create master branch");
-        }
-        Utils.writeContents(headBranch, id);
-        Utils.writeContents(HEAD_BRANCH, "master");
     }
 
 
-    /** Hashmap MAPPING to store SHA-1 String: COMMIT mappings. */
+    /** Hashmap MAPPING to store SHA-1 String: COMMIT mappings.  Only
+     *  commits written by older versions of Gitlet have one; the files
+     *  of all others are in their TREE. */
     protected HashMap<String, String> mapping = new HashMap<String, String>();
 
+    /** Return the id of the tree of the files tracked by this commit,
+     *  first storing one built from MAPPING if this is an old commit. */
+    String getTree() {
+        if (tree == null) {
+            tree = mapping == null ? Tree.EMPTY : Tree.write(mapping);
+        }
+        return tree;
+    }
+
+    /** Return the blob id of the file named NAME in this commit, or null
+     *  if this commit does not track it. */
+    String fileId(String name) {
+        if (tree == null) {
+            return mapping == null ? null : mapping.get(name);
+        }
+        return Tree.get(tree, name);
+    }
+
+    /** Return true iff this commit tracks the file named NAME. */
+    boolean tracks(String name) {
+        return fileId(name) != null;
+    }
+
+    /** Return all the files tracked by this commit, as a map from names
+     *  to blob ids sorted by name.  This reads the whole tree. */
+    TreeMap<String, String> files() {
+        if (tree == null) {
+            return mapping == null ? new TreeMap<>() : new TreeMap<>(mapping);
+        }
+        return Tree.files(tree);
+    }
+
     /** Return the MESSAGE associated with this Commit. */
     public String getMessage() {
         return this.message;
@@ -170,6 +236,16 @@ public class Commit implements Serializable {
         return this.parent;
     }
 
+    /** Return the id of the second parent of this Commit, which only
+     *  merge commits have, or null. */
+    String getSecondParent() {
+        return this.secondParent;
+    }
+
+    /** Fixed so that commits serialized by older versions of Gitlet can
+     *  still be read (see CommitCodec). */
+    private static final long serialVersionUID = 7957799983746147250L;
+
     /** The first commit ever. */
     static final Commit BLANK = new Commit("initial commit");
 
@@ -182,4 +258,11 @@ public class Commit implements Serializable {
     /** The parent of the current commit. */
     protected String parent;
 
+    /** The second parent of a merge commit, or null. */
+    protected String secondParent;
+
+    /** The id of the tree of tracked files, or null for an old commit
+     *  that has only a MAPPING. */
+    protected String tree;
+
 }
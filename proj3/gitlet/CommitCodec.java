@@ -0,0 +1,253 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The binary encoding of commits, which is also what their ids are the
+ *  SHA-1 of.  An encoded commit is
+ *
+ *      MAGIC VERSION TIME NPARENTS PARENT... MESSAGE TREE
+ *
+ *  where VERSION is one byte, TIME is the commit time as 8-byte epoch
+ *  milliseconds (of the commit's LocalDateTime taken as UTC), NPARENTS
+ *  is one byte followed by that many 20-byte binary ids, MESSAGE is a
+ *  length-prefixed UTF-8 string, and TREE is the 20-byte id of the tree
+ *  of tracked files (see Tree).  Lengths are unsigned variable-length
+ *  integers (see Delta).
+ *
+ *  Version 1 of the encoding had, in place of TREE, the number of files
+ *  followed by each file's length-prefixed UTF-8 name and 20-byte blob
+ *  id, sorted by name.  Commits written before that are Java-serialized
+ *  objects.  decode reads all three, and migrate re-encodes the older
+ *  two in the current format.
+ *  @author hamza
+ */
+class CommitCodec {
+
+    /** Return the encoding of COMMIT. */
+    static byte[] encode(Commit commit) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+            64 + (commit.mapping == null ? 0 : 64 * commit.mapping.size()));
+        out.write(MAGIC, 0, MAGIC.length);
+        out.write(VERSION);
+        ByteBuffer time = ByteBuffer.allocate(8);
+        time.putLong(commit.getDateTime().toInstant(ZoneOffset.UTC)
+                     .toEpochMilli());
+        out.write(time.array(), 0, 8);
+        if (commit.getParent() == null) {
+            out.write(0);
+        } else if (commit.getSecondParent() == null) {
+            out.write(1);
+            out.write(Utils.fromHex(commit.getParent()), 0, Utils.SHA_BYTES);
+        } else {
+            out.write(2);
+            out.write(Utils.fromHex(commit.getParent()), 0, Utils.SHA_BYTES);
+            out.write(Utils.fromHex(commit.getSecondParent()), 0,
+                      Utils.SHA_BYTES);
+        }
+        writeString(out, commit.getMessage());
+        out.write(Utils.fromHex(commit.getTree()), 0, Utils.SHA_BYTES);
+        return out.toByteArray();
+    }
+
+    /** Return the commit whose encoding, or legacy Java serialization, is
+     *  DATA. */
+    static Commit decode(byte[] data) {
+        if (isLegacy(data)) {
+            return Utils.deserialize(data, Commit.class);
+        }
+        if (data.length < MAGIC.length + 1
+            || !Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw Utils.error("corrupt commit");
+        }
+        if (data[MAGIC.length] != VERSION && data[MAGIC.length] != 1) {
+            throw Utils.error("unknown commit format version %d",
+                              data[MAGIC.length]);
+        }
+        int[] pos = { MAGIC.length + 1 };
+        long millis = ByteBuffer.wrap(data, pos[0], 8).getLong();
+        pos[0] += 8;
+        int nparents = data[pos[0]];
+        pos[0] += 1;
+        List<String> parents = new ArrayList<>();
+        for (int k = 0; k < nparents; k += 1) {
+            parents.add(readSha(data, pos));
+        }
+        String message = readString(data, pos);
+        String parent = parents.isEmpty() ? null : parents.get(0);
+        LocalDateTime time =
+            LocalDateTime.ofInstant(Instant.ofEpochMilli(millis),
+                                    ZoneOffset.UTC);
+        if (data[MAGIC.length] != 1) {
+            Commit commit =
+                new Commit(message, parent, time, readSha(data, pos));
+            commit.secondParent = parents.size() > 1 ? parents.get(1) : null;
+            return commit;
+        }
+        int nfiles = (int) Delta.readNum(data, pos);
+        HashMap<String, String> mapping = new HashMap<>(
+            Math.max(16, 2 * nfiles));
+        for (int k = 0; k < nfiles; k += 1) {
+            String name = readString(data, pos);
+            mapping.put(name, readSha(data, pos));
+        }
+        return new Commit(message, parent, time, mapping);
+    }
+
+    /** Return true iff DATA is a Java-serialized commit, as written by
+     *  older versions of Gitlet. */
+    static boolean isLegacy(byte[] data) {
+        return data.length >= 2
+            && (data[0] & 0xff) == 0xac && (data[1] & 0xff) == 0xed;
+    }
+
+    /** Return true iff DATA is a commit in the current encoding. */
+    static boolean isCurrent(byte[] data) {
+        return data.length > MAGIC.length
+            && Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)
+            && data[MAGIC.length] == VERSION;
+    }
+
+    /** Re-encode every commit in an older format in the current
+     *  repository, together with all of its descendants (whose parent ids
+     *  change as a result), and point HEAD and the branches, those fetched
+     *  from remotes included, at the new ids.  Returns the number of
+     *  commits rewritten.  The refs all change together (see Refs), before
+     *  any old commit is removed. */
+    static int migrate() throws IOException {
+        List<String> ids = ObjectStore.commitIds();
+        Map<String, String> renamed = new HashMap<>();
+        Map<String, Commit> commits = new HashMap<>();
+        boolean anyOld = false;
+        for (String id : ids) {
+            byte[] data = ObjectStore.readCommitData(id);
+            anyOld |= !isCurrent(data);
+            commits.put(id, decode(data));
+        }
+        if (!anyOld) {
+            return 0;
+        }
+        for (String id : ids) {
+            rename(id, commits, renamed);
+        }
+        Map<File, String> refs = new LinkedHashMap<>();
+        for (File file : Branch.branchFiles()) {
+            String head = renamed.get(Utils.readContentsAsString(file));
+            if (head != null) {
+                refs.put(file, head);
+            }
+        }
+        refs.put(Main.HEAD,
+                 renamed.get(Utils.readContentsAsString(Main.HEAD)));
+        Refs.update(refs);
+        int count = 0;
+        for (Map.Entry<String, String> e : renamed.entrySet()) {
+            if (!e.getKey().equals(e.getValue())) {
+                count += 1;
+            }
+        }
+        ObjectStore.removeCommits(renamed.keySet(), renamed.values());
+        CommitIndex.get().rebuild();
+        CommitGraph.get().rebuild();
+        CommitIdTable.get().clear();
+        CommitIdTable.get();
+        return count;
+    }
+
+    /** Re-encode the commit with id ID and each of its ancestors, both
+     *  parents of merges included, that is not yet a key of RENAMED,
+     *  parents first, writing them and recording the new id of each in
+     *  RENAMED.  COMMITS maps every commit id to its commit. */
+    private static void rename(String id, Map<String, Commit> commits,
+                               Map<String, String> renamed) {
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            String old = stack.peek();
+            if (renamed.containsKey(old)) {
+                stack.pop();
+                continue;
+            }
+            Commit commit = commits.get(old);
+            String parent = commit.getParent(),
+                second = commit.getSecondParent();
+            boolean ready = true;
+            for (String p : new String[] { second, parent }) {
+                if (p != null && !renamed.containsKey(p)) {
+                    stack.push(p);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                stack.pop();
+                Commit copy = new Commit(commit.getMessage(),
+                                         parent == null ? null
+                                         : renamed.get(parent),
+                                         commit.getDateTime(),
+                                         commit.getTree());
+                copy.secondParent = second == null ? null
+                    : renamed.get(second);
+                byte[] data = encode(copy);
+                String id2 = Utils.sha1(data);
+                ObjectStore.writeCommit(id2, data);
+                renamed.put(old, id2);
+            }
+        }
+    }
+
+    /** Write the length-prefixed UTF-8 encoding of S to OUT. */
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        Delta.writeNum(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /** Return the length-prefixed UTF-8 string in DATA at POS[0],
+     *  advancing POS[0] past it. */
+    private static String readString(byte[] data, int[] pos) {
+        int len = (int) Delta.readNum(data, pos);
+        if (len < 0 || pos[0] + len > data.length) {
+            throw Utils.error("corrupt commit");
+        }
+        String result = new String(data, pos[0], len, StandardCharsets.UTF_8);
+        pos[0] += len;
+        return result;
+    }
+
+    /** Return the hexadecimal form of the 20-byte id in DATA at POS[0],
+     *  advancing POS[0] past it. */
+    private static String readSha(byte[] data, int[] pos) {
+        if (pos[0] + Utils.SHA_BYTES > data.length) {
+            throw Utils.error("corrupt commit");
+        }
+        char[] hex = new char[2 * Utils.SHA_BYTES];
+        for (int k = 0; k < Utils.SHA_BYTES; k += 1) {
+            int b = data[pos[0] + k] & 0xff;
+            hex[2 * k] = HEX_DIGITS[b >>> 4];
+            hex[2 * k + 1] = HEX_DIGITS[b & 0xf];
+        }
+        pos[0] += Utils.SHA_BYTES;
+        return new String(hex);
+    }
+
+    /** Marks the start of an encoded commit. */
+    private static final byte[] MAGIC = { 'G', 'L', 'C' };
+    /** Current version of the encoding. */
+    static final byte VERSION = 2;
+    /** Hexadecimal digits, by value. */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+}
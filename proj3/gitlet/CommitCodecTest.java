@@ -0,0 +1,210 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of the commit encoding.
+ *  @author hamza
+ */
+public class CommitCodecTest {
+
+    /** Return a commit with message MESSAGE, parent PARENT, and files
+     *  NAMES, whose contents are their names. */
+    private static Commit commit(String message, String parent,
+                                 String... names) {
+        HashMap<String, String> mapping = new HashMap<>();
+        for (String name : names) {
+            mapping.put(name, Utils.sha1(name));
+        }
+        return new Commit(message, parent,
+                          LocalDateTime.of(2021, 3, 4, 5, 6, 7, 8000000),
+                          mapping);
+    }
+
+    /** Check that A and B have the same contents. */
+    private static void assertSameCommit(Commit a, Commit b) {
+        assertEquals(a.getMessage(), b.getMessage());
+        assertEquals(a.getParent(), b.getParent());
+        assertEquals(a.getDateTime(), b.getDateTime());
+        assertEquals(a.mapping, b.mapping);
+        assertEquals(a.tree, b.tree);
+    }
+
+    @Test
+    public void roundTrip() {
+        Commit c = new Commit("\u00dcn\u00efcode message\nwith two lines",
+                              Utils.sha1("parent"),
+                              LocalDateTime.of(2021, 3, 4, 5, 6, 7, 8000000),
+                              Utils.sha1("tree"));
+        Commit copy = CommitCodec.decode(CommitCodec.encode(c));
+        assertSameCommit(c, copy);
+        assertEquals(c.getTree(), copy.getTree());
+        Commit root = new Commit("initial commit");
+        copy = CommitCodec.decode(CommitCodec.encode(root));
+        assertNull(copy.getParent());
+        assertEquals(root.getDateTime(), copy.getDateTime());
+        assertEquals(Tree.EMPTY, copy.getTree());
+    }
+
+    /** Decode a commit in version 1 of the encoding, which listed its
+     *  files instead of naming a tree. */
+    @Test
+    public void version1() {
+        Commit c = commit("old", Utils.sha1("parent"), "a.txt", "b.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('G');
+        out.write('L');
+        out.write('C');
+        out.write(1);
+        long millis = c.getDateTime().toInstant(ZoneOffset.UTC)
+            .toEpochMilli();
+        out.writeBytes(ByteBuffer.allocate(8).putLong(millis).array());
+        out.write(1);
+        out.writeBytes(Utils.fromHex(c.getParent()));
+        out.write(3);
+        out.writeBytes("old".getBytes());
+        out.write(2);
+        for (String name : new String[] { "a.txt", "b.txt" }) {
+            out.write(name.length());
+            out.writeBytes(name.getBytes());
+            out.writeBytes(Utils.fromHex(Utils.sha1(name)));
+        }
+        byte[] data = out.toByteArray();
+        assertFalse(CommitCodec.isCurrent(data));
+        assertSameCommit(c, CommitCodec.decode(data));
+    }
+
+    @Test
+    public void legacy() {
+        Commit c = commit("old", Utils.sha1("parent"), "a.txt");
+        byte[] data = Utils.serialize(c);
+        assertTrue(CommitCodec.isLegacy(data));
+        assertSameCommit(c, CommitCodec.decode(data));
+    }
+
+    /** Migrate a repository whose commits were all serialized, without
+     *  compression headers, some packed and some loose, after a first
+     *  attempt that crashed while changing the refs. */
+    @Test
+    public void migrate() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        Utils.writeContents(Utils.join(dir, "a.txt"), "a");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "gc");
+        File committed = Utils.join(dir, ".gitlet", "committed");
+        File format = Utils.join(dir, ".gitlet", "format");
+        File master = Utils.join(dir, ".gitlet", "branches", "AllBranches",
+                                 "master");
+        Commit root = new Commit("initial commit");
+        String parent = Utils.sha1(Utils.serialize(root));
+        Utils.writeContents(Utils.join(committed, parent),
+                            Utils.serialize(root));
+        for (int i = 0; i < 5; i += 1) {
+            Commit c = commit("legacy " + i, parent, "a.txt");
+            c.mapping.put("a.txt", Utils.sha1("a"));
+            byte[] data = Utils.serialize(c);
+            parent = Utils.sha1(data);
+            Utils.writeContents(Utils.join(committed, parent), data);
+            if (i == 2) {
+                format.delete();
+                gitlet(dir, "gc");
+            }
+        }
+        format.delete();
+        Utils.writeContents(Utils.join(committed, "HEAD"), parent);
+        Utils.writeContents(master, parent);
+        String before = gitlet(dir, "log").replaceAll("[0-9a-f]{40}", "ID");
+        gitletCrashingAt(dir, "refs", "migrate");
+        gitlet(dir, "migrate");
+        String head = Utils.readContentsAsString(master);
+        assertNotEquals(parent, head);
+        assertEquals(head, Utils.readContentsAsString(
+                         Utils.join(committed, "HEAD")));
+        assertEquals(before,
+                     gitlet(dir, "log").replaceAll("[0-9a-f]{40}", "ID"));
+        assertEquals(7, gitlet(dir, "global-log").split("===").length);
+        assertEquals("", gitlet(dir, "checkout", head.substring(0, 8),
+                                "--", "a.txt"));
+        assertEquals("a", Utils.readContentsAsString(Utils.join(dir,
+                                                                "a.txt")));
+        for (String id : Utils.plainFilenamesIn(committed)) {
+            if (!id.equals("HEAD")) {
+                assertTrue(CommitCodec.isCurrent(
+                    Utils.readContents(Utils.join(committed, id))));
+            }
+        }
+        Benchmark.clean(dir);
+    }
+
+    /** Migrate a repository with a merge, in the current format, of a
+     *  branch of serialized commits, which was also fetched from a
+     *  remote. */
+    @Test
+    public void migrateMerge() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        Utils.writeContents(Utils.join(dir, "a.txt"), "a");
+        Utils.writeContents(Utils.join(dir, "b.txt"), "b");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "add", "b.txt");
+        Utils.join(dir, ".gitlet", "staged", "a.txt").delete();
+        Utils.join(dir, ".gitlet", "staged", "b.txt").delete();
+        Utils.join(dir, "b.txt").delete();
+        File committed = Utils.join(dir, ".gitlet", "committed");
+        File branches = Utils.join(dir, ".gitlet", "branches", "AllBranches");
+        Commit root = new Commit("initial commit");
+        String rootId = Utils.sha1(Utils.serialize(root));
+        Utils.writeContents(Utils.join(committed, rootId),
+                            Utils.serialize(root));
+        Commit base = commit("base", rootId, "a.txt");
+        base.mapping.put("a.txt", Utils.sha1("a"));
+        String baseId = Utils.sha1(Utils.serialize(base));
+        Utils.writeContents(Utils.join(committed, baseId),
+                            Utils.serialize(base));
+        Commit m = commit("m", baseId, "a.txt", "b.txt");
+        m.mapping.put("a.txt", Utils.sha1("a"));
+        m.mapping.put("b.txt", Utils.sha1("b"));
+        String mId = Utils.sha1(Utils.serialize(m));
+        Utils.writeContents(Utils.join(committed, mId), Utils.serialize(m));
+        Utils.writeContents(Utils.join(committed, "HEAD"), baseId);
+        Utils.writeContents(Utils.join(branches, "master"), baseId);
+        Utils.writeContents(Utils.join(branches, "other"), mId);
+        File fetched = Utils.join(branches, "origin", "master");
+        fetched.getParentFile().mkdir();
+        Utils.writeContents(fetched, mId);
+        Utils.join(dir, ".gitlet", "format").delete();
+        Utils.writeContents(Utils.join(dir, "a.txt"), "a2");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "new");
+        gitlet(dir, "merge", "other");
+        String before = gitlet(dir, "log").replaceAll("[0-9a-f]{7,40}", "ID");
+        assertTrue(before, before.contains("Merged other into master."));
+
+        gitlet(dir, "migrate");
+        assertEquals(before,
+                     gitlet(dir, "log").replaceAll("[0-9a-f]{7,40}", "ID"));
+        assertEquals(6, gitlet(dir, "global-log").split("===").length);
+        String other = Utils.readContentsAsString(Utils.join(branches,
+                                                             "other"));
+        assertNotEquals(mId, other);
+        assertEquals(other, Utils.readContentsAsString(fetched));
+        assertEquals("", gitlet(dir, "checkout", other, "--", "b.txt"));
+        for (String id : Utils.plainFilenamesIn(committed)) {
+            if (!id.equals("HEAD")) {
+                assertTrue(CommitCodec.isCurrent(Compression.decode(
+                    Utils.readContents(Utils.join(committed, id)))));
+            }
+        }
+        Benchmark.clean(dir);
+    }
+
+}
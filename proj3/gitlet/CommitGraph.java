@@ -0,0 +1,530 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static gitlet.Main.*;
+
+/** The shape of the history: for each commit, its parents, its
+ *  generation number and its time, which lets log, merge and ancestry
+ *  checks walk the history without reading any commit.  It lives in the
+ *  append-only file COMMIT_GRAPH, which is memory-mapped when first
+ *  used, as
+ *
+ *      MAGIC VERSION RECORD...
+ *
+ *  where VERSION is a 4-byte int, and each RECORD is RECORD_SIZE bytes:
+ *  the commit's 20-byte binary id, the record numbers of its first and
+ *  second parents (-1 if absent), its generation, which is 1 for a
+ *  commit with no parents and otherwise one more than the largest
+ *  generation of its parents, its time in epoch milliseconds, and the
+ *  number of its record in the commit index (which has its message), or
+ *  -1.  Records are in topological order (parents first), so a record
+ *  number is a dense id for its commit, and an ancestor always has a
+ *  smaller generation than its descendants.
+ *
+ *  Commits are looked up by id in a lookup file beside the graph, which
+ *  holds, for the first M records, each commit's binary id followed by
+ *  its 4-byte record number, in ascending order of id, and is searched
+ *  by bisection.  The records after the first M are scanned linearly;
+ *  when there are more than MAX_PENDING of them, the lookup file is
+ *  rewritten to cover every record.
+ *
+ *  Commit appends to the graph as it creates each commit.  The graph is
+ *  rebuilt from the object database when it is missing, damaged, or
+ *  does not contain HEAD and every branch head, and is discarded
+ *  whenever the commit index is rebuilt.
+ *  @author hamza
+ */
+class CommitGraph {
+
+    /** Return the graph for the current repository, first rebuilding it
+     *  if it is out of date. */
+    static CommitGraph get() {
+        if (current == null) {
+            current = new CommitGraph(COMMIT_GRAPH);
+        }
+        if (!current.isValid() || !current.containsAll(CommitIndex.heads())
+            || !current.matches(CommitIndex.get())) {
+            current.rebuild();
+        }
+        return current;
+    }
+
+    /** Forget the current repository's graph, so that the next get reads
+     *  it from its file again. */
+    static void reload() {
+        current = null;
+    }
+
+    /** Add the commit COMMIT with id ID, whose parents must already be
+     *  present, to the current repository's graph.  COMMIT must already
+     *  be in the commit index. */
+    static void add(String id, Commit commit) {
+        CommitGraph graph = get();
+        if (graph.find(id) < 0) {
+            graph.append(List.of(id), List.of(commit),
+                         List.of(CommitIndex.get().indexOf(id)));
+        }
+    }
+
+    /** Delete the current repository's graph, so that it is rebuilt when
+     *  next used. */
+    static void discard() {
+        if (current != null) {
+            current.close();
+        }
+        COMMIT_GRAPH.delete();
+        lookupFile(COMMIT_GRAPH).delete();
+    }
+
+    /** A graph kept in FILE. */
+    CommitGraph(File file) {
+        this.file = file;
+        this.lookupFile = lookupFile(file);
+    }
+
+    /** Return the number of commits in the graph. */
+    int size() {
+        load();
+        return count;
+    }
+
+    /** Return the id of commit number K. */
+    String id(int k) {
+        load();
+        byte[] sha = new byte[Utils.SHA_BYTES];
+        records.get(pos(k) + ID_POS, sha);
+        return Utils.toHex(sha);
+    }
+
+    /** Return the number of the first parent of commit number K, or -1 if
+     *  it has none. */
+    int parent(int k) {
+        load();
+        return records.getInt(pos(k) + PARENT_POS);
+    }
+
+    /** Return the number of the second parent of commit number K, or -1 if
+     *  it has none. */
+    int secondParent(int k) {
+        load();
+        return records.getInt(pos(k) + PARENT2_POS);
+    }
+
+    /** Return the generation of commit number K. */
+    int generation(int k) {
+        load();
+        return records.getInt(pos(k) + GENERATION_POS);
+    }
+
+    /** Return the time of commit number K. */
+    LocalDateTime time(int k) {
+        load();
+        return LocalDateTime.ofInstant(
+            Instant.ofEpochMilli(records.getLong(pos(k) + TIME_POS)),
+            ZoneOffset.UTC);
+    }
+
+    /** Return the number of the record of commit number K in the commit
+     *  index, or -1 if it has none. */
+    int indexRecord(int k) {
+        load();
+        return records.getInt(pos(k) + INDEX_POS);
+    }
+
+    /** Return the number of the commit with id ID, or -1 if it is not in
+     *  the graph. */
+    int find(String id) {
+        if (id == null || id.length() != Utils.UID_LENGTH) {
+            return -1;
+        }
+        load();
+        byte[] key = Utils.fromHex(id);
+        byte[] probe = new byte[Utils.SHA_BYTES];
+        int sorted = lookup.limit() / LOOKUP_SIZE;
+        int lo = 0, hi = sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            lookup.get(mid * LOOKUP_SIZE, probe);
+            if (Arrays.compareUnsigned(probe, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo < sorted) {
+            lookup.get(lo * LOOKUP_SIZE, probe);
+            int k = lookup.getInt(lo * LOOKUP_SIZE + Utils.SHA_BYTES);
+            if (Arrays.equals(probe, key) && k >= 0 && k < count
+                && id(k).equals(id)) {
+                return k;
+            }
+        }
+        for (int k = count - 1; k >= sorted; k -= 1) {
+            records.get(pos(k) + ID_POS, probe);
+            if (Arrays.equals(probe, key)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the id of a latest common ancestor of the commits with ids
+     *  A and B, or null if they have none. */
+    String mergeBase(String a, String b) {
+        int base = mergeBase(find(a), find(b));
+        return base < 0 ? null : id(base);
+    }
+
+    /** Return true iff commit number A is commit number B or one of its
+     *  ancestors.  Only commits of higher generation than A are
+     *  searched. */
+    boolean isAncestor(int a, int b) {
+        if (a < 0 || b < 0) {
+            return false;
+        }
+        int floor = generation(a);
+        HashSet<Integer> seen = new HashSet<>();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        stack.push(b);
+        while (!stack.isEmpty()) {
+            int k = stack.pop();
+            if (k == a) {
+                return true;
+            }
+            if (generation(k) > floor) {
+                for (int p : new int[] { parent(k), secondParent(k) }) {
+                    if (p >= 0 && seen.add(p)) {
+                        stack.push(p);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Return true iff the commit with id A is the commit with id B or
+     *  one of its ancestors. */
+    boolean isAncestor(String a, String b) {
+        return isAncestor(find(a), find(b));
+    }
+
+    /** Return the number of a latest common ancestor of commits number A
+     *  and B, or -1 if they have none.  Commits are visited from the
+     *  highest generation down, each marked with which of A and B it is
+     *  an ancestor of.  Since every descendant of a commit has a higher
+     *  generation, a commit's marks are complete by the time it is
+     *  visited, and the first commit marked for both is a common
+     *  ancestor that no other common ancestor descends from.  The walk
+     *  stops there, so it never goes below that ancestor's generation. */
+    int mergeBase(int a, int b) {
+        if (a < 0 || b < 0) {
+            return -1;
+        }
+        Map<Integer, Integer> marks = new HashMap<>();
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        marks.put(a, FROM_A);
+        queue.add(entry(a));
+        if (marks.merge(b, FROM_B, (x, y) -> x | y) == FROM_B) {
+            queue.add(entry(b));
+        }
+        while (!queue.isEmpty()) {
+            int k = (int) (queue.poll() & 0xffffffffL);
+            int mark = marks.get(k);
+            if (mark == (FROM_A | FROM_B)) {
+                return k;
+            }
+            for (int p : new int[] { parent(k), secondParent(k) }) {
+                if (p >= 0) {
+                    int old = marks.getOrDefault(p, 0);
+                    if ((old | mark) != old) {
+                        marks.put(p, old | mark);
+                        if (old == 0) {
+                            queue.add(entry(p));
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Append the commits COMMITS, whose ids and commit index records
+     *  are the corresponding elements of IDS and INDEXRECORDS, to this
+     *  graph.  Each commit's parents must come before it in COMMITS or
+     *  already be in the graph. */
+    void append(List<String> ids, List<Commit> commits,
+                List<Integer> indexRecords) {
+        Map<String, Integer> added = new HashMap<>();
+        List<Integer> generations = new ArrayList<>();
+        int n = size();
+        ByteBuffer recs = ByteBuffer.allocate(ids.size() * RECORD_SIZE);
+        for (int i = 0; i < ids.size(); i += 1) {
+            Commit commit = commits.get(i);
+            int p1 = locate(commit.getParent(), added),
+                p2 = locate(commit.getSecondParent(), added);
+            int gen = 1 + Math.max(generationOf(p1, n, generations),
+                                   generationOf(p2, n, generations));
+            recs.put(Utils.fromHex(ids.get(i))).putInt(p1).putInt(p2)
+                .putInt(gen)
+                .putLong(commit.getDateTime().toInstant(ZoneOffset.UTC)
+                         .toEpochMilli())
+                .putInt(indexRecords.get(i));
+            added.put(ids.get(i), n + i);
+            generations.add(gen);
+        }
+        try (RandomAccessFile r = new RandomAccessFile(file, "rw")) {
+            long end = r.length() < HEADER_SIZE ? 0
+                : HEADER_SIZE + (long) n * RECORD_SIZE;
+            if (end == 0) {
+                r.write(ByteBuffer.allocate(HEADER_SIZE).put(MAGIC)
+                        .putInt(VERSION).array());
+                end = HEADER_SIZE;
+            }
+            r.seek(end);
+            r.write(recs.array());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        close();
+        load();
+        if (count - lookup.limit() / LOOKUP_SIZE > MAX_PENDING) {
+            writeLookup();
+        }
+    }
+
+    /** Rewrite the lookup file to cover every record. */
+    private void writeLookup() {
+        byte[][] entries = new byte[count][LOOKUP_SIZE];
+        for (int k = 0; k < count; k += 1) {
+            records.get(pos(k) + ID_POS, entries[k], 0, Utils.SHA_BYTES);
+            ByteBuffer.wrap(entries[k]).putInt(Utils.SHA_BYTES, k);
+        }
+        Arrays.sort(entries, Arrays::compareUnsigned);
+        ByteBuffer buf = ByteBuffer.allocate(count * LOOKUP_SIZE);
+        for (byte[] entry : entries) {
+            buf.put(entry);
+        }
+        close();
+        try {
+            File tmp = Utils.join(lookupFile.getParentFile(),
+                                  lookupFile.getName() + ".tmp");
+            Utils.writeContents(tmp, buf.array());
+            Files.move(tmp.toPath(), lookupFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Discard this graph and re-create it from every commit in the
+     *  object database. */
+    void rebuild() {
+        CommitIndex index = CommitIndex.get();
+        close();
+        file.delete();
+        lookupFile.delete();
+        Map<String, Commit> commits = new HashMap<>();
+        for (String id : ObjectStore.commitIds()) {
+            commits.put(id, ObjectStore.readCommit(id));
+        }
+        List<String> order = new ArrayList<>();
+        Map<String, Boolean> done = new HashMap<>();
+        for (String root : commits.keySet()) {
+            ArrayDeque<String> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                String id = stack.peek();
+                if (done.containsKey(id)) {
+                    stack.pop();
+                    if (!done.get(id)) {
+                        done.put(id, true);
+                        order.add(id);
+                    }
+                    continue;
+                }
+                done.put(id, false);
+                Commit commit = commits.get(id);
+                for (String p : new String[] { commit.getSecondParent(),
+                                               commit.getParent() }) {
+                    if (p != null && !done.containsKey(p)
+                        && commits.containsKey(p)) {
+                        stack.push(p);
+                    }
+                }
+            }
+        }
+        Map<String, Integer> indexed = new HashMap<>();
+        for (int k = 0; k < index.size(); k += 1) {
+            indexed.put(index.id(k), k);
+        }
+        List<Commit> ordered = new ArrayList<>();
+        List<Integer> indexRecords = new ArrayList<>();
+        for (String id : order) {
+            ordered.add(commits.get(id));
+            indexRecords.add(indexed.getOrDefault(id, -1));
+        }
+        append(order, ordered, indexRecords);
+    }
+
+    /** Return the number of the commit with id ID, which is either the
+     *  key of an entry in ADDED or in this graph, or -1 if ID is null. */
+    private int locate(String id, Map<String, Integer> added) {
+        if (id == null) {
+            return -1;
+        }
+        Integer k = added.get(id);
+        if (k == null) {
+            k = find(id);
+            if (k < 0) {
+                throw Utils.error("commit %s is not in the commit graph",
+                                  id);
+            }
+        }
+        return k;
+    }
+
+    /** Return the generation of commit number K (0 if K is -1), where
+     *  commits numbered N and above are being appended and have the
+     *  generations GENERATIONS. */
+    private int generationOf(int k, int n, List<Integer> generations) {
+        return k < 0 ? 0 : k >= n ? generations.get(k - n) : generation(k);
+    }
+
+    /** Return the queue entry for commit number K, which orders entries
+     *  by decreasing generation. */
+    private long entry(int k) {
+        return ((long) -generation(k) << 32) | k;
+    }
+
+    /** Return true iff this graph exists and is well formed. */
+    private boolean isValid() {
+        if (!file.isFile() || file.length() < HEADER_SIZE
+            || (file.length() - HEADER_SIZE) % RECORD_SIZE != 0) {
+            return false;
+        }
+        load();
+        byte[] magic = new byte[MAGIC.length];
+        records.get(0, magic);
+        return Arrays.equals(magic, MAGIC)
+            && records.getInt(MAGIC.length) == VERSION;
+    }
+
+    /** Return true iff the newest commit in this graph refers to its own
+     *  record in INDEX, as a check that INDEX has not been rebuilt since
+     *  this graph was. */
+    private boolean matches(CommitIndex index) {
+        int n = size();
+        if (n == 0) {
+            return true;
+        }
+        int k = indexRecord(n - 1);
+        return k >= 0 && k < index.size() && index.id(k).equals(id(n - 1));
+    }
+
+    /** Return true iff every commit id in IDS is in the graph. */
+    private boolean containsAll(List<String> ids) {
+        for (String id : ids) {
+            if (find(id) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the byte position of record K. */
+    private static int pos(int k) {
+        return HEADER_SIZE + k * RECORD_SIZE;
+    }
+
+    /** Map the graph and lookup files into memory, if not already
+     *  done.  A lookup file that covers more records than there are is
+     *  left over from an older graph, and is ignored. */
+    private void load() {
+        if (records != null) {
+            return;
+        }
+        records = map(file);
+        count = Math.max(0, (records.limit() - HEADER_SIZE) / RECORD_SIZE);
+        lookup = map(lookupFile);
+        if (lookup.limit() % LOOKUP_SIZE != 0
+            || lookup.limit() / LOOKUP_SIZE > count) {
+            lookup = ByteBuffer.allocate(0);
+        }
+    }
+
+    /** Forget the mapped files, so that the next access reloads them. */
+    private void close() {
+        records = lookup = null;
+        count = 0;
+    }
+
+    /** Return the contents of FILE mapped into memory (empty if FILE does
+     *  not exist). */
+    private static ByteBuffer map(File file) {
+        if (!file.isFile()) {
+            return ByteBuffer.allocate(0);
+        }
+        try (FileChannel chan = FileChannel.open(file.toPath())) {
+            return chan.map(FileChannel.MapMode.READ_ONLY, 0, chan.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the lookup file of the graph kept in FILE. */
+    private static File lookupFile(File file) {
+        return new File(file.getPath() + "-lookup");
+    }
+
+    /** The graph of the current repository, once opened. */
+    private static CommitGraph current;
+
+    /** Marks the start of the graph file. */
+    private static final byte[] MAGIC = { 'G', 'C', 'G', 'R' };
+    /** Current version of the file format. */
+    private static final int VERSION = 2;
+    /** Size of the file header. */
+    private static final int HEADER_SIZE = MAGIC.length + 4;
+    /** Offsets of the fields of a record. */
+    private static final int
+        ID_POS = 0,
+        PARENT_POS = ID_POS + Utils.SHA_BYTES,
+        PARENT2_POS = PARENT_POS + 4,
+        GENERATION_POS = PARENT2_POS + 4,
+        TIME_POS = GENERATION_POS + 4,
+        INDEX_POS = TIME_POS + 8;
+    /** Size of a record. */
+    private static final int RECORD_SIZE = INDEX_POS + 4;
+    /** Size of an entry in the lookup file. */
+    private static final int LOOKUP_SIZE = Utils.SHA_BYTES + 4;
+    /** Largest number of records not in the lookup file. */
+    static final int MAX_PENDING = 1024;
+    /** Marks on commits visited by mergeBase. */
+    private static final int FROM_A = 1, FROM_B = 2;
+
+    /** The graph and lookup files. */
+    private final File file, lookupFile;
+    /** The mapped graph and lookup files, or null if not loaded. */
+    private ByteBuffer records, lookup;
+    /** The number of records. */
+    private int count;
+}
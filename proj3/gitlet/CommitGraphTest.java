@@ -0,0 +1,178 @@
+package gitlet;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests that the commit graph agrees with the commits themselves as the
+ *  history changes.  The graph is of the repository in the current
+ *  directory, so the checks run main in the test's repository.
+ *  @author hamza
+ */
+public class CommitGraphTest {
+
+    /** Write CONTENTS to the file NAME in DIR, then add and commit it
+     *  with message MESSAGE. */
+    private static void commit(File dir, String name, String contents,
+                               String message) throws Exception {
+        Utils.writeContents(Utils.join(dir, name), contents);
+        gitlet(dir, "add", name);
+        gitlet(dir, "commit", message);
+    }
+
+    /** Check that the graph of the repository in DIR is consistent. */
+    private static void check(File dir) throws Exception {
+        java(dir, "64m", CommitGraphTest.class, "consistent");
+    }
+
+    @Test
+    public void consistentAfterChanges() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        check(dir);
+        commit(dir, "a.txt", "a0\n", "a0");
+        check(dir);
+        gitlet(dir, "branch", "other");
+        check(dir);
+        commit(dir, "a.txt", "a1\n", "a1");
+        String a1 = Utils.readContentsAsString(
+            Utils.join(dir, ".gitlet", "committed", "HEAD"));
+        gitlet(dir, "checkout", "other");
+        commit(dir, "b.txt", "b1\n", "b1");
+        gitlet(dir, "merge", "master");
+        check(dir);
+        commit(dir, "b.txt", "b2\n", "b2");
+        gitlet(dir, "reset", a1.substring(0, 8));
+        check(dir);
+        commit(dir, "c.txt", "c\n", "after reset");
+        check(dir);
+        Utils.join(dir, ".gitlet", "commit-graph").delete();
+        gitlet(dir, "branch", "third");
+        check(dir);
+        assertEquals(4, gitlet(dir, "log").split("===\n").length - 1);
+        Benchmark.clean(dir);
+    }
+
+    /** Look up commits in a graph of more than twice MAX_PENDING commits,
+     *  so that most are found through the lookup file and the rest by
+     *  scanning, both in the graph that appended them and in one that
+     *  reads it afresh. */
+    @Test
+    public void findMany() throws Exception {
+        File dir = tempDir();
+        File file = Utils.join(dir, "commit-graph");
+        CommitGraph graph = new CommitGraph(file);
+        List<String> ids = new ArrayList<>();
+        String parent = null;
+        LocalDateTime time = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = 0; i < 2 * CommitGraph.MAX_PENDING + 100; i += 100) {
+            List<String> batch = new ArrayList<>();
+            List<Commit> commits = new ArrayList<>();
+            List<Integer> records = new ArrayList<>();
+            for (int j = i; j < i + 100; j += 1) {
+                String id = Utils.sha1("commit " + j);
+                commits.add(new Commit("commit " + j, parent,
+                                       time.plusMinutes(j), new HashMap<>()));
+                batch.add(id);
+                records.add(j);
+                parent = id;
+            }
+            graph.append(batch, commits, records);
+            ids.addAll(batch);
+        }
+        assertTrue(new File(file.getPath() + "-lookup").isFile());
+        for (CommitGraph g : List.of(graph, new CommitGraph(file))) {
+            assertEquals(ids.size(), g.size());
+            for (int k = 0; k < ids.size(); k += 1) {
+                assertEquals(k, g.find(ids.get(k)));
+            }
+            assertEquals(-1, g.find(Utils.sha1("missing")));
+        }
+        Benchmark.clean(dir);
+    }
+
+    /** Check that the graph of the repository in the current directory
+     *  has every commit, with the same parents, time and message as the
+     *  commit itself, in topological order with correct generations, and
+     *  that its ancestor queries agree with a walk of the commits.
+     *  Throws an exception, so that main fails, otherwise. */
+    public static void main(String... args) {
+        CommitGraph graph = CommitGraph.get();
+        CommitIndex index = CommitIndex.get();
+        List<String> ids = ObjectStore.commitIds();
+        require(graph.size() == ids.size(), "graph has %d of %d commits",
+                graph.size(), ids.size());
+        for (String id : ids) {
+            Commit commit = ObjectStore.readCommit(id);
+            int k = graph.find(id);
+            require(k >= 0, "%s missing", id);
+            int p1 = graph.parent(k), p2 = graph.secondParent(k);
+            require(p1 < k && p2 < k, "%s out of order", id);
+            require(Objects.equals(commit.getParent(), idOf(graph, p1))
+                    && Objects.equals(commit.getSecondParent(),
+                                      idOf(graph, p2)),
+                    "%s has wrong parents", id);
+            int gen = 1 + Math.max(p1 < 0 ? 0 : graph.generation(p1),
+                                   p2 < 0 ? 0 : graph.generation(p2));
+            require(graph.generation(k) == gen, "%s has wrong generation",
+                    id);
+            require(graph.time(k).equals(commit.getDateTime()),
+                    "%s has wrong time", id);
+            require(index.message(graph.indexRecord(k))
+                    .equals(commit.message), "%s has wrong message", id);
+        }
+        for (String a : ids) {
+            for (String b : ids) {
+                require(graph.isAncestor(a, b) == isAncestor(a, b),
+                        "isAncestor(%s, %s) is wrong", a, b);
+            }
+        }
+    }
+
+    /** Return the id of commit number K in GRAPH, or null if K is -1. */
+    private static String idOf(CommitGraph graph, int k) {
+        return k < 0 ? null : graph.id(k);
+    }
+
+    /** Return true iff commit A is commit B or one of its ancestors,
+     *  found by reading the commits. */
+    private static boolean isAncestor(String a, String b) {
+        HashSet<String> seen = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(b);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (id.equals(a)) {
+                return true;
+            }
+            if (seen.add(id)) {
+                Commit commit = ObjectStore.readCommit(id);
+                for (String p : new String[] { commit.getParent(),
+                                               commit.getSecondParent() }) {
+                    if (p != null) {
+                        stack.push(p);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Throw an exception with message String.format(MSG, ARGS) unless
+     *  COND. */
+    private static void require(boolean cond, String msg, Object... args) {
+        if (!cond) {
+            throw new IllegalStateException(String.format(msg, args));
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static gitlet.Main.*;
+
+/** A table of every commit id, for resolving abbreviated ids in
+ *  O(log N) time.  It lives in COMMIT_IDS_DIR as two files of 20-byte
+ *  binary ids: "sorted", in ascending order, which is searched by
+ *  bisection, and "pending", a short unsorted log of recent additions
+ *  that is scanned linearly.  When the log grows past MAX_PENDING
+ *  entries, it is merged into the sorted file.
+ *
+ *  The table is kept in step with the commit index (see CommitIndex):
+ *  it holds exactly the ids of the index's records, and picks up new
+ *  records each time it is opened.  If the two disagree, the table is
+ *  rebuilt from the index.
+ *  @author hamza
+ */
+class CommitIdTable {
+
+    /** Return the table for the current repository, brought up to date
+     *  with the commit index. */
+    static CommitIdTable get() {
+        return of(CommitIndex.get());
+    }
+
+    /** Return the table for the current repository, brought up to date
+     *  with INDEX, its commit index, without first bringing INDEX up to
+     *  date (as CommitIndex does when asking whether it is). */
+    static CommitIdTable of(CommitIndex index) {
+        if (current == null) {
+            current = new CommitIdTable(COMMIT_IDS_DIR);
+        }
+        int n = current.size();
+        if (n > index.size()
+            || (n > 0 && !current.contains(index.id(n - 1)))) {
+            current.clear();
+            n = 0;
+        }
+        if (n < index.size()) {
+            List<String> ids = new ArrayList<>();
+            for (int k = n; k < index.size(); k += 1) {
+                ids.add(index.id(k));
+            }
+            current.add(ids);
+        }
+        return current;
+    }
+
+    /** Forget the current repository's table, so that the next get reads
+     *  it from its files again. */
+    static void reload() {
+        current = null;
+    }
+
+    /** Return the full id of the unique commit whose id starts with
+     *  PREFIX in the current repository.  Throws a GitletException if
+     *  there is no such commit or more than one. */
+    static String resolve(String prefix) {
+        List<String> ids = get().startingWith(prefix, 2);
+        if (ids.isEmpty()) {
+            throw Utils.error("No commit with that id exists.");
+        } else if (ids.size() > 1) {
+            throw Utils.error("More than 1 commits with the given name.");
+        }
+        return ids.get(0);
+    }
+
+    /** A table whose files are in DIR. */
+    CommitIdTable(File dir) {
+        this.dir = dir;
+        this.sortedFile = Utils.join(dir, "sorted");
+        this.pendingFile = Utils.join(dir, "pending");
+    }
+
+    /** Return the number of ids in this table. */
+    int size() {
+        load();
+        return (sorted.limit() + pending.limit()) / Utils.SHA_BYTES;
+    }
+
+    /** Return true iff the full id ID is in this table. */
+    boolean contains(String id) {
+        return startingWith(id, 1).contains(id);
+    }
+
+    /** Return up to LIMIT distinct ids in this table that start with the
+     *  hexadecimal numeral PREFIX, in no particular order. */
+    List<String> startingWith(String prefix, int limit) {
+        load();
+        List<String> result = new ArrayList<>();
+        if (prefix.length() > Utils.UID_LENGTH
+            || !prefix.matches("[0-9a-fA-F]*")) {
+            return result;
+        }
+        prefix = prefix.toLowerCase();
+        byte[] low = Utils.fromHex(padded(prefix, '0'));
+        byte[] probe = new byte[Utils.SHA_BYTES];
+        int lo = 0, hi = sorted.limit() / Utils.SHA_BYTES;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            sorted.get(mid * Utils.SHA_BYTES, probe);
+            if (Arrays.compareUnsigned(probe, low) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < sorted.limit() / Utils.SHA_BYTES
+                 && result.size() < limit; k += 1) {
+            sorted.get(k * Utils.SHA_BYTES, probe);
+            String id = Utils.toHex(probe);
+            if (!id.startsWith(prefix)) {
+                break;
+            }
+            if (!result.contains(id)) {
+                result.add(id);
+            }
+        }
+        for (int p = 0; p < pending.limit() && result.size() < limit;
+             p += Utils.SHA_BYTES) {
+            pending.get(p, probe);
+            String id = Utils.toHex(probe);
+            if (id.startsWith(prefix) && !result.contains(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Add the full ids IDS to this table. */
+    void add(List<String> ids) {
+        dir.mkdirs();
+        try (RandomAccessFile out = new RandomAccessFile(pendingFile, "rw")) {
+            out.seek(out.length() - out.length() % Utils.SHA_BYTES);
+            ByteBuffer buf = ByteBuffer.allocate(ids.size() * Utils.SHA_BYTES);
+            for (String id : ids) {
+                buf.put(Utils.fromHex(id));
+            }
+            out.write(buf.array());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        close();
+        if (pendingFile.length() / Utils.SHA_BYTES > MAX_PENDING) {
+            merge();
+        }
+    }
+
+    /** Merge the pending ids into the sorted file. */
+    void merge() {
+        load();
+        int n = size();
+        byte[][] ids = new byte[n][];
+        for (int k = 0; k < n; k += 1) {
+            ids[k] = new byte[Utils.SHA_BYTES];
+            if (k * Utils.SHA_BYTES < sorted.limit()) {
+                sorted.get(k * Utils.SHA_BYTES, ids[k]);
+            } else {
+                pending.get(k * Utils.SHA_BYTES - sorted.limit(), ids[k]);
+            }
+        }
+        Arrays.sort(ids, Arrays::compareUnsigned);
+        ByteBuffer buf = ByteBuffer.allocate(n * Utils.SHA_BYTES);
+        for (byte[] id : ids) {
+            buf.put(id);
+        }
+        close();
+        try {
+            File tmp = Utils.join(dir, "sorted.tmp");
+            Utils.writeContents(tmp, buf.array());
+            Files.move(tmp.toPath(), sortedFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        pendingFile.delete();
+    }
+
+    /** Remove all ids from this table. */
+    void clear() {
+        close();
+        sortedFile.delete();
+        pendingFile.delete();
+    }
+
+    /** Return PREFIX extended to a full-length id with copies of
+     *  FILL. */
+    private static String padded(String prefix, char fill) {
+        StringBuilder result = new StringBuilder(prefix);
+        while (result.length() < Utils.UID_LENGTH) {
+            result.append(fill);
+        }
+        return result.toString();
+    }
+
+    /** Map the two files into memory, if not already done. */
+    private void load() {
+        if (sorted == null) {
+            sorted = map(sortedFile);
+            pending = map(pendingFile);
+            pending.limit(pending.limit() - pending.limit() % Utils.SHA_BYTES);
+        }
+    }
+
+    /** Forget the mapped files, so that the next access reloads them. */
+    private void close() {
+        sorted = pending = null;
+    }
+
+    /** Return the contents of FILE mapped into memory (empty if FILE does
+     *  not exist). */
+    private static ByteBuffer map(File file) {
+        if (!file.isFile()) {
+            return ByteBuffer.allocate(0);
+        }
+        try (FileChannel chan = FileChannel.open(file.toPath())) {
+            return chan.map(FileChannel.MapMode.READ_ONLY, 0, chan.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The table of the current repository, once opened. */
+    private static CommitIdTable current;
+
+    /** Largest number of pending ids before they are merged. */
+    static final int MAX_PENDING = 1024;
+
+    /** Directory holding the table. */
+    private final File dir;
+    /** The sorted and pending files. */
+    private final File sortedFile, pendingFile;
+    /** The mapped sorted and pending files, or null if not loaded. */
+    private ByteBuffer sorted, pending;
+}
@@ -0,0 +1,43 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of abbreviated commit-id resolution.
+ *  @author hamza
+ */
+public class CommitIdTableTest {
+
+    @Test
+    public void resolvePrefixes() throws Exception {
+        File dir = tempDir();
+        CommitIdTable table = new CommitIdTable(dir);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3 * CommitIdTable.MAX_PENDING; i += 1) {
+            ids.add(Utils.sha1("commit " + i));
+        }
+        for (int i = 0; i < ids.size(); i += 100) {
+            table.add(ids.subList(i, Math.min(i + 100, ids.size())));
+        }
+        assertEquals(ids.size(), table.size());
+        for (String id : ids) {
+            assertTrue(table.contains(id));
+            assertEquals(List.of(id), table.startingWith(id, 2));
+            assertEquals(List.of(id),
+                         table.startingWith(id.substring(0, 9), 2));
+        }
+        assertEquals(2, table.startingWith("", 2).size());
+        assertEquals(2, table.startingWith("a", 2).size());
+        assertTrue(table.startingWith("xyz", 2).isEmpty());
+        assertFalse(table.contains(Utils.sha1("other")));
+        table.clear();
+        assertEquals(0, table.size());
+        Benchmark.clean(dir);
+    }
+
+}
@@ -0,0 +1,415 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static gitlet.Main.*;
+
+/** An index of all commits that lets find and global-log run without
+ *  deserializing any commit.  It lives in COMMIT_INDEX_DIR as four
+ *  files:
+ *
+ *    records   one RECORD_SIZE-byte record per commit, in the order the
+ *              commits were indexed: the 20-byte binary id, the ids of
+ *              the first and second parents (all zero if absent), the
+ *              commit time in epoch milliseconds, and the offset and
+ *              length of its message in the messages file.
+ *    messages  the commit messages (UTF-8), back to back.
+ *    find-sorted, find-pending
+ *              an inverted index from messages to commits: for each
+ *              commit, an 8-byte hash of its message followed by its
+ *              4-byte record number.  As in CommitIdTable, the entries
+ *              of find-sorted are in ascending order and are searched by
+ *              bisection, and find-pending is a short unsorted log of
+ *              recent entries, merged into find-sorted when it grows
+ *              past MAX_PENDING entries.
+ *
+ *  The records and messages files are append-only.  Commit appends to
+ *  the index as it creates each commit.  The records file is written
+ *  last, so a crash leaves at worst entries in the other files that no
+ *  record refers to, which are ignored.  The index is rebuilt from the
+ *  object database when it is missing, damaged, or does not contain
+ *  HEAD and every branch head (as happens when commits were made by an
+ *  older Gitlet).  Whether it contains them is asked of the
+ *  CommitIdTable, which holds the same ids sorted, so that neither the
+ *  check nor Commit's test for an already indexed commit scans the
+ *  records.
+ *  @author hamza
+ */
+class CommitIndex {
+
+    /** Return the index for the current repository, first rebuilding it
+     *  if it is out of date. */
+    static CommitIndex get() {
+        if (current == null) {
+            current = new CommitIndex(COMMIT_INDEX_DIR);
+        }
+        if (!current.isValid() || !current.containsAll(heads())) {
+            current.rebuild();
+        }
+        return current;
+    }
+
+    /** Forget the current repository's index, so that the next get reads
+     *  it from its files again. */
+    static void reload() {
+        current = null;
+    }
+
+    /** Add the commit COMMIT with id ID to the current repository's
+     *  index. */
+    static void add(String id, Commit commit) {
+        CommitIndex index = get();
+        if (!index.containsAll(List.of(id))) {
+            index.append(List.of(id), List.of(commit));
+        }
+    }
+
+    /** An index whose files are in DIR. */
+    CommitIndex(File dir) {
+        this.dir = dir;
+        this.recordsFile = Utils.join(dir, "records");
+        this.messagesFile = Utils.join(dir, "messages");
+        this.sortedFindFile = Utils.join(dir, "find-sorted");
+        this.pendingFindFile = Utils.join(dir, "find-pending");
+    }
+
+    /** Return the number of indexed commits. */
+    int size() {
+        load();
+        return count;
+    }
+
+    /** Return the id of the Kth indexed commit. */
+    String id(int k) {
+        return sha(k, ID_POS);
+    }
+
+    /** Return the id of the first parent of the Kth indexed commit, or
+     *  null if it has none. */
+    String parent(int k) {
+        return sha(k, PARENT_POS);
+    }
+
+    /** Return the id of the second parent of the Kth indexed commit, or
+     *  null if it has none. */
+    String secondParent(int k) {
+        return sha(k, PARENT2_POS);
+    }
+
+    /** Return the time of the Kth indexed commit. */
+    LocalDateTime time(int k) {
+        load();
+        long millis = records.getLong(k * RECORD_SIZE + TIME_POS);
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis),
+                                       ZoneOffset.UTC);
+    }
+
+    /** Return the message of the Kth indexed commit. */
+    String message(int k) {
+        load();
+        long offset = records.getLong(k * RECORD_SIZE + MESSAGE_POS);
+        int len = records.getInt(k * RECORD_SIZE + LENGTH_POS);
+        byte[] bytes = new byte[len];
+        messages.get((int) offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Return the numbers of the records of all commits whose message is
+     *  MESSAGE, in increasing order. */
+    List<Integer> find(String message) {
+        load();
+        long hash = hash(message);
+        int lo = 0, hi = sortedFinds.limit() / FIND_SIZE;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(sortedFinds.getLong(mid * FIND_SIZE),
+                                     hash) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        TreeSet<Integer> result = new TreeSet<>();
+        for (int p = lo * FIND_SIZE;
+             p < sortedFinds.limit() && sortedFinds.getLong(p) == hash;
+             p += FIND_SIZE) {
+            found(sortedFinds.getInt(p + 8), message, result);
+        }
+        for (int p = 0; p < pendingFinds.limit(); p += FIND_SIZE) {
+            if (pendingFinds.getLong(p) == hash) {
+                found(pendingFinds.getInt(p + 8), message, result);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Add K to RESULT if it is the number of a record whose message is
+     *  MESSAGE. */
+    private void found(int k, String message, Set<Integer> result) {
+        if (k < count && message(k).equals(message)) {
+            result.add(k);
+        }
+    }
+
+    /** Append the commits COMMITS, whose ids are the corresponding
+     *  elements of IDS, to this index. */
+    void append(List<String> ids, List<Commit> commits) {
+        dir.mkdirs();
+        try (RandomAccessFile m = new RandomAccessFile(messagesFile, "rw");
+             RandomAccessFile f = new RandomAccessFile(pendingFindFile,
+                                                       "rw");
+             RandomAccessFile r = new RandomAccessFile(recordsFile, "rw")) {
+            long offset = m.length();
+            int k = (int) (r.length() / RECORD_SIZE);
+            ByteArrayOutputStream msgs = new ByteArrayOutputStream();
+            ByteBuffer fnd = ByteBuffer.allocate(ids.size() * FIND_SIZE);
+            ByteBuffer recs = ByteBuffer.allocate(ids.size() * RECORD_SIZE);
+            for (int i = 0; i < ids.size(); i += 1) {
+                Commit commit = commits.get(i);
+                byte[] msg =
+                    commit.getMessage().getBytes(StandardCharsets.UTF_8);
+                msgs.write(msg, 0, msg.length);
+                fnd.putLong(hash(commit.getMessage())).putInt(k + i);
+                recs.put(binary(ids.get(i))).put(binary(commit.getParent()))
+                    .put(binary(commit.getSecondParent()))
+                    .putLong(commit.getDateTime().toInstant(ZoneOffset.UTC)
+                             .toEpochMilli())
+                    .putLong(offset).putInt(msg.length);
+                offset += msg.length;
+            }
+            m.seek(m.length());
+            m.write(msgs.toByteArray());
+            f.seek(f.length() - f.length() % FIND_SIZE);
+            f.write(fnd.array());
+            r.seek((long) k * RECORD_SIZE);
+            r.write(recs.array());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        close();
+        if (pendingFindFile.length() / FIND_SIZE > MAX_PENDING) {
+            mergeFinds();
+        }
+    }
+
+    /** Merge the pending find entries into the sorted ones. */
+    private void mergeFinds() {
+        load();
+        int n = (sortedFinds.limit() + pendingFinds.limit()) / FIND_SIZE;
+        byte[][] entries = new byte[n][FIND_SIZE];
+        for (int k = 0; k < n; k += 1) {
+            if (k * FIND_SIZE < sortedFinds.limit()) {
+                sortedFinds.get(k * FIND_SIZE, entries[k]);
+            } else {
+                pendingFinds.get(k * FIND_SIZE - sortedFinds.limit(),
+                                 entries[k]);
+            }
+        }
+        Arrays.sort(entries, Arrays::compareUnsigned);
+        ByteBuffer buf = ByteBuffer.allocate(n * FIND_SIZE);
+        for (byte[] entry : entries) {
+            buf.put(entry);
+        }
+        close();
+        try {
+            File tmp = Utils.join(dir, "find-sorted.tmp");
+            Utils.writeContents(tmp, buf.array());
+            Files.move(tmp.toPath(), sortedFindFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        pendingFindFile.delete();
+    }
+
+    /** Discard this index and re-create it from every commit in the
+     *  object database, oldest first. */
+    void rebuild() {
+        close();
+        CommitGraph.discard();
+        recordsFile.delete();
+        messagesFile.delete();
+        sortedFindFile.delete();
+        pendingFindFile.delete();
+        List<String> ids = ObjectStore.commitIds();
+        List<Commit> commits = new ArrayList<>();
+        for (String id : ids) {
+            Commit commit = ObjectStore.readCommit(id);
+            Commit summary = new Commit(commit.getMessage());
+            summary.parent = commit.getParent();
+            summary.secondParent = commit.getSecondParent();
+            summary.dateTime = commit.getDateTime();
+            commits.add(summary);
+        }
+        Integer[] order = new Integer[ids.size()];
+        for (int i = 0; i < order.length; i += 1) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(
+            (Integer i) -> commits.get(i).getDateTime()));
+        List<String> sortedIds = new ArrayList<>();
+        List<Commit> sortedCommits = new ArrayList<>();
+        for (int i : order) {
+            sortedIds.add(ids.get(i));
+            sortedCommits.add(commits.get(i));
+        }
+        append(sortedIds, sortedCommits);
+    }
+
+    /** Return true iff this index exists and its files are consistent
+     *  with one another. */
+    private boolean isValid() {
+        if (!recordsFile.isFile() || !messagesFile.isFile()
+            || recordsFile.length() % RECORD_SIZE != 0) {
+            return false;
+        }
+        int n = size();
+        return n == 0
+            || records.getLong((n - 1) * RECORD_SIZE + MESSAGE_POS)
+               + records.getInt((n - 1) * RECORD_SIZE + LENGTH_POS)
+               <= messages.limit();
+    }
+
+    /** Return the number of the record of the commit with id ID, or -1
+     *  if it is not indexed.  Searches from the newest record back. */
+    int indexOf(String id) {
+        byte[] key = binary(id);
+        byte[] probe = new byte[Utils.SHA_BYTES];
+        for (int k = size() - 1; k >= 0; k -= 1) {
+            records.get(k * RECORD_SIZE + ID_POS, probe);
+            if (Arrays.equals(probe, key)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /** Return true iff every commit id in IDS is indexed in the current
+     *  repository's index, which must be this one. */
+    private boolean containsAll(List<String> ids) {
+        CommitIdTable table = CommitIdTable.of(this);
+        for (String id : ids) {
+            if (!table.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the ids of HEAD and of every branch head, including the
+     *  branches fetched from remotes (see Remote). */
+    static List<String> heads() {
+        List<String> result = new ArrayList<>();
+        if (HEAD.isFile()) {
+            result.add(Utils.readContentsAsString(HEAD));
+        }
+        for (File branch : Branch.branchFiles()) {
+            result.add(Utils.readContentsAsString(branch));
+        }
+        return result;
+    }
+
+    /** Return the id stored at byte POS of the Kth record, or null if it
+     *  is all zeros. */
+    private String sha(int k, int pos) {
+        load();
+        byte[] sha = new byte[Utils.SHA_BYTES];
+        records.get(k * RECORD_SIZE + pos, sha);
+        return Arrays.equals(sha, NO_SHA) ? null : Utils.toHex(sha);
+    }
+
+    /** Return the 20-byte binary form of ID, or all zeros if ID is
+     *  null. */
+    private static byte[] binary(String id) {
+        return id == null ? NO_SHA : Utils.fromHex(id);
+    }
+
+    /** Return the hash under which MESSAGE is entered in the find
+     *  files. */
+    private static long hash(String message) {
+        return ByteBuffer.wrap(Utils.fromHex(Utils.sha1(message)))
+            .getLong();
+    }
+
+    /** Map the four files into memory, if not already done. */
+    private void load() {
+        if (records != null) {
+            return;
+        }
+        records = map(recordsFile);
+        messages = map(messagesFile);
+        sortedFinds = map(sortedFindFile);
+        pendingFinds = map(pendingFindFile);
+        pendingFinds.limit(pendingFinds.limit()
+                           - pendingFinds.limit() % FIND_SIZE);
+        count = records.limit() / RECORD_SIZE;
+    }
+
+    /** Forget the mapped files, so that the next access reloads them. */
+    private void close() {
+        records = messages = sortedFinds = pendingFinds = null;
+        count = 0;
+    }
+
+    /** Return the contents of FILE mapped into memory (empty if FILE does
+     *  not exist). */
+    private static ByteBuffer map(File file) {
+        if (!file.isFile()) {
+            return ByteBuffer.allocate(0);
+        }
+        try (FileChannel chan = FileChannel.open(file.toPath())) {
+            return chan.map(FileChannel.MapMode.READ_ONLY, 0, chan.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The index of the current repository, once opened. */
+    private static CommitIndex current;
+
+    /** Stands for a missing parent. */
+    private static final byte[] NO_SHA = new byte[Utils.SHA_BYTES];
+    /** Offsets of the fields of a record. */
+    private static final int
+        ID_POS = 0,
+        PARENT_POS = ID_POS + Utils.SHA_BYTES,
+        PARENT2_POS = PARENT_POS + Utils.SHA_BYTES,
+        TIME_POS = PARENT2_POS + Utils.SHA_BYTES,
+        MESSAGE_POS = TIME_POS + 8,
+        LENGTH_POS = MESSAGE_POS + 8;
+    /** Size of a record. */
+    private static final int RECORD_SIZE = LENGTH_POS + 4;
+    /** Size of a find entry. */
+    private static final int FIND_SIZE = 12;
+    /** Largest number of pending find entries before they are merged. */
+    static final int MAX_PENDING = 1024;
+
+    /** Directory holding the index. */
+    private final File dir;
+    /** The records, messages, and find files. */
+    private final File recordsFile, messagesFile, sortedFindFile,
+        pendingFindFile;
+    /** The mapped records, messages, and find files, or null if not
+     *  loaded. */
+    private ByteBuffer records, messages, sortedFinds, pendingFinds;
+    /** The number of records. */
+    private int count;
+}
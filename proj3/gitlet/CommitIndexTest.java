@@ -0,0 +1,80 @@
+package gitlet;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of the commit index.
+ *  @author hamza
+ */
+public class CommitIndexTest {
+
+    @Test
+    public void appendAndFind() throws Exception {
+        File dir = tempDir();
+        CommitIndex index = new CommitIndex(dir);
+        assertEquals(0, index.size());
+        List<String> ids = new ArrayList<>();
+        List<Commit> commits = new ArrayList<>();
+        LocalDateTime time = LocalDateTime.of(2020, 6, 1, 12, 30, 15);
+        String parent = null;
+        for (int i = 0; i < 10; i += 1) {
+            Commit commit = new Commit(i % 3 == 0 ? "fix" : "edit " + i);
+            commit.parent = parent;
+            commit.dateTime = time.plusHours(i);
+            parent = Utils.sha1("commit " + i);
+            ids.add(parent);
+            commits.add(commit);
+        }
+        index.append(ids.subList(0, 4), commits.subList(0, 4));
+        index.append(ids.subList(4, 10), commits.subList(4, 10));
+        assertEquals(10, index.size());
+        for (int k = 0; k < 10; k += 1) {
+            assertEquals(ids.get(k), index.id(k));
+            assertEquals(commits.get(k).getParent(), index.parent(k));
+            assertNull(index.secondParent(k));
+            assertEquals(commits.get(k).getDateTime(), index.time(k));
+            assertEquals(commits.get(k).getMessage(), index.message(k));
+        }
+        assertEquals(List.of(0, 3, 6, 9), index.find("fix"));
+        assertEquals(List.of(5), index.find("edit 5"));
+        assertEquals(List.of(), index.find("edit"));
+        Benchmark.clean(dir);
+    }
+
+    @Test
+    public void findAfterMerge() throws Exception {
+        File dir = tempDir();
+        CommitIndex index = new CommitIndex(dir);
+        int n = CommitIndex.MAX_PENDING + 100;
+        List<String> ids = new ArrayList<>();
+        List<Commit> commits = new ArrayList<>();
+        LocalDateTime time = LocalDateTime.of(2020, 6, 1, 12, 30, 15);
+        for (int i = 0; i < n + 10; i += 1) {
+            Commit commit = new Commit("commit " + i % 100);
+            commit.dateTime = time.plusMinutes(i);
+            ids.add(Utils.sha1("commit " + i));
+            commits.add(commit);
+        }
+        index.append(ids.subList(0, n / 2), commits.subList(0, n / 2));
+        index.append(ids.subList(n / 2, n), commits.subList(n / 2, n));
+        assertFalse(new File(dir, "find-pending").exists());
+        index.append(ids.subList(n, n + 10), commits.subList(n, n + 10));
+        assertTrue(new File(dir, "find-pending").exists());
+        for (int m = 0; m < 100; m += 1) {
+            List<Integer> expected = new ArrayList<>();
+            for (int k = m; k < n + 10; k += 100) {
+                expected.add(k);
+            }
+            assertEquals(expected, index.find("commit " + m));
+        }
+        assertEquals(List.of(), index.find("commit 100"));
+        Benchmark.clean(dir);
+    }
+
+}
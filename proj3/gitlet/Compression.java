@@ -0,0 +1,351 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** Transparent compression of the objects in the object database.  Every
+ *  object that ObjectStore writes is stored, loose or packed, as
+ *
+ *      MAGIC CODEC LENGTH DATA
+ *
+ *  where CODEC is the id of the Codec that compressed the object's
+ *  contents into DATA, and LENGTH is the 8-byte length of the contents.
+ *  Objects are compressed with the current codec (by default "deflate",
+ *  or the one named by the gitlet.codec property), unless that saves
+ *  less than 1/MIN_SAVING of their size, in which case they are kept
+ *  with the "stored" codec, which leaves them as they are.  An object
+ *  that is streamed in is judged by its first SAMPLE_SIZE bytes.
+ *  Objects written before compression was added had no header; they
+ *  are given one when their repository is upgraded (see Format), so an
+ *  object without one is corrupt.
+ *  @author hamza
+ */
+class Compression {
+
+    /** Return the stored form of an object with contents DATA. */
+    static byte[] encode(byte[] data) {
+        Codec used = STORED;
+        byte[] packed = data;
+        if (codec != STORED) {
+            byte[] compressed = compress(codec, data, data.length);
+            if (saves(compressed.length, data.length)) {
+                used = codec;
+                packed = compressed;
+            }
+        }
+        ByteArrayOutputStream out =
+            new ByteArrayOutputStream(HEADER_SIZE + packed.length);
+        writeHeader(out, used, data.length);
+        out.write(packed, 0, packed.length);
+        return out.toByteArray();
+    }
+
+    /** Return the contents of the object whose stored form is STORED. */
+    static byte[] decode(byte[] stored) {
+        if (!isFramed(stored)) {
+            throw Utils.error("corrupt object");
+        }
+        long length = length(stored);
+        if (length > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw Utils.error("object too large to read into memory");
+        }
+        Codec used = decoder(stored[MAGIC.length]);
+        if (used == STORED) {
+            return Arrays.copyOfRange(stored, HEADER_SIZE, stored.length);
+        }
+        try (InputStream in = used.decompress(
+                 new ByteArrayInputStream(stored, HEADER_SIZE,
+                                          stored.length - HEADER_SIZE))) {
+            return in.readNBytes((int) length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream over the contents of the object whose stored form
+     *  is read from IN, which it closes when it is closed.  The contents
+     *  are decompressed as they are read; uncompressed contents are read
+     *  straight from IN, so callers should buffer the result. */
+    static InputStream decode(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(HEADER_SIZE);
+        if (!isFramed(header)) {
+            in.close();
+            throw Utils.error("corrupt object");
+        }
+        return decoder(header[MAGIC.length]).decompress(in);
+    }
+
+    /** Return the length of the contents of the object whose stored form
+     *  is read from IN.  Reads only the header. */
+    static long length(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(HEADER_SIZE);
+        if (!isFramed(header)) {
+            throw Utils.error("corrupt object");
+        }
+        return length(header);
+    }
+
+    /** Return a stream that writes to OUT the stored form of an object
+     *  whose LENGTH-byte contents are written to it, and closes OUT when
+     *  it is closed.  The codec is chosen by compressing the first
+     *  SAMPLE_SIZE bytes, which are held until then. */
+    static OutputStream encoder(OutputStream out, long length) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buf, int off, int len)
+                throws IOException {
+                count += len;
+                if (stream == null) {
+                    int n = Math.min(len, SAMPLE_SIZE - sample.size());
+                    sample.write(buf, off, n);
+                    if (sample.size() < SAMPLE_SIZE) {
+                        return;
+                    }
+                    start();
+                    off += n;
+                    len -= n;
+                }
+                stream.write(buf, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (stream == null) {
+                    start();
+                }
+                stream.close();
+                if (count != length) {
+                    throw new IOException("object changed while stored");
+                }
+            }
+
+            /** Choose the codec from the sample, and write the header and
+             *  the sample. */
+            private void start() throws IOException {
+                byte[] data = sample.toByteArray();
+                Codec used = codec;
+                if (codec != STORED
+                    && !saves(compress(codec, data, data.length).length,
+                              data.length)) {
+                    used = STORED;
+                }
+                writeHeader(out, used, length);
+                stream = used.compress(out);
+                stream.write(data);
+            }
+
+            /** The first bytes written, until the codec is chosen. */
+            private final ByteArrayOutputStream sample =
+                new ByteArrayOutputStream();
+            /** The compressing stream, once the codec is chosen. */
+            private OutputStream stream;
+            /** Number of bytes written so far. */
+            private long count;
+        };
+    }
+
+    /** Return the codec used for new objects. */
+    static Codec codec() {
+        return codec;
+    }
+
+    /** Use CODEC for new objects. */
+    static void setCodec(Codec codec) {
+        Compression.codec = codec;
+    }
+
+    /** Return the codec named NAME, or null if there is none. */
+    static Codec codec(String name) {
+        for (Codec c : CODECS) {
+            if (c.name().equals(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /** Return the codec named by the gitlet.codec property, or DEFLATE if
+     *  it names none. */
+    private static Codec initialCodec() {
+        Codec named = codec(System.getProperty("gitlet.codec"));
+        return named == null ? DEFLATE : named;
+    }
+
+    /** Return the first LEN bytes of DATA compressed by CODEC. */
+    private static byte[] compress(Codec codec, byte[] data, int len) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(len / 2);
+        try (OutputStream out = codec.compress(bytes)) {
+            out.write(data, 0, len);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Return true iff compressing LENGTH bytes to COMPRESSED bytes is
+     *  worth doing. */
+    private static boolean saves(long compressed, long length) {
+        return compressed <= length - length / MIN_SAVING;
+    }
+
+    /** Write the header of an object of LENGTH bytes compressed by CODEC
+     *  to OUT. */
+    private static void writeHeader(OutputStream out, Codec codec,
+                                    long length) {
+        try {
+            out.write(MAGIC);
+            out.write(codec.id());
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (length >>> shift));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return true iff STORED starts with a header. */
+    static boolean isFramed(byte[] stored) {
+        return stored.length >= HEADER_SIZE
+            && Arrays.equals(stored, 0, MAGIC.length,
+                             MAGIC, 0, MAGIC.length)
+            && decoder(stored[MAGIC.length]) != null;
+    }
+
+    /** Return the contents length in the header that starts STORED. */
+    private static long length(byte[] stored) {
+        long length = 0;
+        for (int k = MAGIC.length + 1; k < HEADER_SIZE; k += 1) {
+            length = (length << 8) | (stored[k] & 0xff);
+        }
+        return length;
+    }
+
+    /** Return a codec that decompresses objects marked ID, or null if
+     *  there is none. */
+    private static Codec decoder(byte id) {
+        for (Codec c : CODECS) {
+            if (c.id() == id) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /** The codec that keeps contents as they are. */
+    private static class Stored implements Codec {
+
+        @Override
+        public byte id() {
+            return 0;
+        }
+
+        @Override
+        public String name() {
+            return "stored";
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            return in;
+        }
+    }
+
+    /** Codecs that compress with Deflater at some level. */
+    private static class Deflate implements Codec {
+
+        /** A codec named NAME that compresses at LEVEL (see Deflater). */
+        Deflate(String name, int level) {
+            this.name = name;
+            this.level = level;
+        }
+
+        @Override
+        public byte id() {
+            return 1;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) {
+            Deflater deflater = new Deflater(level);
+            return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            Inflater inflater = new Inflater();
+            return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+
+        /** This codec's name. */
+        private final String name;
+        /** The Deflater compression level. */
+        private final int level;
+    }
+
+    /** Codec that stores contents uncompressed. */
+    static final Codec STORED = new Stored();
+    /** Codec that compresses with Deflater at its default level. */
+    static final Codec DEFLATE =
+        new Deflate("deflate", Deflater.DEFAULT_COMPRESSION);
+    /** Codec that compresses with Deflater at its fastest level. */
+    static final Codec DEFLATE_FAST =
+        new Deflate("deflate-fast", Deflater.BEST_SPEED);
+    /** All codecs. */
+    static final Codec[] CODECS = { STORED, DEFLATE, DEFLATE_FAST };
+
+    /** Marks the start of an object's header. */
+    private static final byte[] MAGIC = { 0, 'G', 'L', 'Z' };
+    /** Size of an object's header. */
+    static final int HEADER_SIZE = MAGIC.length + 1 + 8;
+    /** Compression must save at least 1/MIN_SAVING of an object's size
+     *  to be used. */
+    private static final int MIN_SAVING = 16;
+    /** Number of bytes of a streamed object used to choose its codec. */
+    private static final int SAMPLE_SIZE = 1 << 16;
+    /** Size of the buffers of compressing and decompressing streams. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The codec used for new objects. */
+    private static Codec codec = initialCodec();
+}
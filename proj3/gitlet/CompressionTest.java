@@ -0,0 +1,107 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of object compression.
+ *  @author hamza
+ */
+public class CompressionTest {
+
+    /** Return SIZE bytes of repetitive text. */
+    private static byte[] text(int size) {
+        StringBuilder text = new StringBuilder();
+        for (int k = 0; text.length() < size; k += 1) {
+            text.append("    static int field").append(k % 97)
+                .append(" = ").append(k).append(";\n");
+        }
+        return text.substring(0, size).getBytes();
+    }
+
+    /** Return the stored form of DATA written through the streaming
+     *  encoder in pieces of STEP bytes. */
+    private static byte[] streamed(byte[] data, int step) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = Compression.encoder(bytes, data.length)) {
+            for (int off = 0; off < data.length; off += step) {
+                out.write(data, off, Math.min(step, data.length - off));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Return the contents read back from STORED as a stream. */
+    private static byte[] read(byte[] stored) throws IOException {
+        try (InputStream in =
+                 Compression.decode(new ByteArrayInputStream(stored))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    public void roundTrips() throws IOException {
+        Codec saved = Compression.codec();
+        byte[] random = new byte[100000];
+        new Random(61).nextBytes(random);
+        try {
+            for (Codec codec : Compression.CODECS) {
+                Compression.setCodec(codec);
+                for (byte[] data : new byte[][] {
+                        new byte[0], text(10), text(300000), random }) {
+                    byte[] stored = Compression.encode(data);
+                    assertArrayEquals(data, Compression.decode(stored));
+                    assertArrayEquals(data, read(stored));
+                    assertEquals(data.length, Compression.length(
+                                     new ByteArrayInputStream(stored)));
+                    for (int step : new int[] { 1000, 1 << 20 }) {
+                        stored = streamed(data, step);
+                        assertArrayEquals(data, Compression.decode(stored));
+                        assertArrayEquals(data, read(stored));
+                    }
+                }
+            }
+        } finally {
+            Compression.setCodec(saved);
+        }
+    }
+
+    @Test
+    public void compressesOnlyWhenWorthwhile() throws IOException {
+        Codec saved = Compression.codec();
+        try {
+            Compression.setCodec(Compression.DEFLATE);
+            byte[] text = text(300000);
+            assertTrue(Compression.encode(text).length < text.length / 4);
+            assertTrue(streamed(text, 4096).length < text.length / 4);
+            byte[] random = new byte[300000];
+            new Random(62).nextBytes(random);
+            int overhead = Compression.encode(random).length - random.length;
+            assertTrue(overhead > 0 && overhead < 32);
+            assertEquals(random.length + overhead,
+                         streamed(random, 4096).length);
+        } finally {
+            Compression.setCodec(saved);
+        }
+    }
+
+    @Test(expected = GitletException.class)
+    public void unframedObjectsAreRefused() throws IOException {
+        Compression.decode(text(5000));
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongLengthIsRefused() throws IOException {
+        try (OutputStream out =
+                 Compression.encoder(new ByteArrayOutputStream(), 10)) {
+            out.write(text(9));
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+
+/** Binary deltas between two versions of a file.
+ *
+ *  A delta is a sequence of instructions that rebuild a TARGET from a
+ *  BASE.  Each instruction is either
+ *
+ *      COPY OFFSET LENGTH     copy LENGTH bytes of BASE from OFFSET, or
+ *      INSERT LENGTH BYTES    append the LENGTH literal BYTES,
+ *
+ *  preceded by the length of the target.  All numbers are unsigned
+ *  variable-length integers (seven bits per byte, low-order first, high
+ *  bit set on all but the last byte).  Deltas are found by indexing
+ *  every BLOCK-byte block of BASE by a hash, then sliding a rolling hash
+ *  over TARGET and extending each verified match as far as it goes in
+ *  both directions.
+ *  @author hamza
+ */
+class Delta {
+
+    /** Return a delta that rebuilds TARGET from BASE. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeNum(out, target.length);
+        int[] table = index(base);
+        int mask = table.length - 1;
+        int pending = 0;
+        int i = 0;
+        long hash = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= target.length) {
+            int cand = table[(int) (mix(hash) & mask)] - 1;
+            if (cand >= 0 && equal(base, cand, target, i, BLOCK)) {
+                int start = i, from = cand;
+                while (start > pending && from > 0
+                       && base[from - 1] == target[start - 1]) {
+                    start -= 1;
+                    from -= 1;
+                }
+                int end = i + BLOCK, baseEnd = cand + BLOCK;
+                while (end < target.length && baseEnd < base.length
+                       && base[baseEnd] == target[end]) {
+                    end += 1;
+                    baseEnd += 1;
+                }
+                insert(out, target, pending, start);
+                out.write(COPY);
+                writeNum(out, from);
+                writeNum(out, end - start);
+                pending = i = end;
+                if (i + BLOCK <= target.length) {
+                    hash = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    hash = roll(hash, target[i], target[i + BLOCK]);
+                }
+                i += 1;
+            }
+        }
+        insert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Return the target rebuilt by applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = { 0 };
+        long size = readNum(delta, pos);
+        if (size > Integer.MAX_VALUE) {
+            throw Utils.error("delta target too large");
+        }
+        byte[] result = new byte[(int) size];
+        int n = 0;
+        while (pos[0] < delta.length) {
+            byte op = delta[pos[0]];
+            pos[0] += 1;
+            if (op == COPY) {
+                int from = (int) readNum(delta, pos),
+                    len = (int) readNum(delta, pos);
+                System.arraycopy(base, from, result, n, len);
+                n += len;
+            } else if (op == INSERT) {
+                int len = (int) readNum(delta, pos);
+                System.arraycopy(delta, pos[0], result, n, len);
+                pos[0] += len;
+                n += len;
+            } else {
+                throw Utils.error("corrupt delta");
+            }
+        }
+        if (n != result.length) {
+            throw Utils.error("corrupt delta");
+        }
+        return result;
+    }
+
+    /** Write an INSERT of TARGET[START .. END) to OUT, if non-empty. */
+    private static void insert(ByteArrayOutputStream out, byte[] target,
+                               int start, int end) {
+        if (start < end) {
+            out.write(INSERT);
+            writeNum(out, end - start);
+            out.write(target, start, end - start);
+        }
+    }
+
+    /** Return an open-addressed table mapping the hashes of the aligned
+     *  BLOCK-byte blocks of BASE to one plus their offsets (zero meaning
+     *  empty).  Later blocks do not displace earlier ones. */
+    private static int[] index(byte[] base) {
+        int size = Integer.highestOneBit(
+            Math.max(16, 2 * (base.length / BLOCK))) << 1;
+        int[] table = new int[size];
+        for (int k = 0; k + BLOCK <= base.length; k += BLOCK) {
+            int slot = (int) (mix(hash(base, k)) & (size - 1));
+            if (table[slot] == 0) {
+                table[slot] = k + 1;
+            }
+        }
+        return table;
+    }
+
+    /** Return the rolling hash of DATA[K .. K + BLOCK). */
+    private static long hash(byte[] data, int k) {
+        long h = 0;
+        for (int j = k; j < k + BLOCK; j += 1) {
+            h = h * PRIME + (data[j] & 0xff);
+        }
+        return h;
+    }
+
+    /** Return the rolling hash HASH with byte OUT removed from the front
+     *  of its window and byte IN added at the back. */
+    private static long roll(long hash, byte out, byte in) {
+        return (hash - (out & 0xff) * PRIME_POW) * PRIME + (in & 0xff);
+    }
+
+    /** Return HASH with its bits scrambled for use as a table index. */
+    private static long mix(long hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /** Return true iff the LEN bytes of A at AK equal those of B at BK. */
+    private static boolean equal(byte[] a, int ak, byte[] b, int bk,
+                                 int len) {
+        for (int j = 0; j < len; j += 1) {
+            if (a[ak + j] != b[bk + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write the variable-length unsigned numeral for N to OUT. */
+    static void writeNum(ByteArrayOutputStream out, long n) {
+        while (n >= 0x80) {
+            out.write((int) (n & 0x7f) | 0x80);
+            n >>>= 7;
+        }
+        out.write((int) n);
+    }
+
+    /** Return the variable-length unsigned numeral in DATA at POS[0],
+     *  advancing POS[0] past it. */
+    static long readNum(byte[] data, int[] pos) {
+        long n = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw Utils.error("corrupt delta");
+            }
+            byte b = data[pos[0]];
+            pos[0] += 1;
+            n |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return n;
+            }
+        }
+    }
+
+    /** Instruction codes. */
+    private static final byte COPY = 1, INSERT = 2;
+    /** Size of the blocks of the base that are indexed. */
+    private static final int BLOCK = 16;
+    /** Multiplier of the rolling hash. */
+    private static final long PRIME = 1000003L;
+    /** PRIME ** (BLOCK - 1), the weight of the oldest byte in a window. */
+    private static final long PRIME_POW;
+
+    static {
+        long p = 1;
+        for (int k = 1; k < BLOCK; k += 1) {
+            p *= PRIME;
+        }
+        PRIME_POW = p;
+    }
+}
@@ -0,0 +1,54 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of binary deltas.
+ *  @author hamza
+ */
+public class DeltaTest {
+
+    /** Check that a delta from BASE rebuilds TARGET, and return its
+     *  length. */
+    private static int check(byte[] base, byte[] target) {
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        return delta.length;
+    }
+
+    @Test
+    public void smallEdits() {
+        Random rand = new Random(61);
+        byte[] base = new byte[100000];
+        rand.nextBytes(base);
+        byte[] target = base.clone();
+        target[500] += 1;
+        target[70000] += 1;
+        assertTrue(check(base, target) < 100);
+        byte[] longer = new byte[base.length + 7];
+        System.arraycopy(base, 0, longer, 7, base.length);
+        assertTrue(check(base, longer) < 100);
+        byte[] shorter = Arrays.copyOfRange(base, 3000, 90000);
+        assertTrue(check(base, shorter) < 100);
+    }
+
+    @Test
+    public void edgeCases() {
+        Random rand = new Random(62);
+        byte[] data = new byte[5000];
+        rand.nextBytes(data);
+        check(new byte[0], data);
+        check(data, new byte[0]);
+        check(new byte[0], new byte[0]);
+        check(data, new byte[] { 1, 2, 3 });
+        byte[] other = new byte[5000];
+        rand.nextBytes(other);
+        check(data, other);
+        byte[] zeros = new byte[10000];
+        check(zeros, new byte[10001]);
+    }
+
+}
@@ -0,0 +1,350 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** Line-by-line differences between texts, as used by merge.
+ *
+ *  Texts are read as streams and split into lines (each including its
+ *  terminating newline, if any), and each distinct line is stored once
+ *  in a Lines table and stood for by an int, so that texts are compared
+ *  as int arrays and no text is ever held as a String.  diff uses
+ *  Myers's O(ND) algorithm in its linear-space form: it finds the middle
+ *  snake of an optimal edit script and recurses on either side of it,
+ *  after stripping any common prefix and suffix.
+ *  @author hamza
+ */
+class Diff {
+
+    /** A region of difference: lines [aStart, aEnd) of the first text are
+     *  replaced by lines [bStart, bEnd) of the second. */
+    static class Hunk {
+        /** A hunk replacing A[ASTART..AEND) by B[BSTART..BEND). */
+        Hunk(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d,%d->%d,%d", aStart, aEnd, bStart, bEnd);
+        }
+
+        /** Bounds of the region in the first and second texts. */
+        final int aStart, aEnd, bStart, bEnd;
+    }
+
+    /** A table of distinct lines, each numbered in order of first
+     *  appearance. */
+    static class Lines {
+
+        /** Return the numbers of the lines read from IN, which is then
+         *  closed. */
+        int[] read(InputStream in) throws IOException {
+            int[] result = new int[INITIAL_LINES];
+            int n = 0;
+            byte[] buf = new byte[BUFFER];
+            byte[] line = new byte[INITIAL_LINE_LENGTH];
+            int len = 0;
+            try (in) {
+                for (int r = in.read(buf); r >= 0; r = in.read(buf)) {
+                    int start = 0;
+                    while (start < r) {
+                        int end = start;
+                        while (end < r && buf[end] != '\n') {
+                            end += 1;
+                        }
+                        boolean complete = end < r;
+                        int take = end - start + (complete ? 1 : 0);
+                        if (len + take > line.length) {
+                            line = Arrays.copyOf(line, Math.max(
+                                2 * line.length, len + take));
+                        }
+                        System.arraycopy(buf, start, line, len, take);
+                        len += take;
+                        start += take;
+                        if (complete) {
+                            if (n == result.length) {
+                                result = Arrays.copyOf(result, 2 * n);
+                            }
+                            result[n] = intern(line, len);
+                            n += 1;
+                            len = 0;
+                        }
+                    }
+                }
+            }
+            if (len > 0) {
+                result = Arrays.copyOf(result, n + 1);
+                result[n] = intern(line, len);
+                n += 1;
+            }
+            return Arrays.copyOf(result, n);
+        }
+
+        /** Write line number K to OUT. */
+        void write(OutputStream out, int k) throws IOException {
+            out.write(lines.get(k).bytes);
+        }
+
+        /** Return true iff line number K ends in a newline. */
+        boolean terminated(int k) {
+            byte[] bytes = lines.get(k).bytes;
+            return bytes.length > 0 && bytes[bytes.length - 1] == '\n';
+        }
+
+        /** Return the number of the line that is the first LEN bytes of
+         *  LINE, adding it if it is new. */
+        private int intern(byte[] line, int len) {
+            Line key = new Line(Arrays.copyOf(line, len));
+            Integer k = numbers.get(key);
+            if (k == null) {
+                k = lines.size();
+                lines.add(key);
+                numbers.put(key, k);
+            }
+            return k;
+        }
+
+        /** The distinct lines, by number. */
+        private final List<Line> lines = new ArrayList<>();
+        /** The numbers of the distinct lines. */
+        private final HashMap<Line, Integer> numbers = new HashMap<>();
+    }
+
+    /** Return the differences between the texts whose line numbers are A
+     *  and B, in order, as a shortest edit script. */
+    static List<Hunk> diff(int[] a, int[] b) {
+        boolean[] deleted = new boolean[a.length],
+            inserted = new boolean[b.length];
+        int max = a.length + b.length + 1;
+        int[] forward = new int[2 * max + 1], backward = new int[2 * max + 1];
+        compare(a, 0, a.length, b, 0, b.length, deleted, inserted,
+                forward, backward);
+        List<Hunk> result = new ArrayList<>();
+        int i, j;
+        i = j = 0;
+        while (i < a.length || j < b.length) {
+            if (i < a.length && j < b.length && !deleted[i] && !inserted[j]) {
+                i += 1;
+                j += 1;
+                continue;
+            }
+            int i0 = i, j0 = j;
+            while (i < a.length && deleted[i]) {
+                i += 1;
+            }
+            while (j < b.length && inserted[j]) {
+                j += 1;
+            }
+            result.add(new Hunk(i0, i, j0, j));
+        }
+        return result;
+    }
+
+    /** Write to OUT the three-way merge of the texts whose line numbers
+     *  in LINES are OURS and THEIRS, which both derive from BASE, and
+     *  return true iff there were conflicts.  Changes made on only one
+     *  side are taken, as are identical changes made on both.  Where the
+     *  two sides changed the same or adjacent lines of BASE differently,
+     *  both versions are written, marked as
+     *
+     *      <<<<<<< HEAD
+     *      OURS
+     *      =======
+     *      THEIRS
+     *      >>>>>>>
+     */
+    static boolean merge(int[] base, int[] ours, int[] theirs, Lines lines,
+                         OutputStream out) throws IOException {
+        List<Hunk> a = diff(base, ours), b = diff(base, theirs);
+        boolean conflict = false;
+        int i, j, pos, da, db;
+        i = j = pos = da = db = 0;
+        while (i < a.size() || j < b.size()) {
+            boolean fromA = j == b.size()
+                || (i < a.size() && a.get(i).aStart <= b.get(j).aStart);
+            Hunk first = fromA ? a.get(i) : b.get(j);
+            int start = first.aStart, end = first.aEnd;
+            int i0 = i, j0 = j;
+            boolean grew = true;
+            while (grew) {
+                grew = false;
+                for (; i < a.size() && a.get(i).aStart <= end; i += 1) {
+                    end = Math.max(end, a.get(i).aEnd);
+                    grew = true;
+                }
+                for (; j < b.size() && b.get(j).aStart <= end; j += 1) {
+                    end = Math.max(end, b.get(j).aEnd);
+                    grew = true;
+                }
+            }
+            write(lines, out, base, pos, start);
+            int aFrom = start + da, bFrom = start + db;
+            if (i > i0) {
+                da = a.get(i - 1).bEnd - a.get(i - 1).aEnd;
+            }
+            if (j > j0) {
+                db = b.get(j - 1).bEnd - b.get(j - 1).aEnd;
+            }
+            int aTo = end + da, bTo = end + db;
+            if (j == j0 || Arrays.equals(ours, aFrom, aTo,
+                                         theirs, bFrom, bTo)) {
+                write(lines, out, ours, aFrom, aTo);
+            } else if (i == i0) {
+                write(lines, out, theirs, bFrom, bTo);
+            } else {
+                conflict = true;
+                out.write(OURS_MARKER);
+                writeLine(lines, out, ours, aFrom, aTo);
+                out.write(SEPARATOR);
+                writeLine(lines, out, theirs, bFrom, bTo);
+                out.write(END_MARKER);
+            }
+            pos = end;
+        }
+        write(lines, out, base, pos, base.length);
+        return conflict;
+    }
+
+    /** Write lines TEXT[FROM..TO), numbered in LINES, to OUT. */
+    private static void write(Lines lines, OutputStream out, int[] text,
+                              int from, int to) throws IOException {
+        for (int k = from; k < to; k += 1) {
+            lines.write(out, text[k]);
+        }
+    }
+
+    /** Write lines TEXT[FROM..TO), numbered in LINES, to OUT, followed by
+     *  a newline if they do not end in one. */
+    private static void writeLine(Lines lines, OutputStream out, int[] text,
+                                  int from, int to) throws IOException {
+        write(lines, out, text, from, to);
+        if (from < to && !lines.terminated(text[to - 1])) {
+            out.write('\n');
+        }
+    }
+
+    /** Mark in DELETED and INSERTED the lines of A[ALO..AHI) and
+     *  B[BLO..BHI) that are not in a longest common subsequence of the
+     *  two, using FORWARD and BACKWARD as scratch space. */
+    private static void compare(int[] a, int aLo, int aHi,
+                                int[] b, int bLo, int bHi,
+                                boolean[] deleted, boolean[] inserted,
+                                int[] forward, int[] backward) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi) {
+            Arrays.fill(inserted, bLo, bHi, true);
+        } else if (bLo == bHi) {
+            Arrays.fill(deleted, aLo, aHi, true);
+        } else {
+            int[] snake = middleSnake(a, aLo, aHi, b, bLo, bHi,
+                                      forward, backward);
+            compare(a, aLo, aLo + snake[0], b, bLo, bLo + snake[1],
+                    deleted, inserted, forward, backward);
+            compare(a, aLo + snake[2], aHi, b, bLo + snake[3], bHi,
+                    deleted, inserted, forward, backward);
+        }
+    }
+
+    /** Return {x0, y0, x1, y1} such that the (possibly empty) common run
+     *  A[ALO+x0..ALO+x1) = B[BLO+y0..BLO+y1) lies in the middle of a
+     *  shortest edit script from A[ALO..AHI) to B[BLO..BHI), which are
+     *  not empty and differ in their first and last lines.  FORWARD and
+     *  BACKWARD hold the furthest-reaching paths on each diagonal. */
+    private static int[] middleSnake(int[] a, int aLo, int aHi,
+                                     int[] b, int bLo, int bHi,
+                                     int[] forward, int[] backward) {
+        int n = aHi - aLo, m = bHi - bLo, delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int mid = forward.length / 2;
+        forward[mid + 1] = 0;
+        backward[mid + 1] = 0;
+        for (int d = 0; d <= (n + m + 1) / 2; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && forward[mid + k - 1]
+                                    < forward[mid + k + 1])
+                    ? forward[mid + k + 1] : forward[mid + k - 1] + 1;
+                int y = x - k, x0 = x, y0 = y;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[mid + k] = x;
+                if (odd && k >= delta - (d - 1) && k <= delta + (d - 1)
+                    && x + backward[mid + delta - k] >= n) {
+                    return new int[] { x0, y0, x, y };
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && backward[mid + k - 1]
+                                    < backward[mid + k + 1])
+                    ? backward[mid + k + 1] : backward[mid + k - 1] + 1;
+                int y = x - k, x0 = x, y0 = y;
+                while (x < n && y < m
+                       && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                backward[mid + k] = x;
+                if (!odd && delta - k >= -d && delta - k <= d
+                    && x + forward[mid + delta - k] >= n) {
+                    return new int[] { n - x, m - y, n - x0, m - y0 };
+                }
+            }
+        }
+        throw new IllegalStateException("no middle snake");
+    }
+
+    /** A line of text, compared by contents. */
+    private static class Line {
+        /** The line whose contents are BYTES. */
+        Line(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Line && ((Line) obj).hash == hash
+                && Arrays.equals(((Line) obj).bytes, bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /** The contents of the line. */
+        private final byte[] bytes;
+        /** The hash of BYTES. */
+        private final int hash;
+    }
+
+    /** Conflict markers. */
+    private static final byte[]
+        OURS_MARKER = "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8),
+        SEPARATOR = "=======\n".getBytes(StandardCharsets.UTF_8),
+        END_MARKER = ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
+    /** Initial capacity for the line numbers of a text. */
+    private static final int INITIAL_LINES = 256;
+    /** Initial capacity for a line. */
+    private static final int INITIAL_LINE_LENGTH = 128;
+    /** Size of the input buffer. */
+    private static final int BUFFER = 1 << 16;
+}
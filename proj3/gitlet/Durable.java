@@ -0,0 +1,173 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static gitlet.Main.*;
+
+/** Crash-safe writes of repository files.  A file is never written in
+ *  place: its contents go to a temporary file in TMP_DIR, which is then
+ *  renamed over it, so that a crash leaves either the old file or the
+ *  new one, never part of one.  Files written this way, and the
+ *  directories whose entries changed, are not forced to disk one at a
+ *  time; they are remembered until the next sync, which forces them all
+ *  in one parallel batch (see Workers).  Refs.update syncs before it
+ *  changes any ref, so that no ref can ever name an object that a crash
+ *  could lose.
+ *
+ *  Syncing can be turned off, trading durability for speed, with the
+ *  system property gitlet.durable=false.  For tests, the system property
+ *  gitlet.crash names a point (see crashPoint) at which to halt the
+ *  program abruptly, as a crash would.
+ *  @author hamza
+ */
+class Durable {
+
+    /** Return true iff sync forces files to disk. */
+    static boolean enabled() {
+        return enabled;
+    }
+
+    /** Make sync force files to disk iff ON. */
+    static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /** Replace the contents of FILE with DATA by way of a temporary file,
+     *  to be forced to disk by the next sync.  Throws
+     *  IllegalArgumentException in case of problems, as
+     *  Utils.writeContents does. */
+    static void write(File file, byte[] data) {
+        File tmp = null;
+        try {
+            tmp = tempFile("write");
+            Utils.writeContents(tmp, data);
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+        written(file);
+    }
+
+    /** Delete FILE, if it exists, as of the next sync. */
+    static void delete(File file) {
+        if (file.delete()) {
+            synchronized (PENDING) {
+                PENDING.add(file.getAbsoluteFile().getParentFile());
+            }
+        }
+    }
+
+    /** Note that FILE has just been written in full, so that the next
+     *  sync forces it and its directory to disk. */
+    static void written(File file) {
+        File abs = file.getAbsoluteFile();
+        synchronized (PENDING) {
+            PENDING.add(abs);
+            PENDING.add(abs.getParentFile());
+        }
+    }
+
+    /** Return a new, empty temporary file in TMP_DIR whose name starts
+     *  with PREFIX.  It may be renamed to anywhere in the repository. */
+    static File tempFile(String prefix) throws IOException {
+        TMP_DIR.mkdir();
+        return File.createTempFile(prefix, null, TMP_DIR);
+    }
+
+    /** Delete any temporary files left behind by a crash. */
+    static void clearTemps() {
+        List<String> names = Utils.plainFilenamesIn(TMP_DIR);
+        if (names != null) {
+            for (String name : names) {
+                Utils.join(TMP_DIR, name).delete();
+            }
+        }
+    }
+
+    /** Force every file written, and every directory changed, since the
+     *  last sync to disk, in parallel.  Files go first, then their
+     *  directories, so that no directory entry can reach the disk before
+     *  the contents it names. */
+    static void sync() throws IOException {
+        List<File> files = new ArrayList<>(), dirs = new ArrayList<>();
+        synchronized (PENDING) {
+            for (File file : PENDING) {
+                if (file.isDirectory()) {
+                    dirs.add(file);
+                } else if (file.exists()) {
+                    files.add(file);
+                }
+            }
+            PENDING.clear();
+        }
+        if (!enabled) {
+            return;
+        }
+        force(files);
+        force(dirs);
+    }
+
+    /** Force FILE, which may be a directory, to disk now. */
+    static void force(File file) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        try (FileChannel chan = FileChannel.open(file.toPath(),
+                                                 StandardOpenOption.READ)) {
+            chan.force(true);
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw excp;
+            }
+            /* Some systems cannot open directories; their entries are
+             * then as durable as the system makes them. */
+        }
+    }
+
+    /** Halt the program at once if the system property gitlet.crash is
+     *  NAME, as a crash at that point would. */
+    static void crashPoint(String name) {
+        if (name.equals(CRASH_AT)) {
+            Runtime.getRuntime().halt(CRASH_STATUS);
+        }
+    }
+
+    /** Force FILES to disk, in parallel. */
+    private static void force(List<File> files) throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (File file : files) {
+            tasks.add(() -> {
+                force(file);
+                return null;
+            });
+        }
+        Workers.run(tasks);
+    }
+
+    /** Exit status of a program halted by crashPoint. */
+    static final int CRASH_STATUS = 3;
+
+    /** Files and directories to force at the next sync. */
+    private static final Set<File> PENDING = new LinkedHashSet<>();
+    /** The crash point named by gitlet.crash, or null. */
+    private static final String CRASH_AT = System.getProperty("gitlet.crash");
+    /** True iff sync forces files to disk. */
+    private static boolean enabled =
+        !"false".equals(System.getProperty("gitlet.durable"));
+}
@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.File;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests that the repository is consistent after a crash at each step
+ *  of an update of the refs (see Refs), by halting gitlet at those
+ *  points (see Durable.crashPoint) and then running it again.
+ *  @author hamza
+ */
+public class DurableTest {
+
+    /** Return the contents of the file at PATH in the .gitlet directory
+     *  in DIR. */
+    private static String read(File dir, String... path) {
+        return Utils.readContentsAsString(
+            Utils.join(Utils.join(dir, ".gitlet"), path));
+    }
+
+    /** Return the id of the head commit of the repository in DIR. */
+    private static String head(File dir) {
+        return read(dir, "committed", "HEAD");
+    }
+
+    /** Return the id of the head of branch BRANCH in DIR. */
+    private static String branch(File dir, String branch) {
+        return read(dir, "branches", "AllBranches", branch);
+    }
+
+    /** Return the number of commits log shows in DIR. */
+    private static int logLength(File dir) throws Exception {
+        return gitlet(dir, "log").split("===\n").length - 1;
+    }
+
+    /** Return a new repository with one commit after the initial one,
+     *  and a change to a.txt staged. */
+    private static File staged() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        Utils.writeContents(Utils.join(dir, "a.txt"), "one");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "first");
+        Utils.writeContents(Utils.join(dir, "a.txt"), "two");
+        gitlet(dir, "add", "a.txt");
+        return dir;
+    }
+
+    /** Check that the refs of DIR agree, and that recovery left no log or
+     *  temporary files behind. */
+    private static void checkRecovered(File dir) {
+        assertEquals(branch(dir, read(dir, "branches", "HEAD_BRANCH")),
+                     head(dir));
+        assertFalse(Utils.join(dir, ".gitlet", "ref-log").exists());
+        String[] temps = Utils.join(dir, ".gitlet", "tmp").list();
+        assertTrue(temps == null || temps.length == 0);
+    }
+
+    @Test
+    public void crashBeforeLog() throws Exception {
+        File dir = staged();
+        String before = head(dir);
+        gitletCrashingAt(dir, "objects", "commit", "second");
+        assertEquals(2, logLength(dir));
+        checkRecovered(dir);
+        assertEquals(before, head(dir));
+        assertTrue(gitlet(dir, "status").contains(
+                       "=== Staged Files ===\na.txt\n"));
+        assertEquals("", gitlet(dir, "commit", "second"));
+        assertEquals(3, logLength(dir));
+        Benchmark.clean(dir);
+    }
+
+    @Test
+    public void crashAfterLog() throws Exception {
+        for (String point : new String[] { "log", "refs" }) {
+            File dir = staged();
+            String before = head(dir);
+            gitletCrashingAt(dir, point, "commit", "second");
+            assertEquals(point, 3, logLength(dir));
+            checkRecovered(dir);
+            assertNotEquals(point, before, head(dir));
+            assertTrue(point, gitlet(dir, "log").contains("\nsecond\n"));
+            assertTrue(point, gitlet(dir, "status").contains(
+                           "=== Staged Files ===\n\n"));
+            Benchmark.clean(dir);
+        }
+    }
+
+    @Test
+    public void crashInCheckout() throws Exception {
+        File dir = staged();
+        gitlet(dir, "commit", "second");
+        gitlet(dir, "branch", "other");
+        Utils.writeContents(Utils.join(dir, "a.txt"), "three");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "third");
+        gitletCrashingAt(dir, "refs", "checkout", "other");
+        gitlet(dir, "status");
+        checkRecovered(dir);
+        assertEquals("other", read(dir, "branches", "HEAD_BRANCH"));
+        assertEquals(branch(dir, "other"), head(dir));
+        Benchmark.clean(dir);
+    }
+
+    @Test
+    public void tornLogIsDiscarded() throws Exception {
+        File dir = staged();
+        String before = head(dir);
+        Utils.writeContents(Utils.join(dir, ".gitlet", "ref-log"),
+                            new byte[] { 0, 0, 0, 2, 0, 14 });
+        gitlet(dir, "status");
+        checkRecovered(dir);
+        assertEquals(before, head(dir));
+        Benchmark.clean(dir);
+    }
+
+}
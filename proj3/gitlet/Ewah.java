@@ -0,0 +1,101 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/** EWAH (Enhanced Word-Aligned Hybrid) compression of bitmaps.  A
+ *  bitmap's 64-bit words are encoded as a sequence of groups
+ *
+ *      MARKER LITERAL...
+ *
+ *  where MARKER is a word whose bit 0 is the value of a run of clean
+ *  words (all 0s or all 1s), bits 1-32 the length of that run, and bits
+ *  33-63 the number of LITERAL words that follow it, copied as they
+ *  are.  Sparse and dense stretches thus take a word per run, while
+ *  mixed stretches cost one word in 2**31 extra.  The encoding is the
+ *  4-byte number of words followed by the words.
+ *  @author hamza
+ */
+class Ewah {
+
+    /** Return the encoding of BITS. */
+    static byte[] encode(BitSet bits) {
+        long[] words = bits.toLongArray();
+        long[] out = new long[words.length + words.length / 2 + 1];
+        int n = 0;
+        for (int i = 0; i < words.length; ) {
+            boolean ones = words[i] == -1L;
+            long clean = ones ? -1L : 0;
+            int start = i;
+            while (i < words.length && words[i] == clean
+                   && i - start < MAX_RUN) {
+                i += 1;
+            }
+            int run = i - start;
+            int literals = i;
+            while (i < words.length && words[i] != 0 && words[i] != -1L
+                   && i - literals < MAX_LITERALS) {
+                i += 1;
+            }
+            if (n + 1 + i - literals > out.length) {
+                out = Arrays.copyOf(out, 2 * out.length + 1);
+            }
+            out[n] = (ones ? 1 : 0) | ((long) run << 1)
+                | ((long) (i - literals) << RUN_BITS + 1);
+            n += 1;
+            System.arraycopy(words, literals, out, n, i - literals);
+            n += i - literals;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(4 + 8 * n);
+        buf.putInt(n);
+        for (int k = 0; k < n; k += 1) {
+            buf.putLong(out[k]);
+        }
+        return buf.array();
+    }
+
+    /** Return the bitmap encoded in DATA. */
+    static BitSet decode(byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        int n = buf.getInt();
+        long[] encoded = new long[n];
+        int size = 0;
+        for (int k = 0; k < n; k += 1) {
+            encoded[k] = buf.getLong();
+        }
+        for (int k = 0; k < n; ) {
+            long marker = encoded[k];
+            int literals = (int) (marker >>> RUN_BITS + 1);
+            size += run(marker) + literals;
+            k += 1 + literals;
+        }
+        long[] words = new long[size];
+        int w = 0;
+        for (int k = 0; k < n; ) {
+            long marker = encoded[k];
+            int run = run(marker);
+            if ((marker & 1) != 0) {
+                Arrays.fill(words, w, w + run, -1L);
+            }
+            w += run;
+            int literals = (int) (marker >>> RUN_BITS + 1);
+            System.arraycopy(encoded, k + 1, words, w, literals);
+            w += literals;
+            k += 1 + literals;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /** Return the length of the run of clean words in MARKER. */
+    private static int run(long marker) {
+        return (int) ((marker >>> 1) & MAX_RUN);
+    }
+
+    /** Number of bits of a marker holding the length of its run. */
+    private static final int RUN_BITS = 32;
+    /** Longest run in one marker. */
+    private static final long MAX_RUN = (1L << RUN_BITS) - 1;
+    /** Most literal words after one marker. */
+    private static final long MAX_LITERALS = (1L << 31) - 1;
+}
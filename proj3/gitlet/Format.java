@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static gitlet.Main.*;
+
+/** The version of the format of a repository's objects, kept in FORMAT,
+ *  and the upgrade of repositories of older versions.  The readers of
+ *  objects never guess at an object's format from its contents, since a
+ *  file may begin with any bytes at all; instead, every command first
+ *  brings its repository up to VERSION (see Main.run), rewriting the
+ *  objects written in older formats.  The upgrade tells an object's
+ *  format by its SHA-1, which is that of exactly one of the forms it
+ *  could have, so that it never mistakes one for another.  The versions
+ *  are
+ *
+ *      1. (no FORMAT file) Objects have no header (see Compression), a
+ *         blob is just its contents, and each file in STAGING_DIR holds
+ *         the contents of the staged file.
+ *      2. Every object has a header, every blob begins with its kind
+ *         (see Blob), and each file in STAGING_DIR holds the id of the
+ *         blob staged.
+ *  @author hamza
+ */
+class Format {
+
+    /** Record that the repository is in the current format. */
+    static void init() {
+        Durable.write(FORMAT,
+                      (VERSION + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Return the format version of the repository. */
+    static int version() {
+        if (!FORMAT.isFile()) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(Utils.readContentsAsString(FORMAT).trim());
+        } catch (NumberFormatException excp) {
+            throw Utils.error("corrupt format file");
+        }
+    }
+
+    /** Bring the repository up to the current format, if it is older.
+     *  Each object is rewritten in place before the new version is
+     *  recorded, so that an upgrade cut short by a crash is simply done
+     *  again.  The staged contents are then stored as blobs, and their
+     *  ids replace them in the staging area in the same update of the
+     *  refs (see Refs) as records the version, so that no staging entry
+     *  is ever converted twice.  Repositories of format 1 have no pack,
+     *  which came with the first to record its format. */
+    static void upgrade() {
+        int version = version();
+        if (version == VERSION) {
+            return;
+        }
+        if (version > VERSION) {
+            throw Utils.error("Repository needs a newer version of Gitlet.");
+        }
+        try (Trace.Phase phase = Trace.phase("upgrade")) {
+            for (byte type : ObjectStore.TYPES) {
+                for (String id : ObjectStore.looseIds(type)) {
+                    upgrade(id, type, ObjectStore.looseFile(id, type));
+                }
+            }
+            Durable.sync();
+            ObjectStore.clearCache();
+            Map<File, String> changes = new LinkedHashMap<>();
+            List<String> staged = Utils.plainFilenamesIn(STAGING_DIR);
+            if (staged != null) {
+                for (String name : staged) {
+                    File file = Utils.join(STAGING_DIR, name);
+                    changes.put(file, Blob.store(file, null));
+                }
+            }
+            changes.put(FORMAT, VERSION + "\n");
+            Refs.update(changes);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Rewrite the loose object of type TYPE with id ID kept in FILE,
+     *  which is of format 1 or was rewritten by an upgrade cut short, in
+     *  the current format. */
+    private static void upgrade(String id, byte type, File file)
+        throws IOException {
+        if (!isFramed(id, file)) {
+            replace(file, new FileInputStream(file), file.length());
+        }
+        if (type == Pack.BLOB) {
+            tag(id, file);
+        }
+    }
+
+    /** Return true iff the object with id ID kept in FILE has a header.
+     *  Objects without one are their contents, whose SHA-1 is ID. */
+    private static boolean isFramed(String id, File file)
+        throws IOException {
+        byte[] header;
+        try (InputStream in = new FileInputStream(file)) {
+            header = in.readNBytes(Compression.HEADER_SIZE);
+        }
+        return Compression.isFramed(header) && !Blob.hash(file).equals(id);
+    }
+
+    /** Begin the blob with id ID kept in FILE with FULL, unless it
+     *  already does.  Its contents have the SHA-1 ID only if it does
+     *  not. */
+    private static void tag(String id, File file) throws IOException {
+        String sha;
+        long length;
+        try (InputStream in = Compression.decode(new FileInputStream(file))) {
+            sha = Blob.hash(in);
+        }
+        if (!sha.equals(id)) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            length = Compression.length(in);
+        }
+        replace(file, new SequenceInputStream(
+                    new ByteArrayInputStream(new byte[] { Blob.FULL }),
+                    Compression.decode(new FileInputStream(file))),
+                1 + length);
+    }
+
+    /** Replace FILE with the stored form of an object whose LENGTH-byte
+     *  contents are read from IN, closing IN before FILE is replaced. */
+    private static void replace(File file, InputStream in, long length)
+        throws IOException {
+        File tmp = Durable.tempFile("format");
+        try {
+            try (InputStream contents = in;
+                 OutputStream out = Compression.encoder(
+                     new FileOutputStream(tmp), length)) {
+                contents.transferTo(out);
+            }
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            Durable.written(file);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /** The current format version. */
+    static final int VERSION = 2;
+}
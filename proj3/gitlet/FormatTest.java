@@ -0,0 +1,98 @@
+package gitlet;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of the upgrade of repositories in older formats.
+ *  @author hamza
+ */
+public class FormatTest {
+
+    /** Return CONTENTS preceded by a compression header for them, as a
+     *  file might begin. */
+    private static byte[] headed(String contents) {
+        byte[] text = contents.getBytes();
+        byte[] data = new byte[Compression.HEADER_SIZE + text.length];
+        data[1] = 'G';
+        data[2] = 'L';
+        data[3] = 'Z';
+        data[Compression.HEADER_SIZE - 1] = (byte) text.length;
+        System.arraycopy(text, 0, data, Compression.HEADER_SIZE,
+                         text.length);
+        return data;
+    }
+
+    /** Store COMMIT in the repository in DIR as format 1 did, and return
+     *  its id. */
+    private static String oldCommit(File dir, Commit commit) {
+        byte[] data = Utils.serialize(commit);
+        String id = Utils.sha1(data);
+        Utils.writeContents(Utils.join(dir, ".gitlet", "committed", id), data);
+        return id;
+    }
+
+    /** Store CONTENTS in the repository in DIR as format 1 did, and return
+     *  their id. */
+    private static String oldBlob(File dir, byte[] contents) {
+        String id = Utils.sha1(contents);
+        Utils.writeContents(Utils.join(dir, ".gitlet", "content", id),
+                            contents);
+        return id;
+    }
+
+    /** Upgrade a repository of format 1, whose files include ones that
+     *  begin as a compression header and as a delta blob do, and which
+     *  has a change staged. */
+    @Test
+    public void upgradeFirstFormat() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        byte[] headed = headed("hello");
+        byte[] delta = new byte[52];
+        Arrays.fill(delta, (byte) 'a');
+        delta[0] = Blob.DELTA;
+        delta[1] = 1;
+        HashMap<String, String> mapping = new HashMap<>();
+        mapping.put("a.txt", oldBlob(dir, headed));
+        mapping.put("d.bin", oldBlob(dir, delta));
+        String root = oldCommit(dir, new Commit("initial commit"));
+        String head = oldCommit(dir, new Commit(
+            "two files", root, LocalDateTime.of(2020, 6, 1, 12, 30, 15),
+            mapping));
+        Utils.writeContents(Utils.join(dir, ".gitlet", "committed", "HEAD"),
+                            head);
+        Utils.writeContents(Utils.join(dir, ".gitlet", "branches",
+                                       "AllBranches", "master"), head);
+        File a = Utils.join(dir, "a.txt");
+        Utils.writeContents(a, "changed\n");
+        Utils.writeContents(Utils.join(dir, ".gitlet", "staged", "a.txt"),
+                            "changed\n");
+        File format = Utils.join(dir, ".gitlet", "format");
+        format.delete();
+
+        String status = gitlet(dir, "status");
+        assertTrue(status, status.contains("=== Staged Files ===\na.txt\n"));
+        assertFalse(status, status.contains("a.txt (modified)"));
+        assertEquals(Format.VERSION + "\n",
+                     Utils.readContentsAsString(format));
+        assertEquals("", gitlet(dir, "commit", "change a"));
+        String log = gitlet(dir, "log");
+        assertTrue(log, log.contains("change a") && log.contains("two files"));
+        a.delete();
+        gitlet(dir, "checkout", "--", "a.txt");
+        assertEquals("changed\n", Utils.readContentsAsString(a));
+        gitlet(dir, "checkout", head, "--", "a.txt");
+        gitlet(dir, "checkout", head, "--", "d.bin");
+        assertArrayEquals(headed, Utils.readContents(a));
+        assertArrayEquals(delta,
+                          Utils.readContents(Utils.join(dir, "d.bin")));
+        Benchmark.clean(dir);
+    }
+
+}
@@ -0,0 +1,389 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static gitlet.Main.*;
+
+/** A harness that measures what each Gitlet command costs.  Usage:
+ *
+ *      java gitlet.Harness [--files N] [--commits M] [--branches B]
+ *                          [--size MIN-MAX] [--changes C] [--seed S]
+ *                          [--loose]
+ *
+ *  run in an empty scratch directory.  It builds a synthetic repository
+ *  there: a first commit of N files, whose sizes are spread evenly on a
+ *  log scale from MIN to MAX bytes, then M - 1 commits that each edit C
+ *  files, spread at random over B branches (master, and branches forked
+ *  from it as they first get a commit).  Unless --loose is given, it is
+ *  then packed by gc.  The repository depends only on the options.
+ *  With master checked out, the harness then runs every command of Main
+ *  but serve, which does not return, in turn, in an order in which each
+ *  is valid, as a gitlet process traced with --trace (see Trace).  The
+ *  remote commands run against a copy of the repository made before the
+ *  others, to which one commit is added.  The output is one JSON object
+ *  per line: first one describing the repository, then one for each
+ *  command, giving its arguments, its wall-clock time including the
+ *  start of the JVM, and the time, I/O counters, objects deserialized
+ *  and phase times in its trace, so that the output for versions of
+ *  Gitlet can be compared to find regressions.
+ *  @author hamza
+ */
+public class Harness {
+
+    /** Build a repository and run the commands on it, with the options in
+     *  ARGS. */
+    public static void main(String... args) throws IOException {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (int i = 0; i < args.length; i += 1) {
+            if (args[i].equals("--loose")) {
+                options.put(args[i], "true");
+            } else if (options.containsKey(args[i]) && i + 1 < args.length) {
+                options.put(args[i], args[i + 1]);
+                i += 1;
+            } else {
+                usage();
+            }
+        }
+        if (GITLET_DIR.exists()) {
+            System.err.println("Run the harness in an empty directory.");
+            System.exit(1);
+        }
+        int files = 0, commits = 0, branches = 0, changes = 0;
+        int min = 0, max = 0;
+        long seed = 0;
+        try {
+            files = Integer.parseInt(options.get("--files"));
+            commits = Integer.parseInt(options.get("--commits"));
+            branches = Integer.parseInt(options.get("--branches"));
+            changes = Integer.parseInt(options.get("--changes"));
+            seed = Long.parseLong(options.get("--seed"));
+            String[] sizes = options.get("--size").split("-");
+            min = Integer.parseInt(sizes[0]);
+            max = Integer.parseInt(sizes[sizes.length - 1]);
+        } catch (NumberFormatException excp) {
+            usage();
+        }
+        if (files < 1 || commits < 1 || branches < 1 || changes < 0
+            || min < 1 || max < min) {
+            usage();
+        }
+        boolean loose = Boolean.parseBoolean(options.get("--loose"));
+
+        long start = System.nanoTime();
+        Map<String, String> heads = build(files, commits, branches, changes,
+                                          min, max, new Random(seed));
+        if (!loose) {
+            ObjectStore.gc();
+        }
+        int objects = 0;
+        long bytes = 0;
+        for (byte type : ObjectStore.TYPES) {
+            for (String id : ObjectStore.ids(type)) {
+                objects += 1;
+                bytes += ObjectStore.storedLength(id, type);
+            }
+        }
+        System.out.printf("{\"repo\": {\"files\": %d, \"commits\": %d, "
+                          + "\"branches\": %d, \"changes\": %d, "
+                          + "\"size\": [%d, %d], \"seed\": %d, "
+                          + "\"packed\": %b, \"objects\": %d, "
+                          + "\"bytes\": %d, \"build_ms\": %.3f}}%n",
+                          files, commits, heads.size(), changes, min,
+                          max, seed, !loose, objects, bytes,
+                          Benchmark.millisSince(start));
+        ObjectStore.pack().close();
+        runCommands(heads, ObjectStore.readCommit(heads.get("master"))
+                    .getMessage());
+    }
+
+    /** Print the usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java gitlet.Harness [--files N] "
+                           + "[--commits M] [--branches B] "
+                           + "[--size MIN-MAX] [--changes C] [--seed S] "
+                           + "[--loose]");
+        System.exit(1);
+    }
+
+    /** Initialize a repository in the current directory, commit FILES
+     *  files whose sizes are spread on a log scale from MIN to MAX bytes,
+     *  then COMMITS - 1 commits that each edit CHANGES of them, on BRANCHES
+     *  branches chosen at random using RAND, and check out master.  Return
+     *  the head of each branch, by name, master first. */
+    private static Map<String, String> build(int files, int commits,
+                                             int branches, int changes,
+                                             int min, int max, Random rand)
+        throws IOException {
+        Main.initialize();
+        Commit.init();
+        boolean saved = Durable.enabled();
+        Durable.setEnabled(false);
+        LocalDateTime time = LocalDateTime.of(2020, 1, 1, 0, 0);
+        Map<String, String> contents = new HashMap<>();
+        for (int i = 0; i < files; i += 1) {
+            contents.put(fileName(i),
+                         Blob.write(text(rand, size(rand, min, max)), null));
+        }
+        List<String> ids = new ArrayList<>();
+        Map<String, String> heads = new LinkedHashMap<>();
+        heads.put("master", commit(getHead(), Tree.write(contents),
+                                   "commit 0 on master", time, ids));
+        for (int k = 1; k < commits; k += 1) {
+            String branch = branchName(rand.nextInt(branches));
+            String parent = heads.getOrDefault(branch, heads.get("master"));
+            String tree = ObjectStore.readCommit(parent).getTree();
+            Map<String, String> changed = new HashMap<>();
+            for (int c = 0; c < changes; c += 1) {
+                String name = fileName(rand.nextInt(files));
+                String old = changed.containsKey(name) ? changed.get(name)
+                    : Tree.get(tree, name);
+                byte[] edited =
+                    edit(Blob.read(old), rand, "edit " + k + " " + c);
+                changed.put(name, Blob.write(edited, old));
+            }
+            heads.put(branch, commit(parent, Tree.update(tree, changed),
+                                     "commit " + k + " on " + branch,
+                                     time.plusMinutes(k), ids));
+        }
+        for (int b = 1; b < branches; b += 1) {
+            heads.putIfAbsent(branchName(b), heads.get("master"));
+        }
+        Remote.register(ids);
+        for (Map.Entry<String, String> e : heads.entrySet()) {
+            Utils.writeContents(Utils.join(ALL_BRANCHES, e.getKey()),
+                                e.getValue());
+        }
+        Utils.writeContents(HEAD, heads.get("master"));
+        Checkout.run(Tree.EMPTY,
+                     ObjectStore.readCommit(heads.get("master")).getTree());
+        Durable.setEnabled(saved);
+        return heads;
+    }
+
+    /** Write the commit with parent PARENT, tree TREE, message MESSAGE
+     *  and time TIME, add its id to IDS, and return the id. */
+    private static String commit(String parent, String tree, String message,
+                                 LocalDateTime time, List<String> ids) {
+        byte[] bytes =
+            CommitCodec.encode(new Commit(message, parent, time, tree));
+        String id = Utils.sha1(bytes);
+        ObjectStore.writeCommit(id, bytes);
+        ids.add(id);
+        return id;
+    }
+
+    /** Run each command in turn, traced, in the current directory, whose
+     *  branches have the heads HEADS, and in which master's head has the
+     *  message MESSAGE, and print what each cost. */
+    private static void runCommands(Map<String, String> heads,
+                                    String message) throws IOException {
+        File remote = Utils.join(CWD, REMOTE);
+        copy(GITLET_DIR, Utils.join(remote, ".gitlet"));
+        Utils.writeContents(Utils.join(remote, "remote.txt"), "remote\n");
+        gitlet(remote, false, "add", "remote.txt");
+        gitlet(remote, false, "commit", "remote commit");
+
+        String master = heads.get("master");
+        String other = heads.size() > 1
+            ? new ArrayList<>(heads.keySet()).get(1) : "topic";
+        String file = fileName(0), removed = fileName(1);
+        traced("status");
+        traced("log");
+        traced("global-log");
+        traced("find", message);
+        traced("count", "master");
+        traced("count", "master", other.equals("topic") ? "master" : other);
+        traced("branch", "topic");
+        traced("checkout", "topic");
+        traced("checkout", "master");
+        Utils.writeContents(Utils.join(CWD, file), "changed by harness\n");
+        traced("add", file);
+        traced("commit", "harness change");
+        traced("rm", removed);
+        traced("commit", "harness removal");
+        Utils.writeContents(Utils.join(CWD, file), "changed again\n");
+        traced("checkout", "--", file);
+        traced("checkout", master, "--", file);
+        traced("merge", other);
+        String merged = Utils.readContentsAsString(HEAD);
+        traced("reset", master);
+        traced("reset", merged);
+        traced("rm-branch", "topic");
+        traced("gc");
+        traced("add-remote", "origin", REMOTE + "/.gitlet");
+        traced("fetch", "origin", "master");
+        traced("pull", "origin", "master");
+        traced("push", "origin", "master");
+        traced("rm-remote", "origin");
+        traced("gc", "--prune");
+        traced("migrate");
+        File fresh = Utils.join(CWD, "fresh");
+        fresh.mkdir();
+        report(fresh, "init");
+        Benchmark.clean(remote);
+        Benchmark.clean(fresh);
+    }
+
+    /** Run the gitlet command ARGS, traced, in the current directory, and
+     *  print what it cost. */
+    private static void traced(String... args) throws IOException {
+        report(CWD, args);
+    }
+
+    /** Run the gitlet command ARGS, traced, in DIR, and print one line
+     *  giving ARGS, the wall-clock time, and the trace. */
+    private static void report(File dir, String... args) throws IOException {
+        long start = System.nanoTime();
+        List<String> trace = gitlet(dir, true, args);
+        double wall = Benchmark.millisSince(start);
+        StringBuilder phases = new StringBuilder();
+        String command = null;
+        for (String line : trace) {
+            Matcher phase = PHASE.matcher(line);
+            if (phase.matches()) {
+                phases.append(phases.length() == 0 ? "" : ", ")
+                    .append('"').append(phase.group(1)).append("\": ")
+                    .append(phase.group(2));
+            } else if (line.startsWith("{\"command\": ")) {
+                command = line.substring(1, line.length() - 1);
+            } else {
+                throw new IllegalStateException(
+                    String.join(" ", args) + ": " + line);
+            }
+        }
+        if (command == null) {
+            throw new IllegalStateException(
+                String.join(" ", args) + ": no trace");
+        }
+        StringBuilder line = new StringBuilder("{\"args\": [");
+        for (int i = 0; i < args.length; i += 1) {
+            line.append(i == 0 ? "" : ", ").append('"')
+                .append(args[i].replace("\\", "\\\\").replace("\"", "\\\""))
+                .append('"');
+        }
+        System.out.printf("%s], \"wall_ms\": %.3f, %s, \"phases\": {%s}}%n",
+                          line, wall, command, phases);
+    }
+
+    /** Run the gitlet command ARGS in DIR, traced iff TRACE, and return the
+     *  lines of its standard error.  Its standard output is discarded. */
+    private static List<String> gitlet(File dir, boolean trace,
+                                       String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Utils.join(System.getProperty("java.home"), "bin",
+                               "java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        if (trace) {
+            command.add(TRACE);
+        }
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(dir)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        String errors = new String(process.getErrorStream().readAllBytes(),
+                                   StandardCharsets.UTF_8);
+        try {
+            process.waitFor();
+        } catch (InterruptedException excp) {
+            throw new IllegalStateException(excp);
+        }
+        return errors.isEmpty() ? List.of() : Arrays.asList(
+            errors.split("\n"));
+    }
+
+    /** Copy FROM, and everything under it if it is a directory, to TO. */
+    private static void copy(File from, File to) throws IOException {
+        if (!from.isDirectory()) {
+            Files.copy(from.toPath(), to.toPath());
+            return;
+        }
+        to.mkdirs();
+        for (File child : from.listFiles()) {
+            copy(child, Utils.join(to, child.getName()));
+        }
+    }
+
+    /** Return the name of the Ith file. */
+    private static String fileName(int i) {
+        return "file" + i + ".txt";
+    }
+
+    /** Return the name of the Bth branch. */
+    private static String branchName(int b) {
+        return b == 0 ? "master" : "branch" + b;
+    }
+
+    /** Return a size from MIN to MAX, chosen using RAND so that its
+     *  logarithm is uniformly distributed. */
+    private static int size(Random rand, int min, int max) {
+        double log = Math.log(min)
+            + rand.nextDouble() * (Math.log(max) - Math.log(min));
+        return (int) Math.min(max, Math.round(Math.exp(log)));
+    }
+
+    /** Return SIZE bytes of lines of words chosen using RAND. */
+    private static byte[] text(Random rand, int size) {
+        StringBuilder text = new StringBuilder(size + LINE_LENGTH);
+        while (text.length() < size) {
+            int start = text.length();
+            while (text.length() - start < LINE_LENGTH) {
+                text.append(WORDS[rand.nextInt(WORDS.length)]).append(' ');
+            }
+            text.setCharAt(text.length() - 1, '\n');
+        }
+        text.setLength(size);
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Return CONTENTS with the line LINE inserted at the start of a line
+     *  chosen using RAND. */
+    private static byte[] edit(byte[] contents, Random rand, String line) {
+        int at = rand.nextInt(contents.length + 1);
+        while (at > 0 && contents[at - 1] != '\n') {
+            at -= 1;
+        }
+        byte[] added = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[contents.length + added.length];
+        System.arraycopy(contents, 0, result, 0, at);
+        System.arraycopy(added, 0, result, at, added.length);
+        System.arraycopy(contents, at, result, at + added.length,
+                         contents.length - at);
+        return result;
+    }
+
+    /** A line of the trace of one phase (see Trace). */
+    private static final Pattern PHASE =
+        Pattern.compile("\\{\"phase\": \"(.*)\", \"ms\": ([0-9.]+)\\}");
+
+    /** Name of the directory holding the remote repository. */
+    private static final String REMOTE = "remote";
+
+    /** Values of the options when not given. */
+    private static final Map<String, String> DEFAULTS = Map.of(
+        "--files", "100", "--commits", "100", "--branches", "4",
+        "--size", "100-10000", "--changes", "1", "--seed", "1",
+        "--loose", "false");
+
+    /** Approximate length of the lines of the files. */
+    private static final int LINE_LENGTH = 60;
+
+    /** Words of which the files are made. */
+    private static final String[] WORDS = {
+        "commit", "tree", "blob", "branch", "merge", "head", "index",
+        "pack", "delta", "chunk", "stage", "remote", "fetch", "push",
+    };
+}
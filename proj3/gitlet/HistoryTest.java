@@ -0,0 +1,46 @@
+package gitlet;
+
+import java.io.File;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of history walks and log.
+ *  @author hamza
+ */
+public class HistoryTest {
+
+    /** Log a history much deeper than recursion allows. */
+    @Test
+    public void longLog() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        File commits = Utils.join(dir, ".gitlet", "committed");
+        String parent = Utils.readContentsAsString(Utils.join(commits,
+                                                              "HEAD"));
+        LocalDateTime time = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = 0; i < DEPTH; i += 1) {
+            Commit commit = new Commit("commit " + i, parent,
+                                       time.plusMinutes(i), Tree.EMPTY);
+            byte[] bytes = CommitCodec.encode(commit);
+            parent = Utils.sha1(bytes);
+            Utils.writeContents(Utils.join(commits, parent),
+                                Compression.encode(bytes));
+        }
+        Utils.writeContents(Utils.join(commits, "HEAD"), parent);
+        Utils.writeContents(Utils.join(dir, ".gitlet", "branches",
+                                       "AllBranches", "master"), parent);
+        String[] lines = gitlet(dir, "log").split("\n");
+        assertEquals(5 * (DEPTH + 1) - 1, lines.length);
+        assertEquals("commit " + parent, lines[1]);
+        assertEquals("commit " + (DEPTH - 1), lines[3]);
+        assertEquals("", lines[4]);
+        assertEquals("initial commit", lines[lines.length - 1]);
+        Benchmark.clean(dir);
+    }
+
+    /** Number of commits in the long history. */
+    private static final int DEPTH = 30000;
+}
@@ -3,6 +3,7 @@ package gitlet;
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Objects;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
@@ -13,14 +14,62 @@ public class Main {
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
     public static void main(String... args) throws IOException {
-        if (args == null) {
-            System.out.println("Please enter a command.");
+        try {
+            run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
             System.exit(0);
         }
+    }
+
+    /** Perform the command in ARGS on the repository in the current
+     *  directory, first recovering from any crash (see Refs) and bringing
+     *  its objects up to the current format (see Format), and sync
+     *  what it wrote (see Durable).  If a server is running for the
+     *  repository and this is not it, its cached state is marked stale
+     *  before and after the command (see Server).  User errors are thrown as
+     *  GitletExceptions.  If ARGS[0] is --trace, perform the command in
+     *  the rest of ARGS, and report the time taken by each of its phases
+     *  and what it cost on the standard error (see Trace). */
+    static void run(String... args) throws IOException {
+        if (args != null && args.length > 0 && args[0].equals(TRACE)) {
+            String[] command = Arrays.copyOfRange(args, 1, args.length);
+            Trace.setEnabled(true);
+            try {
+                Trace.run(command.length == 0 ? args : command,
+                          () -> run(command), System.err);
+            } finally {
+                Trace.setEnabled(false);
+            }
+            return;
+        }
+        if (args == null || args.length == 0) {
+            throw Utils.error("Please enter a command.");
+        }
         if (!args[0].equals("init") && !GITLET_DIR.exists()) {
-            System.out.println("Not in an initialized Gitlet directory.");
-            System.exit(0);
+            throw Utils.error("Not in an initialized Gitlet directory.");
         }
+        Server.markStale();
+        try {
+            if (GITLET_DIR.exists()) {
+                try (Trace.Phase phase = Trace.phase("recover")) {
+                    Refs.recover();
+                }
+                Format.upgrade();
+            }
+            try (Trace.Phase phase = Trace.phase(args[0])) {
+                dispatch(args);
+            }
+            try (Trace.Phase phase = Trace.phase("sync")) {
+                Durable.sync();
+            }
+        } finally {
+            Server.markStale();
+        }
+    }
+
+    /** Perform the command given by ARGS[0] with operands ARGS[1..]. */
+    static void dispatch(String... args) throws IOException {
         switch (args[0]) {
         case "init":
             validateNumArgs("init", args, 1);
@@ -30,8 +79,7 @@ public class Main {
             Commands.add(args[1]); break;
         case "commit":
             if (args.length == 1 || args[1].equals("")) {
-                System.out.println("Please enter a commit message.");
-                System.exit(0);
+                throw Utils.error("Please enter a commit message.");
             }
             validateNumArgs("commit", args, 2);
             directoryCheck();
@@ -66,19 +114,75 @@ public class Main {
             Commands.reset(args[1]);
             break;
         case "merge":
+            validateNumArgs("merge", args, 2);
+            Merge.merge(args[1]);
+            break;
+        case "gc":
+            if (args.length == 2 && args[1].equals("--prune")) {
+                Prune.prune();
+            } else {
+                validateNumArgs("gc", args, 1);
+                ObjectStore.gc();
+            }
+            break;
+        case "count":
+            if (args.length == 2) {
+                Bitmaps.count(args[1], null);
+            } else {
+                validateNumArgs("count", args, 3);
+                Bitmaps.count(args[1], args[2]);
+            }
+            break;
+        case "add-remote":
+            validateNumArgs("add-remote", args, 3);
+            Remote.addRemote(args[1], args[2]);
+            break;
+        case "rm-remote":
+            validateNumArgs("rm-remote", args, 2);
+            Remote.rmRemote(args[1]);
+            break;
+        case "fetch":
+            validateNumArgs("fetch", args, 3);
+            Remote.fetch(args[1], args[2]);
+            break;
+        case "push":
+            validateNumArgs("push", args, 3);
+            Remote.push(args[1], args[2]);
+            break;
+        case "pull":
+            validateNumArgs("pull", args, 3);
+            Remote.pull(args[1], args[2]);
+            break;
+        case "upload-pack":
+            validateNumArgs("upload-pack", args, 1);
+            Remote.uploadPack();
+            break;
+        case "receive-pack":
+            validateNumArgs("receive-pack", args, 1);
+            Remote.receivePack();
+            break;
+        case "migrate":
+            validateNumArgs("migrate", args, 1);
+            CommitCodec.migrate();
+            break;
+        case "serve":
+            if (args.length == 2 && args[1].equals("--stop")) {
+                Server.stop();
+            } else {
+                validateNumArgs("serve", args, 1);
+                Server.serve();
+            }
             break;
         default:
-            System.out.println("No command with that name exists.");
-            System.exit(0);
+            throw Utils.error("No command with that name exists.");
         }
     }
     /** Initializes the files.*/
     public static void initialize() throws GitletException {
         if (GITLET_DIR.exists()) {
-            System.out.println(
+            throw Utils.error(
                     "A Gitlet version-control system already exists in "
                             + "the current directory.");
-            System.exit(0);
         } else if (!GITLET_DIR.exists()) {
             GITLET_DIR.mkdir();
         }
@@ -88,6 +192,9 @@ public class Main {
         if (!CONTENT_DIR.exists()) {
             CONTENT_DIR.mkdir();
         }
+        if (!TREE_DIR.exists()) {
+            TREE_DIR.mkdir();
+        }
         if (!STAGING_DIR.exists()) {
             STAGING_DIR.mkdir();
         }
@@ -115,6 +222,7 @@ public class Main {
                 System.out.println("Could not create HEAD file");
             }
         }
+        Format.init();
     }
 
     /** Returns the SHA-1 contained in the HEAD file. */
@@ -148,8 +256,7 @@ public class Main {
      * */
     public static void check(String... args) throws IOException {
         if (args.length < 2 || args.length > 4) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            throw Utils.error("Incorrect operands.");
         } else if (args.length == 3 && args[1].equals("--")) {
             Commands.checkoutFileDefault(args[2]);
         } else if (args.length == 4 && args[2].equals("--")) {
@@ -157,8 +264,7 @@ public class Main {
         } else if (args.length == 2) {
             Commands.checkoutBranch(args[1]);
         } else {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            throw Utils.error("Incorrect operands.");
         }
     }
 
@@ -171,11 +277,12 @@ public class Main {
                 || STAGING_DIR_REMOVAL.list() == null
                 || Objects.requireNonNull(Utils.plainFilenamesIn
                 (STAGING_DIR_REMOVAL)).size() == 0)) {
-            System.out.println("No changes added to the commit.");
-            System.exit(0);
+            throw Utils.error("No changes added to the commit.");
         }
     }
 
+    /** The option that traces a command (see Trace). */
+    static final String TRACE = "--trace";
     /** The Current Working Directory. */
     static final File CWD = new File(".");
     /** .gitlet directory. */
@@ -188,6 +295,32 @@ public class Main {
     static final File STAGING_DIR_REMOVAL = Utils.join(GITLET_DIR, "remove");
     /** .gitlet directory. */
     static final File CONTENT_DIR = Utils.join(GITLET_DIR, "content");
+    /** Directory holding loose tree objects. */
+    static final File TREE_DIR = Utils.join(GITLET_DIR, "trees");
+    /** File holding the stat cache of the working directory. */
+    static final File STAT_CACHE = Utils.join(GITLET_DIR, "stat-cache");
+    /** Directory holding the files a checkout is about to write. */
+    static final File CHECKOUT_DIR = Utils.join(GITLET_DIR, "checkout");
+    /** Directory holding files about to be renamed into place. */
+    static final File TMP_DIR = Utils.join(GITLET_DIR, "tmp");
+    /** File holding the write-ahead log of a ref update. */
+    static final File REF_LOG = Utils.join(GITLET_DIR, "ref-log");
+    /** File holding the format version of the objects (see Format). */
+    static final File FORMAT = Utils.join(GITLET_DIR, "format");
+    /** Socket on which a Gitlet server listens (see Server). */
+    static final File SOCKET = Utils.join(GITLET_DIR, "socket");
+    /** File holding the commit graph. */
+    static final File COMMIT_GRAPH = Utils.join(GITLET_DIR, "commit-graph");
+    /** Directory holding the commit index. */
+    static final File COMMIT_INDEX_DIR = Utils.join(GITLET_DIR, "commit-index");
+    /** Directory holding the table of commit ids. */
+    static final File COMMIT_IDS_DIR = Utils.join(GITLET_DIR, "commit-ids");
+    /** Directory holding the packfile. */
+    static final File PACK_DIR = Utils.join(GITLET_DIR, "pack");
+    /** Directory of the names of remote repositories. */
+    static final File REMOTES_DIR = Utils.join(GITLET_DIR, "remotes");
+    /** Reachability bitmaps of the packed commits. */
+    static final File BITMAPS = Utils.join(PACK_DIR, "pack.bmp");
     /** .gitlet directory. */
     static final File BRANCHES_DIR = Utils.join(GITLET_DIR, "branches");
     /** .gitlet directory. */
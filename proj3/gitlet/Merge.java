@@ -0,0 +1,133 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static gitlet.Main.*;
+
+/** The merge command.
+ *
+ *  Whether one head is an ancestor of the other, and otherwise the split
+ *  point of the two branches, are found in the commit graph (see
+ *  CommitGraph.isAncestor and CommitGraph.mergeBase), which walks only
+ *  the commits above the answer.
+ *  Only files that differ between the split point and one of the two
+ *  heads are looked at, by diffing trees (see Tree.diff).  A file
+ *  changed on only one side takes that side's version; a file changed
+ *  differently on both is merged line by line (see Diff.merge), with
+ *  conflicting regions marked in the result.  The merged files are then
+ *  written to the working directory and staged, and committed with both
+ *  heads as parents.
+ *  @author hamza
+ */
+class Merge {
+
+    /** Merge the files of the head of the branch named BRANCH into those
+     *  of the current branch, and commit the result. */
+    static void merge(String branch) throws IOException {
+        if (!isEmpty(STAGING_DIR) || !isEmpty(STAGING_DIR_REMOVAL)) {
+            throw Utils.error("You have uncommitted changes.");
+        }
+        File branchFile = Utils.join(ALL_BRANCHES, branch);
+        if (!branchFile.isFile()) {
+            throw Utils.error("A branch with that name does not exist.");
+        }
+        String current = Utils.readContentsAsString(HEAD_BRANCH);
+        if (branch.equals(current)) {
+            throw Utils.error("Cannot merge a branch with itself.");
+        }
+        String head = getHead(), other = Utils.readContentsAsString(branchFile);
+        CommitGraph graph = CommitGraph.get();
+        if (graph.isAncestor(other, head)) {
+            System.out.println(
+                "Given branch is an ancestor of the current branch.");
+            return;
+        }
+        String headTree = ObjectStore.readCommit(head).getTree(),
+            otherTree = ObjectStore.readCommit(other).getTree();
+        if (graph.isAncestor(head, other)) {
+            Checkout.run(headTree, otherTree);
+            Map<File, String> refs = new LinkedHashMap<>();
+            refs.put(Utils.join(ALL_BRANCHES, current), other);
+            refs.put(HEAD, other);
+            Refs.update(refs);
+            System.out.println("Current branch fast-forwarded.");
+            return;
+        }
+        String split;
+        try (Trace.Phase phase = Trace.phase("base")) {
+            split = graph.mergeBase(head, other);
+        }
+        String baseTree = split == null ? Tree.EMPTY
+            : ObjectStore.readCommit(split).getTree();
+        Map<String, Tree.Change> ours = new HashMap<>();
+        for (Tree.Change change : Tree.diff(baseTree, headTree)) {
+            ours.put(change.name, change);
+        }
+        Map<String, String> changes = new HashMap<>();
+        boolean conflict = false;
+        Trace.Phase combine = Trace.phase("combine");
+        for (Tree.Change theirs : Tree.diff(baseTree, otherTree)) {
+            Tree.Change mine = ours.get(theirs.name);
+            if (mine == null) {
+                changes.put(theirs.name, theirs.after);
+            } else if (!Objects.equals(mine.after, theirs.after)) {
+                Diff.Lines lines = new Diff.Lines();
+                int[] base = read(lines, theirs.before),
+                    a = read(lines, mine.after), b = read(lines, theirs.after);
+                File tmp = Durable.tempFile("merge");
+                try {
+                    try (OutputStream out = new BufferedOutputStream(
+                             new FileOutputStream(tmp))) {
+                        conflict |= Diff.merge(base, a, b, lines, out);
+                    }
+                    changes.put(theirs.name, Blob.store(tmp, mine.after));
+                } finally {
+                    tmp.delete();
+                }
+            }
+        }
+        combine.close();
+        try (Trace.Phase phase = Trace.phase("checkout")) {
+            Checkout.run(headTree, Tree.update(headTree, changes), false);
+        }
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            if (e.getValue() == null) {
+                Utils.join(STAGING_DIR_REMOVAL, e.getKey()).createNewFile();
+            } else {
+                Utils.writeContents(Utils.join(STAGING_DIR, e.getKey()),
+                                    e.getValue());
+            }
+        }
+        try (Trace.Phase phase = Trace.phase("commit")) {
+            new Commit(head, other,
+                       "Merged " + branch + " into " + current + ".",
+                       LocalDateTime.now());
+        }
+        if (conflict) {
+            System.out.println("Encountered a merge conflict.");
+        }
+    }
+
+    /** Return the line numbers, in LINES, of the contents of the blob
+     *  with id SHA, which is empty if SHA is null. */
+    private static int[] read(Diff.Lines lines, String sha)
+        throws IOException {
+        return sha == null ? new int[0] : lines.read(Blob.open(sha));
+    }
+
+    /** Return true iff DIR has no plain files. */
+    private static boolean isEmpty(File dir) {
+        List<String> names = Utils.plainFilenamesIn(dir);
+        return names == null || names.isEmpty();
+    }
+}
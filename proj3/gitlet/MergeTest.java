@@ -0,0 +1,192 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of line diffs, three-way merges, and the merge command.
+ *  @author hamza
+ */
+public class MergeTest {
+
+    /** Return the length of a longest common subsequence of A and B. */
+    private static int lcs(int[] a, int[] b) {
+        int[][] len = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i -= 1) {
+            for (int j = b.length - 1; j >= 0; j -= 1) {
+                len[i][j] = a[i] == b[j] ? len[i + 1][j + 1] + 1
+                    : Math.max(len[i + 1][j], len[i][j + 1]);
+            }
+        }
+        return len[0][0];
+    }
+
+    /** Return a random array of length at most MAX with elements drawn
+     *  from RANGE values, using RAND. */
+    private static int[] random(Random rand, int max, int range) {
+        int[] result = new int[rand.nextInt(max + 1)];
+        for (int k = 0; k < result.length; k += 1) {
+            result[k] = rand.nextInt(range);
+        }
+        return result;
+    }
+
+    @Test
+    public void diffIsShortest() {
+        Random rand = new Random(61);
+        for (int trial = 0; trial < 2000; trial += 1) {
+            int[] a = random(rand, 30, 4), b = random(rand, 30, 4);
+            List<Diff.Hunk> hunks = Diff.diff(a, b);
+            int edits = 0, i = 0, j = 0;
+            for (Diff.Hunk h : hunks) {
+                assertEquals(h.aStart - i, h.bStart - j);
+                for (; i < h.aStart; i += 1, j += 1) {
+                    assertEquals(a[i], b[j]);
+                }
+                edits += h.aEnd - h.aStart + h.bEnd - h.bStart;
+                i = h.aEnd;
+                j = h.bEnd;
+            }
+            assertEquals(a.length - i, b.length - j);
+            for (; i < a.length; i += 1, j += 1) {
+                assertEquals(a[i], b[j]);
+            }
+            assertEquals(a.length + b.length - 2 * lcs(a, b), edits);
+        }
+    }
+
+    /** Return the three-way merge of texts BASE, OURS and THEIRS,
+     *  prefixed by "!" if it had conflicts. */
+    private static String merge(String base, String ours, String theirs)
+        throws IOException {
+        Diff.Lines lines = new Diff.Lines();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean conflict =
+            Diff.merge(read(lines, base), read(lines, ours),
+                       read(lines, theirs), lines, out);
+        return (conflict ? "!" : "") + out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Return the line numbers of TEXT in LINES. */
+    private static int[] read(Diff.Lines lines, String text)
+        throws IOException {
+        return lines.read(new ByteArrayInputStream(
+            text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void threeWay() throws IOException {
+        String base = "a\nb\nc\nd\ne\n";
+        assertEquals("A\nb\nc\nd\nE\n",
+                     merge(base, "A\nb\nc\nd\ne\n", "a\nb\nc\nd\nE\n"));
+        assertEquals("a\nB\nc\nd\ne\n",
+                     merge(base, "a\nB\nc\nd\ne\n", "a\nB\nc\nd\ne\n"));
+        assertEquals("a\nc\nd\nx\ne\n",
+                     merge(base, "a\nc\nd\ne\n", "a\nb\nc\nd\nx\ne\n"));
+        assertEquals("!a\n<<<<<<< HEAD\nB\n=======\nb2\n>>>>>>>\nc\nd\ne\n",
+                     merge(base, "a\nB\nc\nd\ne\n", "a\nb2\nc\nd\ne\n"));
+        assertEquals("!<<<<<<< HEAD\nx\n=======\n>>>>>>>\n",
+                     merge("a\n", "x", ""));
+        assertEquals("!<<<<<<< HEAD\nnew\n=======\nNEW\n>>>>>>>\n",
+                     merge("", "new\n", "NEW\n"));
+    }
+
+    /** Write CONTENTS to the file NAME in DIR. */
+    private static void write(File dir, String name, String contents) {
+        Utils.writeContents(Utils.join(dir, name), contents);
+    }
+
+    /** Return the contents of the file NAME in DIR, or null if there is
+     *  none. */
+    private static String read(File dir, String name) {
+        File file = Utils.join(dir, name);
+        return file.isFile() ? Utils.readContentsAsString(file) : null;
+    }
+
+    @Test
+    public void mergeCommand() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        write(dir, "f.txt", "1\n2\n3\n4\n5\n");
+        write(dir, "keep.txt", "keep");
+        write(dir, "gone.txt", "gone");
+        gitlet(dir, "add", ".");
+        gitlet(dir, "commit", "base");
+        gitlet(dir, "branch", "other");
+        assertEquals("Cannot merge a branch with itself.\n",
+                     gitlet(dir, "merge", "master"));
+        assertEquals("A branch with that name does not exist.\n",
+                     gitlet(dir, "merge", "nope"));
+        write(dir, "f.txt", "one\n2\n3\n4\n5\n");
+        gitlet(dir, "add", "f.txt");
+        gitlet(dir, "commit", "ours");
+        gitlet(dir, "checkout", "other");
+        write(dir, "f.txt", "1\n2\n3\n4\nfive\n");
+        write(dir, "new.txt", "new");
+        gitlet(dir, "add", ".");
+        gitlet(dir, "rm", "gone.txt");
+        gitlet(dir, "commit", "theirs");
+        gitlet(dir, "checkout", "master");
+        write(dir, "new.txt", "untracked");
+        assertEquals(Checkout.UNTRACKED_IN_THE_WAY + "\n",
+                     gitlet(dir, "merge", "other"));
+        Utils.join(dir, "new.txt").delete();
+        assertEquals("", gitlet(dir, "merge", "other"));
+        assertEquals("one\n2\n3\n4\nfive\n", read(dir, "f.txt"));
+        assertEquals("new", read(dir, "new.txt"));
+        assertEquals("keep", read(dir, "keep.txt"));
+        assertNull(read(dir, "gone.txt"));
+        String log = gitlet(dir, "log");
+        assertTrue(log.matches("(?s)===\ncommit [0-9a-f]{40}\n"
+                               + "Merge: [0-9a-f]{7} [0-9a-f]{7}\n.*"
+                               + "Merged other into master\\.\n\n.*"));
+        assertEquals("Given branch is an ancestor of the current branch.\n",
+                     gitlet(dir, "merge", "other"));
+        gitlet(dir, "checkout", "other");
+        assertEquals("Current branch fast-forwarded.\n",
+                     gitlet(dir, "merge", "master"));
+        assertEquals("one\n2\n3\n4\nfive\n", read(dir, "f.txt"));
+        Benchmark.clean(dir);
+    }
+
+    /** Once one branch has merged the other, the split point of the two
+     *  is the commit merged in, not where they first diverged. */
+    @Test
+    public void mergeAfterMerge() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        write(dir, "a.txt", "a0\n");
+        write(dir, "b.txt", "b0\n");
+        gitlet(dir, "add", ".");
+        gitlet(dir, "commit", "base");
+        gitlet(dir, "branch", "other");
+        write(dir, "a.txt", "a1\n");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "a1");
+        gitlet(dir, "checkout", "other");
+        write(dir, "b.txt", "b1\n");
+        gitlet(dir, "add", "b.txt");
+        gitlet(dir, "commit", "b1");
+        gitlet(dir, "merge", "master");
+        write(dir, "b.txt", "b2\n");
+        gitlet(dir, "add", "b.txt");
+        gitlet(dir, "commit", "b2");
+        gitlet(dir, "checkout", "master");
+        write(dir, "a.txt", "a2\n");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "a2");
+        assertEquals("", gitlet(dir, "merge", "other"));
+        assertEquals("a2\n", read(dir, "a.txt"));
+        assertEquals("b2\n", read(dir, "b.txt"));
+        Benchmark.clean(dir);
+    }
+
+}
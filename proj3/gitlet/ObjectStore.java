@@ -0,0 +1,409 @@
+package gitlet;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiPredicate;
+
+import static gitlet.Main.*;
+
+/** The object database.  Commits, tree nodes (see Tree), and file
+ *  contents (blobs) are found by their SHA-1 ids, first in the pack (see
+ *  Pack) and then as loose files in COMMIT_DIR, TREE_DIR, and
+ *  CONTENT_DIR.  New objects are always written loose, each in full
+ *  before it appears under its id, and are forced to disk in a batch
+ *  before any ref names them (see Durable); the gc command moves them
+ *  into the pack.  Objects are compressed as they are written and
+ *  decompressed as they are read (see Compression), so the readers and
+ *  writers here deal only in their contents.
+ *  @author hamza
+ */
+class ObjectStore {
+
+    /** Return true iff there is a commit with full id ID. */
+    static boolean hasCommit(String id) {
+        return !id.equals("HEAD")
+            && (pack().contains(id, Pack.COMMIT)
+                || Utils.join(COMMIT_DIR, id).isFile());
+    }
+
+    /** Return the commit with full id ID.  The most recently used
+     *  commits are kept decoded in memory, so the result is shared and
+     *  must not be modified. */
+    static Commit readCommit(String id) {
+        synchronized (COMMIT_CACHE) {
+            Commit cached = COMMIT_CACHE.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Commit commit = CommitCodec.decode(readCommitData(id));
+        synchronized (COMMIT_CACHE) {
+            COMMIT_CACHE.put(id, commit);
+        }
+        return commit;
+    }
+
+    /** Return the stored form of the commit with full id ID (see
+     *  CommitCodec). */
+    static byte[] readCommitData(String id) {
+        Trace.decoded();
+        byte[] packed = pack().read(id, Pack.COMMIT);
+        if (packed != null) {
+            return Compression.decode(packed);
+        }
+        return Compression.decode(
+            Utils.readContents(Utils.join(COMMIT_DIR, id)));
+    }
+
+    /** Forget all cached commits. */
+    static void clearCache() {
+        synchronized (COMMIT_CACHE) {
+            COMMIT_CACHE.clear();
+        }
+    }
+
+    /** Return true iff there is a tree node with id ID. */
+    static boolean hasTree(String id) {
+        return pack().contains(id, Pack.TREE)
+            || Utils.join(TREE_DIR, id).isFile();
+    }
+
+    /** Return the encoding of the tree node with id ID (see Tree). */
+    static byte[] readTree(String id) {
+        Trace.decoded();
+        byte[] packed = pack().read(id, Pack.TREE);
+        if (packed != null) {
+            return Compression.decode(packed);
+        }
+        return Compression.decode(
+            Utils.readContents(Utils.join(TREE_DIR, id)));
+    }
+
+    /** Write DATA as the loose tree node with id ID. */
+    static void writeTree(String id, byte[] data) {
+        TREE_DIR.mkdir();
+        Durable.write(Utils.join(TREE_DIR, id), Compression.encode(data));
+    }
+
+    /** Write DATA as the loose commit with id ID. */
+    static void writeCommit(String id, byte[] data) {
+        Durable.write(Utils.join(COMMIT_DIR, id), Compression.encode(data));
+    }
+
+    /** Return true iff there is a blob with id SHA. */
+    static boolean hasBlob(String sha) {
+        return pack().contains(sha, Pack.BLOB)
+            || Utils.join(CONTENT_DIR, sha).isFile();
+    }
+
+    /** Return the stored form of the blob with id SHA (see Blob). */
+    static byte[] readBlob(String sha) {
+        Trace.decoded();
+        byte[] packed = pack().read(sha, Pack.BLOB);
+        if (packed != null) {
+            return Compression.decode(packed);
+        }
+        return Compression.decode(
+            Utils.readContents(Utils.join(CONTENT_DIR, sha)));
+    }
+
+    /** Return a stream over the stored form of the blob with id SHA, which
+     *  is decompressed as it is read. */
+    static InputStream openBlob(String sha) throws IOException {
+        Trace.decoded();
+        return Compression.decode(openRawBlob(sha));
+    }
+
+    /** Return the size in bytes of the stored form of the blob with id
+     *  SHA. */
+    static long blobSize(String sha) {
+        try (InputStream in = openRawBlob(sha)) {
+            return Compression.length(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write STORED as the loose blob object with id SHA. */
+    static void writeBlob(String sha, byte[] stored) {
+        Durable.write(Utils.join(CONTENT_DIR, sha),
+                      Compression.encode(stored));
+    }
+
+    /** Make the file TMP, which must be a temporary file from
+     *  Durable.tempFile written through Compression.encoder, the blob
+     *  object with id SHA.  TMP is deleted if that blob already
+     *  exists. */
+    static void moveBlob(File tmp, String sha) throws IOException {
+        if (hasBlob(sha)) {
+            tmp.delete();
+        } else {
+            File blob = Utils.join(CONTENT_DIR, sha);
+            Files.move(tmp.toPath(), blob.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+            Durable.written(blob);
+        }
+    }
+
+    /** Return a stream over the blob with id SHA as it is kept in the
+     *  pack or loose file, with its compression header. */
+    private static InputStream openRawBlob(String sha) throws IOException {
+        return openStored(sha, Pack.BLOB);
+    }
+
+    /** Return the ids of all commits, packed or loose, in lexicographic
+     *  order. */
+    static List<String> commitIds() {
+        return ids(Pack.COMMIT);
+    }
+
+    /** Return the ids of all objects of type TYPE (see Pack), packed or
+     *  loose, in lexicographic order. */
+    static List<String> ids(byte type) {
+        TreeSet<String> ids = new TreeSet<>(pack().ids(type));
+        ids.addAll(looseIds(type));
+        return new ArrayList<>(ids);
+    }
+
+    /** Return the file that holds the loose object of type TYPE with id
+     *  ID, whether or not it exists. */
+    static File looseFile(String id, byte type) {
+        return Utils.join(looseDir(type), id);
+    }
+
+    /** Return the directory of the loose objects of type TYPE. */
+    private static File looseDir(byte type) {
+        switch (type) {
+        case Pack.COMMIT:
+            return COMMIT_DIR;
+        case Pack.TREE:
+            return TREE_DIR;
+        default:
+            return CONTENT_DIR;
+        }
+    }
+
+    /** Move all loose objects into the pack, then delete the loose
+     *  copies and rebuild the reachability bitmaps (see Bitmaps). */
+    static void gc() {
+        List<File> files = new ArrayList<>();
+        List<Byte> types = new ArrayList<>();
+        for (String id : looseIds(Pack.COMMIT)) {
+            files.add(Utils.join(COMMIT_DIR, id));
+            types.add(Pack.COMMIT);
+        }
+        List<String> trees = Utils.plainFilenamesIn(TREE_DIR);
+        if (trees != null) {
+            for (String id : trees) {
+                files.add(Utils.join(TREE_DIR, id));
+                types.add(Pack.TREE);
+            }
+        }
+        List<String> blobs = Utils.plainFilenamesIn(CONTENT_DIR);
+        if (blobs != null) {
+            for (String sha : blobs) {
+                files.add(Utils.join(CONTENT_DIR, sha));
+                types.add(Pack.BLOB);
+            }
+        }
+        if (files.isEmpty()) {
+            if (!BITMAPS.isFile()) {
+                Bitmaps.build();
+            }
+            return;
+        }
+        Bitmaps.discard();
+        try (Trace.Phase phase = Trace.phase("pack")) {
+            pack().add(files, types);
+            Durable.sync();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        for (File file : files) {
+            file.delete();
+        }
+        try (Trace.Phase phase = Trace.phase("bitmaps")) {
+            Bitmaps.build();
+        }
+    }
+
+    /** Delete the commits whose ids are in REMOVE but not in KEEP.  If any
+     *  of them are packed, the pack is rebuilt without them. */
+    static void removeCommits(Collection<String> remove,
+                              Collection<String> keep) {
+        Set<String> doomed = new HashSet<>(remove);
+        doomed.removeAll(keep);
+        boolean packed = false;
+        for (String id : doomed) {
+            Utils.join(COMMIT_DIR, id).delete();
+            packed |= pack().contains(id, Pack.COMMIT);
+        }
+        clearCache();
+        if (packed) {
+            repack((type, id) -> type == Pack.COMMIT && doomed.contains(id));
+        }
+    }
+
+    /** Rebuild the pack without the packed objects for which DOOMED,
+     *  given their type and id, returns true.  The others are copied out
+     *  as loose objects and synced, then the pack is deleted and gc packs
+     *  them again. */
+    static void repack(BiPredicate<Byte, String> doomed) {
+        try {
+            for (byte type : TYPES) {
+                looseDir(type).mkdir();
+                for (String id : pack().ids(type)) {
+                    if (!doomed.test(type, id)) {
+                        unpack(id, type, looseFile(id, type));
+                    }
+                }
+            }
+            Durable.sync();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Bitmaps.discard();
+        pack().delete();
+        gc();
+    }
+
+    /** Copy the packed object of type TYPE with id SHA to the loose file
+     *  FILE, unless FILE already exists. */
+    private static void unpack(String sha, byte type, File file)
+        throws IOException {
+        if (!file.exists()) {
+            try (InputStream in = pack().open(sha, type)) {
+                Files.copy(in, file.toPath());
+            }
+            Durable.written(file);
+        }
+    }
+
+    /** Return true iff this repository has an object of type TYPE with id
+     *  ID. */
+    static boolean has(String id, byte type) {
+        return id.length() == Utils.UID_LENGTH
+            && (pack().contains(id, type) || looseFile(id, type).isFile());
+    }
+
+    /** Return the length of the stored form of the object of type TYPE
+     *  with id ID. */
+    static long storedLength(String id, byte type) {
+        long len = pack().length(id, type);
+        return len >= 0 ? len : looseFile(id, type).length();
+    }
+
+    /** Return a stream over the stored form of the object of type TYPE
+     *  with id ID, as it is kept, compressed or not. */
+    static InputStream openStored(String id, byte type) throws IOException {
+        InputStream packed = pack().open(id, type);
+        if (packed != null) {
+            return packed;
+        }
+        return new FileInputStream(looseFile(id, type));
+    }
+
+    /** Read the LENGTH-byte stored form of the object of type TYPE with id
+     *  ID from IN, and keep it as a loose object unless the object is
+     *  already present.  Return true iff it was not.  A commit whose
+     *  contents do not have the id ID is refused, so that the commit
+     *  index and graph never hold a commit under the wrong id. */
+    static boolean receive(String id, byte type, InputStream in,
+                           long length) throws IOException {
+        if (has(id, type)) {
+            in.skipNBytes(length);
+            return false;
+        }
+        File tmp = Durable.tempFile("object");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            for (long left = length; left > 0; ) {
+                int n = in.read(buf, 0, (int) Math.min(buf.length, left));
+                if (n < 0) {
+                    throw new EOFException("truncated object " + id);
+                }
+                out.write(buf, 0, n);
+                left -= n;
+            }
+        }
+        if (type == Pack.COMMIT && !Utils.sha1(
+                Compression.decode(Utils.readContents(tmp))).equals(id)) {
+            tmp.delete();
+            throw Utils.error("received commit %s does not match its id",
+                              id);
+        }
+        File file = looseFile(id, type);
+        file.getParentFile().mkdir();
+        Files.move(tmp.toPath(), file.toPath(),
+                   StandardCopyOption.ATOMIC_MOVE);
+        Durable.written(file);
+        return true;
+    }
+
+    /** Return the pack for this repository. */
+    static synchronized Pack pack() {
+        if (pack == null) {
+            pack = new Pack(PACK_DIR);
+        }
+        return pack;
+    }
+
+    /** Forget the mapped pack, so that the next access reads it from its
+     *  files again.  Cached objects stay, since objects never change. */
+    static synchronized void reload() {
+        if (pack != null) {
+            pack.close();
+        }
+    }
+
+    /** Return the ids of the loose objects of type TYPE (the files in its
+     *  directory named by full ids, which leaves out HEAD). */
+    static List<String> looseIds(byte type) {
+        List<String> result = new ArrayList<>();
+        List<String> names = Utils.plainFilenamesIn(looseDir(type));
+        if (names != null) {
+            for (String name : names) {
+                if (name.length() == Utils.UID_LENGTH) {
+                    result.add(name);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** The types of objects. */
+    static final byte[] TYPES = { Pack.COMMIT, Pack.TREE, Pack.BLOB };
+    /** Size of the buffer used to copy objects. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The pack, once opened. */
+    private static Pack pack;
+
+    /** Largest number of decoded commits kept in memory. */
+    static final int COMMIT_CACHE_SIZE = 4096;
+
+    /** The most recently read commits, by id, least recently used
+     *  first. */
+    private static final LinkedHashMap<String, Commit> COMMIT_CACHE =
+        new LinkedHashMap<>(COMMIT_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Commit> e) {
+                return size() > COMMIT_CACHE_SIZE;
+            }
+        };
+}
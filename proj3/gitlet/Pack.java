@@ -0,0 +1,404 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/** A packfile: many objects stored back to back in one append-only data
+ *  file, plus a sorted index that maps each object's SHA-1 to its offset.
+ *
+ *  The data file (pack.dat) is just the concatenation of the objects'
+ *  bytes, exactly as they would appear in a loose file.  New objects are
+ *  only ever appended to it.  The index file (pack.idx) has the layout
+ *
+ *      "GIDX" VERSION COUNT ENTRY...
+ *
+ *  where VERSION and COUNT are 4-byte ints, and each ENTRY is ENTRY_SIZE
+ *  bytes: the 20-byte binary SHA-1, a 1-byte object type, the 8-byte
+ *  offset of the object in pack.dat, and its 8-byte length.  Entries are
+ *  sorted by SHA-1, so a lookup is a binary search over the memory-mapped
+ *  index and never reads the data file.  The index is rewritten (to a
+ *  temporary file that is then renamed) each time objects are added.
+ *  A pack may be read from several threads at once.
+ *  @author hamza
+ */
+class Pack {
+
+    /** Type tag of commit objects. */
+    static final byte COMMIT = 1;
+    /** Type tag of blob (file contents) objects. */
+    static final byte BLOB = 2;
+    /** Type tag of tree objects. */
+    static final byte TREE = 3;
+
+    /** A Pack whose files live in directory DIR.  The files need not
+     *  exist yet. */
+    Pack(File dir) {
+        this.dir = dir;
+        this.dataFile = Utils.join(dir, "pack.dat");
+        this.indexFile = Utils.join(dir, "pack.idx");
+    }
+
+    /** Return true iff this pack contains an object of type TYPE
+     *  with hexadecimal id SHA. */
+    boolean contains(String sha, byte type) {
+        return find(sha, type) >= 0;
+    }
+
+    /** Return the contents of the object of type TYPE with
+     *  hexadecimal id SHA, or null if it is not in this pack. */
+    byte[] read(String sha, byte type) {
+        int k = find(sha, type);
+        if (k < 0) {
+            return null;
+        }
+        long len = index.getLong(entryPos(k) + LENGTH_POS);
+        if (len > Integer.MAX_VALUE) {
+            throw Utils.error("packed object too large: %s", sha);
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) len);
+        try {
+            long pos = index.getLong(entryPos(k) + OFFSET_POS);
+            while (buf.hasRemaining()) {
+                if (channel().read(buf, pos + buf.position()) < 0) {
+                    throw Utils.error("truncated pack file");
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return buf.array();
+    }
+
+    /** Return a stream over the contents of the object of type TYPE with
+     *  hexadecimal id SHA, or null if it is not in this pack.  The stream
+     *  reads the data file directly, so the object is never held in memory
+     *  as a whole. */
+    InputStream open(String sha, byte type) {
+        int k = find(sha, type);
+        if (k < 0) {
+            return null;
+        }
+        return new Region(index.getLong(entryPos(k) + OFFSET_POS),
+                          index.getLong(entryPos(k) + LENGTH_POS));
+    }
+
+    /** Return the length of the object of type TYPE with hexadecimal id
+     *  SHA, or -1 if it is not in this pack. */
+    long length(String sha, byte type) {
+        int k = find(sha, type);
+        return k < 0 ? -1 : index.getLong(entryPos(k) + LENGTH_POS);
+    }
+
+    /** Return the number of objects of type TYPE in this pack. */
+    int count(byte type) {
+        int n = 0;
+        for (int k = 0; k < size(); k += 1) {
+            if (index.get(entryPos(k) + TYPE_POS) == type) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Return the ids of all objects of type TYPE in this pack, in
+     *  lexicographic order. */
+    List<String> ids(byte type) {
+        List<String> result = new ArrayList<>();
+        byte[] sha = new byte[Utils.SHA_BYTES];
+        for (int k = 0; k < size(); k += 1) {
+            if (index.get(entryPos(k) + TYPE_POS) == type) {
+                index.get(entryPos(k), sha);
+                result.add(Utils.toHex(sha));
+            }
+        }
+        return result;
+    }
+
+    /** Return the position in this pack (the number of its index entry)
+     *  of the object of type TYPE with hexadecimal id SHA, or -1 if it is
+     *  not in this pack.  Positions run from 0 to size() - 1, and change
+     *  whenever objects are added. */
+    int position(String sha, byte type) {
+        return find(sha, type);
+    }
+
+    /** Return the hexadecimal id of the object at position K. */
+    String id(int k) {
+        load();
+        byte[] sha = new byte[Utils.SHA_BYTES];
+        index.get(entryPos(k), sha);
+        return Utils.toHex(sha);
+    }
+
+    /** Return the type of the object at position K. */
+    byte type(int k) {
+        load();
+        return index.get(entryPos(k) + TYPE_POS);
+    }
+
+    /** Return the number of objects in this pack. */
+    int size() {
+        load();
+        return count;
+    }
+
+    /** Append the loose object files FILES, whose names are their ids and
+     *  whose types are given by the corresponding elements of TYPES, to
+     *  this pack and rewrite the index.  Objects already in the pack are
+     *  skipped.  Does not delete FILES. */
+    void add(List<File> files, List<Byte> types) {
+        List<Entry> entries = new ArrayList<>();
+        for (int k = 0; k < size(); k += 1) {
+            entries.add(entryAt(k));
+        }
+        try {
+            dir.mkdirs();
+            try (FileChannel out = FileChannel.open(dataFile.toPath(),
+                                                    CREATE, WRITE)) {
+                long pos = out.size();
+                out.position(pos);
+                for (int i = 0; i < files.size(); i += 1) {
+                    File file = files.get(i);
+                    if (find(file.getName(), types.get(i)) >= 0) {
+                        continue;
+                    }
+                    long len = file.length();
+                    try (FileChannel src =
+                             FileChannel.open(file.toPath())) {
+                        for (long done = 0; done < len; ) {
+                            done += src.transferTo(done, len - done, out);
+                        }
+                    }
+                    entries.add(new Entry(Utils.fromHex(file.getName()),
+                                          types.get(i), pos, len));
+                    pos += len;
+                }
+                out.force(true);
+            }
+            writeIndex(entries);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        close();
+    }
+
+    /** Forget any mapped index and close the data file, so that the next
+     *  access reloads them. */
+    void close() {
+        index = null;
+        count = 0;
+        if (data != null) {
+            try {
+                data.close();
+            } catch (IOException excp) {
+                /* Ignore errors on a read-only channel. */
+            }
+            data = null;
+        }
+    }
+
+    /** Close this pack and delete its files, leaving it empty. */
+    void delete() {
+        close();
+        indexFile.delete();
+        dataFile.delete();
+    }
+
+    /** Return a read channel on the data file, opening it if needed. */
+    private synchronized FileChannel channel() throws IOException {
+        if (data == null) {
+            data = FileChannel.open(dataFile.toPath());
+        }
+        return data;
+    }
+
+    /** Write ENTRIES, in sorted order, as the new index file. */
+    private void writeIndex(List<Entry> entries) throws IOException {
+        entries.sort(Comparator.comparing((Entry e) -> e.sha,
+                                          Arrays::compareUnsigned));
+        ByteBuffer buf =
+            ByteBuffer.allocate(HEADER_SIZE + entries.size() * ENTRY_SIZE);
+        buf.put(MAGIC).putInt(VERSION).putInt(entries.size());
+        for (Entry e : entries) {
+            buf.put(e.sha).put(e.type).putLong(e.offset).putLong(e.length);
+        }
+        File tmp = Utils.join(dir, "pack.idx.tmp");
+        Utils.writeContents(tmp, buf.array());
+        Files.move(tmp.toPath(), indexFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        Durable.written(indexFile);
+    }
+
+    /** Return the index of the entry for the object of type TYPE with
+     *  hexadecimal id SHA, or -1 if there is none. */
+    private int find(String sha, byte type) {
+        if (sha.length() != Utils.UID_LENGTH || size() == 0) {
+            return -1;
+        }
+        byte[] key;
+        try {
+            key = Utils.fromHex(sha);
+        } catch (NumberFormatException excp) {
+            return -1;
+        }
+        byte[] probe = new byte[Utils.SHA_BYTES];
+        int lo, hi;
+        lo = 0;
+        hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            index.get(entryPos(mid), probe);
+            int c = Arrays.compareUnsigned(probe, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return index.get(entryPos(mid) + TYPE_POS) == type
+                    ? mid : -1;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the entry at index K. */
+    private Entry entryAt(int k) {
+        byte[] sha = new byte[Utils.SHA_BYTES];
+        index.get(entryPos(k), sha);
+        return new Entry(sha, index.get(entryPos(k) + TYPE_POS),
+                         index.getLong(entryPos(k) + OFFSET_POS),
+                         index.getLong(entryPos(k) + LENGTH_POS));
+    }
+
+    /** Return the byte position of the Kth entry in the index. */
+    private static int entryPos(int k) {
+        return HEADER_SIZE + k * ENTRY_SIZE;
+    }
+
+    /** Map the index file into memory, if not already done. */
+    private synchronized void load() {
+        if (index != null) {
+            return;
+        }
+        if (!indexFile.isFile()) {
+            index = ByteBuffer.allocate(0);
+            count = 0;
+            return;
+        }
+        try (RandomAccessFile f = new RandomAccessFile(indexFile, "r")) {
+            MappedByteBuffer map =
+                f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                                   f.length());
+            byte[] magic = new byte[MAGIC.length];
+            map.get(0, magic);
+            if (!Arrays.equals(magic, MAGIC)
+                || map.getInt(MAGIC.length) != VERSION) {
+                throw Utils.error("bad pack index: %s", indexFile);
+            }
+            count = map.getInt(MAGIC.length + 4);
+            index = map;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** An input stream over a region of the data file. */
+    private class Region extends InputStream {
+        /** A stream over the LENGTH bytes of the data file starting at
+         *  START. */
+        Region(long start, long length) {
+            this.pos = start;
+            this.end = start + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pos >= end) {
+                return -1;
+            }
+            ByteBuffer buf =
+                ByteBuffer.wrap(b, off, (int) Math.min(len, end - pos));
+            int n = channel().read(buf, pos);
+            if (n < 0) {
+                throw new IOException("truncated pack file");
+            }
+            pos += n;
+            return n;
+        }
+
+        /** Position of the next byte to read. */
+        private long pos;
+        /** End of the region. */
+        private final long end;
+    }
+
+    /** One index entry. */
+    private static class Entry {
+        /** An entry for the object with binary id SHA and type TYPE,
+         *  occupying LENGTH bytes at OFFSET in the data file. */
+        Entry(byte[] sha, byte type, long offset, long length) {
+            this.sha = sha;
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /** Binary SHA-1 id. */
+        private final byte[] sha;
+        /** Object type. */
+        private final byte type;
+        /** Position of the object in the data file. */
+        private final long offset;
+        /** Length of the object in bytes. */
+        private final long length;
+    }
+
+    /** Magic number at the start of the index. */
+    private static final byte[] MAGIC = {'G', 'I', 'D', 'X'};
+    /** Index format version. */
+    private static final int VERSION = 1;
+    /** Size of the index header. */
+    private static final int HEADER_SIZE = MAGIC.length + 8;
+    /** Offset of the type within an entry. */
+    private static final int TYPE_POS = Utils.SHA_BYTES;
+    /** Offset of the data offset within an entry. */
+    private static final int OFFSET_POS = TYPE_POS + 1;
+    /** Offset of the length within an entry. */
+    private static final int LENGTH_POS = OFFSET_POS + 8;
+    /** Size of an index entry. */
+    private static final int ENTRY_SIZE = LENGTH_POS + 8;
+
+    /** Directory holding the pack files. */
+    private final File dir;
+    /** The data file. */
+    private final File dataFile;
+    /** The index file. */
+    private final File indexFile;
+    /** The mapped index, or null if not yet loaded. */
+    private ByteBuffer index;
+    /** Number of entries in the index. */
+    private int count;
+    /** Open channel on the data file, or null if not yet opened. */
+    private FileChannel data;
+}
@@ -0,0 +1,56 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of packfiles.
+ *  @author hamza
+ */
+public class PackTest {
+
+    /** Write CONTENTS to a loose file in DIR named by its SHA-1, and
+     *  return the file. */
+    private static File loose(File dir, String contents) {
+        File file = Utils.join(dir, Utils.sha1(contents));
+        Utils.writeContents(file, contents);
+        return file;
+    }
+
+    @Test
+    public void packAndLookup() throws Exception {
+        File dir = Files.createTempDirectory("pack").toFile();
+        Pack pack = new Pack(Utils.join(dir, "pack"));
+        assertEquals(0, pack.size());
+        List<File> files = new ArrayList<>();
+        List<Byte> types = new ArrayList<>();
+        for (int i = 0; i < 100; i += 1) {
+            files.add(loose(dir, "object " + i));
+            types.add(i % 2 == 0 ? Pack.BLOB : Pack.COMMIT);
+        }
+        pack.add(files.subList(0, 50), types.subList(0, 50));
+        pack.add(files, types);
+        assertEquals(100, pack.size());
+        assertEquals(50, pack.count(Pack.COMMIT));
+        for (int i = 0; i < 100; i += 1) {
+            String sha = files.get(i).getName();
+            assertTrue(pack.contains(sha, types.get(i)));
+            assertFalse(pack.contains(sha, (byte) (3 - types.get(i))));
+            assertEquals("object " + i,
+                         new String(pack.read(sha, types.get(i))));
+        }
+        assertNull(pack.read(Utils.sha1("missing"), Pack.BLOB));
+        assertFalse(pack.contains("abc", Pack.BLOB));
+        List<String> ids = pack.ids(Pack.BLOB);
+        assertEquals(50, ids.size());
+        for (int i = 1; i < ids.size(); i += 1) {
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0);
+        }
+        Benchmark.clean(dir);
+    }
+
+}
@@ -0,0 +1,283 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static gitlet.Main.*;
+
+/** The gc --prune command: deletes every object that cannot be reached
+ *  from HEAD, a branch, or the staging area, by mark and sweep, and
+ *  packs the rest as gc does.
+ *
+ *  The objects of each type are numbered by the position of their ids
+ *  in sorted order, and marked in a bitmap indexed by those numbers.
+ *  Marking runs on the worker pool (see Workers) in two phases: first
+ *  the commits reachable from each ref are walked concurrently, one task
+ *  per ref, and then the trees of the commits found are walked in
+ *  slices.  Marks are set atomically, so each object is visited once,
+ *  however many walks reach it.  A blob also marks the blobs it is
+ *  stored in terms of (see Blob.references).  The unmarked loose objects
+ *  are then deleted in batches, also on the worker pool, and if any
+ *  unmarked objects are packed, the pack is rebuilt without them.
+ *  @author hamza
+ */
+class Prune {
+
+    /** Delete every unreachable object, pack the rest, and return the
+     *  number of bytes the deleted objects took. */
+    static long prune() throws IOException {
+        Trace.Phase mark = Trace.phase("mark");
+        Marks commits = new Marks(ObjectStore.ids(Pack.COMMIT));
+        Marks trees = new Marks(ObjectStore.ids(Pack.TREE));
+        Marks blobs = new Marks(ObjectStore.ids(Pack.BLOB));
+        List<Callable<List<String>>> walks = new ArrayList<>();
+        for (String tip : tips()) {
+            walks.add(() -> walkCommits(tip, commits));
+        }
+        List<String> roots = new ArrayList<>();
+        for (List<String> found : Workers.run(walks)) {
+            roots.addAll(found);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        int slice = Math.max(1, roots.size() / (Workers.count() * SLICES) + 1);
+        for (int from = 0; from < roots.size(); from += slice) {
+            List<String> part =
+                roots.subList(from, Math.min(from + slice, roots.size()));
+            tasks.add(() -> {
+                for (String tree : part) {
+                    Tree.walk(tree, trees::mark, sha -> markBlob(sha, blobs));
+                }
+                return null;
+            });
+        }
+        List<String> staged = Utils.plainFilenamesIn(STAGING_DIR);
+        if (staged != null) {
+            for (String name : staged) {
+                String sha = Utils.readContentsAsString(
+                    Utils.join(STAGING_DIR, name));
+                tasks.add(() -> {
+                    markBlob(sha, blobs);
+                    return null;
+                });
+            }
+        }
+        Workers.run(tasks);
+        mark.close();
+
+        Trace.Phase sweep = Trace.phase("sweep");
+        Map<Byte, Marks> marked =
+            Map.of(Pack.COMMIT, commits, Pack.TREE, trees, Pack.BLOB, blobs);
+        long reclaimed = 0;
+        boolean packed = false;
+        for (byte type : ObjectStore.TYPES) {
+            reclaimed += sweep(type, marked.get(type));
+            for (String id : ObjectStore.pack().ids(type)) {
+                if (!marked.get(type).isMarked(id)) {
+                    reclaimed += ObjectStore.pack().length(id, type);
+                    packed = true;
+                }
+            }
+        }
+        sweep.close();
+        try (Trace.Phase phase = Trace.phase("repack")) {
+            if (packed) {
+                ObjectStore.repack(
+                    (type, id) -> !marked.get(type).isMarked(id));
+            } else {
+                ObjectStore.gc();
+            }
+        }
+        if (commits.count() < commits.size()) {
+            try (Trace.Phase phase = Trace.phase("indexes")) {
+                ObjectStore.clearCache();
+                CommitIndex.get().rebuild();
+                CommitGraph.get().rebuild();
+                CommitIdTable.get().clear();
+                CommitIdTable.get();
+            }
+        }
+        return reclaimed;
+    }
+
+    /** Return the ids of the commits named by HEAD and the branches. */
+    private static Set<String> tips() {
+        return new LinkedHashSet<>(CommitIndex.heads());
+    }
+
+    /** Mark in COMMITS the commits reachable from TIP that are not yet
+     *  marked, and return the ids of their trees. */
+    private static List<String> walkCommits(String tip, Marks commits) {
+        List<String> trees = new ArrayList<>();
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(tip);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (!commits.mark(id)) {
+                continue;
+            }
+            Commit commit = ObjectStore.readCommit(id);
+            trees.add(commit.getTree());
+            if (commit.getParent() != null) {
+                stack.push(commit.getParent());
+            }
+            if (commit.getSecondParent() != null) {
+                stack.push(commit.getSecondParent());
+            }
+        }
+        return trees;
+    }
+
+    /** Mark in BLOBS the blob with id SHA and those it is stored in terms
+     *  of, if not yet marked. */
+    private static void markBlob(String sha, Marks blobs) {
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(sha);
+        try {
+            while (!stack.isEmpty()) {
+                String id = stack.pop();
+                if (blobs.mark(id)) {
+                    for (String ref : Blob.references(id)) {
+                        stack.push(ref);
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Delete the loose objects of type TYPE not marked in MARKS, in
+     *  batches on the worker pool, and return the bytes they took. */
+    private static long sweep(byte type, Marks marks) throws IOException {
+        List<Callable<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < marks.size(); from += BATCH_SIZE) {
+            int start = from, end = Math.min(from + BATCH_SIZE, marks.size());
+            batches.add(() -> {
+                long bytes = 0;
+                for (int k = start; k < end; k += 1) {
+                    if (!marks.isMarked(k)) {
+                        File file = ObjectStore.looseFile(marks.id(k), type);
+                        long len = file.length();
+                        if (file.delete()) {
+                            bytes += len;
+                        }
+                    }
+                }
+                return bytes;
+            });
+        }
+        long total = 0;
+        for (long bytes : Workers.run(batches)) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    /** A set of object ids, each of which may be marked.  Ids are kept in
+     *  binary, sorted, and found by binary search. */
+    private static class Marks {
+
+        /** A set of the ids in IDS, which must be sorted, all unmarked. */
+        Marks(List<String> ids) {
+            this.ids = new byte[ids.size() * Utils.SHA_BYTES];
+            for (int k = 0; k < ids.size(); k += 1) {
+                System.arraycopy(Utils.fromHex(ids.get(k)), 0, this.ids,
+                                 k * Utils.SHA_BYTES, Utils.SHA_BYTES);
+            }
+            this.bits = new AtomicLongArray((ids.size() + 63) / 64);
+        }
+
+        /** Return the number of ids in this set. */
+        int size() {
+            return ids.length / Utils.SHA_BYTES;
+        }
+
+        /** Return the number of marked ids. */
+        int count() {
+            int n = 0;
+            for (int w = 0; w < bits.length(); w += 1) {
+                n += Long.bitCount(bits.get(w));
+            }
+            return n;
+        }
+
+        /** Return the Kth id. */
+        String id(int k) {
+            return Utils.toHex(Arrays.copyOfRange(ids, k * Utils.SHA_BYTES,
+                                                  (k + 1) * Utils.SHA_BYTES));
+        }
+
+        /** Mark ID, and return true iff it is in this set and was not
+         *  marked before. */
+        boolean mark(String id) {
+            int k = find(id);
+            if (k < 0) {
+                return false;
+            }
+            long bit = 1L << (k & 63);
+            while (true) {
+                long word = bits.get(k >>> 6);
+                if ((word & bit) != 0) {
+                    return false;
+                }
+                if (bits.compareAndSet(k >>> 6, word, word | bit)) {
+                    return true;
+                }
+            }
+        }
+
+        /** Return true iff ID is in this set and marked. */
+        boolean isMarked(String id) {
+            int k = find(id);
+            return k >= 0 && isMarked(k);
+        }
+
+        /** Return true iff the Kth id is marked. */
+        boolean isMarked(int k) {
+            return (bits.get(k >>> 6) & (1L << (k & 63))) != 0;
+        }
+
+        /** Return the index of ID, or -1 if it is not in this set. */
+        private int find(String id) {
+            if (id.length() != Utils.UID_LENGTH) {
+                return -1;
+            }
+            byte[] key = Utils.fromHex(id);
+            int lo = 0, hi = size() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = Arrays.compareUnsigned(ids, mid * Utils.SHA_BYTES,
+                                               (mid + 1) * Utils.SHA_BYTES,
+                                               key, 0, Utils.SHA_BYTES);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /** The ids, Utils.SHA_BYTES bytes each, in order. */
+        private final byte[] ids;
+        /** The marks, one bit per id. */
+        private final AtomicLongArray bits;
+    }
+
+    /** Number of slices of the trees to mark per worker. */
+    private static final int SLICES = 4;
+    /** Number of objects examined by each task of the sweep. */
+    private static final int BATCH_SIZE = 4096;
+}
@@ -0,0 +1,107 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of gc --prune.
+ *  @author hamza
+ */
+public class PruneTest {
+
+    /** Return the number of loose and packed objects in DIR's
+     *  repository. */
+    private static int objects(File dir) {
+        int n = 0;
+        for (String sub : new String[] { "committed", "trees", "content" }) {
+            String[] names = Utils.join(dir, ".gitlet", sub).list();
+            for (String name : names == null ? new String[0] : names) {
+                n += name.length() == Utils.UID_LENGTH ? 1 : 0;
+            }
+        }
+        File index = Utils.join(dir, ".gitlet", "pack", "pack.idx");
+        if (index.exists()) {
+            n += (int) ((index.length() - 12) / 37);
+        }
+        return n;
+    }
+
+    @Test
+    public void prunesUnreachable() throws Exception {
+        for (boolean packed : new boolean[] { false, true }) {
+            File dir = tempDir();
+            File a = Utils.join(dir, "a.txt");
+            gitlet(dir, "init");
+            Utils.writeContents(a, "one");
+            gitlet(dir, "add", "a.txt");
+            gitlet(dir, "commit", "first");
+            gitlet(dir, "branch", "other");
+            gitlet(dir, "checkout", "other");
+            Utils.writeContents(Utils.join(dir, "b.txt"), "doomed");
+            gitlet(dir, "add", "b.txt");
+            gitlet(dir, "commit", "on other");
+            gitlet(dir, "checkout", "master");
+            String first = gitlet(dir, "find", "first").trim();
+            Utils.writeContents(a, "two");
+            gitlet(dir, "add", "a.txt");
+            gitlet(dir, "commit", "undone");
+            gitlet(dir, "reset", first);
+            gitlet(dir, "rm-branch", "other");
+            Utils.writeContents(a, "staged");
+            gitlet(dir, "add", "a.txt");
+            if (packed) {
+                gitlet(dir, "gc");
+            }
+            String log = gitlet(dir, "log");
+            int before = objects(dir);
+            assertEquals("", gitlet(dir, "gc", "--prune"));
+            assertEquals(before - 6, objects(dir));
+            assertEquals(log, gitlet(dir, "log"));
+            assertEquals("Found no commit with that message.\n",
+                         gitlet(dir, "find", "undone"));
+            assertFalse(gitlet(dir, "global-log").contains("on other"));
+            gitlet(dir, "commit", "after");
+            a.delete();
+            gitlet(dir, "checkout", "--", "a.txt");
+            assertEquals("staged", Utils.readContentsAsString(a));
+            gitlet(dir, "checkout", first, "--", "a.txt");
+            assertEquals("one", Utils.readContentsAsString(a));
+            Benchmark.clean(dir);
+        }
+    }
+
+    @Test
+    public void keepsChunksAndDeltaBases() throws Exception {
+        File dir = tempDir();
+        File big = Utils.join(dir, "big.bin"), text = Utils.join(dir, "t.txt");
+        byte[] contents = new byte[3 << 20];
+        new Random(61).nextBytes(contents);
+        StringBuilder lines = new StringBuilder();
+        for (int k = 0; k < 1000; k += 1) {
+            lines.append("line ").append(k).append('\n');
+        }
+        gitlet(dir, "init");
+        Utils.writeContents(big, contents);
+        Utils.writeContents(text, lines.toString());
+        gitlet(dir, "add", "big.bin");
+        gitlet(dir, "add", "t.txt");
+        gitlet(dir, "commit", "one");
+        Utils.writeContents(text, lines + "more\n");
+        gitlet(dir, "add", "t.txt");
+        gitlet(dir, "commit", "two");
+        int before = objects(dir);
+        gitlet(dir, "gc", "--prune");
+        assertEquals(before, objects(dir));
+        big.delete();
+        text.delete();
+        gitlet(dir, "checkout", "--", "big.bin");
+        gitlet(dir, "checkout", "--", "t.txt");
+        assertArrayEquals(contents, Utils.readContents(big));
+        assertEquals(lines + "more\n", Utils.readContentsAsString(text));
+        Benchmark.clean(dir);
+    }
+
+}
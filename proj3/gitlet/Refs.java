@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static gitlet.Main.*;
+
+/** All-or-nothing updates of the refs (HEAD, HEAD_BRANCH and the branch
+ *  files), together with the staging entries that a new head clears.
+ *
+ *  An update first syncs every object written so far (see Durable), so
+ *  that the refs never name anything a crash could lose.  An update of
+ *  more than one file is then recorded in the write-ahead log REF_LOG,
+ *  as
+ *
+ *      COUNT (NAME PRESENT VALUE)... CHECKSUM
+ *
+ *  where COUNT is a 4-byte int, NAME is the file's path in GITLET_DIR,
+ *  PRESENT is a byte that is 0 if the file is to be deleted, VALUE is
+ *  its new contents, and CHECKSUM is the 8-byte CRC-32 of everything
+ *  before it.  Once the log is on disk, each file is replaced atomically
+ *  (see Durable.write), the files are synced, and the log is deleted.
+ *  Every command first recovers: if it finds a complete log, a crash
+ *  came after the update was decided, and the update is redone; a torn
+ *  log is from a crash before then, and is discarded.  A single file is
+ *  replaced atomically without the log.
+ *  @author hamza
+ */
+class Refs {
+
+    /** Replace the contents of each file that is a key of CHANGES with
+     *  its value, deleting it if the value is null, so that after a crash
+     *  either all or none of the changes have been made. */
+    static void update(Map<File, String> changes) throws IOException {
+        Durable.crashPoint("objects");
+        Durable.sync();
+        boolean logged = changes.size() > 1;
+        if (logged) {
+            writeLog(changes);
+            Durable.crashPoint("log");
+        }
+        apply(changes);
+        if (logged) {
+            REF_LOG.delete();
+            Durable.force(GITLET_DIR);
+        }
+    }
+
+    /** Replace the contents of FILE with VALUE atomically. */
+    static void update(File file, String value) throws IOException {
+        Map<File, String> changes = new LinkedHashMap<>();
+        changes.put(file, value);
+        update(changes);
+    }
+
+    /** Add to CHANGES the deletion of every staged addition and
+     *  removal. */
+    static void unstage(Map<File, String> changes) {
+        for (File dir : new File[] { STAGING_DIR, STAGING_DIR_REMOVAL }) {
+            List<String> names = Utils.plainFilenamesIn(dir);
+            if (names != null) {
+                for (String name : names) {
+                    changes.put(Utils.join(dir, name), null);
+                }
+            }
+        }
+    }
+
+    /** Finish or discard an update interrupted by a crash, and remove any
+     *  temporary files it left. */
+    static void recover() throws IOException {
+        Durable.clearTemps();
+        if (!REF_LOG.exists()) {
+            return;
+        }
+        Map<File, String> changes = readLog();
+        if (changes != null) {
+            apply(changes);
+        }
+        REF_LOG.delete();
+        Durable.force(GITLET_DIR);
+    }
+
+    /** Make CHANGES, as for update, and sync them. */
+    private static void apply(Map<File, String> changes) throws IOException {
+        boolean first = true;
+        for (Map.Entry<File, String> e : changes.entrySet()) {
+            if (e.getValue() == null) {
+                Durable.delete(e.getKey());
+            } else {
+                Durable.write(e.getKey(),
+                              e.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+            if (first) {
+                Durable.crashPoint("refs");
+                first = false;
+            }
+        }
+        Durable.sync();
+    }
+
+    /** Write CHANGES to the log and force it to disk. */
+    private static void writeLog(Map<File, String> changes)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Path root = path(GITLET_DIR);
+        out.writeInt(changes.size());
+        for (Map.Entry<File, String> e : changes.entrySet()) {
+            out.writeUTF(root.relativize(path(e.getKey())).toString());
+            out.writeBoolean(e.getValue() != null);
+            out.writeUTF(e.getValue() == null ? "" : e.getValue());
+        }
+        out.writeLong(checksum(bytes.toByteArray(), bytes.size()));
+        Utils.writeContents(REF_LOG, bytes.toByteArray());
+        Durable.force(REF_LOG);
+        Durable.force(GITLET_DIR);
+    }
+
+    /** Return the changes recorded in the log, or null if it is torn. */
+    private static Map<File, String> readLog() {
+        byte[] data = Utils.readContents(REF_LOG);
+        if (data.length < CHECKSUM_SIZE) {
+            return null;
+        }
+        int end = data.length - CHECKSUM_SIZE;
+        try (DataInputStream in =
+                 new DataInputStream(new ByteArrayInputStream(data))) {
+            Map<File, String> changes = new LinkedHashMap<>();
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                File file = Utils.join(GITLET_DIR, in.readUTF());
+                boolean present = in.readBoolean();
+                String value = in.readUTF();
+                changes.put(file, present ? value : null);
+            }
+            if (in.available() != CHECKSUM_SIZE
+                || in.readLong() != checksum(data, end)) {
+                return null;
+            }
+            return changes;
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Return the CRC-32 of the first LEN bytes of DATA. */
+    private static long checksum(byte[] data, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, len);
+        return crc.getValue();
+    }
+
+    /** Return the absolute, normalized path of FILE. */
+    private static Path path(File file) {
+        return file.getAbsoluteFile().toPath().normalize();
+    }
+
+    /** Size of the checksum that ends the log. */
+    private static final int CHECKSUM_SIZE = 8;
+}
@@ -0,0 +1,413 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static gitlet.Main.*;
+
+/** Remote repositories on the same filesystem: the add-remote, rm-remote,
+ *  fetch, push and pull commands.  A remote is a name for the path of
+ *  another repository's .gitlet directory, kept in a file of that name
+ *  in REMOTES_DIR.  The branches fetched from remote R are kept as
+ *  branches named R/BRANCH.
+ *
+ *  Objects are moved by running gitlet in the other repository as a
+ *  second process, "upload-pack" to fetch from it and "receive-pack" to
+ *  push to it, which talks over its standard input and output.  It
+ *  first sends its branches.  To fetch, the local side then sends the
+ *  commit it wants and the commits it has: each of its heads and the
+ *  ancestors 1, 2, 4, 8, ... first parents back from each, so that
+ *  however the two histories diverge, a commit the remote knows is found
+ *  within about twice the distance of the newest one they share.  The
+ *  remote sends just the objects reachable from what is wanted and from
+ *  none of the commits it knows, found with reachability bitmaps (see
+ *  Bitmaps).  To push, the local side already knows the remote's
+ *  branches, and sends the branch to update, its new head, and the
+ *  objects reachable from it and from none of the remote's heads.
+ *
+ *  The objects go as one stream, OBJECT... 0, where each OBJECT is the
+ *  object's type (see Pack), its 20-byte binary id, the 8-byte length of
+ *  its stored form, and its stored form, copied as it is, so that
+ *  nothing is decompressed or recompressed on the way.  The receiver
+ *  keeps them as loose objects, and adds the new commits to its commit
+ *  index and graph, parents first.
+ *  @author hamza
+ */
+class Remote {
+
+    /** The add-remote command: record the repository whose .gitlet
+     *  directory is at PATH, with '/' separating its parts, as NAME. */
+    static void addRemote(String name, String path) {
+        File file = Utils.join(REMOTES_DIR, name);
+        if (file.exists()) {
+            throw Utils.error("A remote with that name already exists.");
+        }
+        REMOTES_DIR.mkdir();
+        Durable.write(file, path.replace('/', File.separatorChar).getBytes());
+    }
+
+    /** The rm-remote command: forget the remote NAME. */
+    static void rmRemote(String name) {
+        File file = Utils.join(REMOTES_DIR, name);
+        if (!file.isFile()) {
+            throw Utils.error("A remote with that name does not exist.");
+        }
+        Durable.delete(file);
+    }
+
+    /** The fetch command: copy the commits of branch BRANCH of remote NAME
+     *  that this repository lacks, with their trees and blobs, and point
+     *  the branch NAME/BRANCH at its head.  Return the number of bytes of
+     *  objects copied. */
+    static long fetch(String name, String branch) throws IOException {
+        try (Connection remote = connect(name, "upload-pack")) {
+            String tip = remote.branches.get(branch);
+            List<String> wants = new ArrayList<>();
+            if (tip != null && !ObjectStore.has(tip, Pack.COMMIT)) {
+                wants.add(tip);
+            }
+            try (Trace.Phase phase = Trace.phase("negotiate")) {
+                writeIds(remote.out, wants);
+                writeIds(remote.out, tip == null ? List.of() : haves());
+                remote.out.flush();
+            }
+            long bytes;
+            try (Trace.Phase phase = Trace.phase("transfer")) {
+                bytes = receiveObjects(remote.in);
+            }
+            if (tip == null) {
+                throw Utils.error("That remote does not have that branch.");
+            }
+            Utils.join(ALL_BRANCHES, name).mkdir();
+            Refs.update(Utils.join(ALL_BRANCHES, name, branch), tip);
+            return bytes;
+        }
+    }
+
+    /** The push command: copy the commits of the current branch that
+     *  remote NAME lacks, with their trees and blobs, and point its branch
+     *  BRANCH at the current head, which must descend from that branch's
+     *  head.  Return the number of bytes of objects copied. */
+    static long push(String name, String branch) throws IOException {
+        String head = getHead();
+        try (Connection remote = connect(name, "receive-pack")) {
+            String tip = remote.branches.get(branch);
+            if (tip != null && !(ObjectStore.has(tip, Pack.COMMIT)
+                                 && CommitGraph.get().isAncestor(tip, head))) {
+                remote.out.writeUTF("");
+                throw Utils.error(
+                    "Please pull down remote changes before pushing.");
+            }
+            List<String> known = new ArrayList<>();
+            for (String id : remote.branches.values()) {
+                if (ObjectStore.has(id, Pack.COMMIT)) {
+                    known.add(id);
+                }
+            }
+            Bitmaps.Reach objects;
+            try (Trace.Phase phase = Trace.phase("negotiate")) {
+                Bitmaps bitmaps = Bitmaps.get();
+                objects = bitmaps.reach(head);
+                objects.remove(bitmaps.reach(known));
+            }
+            remote.out.writeUTF(branch);
+            remote.out.writeUTF(head);
+            try (Trace.Phase phase = Trace.phase("transfer")) {
+                return sendObjects(objects, remote.out);
+            }
+        }
+    }
+
+    /** The pull command: fetch branch BRANCH of remote NAME, and merge
+     *  NAME/BRANCH into the current branch. */
+    static void pull(String name, String branch) throws IOException {
+        try (Trace.Phase phase = Trace.phase("fetch")) {
+            fetch(name, branch);
+        }
+        try (Trace.Phase phase = Trace.phase("merge")) {
+            Merge.merge(name + "/" + branch);
+        }
+    }
+
+    /** Serve a fetch from this repository on the standard input and
+     *  output. */
+    static void uploadPack() throws IOException {
+        DataInputStream in = standardInput();
+        DataOutputStream out = standardOutput();
+        writeBranches(out);
+        out.flush();
+        List<String> wants = readIds(in), haves = readIds(in);
+        List<String> known = new ArrayList<>();
+        for (String id : haves) {
+            if (ObjectStore.has(id, Pack.COMMIT)) {
+                known.add(id);
+            }
+        }
+        Bitmaps bitmaps = Bitmaps.get();
+        Bitmaps.Reach objects = bitmaps.reach(wants);
+        objects.remove(bitmaps.reach(known));
+        sendObjects(objects, out);
+    }
+
+    /** Serve a push to this repository on the standard input and
+     *  output. */
+    static void receivePack() throws IOException {
+        DataInputStream in = standardInput();
+        DataOutputStream out = standardOutput();
+        writeBranches(out);
+        out.flush();
+        String branch = in.readUTF();
+        if (branch.isEmpty()) {
+            return;
+        }
+        String tip = in.readUTF();
+        receiveObjects(in);
+        Map<File, String> refs = new LinkedHashMap<>();
+        refs.put(Utils.join(ALL_BRANCHES, branch), tip);
+        if (Utils.readContentsAsString(HEAD_BRANCH).equals(branch)) {
+            refs.put(HEAD, tip);
+        }
+        Refs.update(refs);
+    }
+
+    /** Return the ids of commits this repository has, to tell a remote
+     *  from which to send objects: each head, and its ancestors at powers
+     *  of two first parents back, ending with its root. */
+    private static List<String> haves() {
+        CommitGraph graph = CommitGraph.get();
+        Set<String> haves = new LinkedHashSet<>();
+        for (String head : CommitIndex.heads()) {
+            int k = graph.find(head);
+            for (int back = 0; k >= 0; back += 1) {
+                int parent = graph.parent(k);
+                if ((back & (back - 1)) == 0 || parent < 0) {
+                    haves.add(graph.id(k));
+                }
+                k = parent;
+            }
+        }
+        return new ArrayList<>(haves);
+    }
+
+    /** Write the type, id, length and stored form of each object in
+     *  OBJECTS to OUT, then a 0 byte, flush OUT, and return the number of
+     *  bytes of stored forms written. */
+    private static long sendObjects(Bitmaps.Reach objects,
+                                    DataOutputStream out) throws IOException {
+        long[] bytes = { 0 };
+        IOException[] failed = { null };
+        objects.forEach((type, id) -> {
+            if (failed[0] != null) {
+                return;
+            }
+            try (InputStream in = ObjectStore.openStored(id, type)) {
+                long length = ObjectStore.storedLength(id, type);
+                out.writeByte(type);
+                out.write(Utils.fromHex(id));
+                out.writeLong(length);
+                in.transferTo(out);
+                bytes[0] += length;
+            } catch (IOException excp) {
+                failed[0] = excp;
+            }
+        });
+        if (failed[0] != null) {
+            throw failed[0];
+        }
+        out.writeByte(0);
+        out.flush();
+        return bytes[0];
+    }
+
+    /** Read objects sent by sendObjects from IN, keep those that are new,
+     *  add the new commits to the commit index and graph, and return the
+     *  number of bytes of stored forms read. */
+    private static long receiveObjects(DataInputStream in)
+        throws IOException {
+        List<String> commits = new ArrayList<>();
+        long bytes = 0;
+        byte[] sha = new byte[Utils.SHA_BYTES];
+        for (byte type = in.readByte(); type != 0; type = in.readByte()) {
+            in.readFully(sha);
+            String id = Utils.toHex(sha);
+            long length = in.readLong();
+            if (ObjectStore.receive(id, type, in, length)
+                && type == Pack.COMMIT) {
+                commits.add(id);
+            }
+            bytes += length;
+        }
+        register(commits);
+        return bytes;
+    }
+
+    /** Add the new commits with ids IDS to the commit index and graph,
+     *  each after its parents. */
+    static void register(List<String> ids) {
+        Set<String> pending = new HashSet<>(ids);
+        List<String> order = new ArrayList<>();
+        List<Commit> commits = new ArrayList<>();
+        for (String id : ids) {
+            Deque<String> stack = new ArrayDeque<>();
+            stack.push(id);
+            while (!stack.isEmpty()) {
+                String top = stack.peek();
+                Commit commit = ObjectStore.readCommit(top);
+                boolean ready = true;
+                for (String p : new String[] { commit.getSecondParent(),
+                                               commit.getParent() }) {
+                    if (p != null && pending.contains(p)) {
+                        stack.push(p);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    stack.pop();
+                    if (pending.remove(top)) {
+                        order.add(top);
+                        commits.add(commit);
+                    }
+                }
+            }
+        }
+        if (order.isEmpty()) {
+            return;
+        }
+        CommitIndex index = CommitIndex.get();
+        int first = index.size();
+        index.append(order, commits);
+        List<Integer> records = new ArrayList<>();
+        for (int k = 0; k < order.size(); k += 1) {
+            records.add(first + k);
+        }
+        CommitGraph.get().append(order, commits, records);
+    }
+
+    /** Write the names and heads of this repository's branches, including
+     *  those it fetched, to OUT. */
+    private static void writeBranches(DataOutputStream out)
+        throws IOException {
+        List<String> names = Commands.branchNames();
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+            out.writeUTF(Utils.readContentsAsString(
+                             Utils.join(ALL_BRANCHES, name)));
+        }
+    }
+
+    /** Write the number of IDS and IDS to OUT. */
+    private static void writeIds(DataOutputStream out, List<String> ids)
+        throws IOException {
+        out.writeInt(ids.size());
+        for (String id : ids) {
+            out.writeUTF(id);
+        }
+    }
+
+    /** Return the ids written to IN by writeIds. */
+    private static List<String> readIds(DataInputStream in)
+        throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            ids.add(in.readUTF());
+        }
+        return ids;
+    }
+
+    /** Return the standard input, buffered. */
+    private static DataInputStream standardInput() {
+        return new DataInputStream(new BufferedInputStream(
+            new FileInputStream(FileDescriptor.in), BUFFER_SIZE));
+    }
+
+    /** Return the standard output, buffered. */
+    private static DataOutputStream standardOutput() {
+        return new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(FileDescriptor.out), BUFFER_SIZE));
+    }
+
+    /** Start COMMAND in the repository of remote NAME, and return a
+     *  connection to it that has read its branches. */
+    private static Connection connect(String name, String command)
+        throws IOException {
+        File file = Utils.join(REMOTES_DIR, name);
+        if (!file.isFile()) {
+            throw Utils.error("A remote with that name does not exist.");
+        }
+        File dir = new File(Utils.readContentsAsString(file));
+        if (!dir.isDirectory()) {
+            throw Utils.error("Remote directory not found.");
+        }
+        return new Connection(dir.getAbsoluteFile().getParentFile(),
+                              command);
+    }
+
+    /** A gitlet process serving one command in another repository. */
+    private static class Connection implements AutoCloseable {
+
+        /** Start gitlet COMMAND in the repository in DIR, and read the
+         *  branches it sends. */
+        Connection(File dir, String command) throws IOException {
+            process = new ProcessBuilder(
+                Utils.join(System.getProperty("java.home"), "bin", "java")
+                    .getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                Main.class.getName(), command)
+                .directory(dir)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            in = new DataInputStream(new BufferedInputStream(
+                process.getInputStream(), BUFFER_SIZE));
+            out = new DataOutputStream(new BufferedOutputStream(
+                process.getOutputStream(), BUFFER_SIZE));
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                branches.put(in.readUTF(), in.readUTF());
+            }
+        }
+
+        /** Finish talking to the process, and wait for it to exit. */
+        @Override
+        public void close() throws IOException {
+            out.close();
+            try {
+                int status = process.waitFor();
+                if (status != 0) {
+                    throw new IOException("remote gitlet failed with status "
+                                          + status);
+                }
+            } catch (InterruptedException excp) {
+                throw new IOException(excp);
+            }
+        }
+
+        /** The remote's branches' heads, by name. */
+        private final Map<String, String> branches = new LinkedHashMap<>();
+        /** What the process writes. */
+        private final DataInputStream in;
+        /** What the process reads. */
+        private final DataOutputStream out;
+        /** The process. */
+        private final Process process;
+    }
+
+    /** Size of the buffers of the streams between the processes. */
+    private static final int BUFFER_SIZE = 1 << 16;
+}
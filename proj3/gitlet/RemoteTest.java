@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.File;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of remotes: add-remote, rm-remote, fetch, push and pull.
+ *  @author hamza
+ */
+public class RemoteTest {
+
+    /** Return the number of loose objects in DIR's repository. */
+    private static int looseObjects(File dir) {
+        int n = 0;
+        for (String sub : new String[] { "committed", "trees", "content" }) {
+            String[] names = Utils.join(dir, ".gitlet", sub).list();
+            for (String name : names == null ? new String[0] : names) {
+                n += name.length() == Utils.UID_LENGTH ? 1 : 0;
+            }
+        }
+        return n;
+    }
+
+    /** Commit the file NAME with contents CONTENTS in DIR, with message
+     *  MSG. */
+    private static void commit(File dir, String name, String contents,
+                               String msg) throws Exception {
+        Utils.writeContents(Utils.join(dir, name), contents);
+        gitlet(dir, "add", name);
+        gitlet(dir, "commit", msg);
+    }
+
+    @Test
+    public void fetchPushAndPull() throws Exception {
+        File root = tempDir();
+        File a = Utils.join(root, "a"), b = Utils.join(root, "b");
+        a.mkdir();
+        b.mkdir();
+        gitlet(a, "init");
+        commit(a, "f.txt", "one", "first");
+        gitlet(b, "init");
+        assertEquals("", gitlet(b, "add-remote", "origin", "../a/.gitlet"));
+        assertEquals("", gitlet(b, "fetch", "origin", "master"));
+        assertTrue(gitlet(b, "status").contains("\norigin/master\n"));
+        assertEquals("Current branch fast-forwarded.\n",
+                     gitlet(b, "pull", "origin", "master"));
+        assertEquals("one", Utils.readContentsAsString(Utils.join(b, "f.txt")));
+
+        commit(b, "f.txt", "two", "second");
+        assertEquals("", gitlet(b, "push", "origin", "master"));
+        assertEquals(gitlet(b, "log"), gitlet(a, "log"));
+        gitlet(a, "gc");
+        commit(a, "g.txt", "three", "third");
+        commit(b, "h.txt", "four", "fourth");
+        assertEquals("Please pull down remote changes before pushing.\n",
+                     gitlet(b, "push", "origin", "master"));
+        gitlet(b, "gc");
+        assertEquals("", gitlet(b, "fetch", "origin", "master"));
+        assertEquals(3, looseObjects(b));
+        gitlet(b, "pull", "origin", "master");
+        assertEquals("three",
+                     Utils.readContentsAsString(Utils.join(b, "g.txt")));
+        assertEquals("", gitlet(b, "push", "origin", "master"));
+        assertTrue(gitlet(a, "global-log").contains("fourth"));
+        Benchmark.clean(root);
+    }
+
+    /** Fetch from a remote whose commit has been replaced by another
+     *  commit's contents. */
+    @Test
+    public void forgedCommit() throws Exception {
+        File root = tempDir();
+        File a = Utils.join(root, "a"), b = Utils.join(root, "b");
+        a.mkdir();
+        b.mkdir();
+        gitlet(a, "init");
+        commit(a, "f.txt", "one", "first");
+        commit(a, "f.txt", "two", "second");
+        File commits = Utils.join(a, ".gitlet", "committed");
+        String first = gitlet(a, "find", "first").trim(),
+            second = gitlet(a, "find", "second").trim();
+        Utils.writeContents(Utils.join(commits, second),
+                            Utils.readContents(Utils.join(commits, first)));
+        gitlet(b, "init");
+        gitlet(b, "add-remote", "origin", "../a/.gitlet");
+        String out = gitlet(b, "fetch", "origin", "master");
+        assertTrue(out, out.contains("does not match its id"));
+        assertFalse(Utils.join(b, ".gitlet", "committed", second).exists());
+        assertFalse(gitlet(b, "global-log").contains("second"));
+        Benchmark.clean(root);
+    }
+
+    @Test
+    public void errors() throws Exception {
+        File root = tempDir();
+        File a = Utils.join(root, "a"), b = Utils.join(root, "b");
+        a.mkdir();
+        b.mkdir();
+        gitlet(a, "init");
+        gitlet(b, "init");
+        gitlet(b, "add-remote", "origin", "../a/.gitlet");
+        assertEquals("A remote with that name already exists.\n",
+                     gitlet(b, "add-remote", "origin", "../a/.gitlet"));
+        assertEquals("That remote does not have that branch.\n",
+                     gitlet(b, "fetch", "origin", "nosuchbranch"));
+        gitlet(b, "add-remote", "nowhere", "../c/.gitlet");
+        assertEquals("Remote directory not found.\n",
+                     gitlet(b, "fetch", "nowhere", "master"));
+        assertEquals("Remote directory not found.\n",
+                     gitlet(b, "push", "nowhere", "master"));
+        assertEquals("", gitlet(b, "rm-remote", "nowhere"));
+        assertEquals("A remote with that name does not exist.\n",
+                     gitlet(b, "rm-remote", "nowhere"));
+        Benchmark.clean(root);
+    }
+
+}
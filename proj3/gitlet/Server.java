@@ -0,0 +1,250 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import static gitlet.Main.*;
+
+/** The serve command: a long-running Gitlet that runs the commands sent
+ *  to it by Client over the Unix domain socket SOCKET, one at a time,
+ *  in the repository in its current directory.  Between commands it
+ *  keeps the JIT-compiled code and the repository's caches and mapped
+ *  indexes (the commit index and graph, the commit id table, the pack,
+ *  decoded commits and trees, and the stat cache) instead of rebuilding
+ *  them for each command.
+ *
+ *  The cached state is dropped when anything else changes the
+ *  repository.  Every other Gitlet process that runs a command in the
+ *  repository while a server is running for it (a direct "java
+ *  gitlet.Main commit", or a receive-pack for another's push) creates
+ *  STALE before it starts and again once it is done, and the server
+ *  reloads everything before a command whenever it finds STALE, which
+ *  it then deletes.  A change that is not Gitlet's own is caught by a
+ *  file watcher on the directories in GITLET_DIR: any change reported
+ *  before a command, other than those the server made itself, reloads
+ *  everything.  The server tells its own changes apart by touching
+ *  FENCE after each command and discarding every change reported up to
+ *  the fence; a Gitlet process whose changes are discarded with them
+ *  still leaves STALE behind.
+ *
+ *  A request is COUNT ARG..., where COUNT is a 4-byte int and each ARG
+ *  is a string as written by DataOutput.writeUTF; a COUNT of 0 asks the
+ *  server to stop.  The response is STATUS LENGTH OUTPUT, where STATUS
+ *  is the 4-byte exit status (0 as for a normal exit, or 1 if the
+ *  command failed unexpectedly), LENGTH the 4-byte length of OUTPUT,
+ *  and OUTPUT what the command printed.
+ *  @author hamza
+ */
+class Server {
+
+    /** Serve commands until asked to stop. */
+    static void serve() throws IOException {
+        UnixDomainSocketAddress address =
+            UnixDomainSocketAddress.of(SOCKET.toPath());
+        if (SOCKET.exists()) {
+            try (SocketChannel chan = SocketChannel.open(address)) {
+                throw Utils.error("A Gitlet server is already running.");
+            } catch (IOException excp) {
+                SOCKET.delete();
+            }
+        }
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+             WatchService watcher =
+                 FileSystems.getDefault().newWatchService()) {
+            server.bind(address);
+            serving = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(SOCKET::delete));
+            watch(watcher);
+            boolean running = true;
+            while (running) {
+                SocketChannel chan = server.accept();
+                try (chan) {
+                    running = handle(chan, watcher);
+                } catch (IOException excp) {
+                    /* A client that hangs up early, as serve does when it
+                     * checks for a running server, is ignored. */
+                    continue;
+                }
+            }
+        } finally {
+            SOCKET.delete();
+        }
+    }
+
+    /** Ask the server for the repository in the current directory to
+     *  stop. */
+    static void stop() throws IOException {
+        try (SocketChannel chan = SocketChannel.open(
+                 UnixDomainSocketAddress.of(SOCKET.toPath()))) {
+            DataOutputStream out =
+                new DataOutputStream(Channels.newOutputStream(chan));
+            out.writeInt(0);
+            out.flush();
+            new DataInputStream(Channels.newInputStream(chan)).readInt();
+        } catch (IOException excp) {
+            throw Utils.error("No Gitlet server is running.");
+        }
+    }
+
+    /** Run the command requested on CHAN and send back its response,
+     *  first reloading cached state if WATCHER has seen changes.  Return
+     *  false iff the request was to stop. */
+    private static boolean handle(SocketChannel chan, WatchService watcher)
+        throws IOException {
+        DataInputStream in = new DataInputStream(Channels.newInputStream(chan));
+        String[] args = new String[in.readInt()];
+        for (int k = 0; k < args.length; k += 1) {
+            args[k] = in.readUTF();
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int status = 0;
+        if (args.length > 0) {
+            if (changed(watcher) | STALE.delete()) {
+                reload();
+            }
+            status = run(args, output);
+            fence(watcher);
+        }
+        DataOutputStream out =
+            new DataOutputStream(Channels.newOutputStream(chan));
+        out.writeInt(status);
+        out.writeInt(output.size());
+        output.writeTo(out);
+        out.flush();
+        return args.length > 0;
+    }
+
+    /** If a server is running for the repository and this process is not
+     *  it, mark the server's cached state stale, since this process may
+     *  be about to change, or have changed, the repository. */
+    static void markStale() throws IOException {
+        if (!serving && SOCKET.exists()) {
+            STALE.createNewFile();
+        }
+    }
+
+    /** Run the command ARGS as Main does, writing what it prints to
+     *  OUTPUT, and return its exit status. */
+    private static int run(String[] args, ByteArrayOutputStream output) {
+        PrintStream saved = System.out;
+        PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+        System.setOut(out);
+        try {
+            if (args[0].equals("serve")) {
+                throw Utils.error("A Gitlet server is already running.");
+            }
+            Main.run(args);
+            return 0;
+        } catch (GitletException excp) {
+            out.println(excp.getMessage());
+            return 0;
+        } catch (IOException | RuntimeException excp) {
+            excp.printStackTrace(out);
+            reload();
+            return 1;
+        } finally {
+            out.flush();
+            System.setOut(saved);
+        }
+    }
+
+    /** Drop all cached repository state, so that it is read again from
+     *  the repository's files. */
+    private static void reload() {
+        ObjectStore.reload();
+        CommitIndex.reload();
+        CommitGraph.reload();
+        CommitIdTable.reload();
+        StatCache.reload();
+        Bitmaps.reload();
+    }
+
+    /** Register WATCHER on each existing directory in the repository. */
+    private static void watch(WatchService watcher) throws IOException {
+        for (File dir : WATCHED) {
+            if (dir.isDirectory()) {
+                dir.toPath().register(watcher,
+                                      StandardWatchEventKinds.ENTRY_CREATE,
+                                      StandardWatchEventKinds.ENTRY_DELETE,
+                                      StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+    }
+
+    /** Return true iff WATCHER has reported any change since the last
+     *  fence. */
+    private static boolean changed(WatchService watcher) {
+        boolean changed = false;
+        for (WatchKey key = watcher.poll(); key != null;
+             key = watcher.poll()) {
+            changed |= !key.pollEvents().isEmpty();
+            changed |= !key.reset();
+        }
+        return changed;
+    }
+
+    /** Touch FENCE and discard every change WATCHER reports until it
+     *  reports the fence, so that the changes the last command made are
+     *  not taken for another process's.  Changes are reported in order,
+     *  so once the fence is, all of those are too.  Directories the
+     *  command created are watched from now on. */
+    private static void fence(WatchService watcher) throws IOException {
+        watch(watcher);
+        FENCE.createNewFile();
+        FENCE.delete();
+        Path fence = FENCE.toPath().getFileName();
+        try {
+            while (true) {
+                WatchKey key = watcher.poll(FENCE_WAIT, TimeUnit.SECONDS);
+                if (key == null) {
+                    return;
+                }
+                boolean seen = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    seen |= fence.equals(event.context())
+                        && event.kind() == StandardWatchEventKinds.ENTRY_DELETE;
+                }
+                key.reset();
+                if (seen) {
+                    changed(watcher);
+                    return;
+                }
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** File touched after each command to mark the end of its changes. */
+    private static final File FENCE = Utils.join(GITLET_DIR, "serve-fence");
+    /** File created by other Gitlet processes running commands in the
+     *  repository while the server is. */
+    static final File STALE = Utils.join(GITLET_DIR, "serve-stale");
+    /** Longest wait, in seconds, for the fence to be reported. */
+    private static final long FENCE_WAIT = 1;
+    /** Directories whose changes invalidate the server's state. */
+    private static final File[] WATCHED = {
+        GITLET_DIR, COMMIT_DIR, BRANCHES_DIR, ALL_BRANCHES, PACK_DIR,
+        COMMIT_INDEX_DIR, COMMIT_IDS_DIR, STAGING_DIR, STAGING_DIR_REMOVAL,
+    };
+    /** True iff this process is a server. */
+    private static boolean serving;
+}
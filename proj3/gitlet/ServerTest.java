@@ -0,0 +1,73 @@
+package gitlet;
+
+import java.io.File;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of the Gitlet server and its client.
+ *  @author hamza
+ */
+public class ServerTest {
+
+    /** Run "java gitlet.Client ARGS" in DIR and return its output. */
+    private static String client(File dir, String... args) throws Exception {
+        return java(dir, "64m", Client.class, args);
+    }
+
+    /** Start a server in DIR and return it once it is listening. */
+    private static Process startServer(File dir) throws Exception {
+        Process server = new ProcessBuilder(
+            Utils.join(System.getProperty("java.home"), "bin", "java")
+            .getPath(), "-cp", System.getProperty("java.class.path"),
+            Main.class.getName(), "serve")
+            .directory(dir).redirectErrorStream(true).start();
+        File socket = Utils.join(dir, ".gitlet", "socket");
+        for (int k = 0; k < 100 && !socket.exists(); k += 1) {
+            Thread.sleep(50);
+        }
+        assertTrue(socket.exists());
+        return server;
+    }
+
+    @Test
+    public void commandsThroughServer() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        Process server = startServer(dir);
+        assertEquals("A Gitlet server is already running.\n",
+                     gitlet(dir, "serve"));
+        Utils.writeContents(Utils.join(dir, "a.txt"), "a");
+        assertEquals("", client(dir, "add", "a.txt"));
+        assertEquals("", client(dir, "commit", "one"));
+        assertEquals("File does not exist.\n", client(dir, "add", "b.txt"));
+        assertEquals("No command with that name exists.\n",
+                     client(dir, "frob"));
+        assertEquals(gitlet(dir, "log"), client(dir, "log"));
+        assertEquals(gitlet(dir, "status"), client(dir, "status"));
+
+        Utils.writeContents(Utils.join(dir, "a.txt"), "b");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "two");
+        gitlet(dir, "branch", "other");
+        gitlet(dir, "gc");
+        File stale = Utils.join(dir, ".gitlet", "serve-stale");
+        assertTrue(stale.exists());
+        assertEquals(gitlet(dir, "log"), client(dir, "log"));
+        assertFalse(stale.exists());
+        assertEquals(gitlet(dir, "status"), client(dir, "status"));
+        assertTrue(client(dir, "find", "two").matches("[0-9a-f]{40}\n"));
+        client(dir, "checkout", "other");
+        assertTrue(client(dir, "status").contains("*other\n"));
+
+        assertEquals("", gitlet(dir, "serve", "--stop"));
+        assertEquals(0, server.waitFor());
+        assertFalse(Utils.join(dir, ".gitlet", "socket").exists());
+        assertEquals(gitlet(dir, "log"), client(dir, "log"));
+        assertEquals("No Gitlet server is running.\n",
+                     gitlet(dir, "serve", "--stop"));
+        Benchmark.clean(dir);
+    }
+
+}
@@ -0,0 +1,409 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static gitlet.Main.*;
+
+/** A cache of what is known about the files in the working directory,
+ *  so that status and add need not read files that have not changed.
+ *
+ *  For each file that is tracked by the head commit or has been hashed,
+ *  the cache records its size and modification time when last hashed,
+ *  the blob id of its contents at that time, and its blob id in the head
+ *  commit.  A file whose size and modification time still match is taken
+ *  to be unchanged and is not read again, unless it was modified no
+ *  earlier than the cache was last saved (a "racy" entry, which might
+ *  have changed again within the clock's resolution).  The head blob ids
+ *  are brought up to date by diffing the trees of the old and new head
+ *  commits, so a commit or checkout costs only the files it changed.
+ *
+ *  The cache is kept in the file STAT_CACHE, as
+ *
+ *      MAGIC VERSION TREE COUNT ENTRY...
+ *
+ *  where TREE is the 20-byte id of the head commit's tree, COUNT is a
+ *  4-byte int, and each ENTRY is a length-prefixed UTF-8 name, the 8-byte
+ *  size (-1 if the file was never hashed) and modification time (in
+ *  nanoseconds), and a flags byte saying which of the two 20-byte blob
+ *  ids, working and head, follow.  The file is rewritten whole, via a
+ *  temporary file, whenever the cache changes.
+ *  @author hamza
+ */
+class StatCache {
+
+    /** Return the cache for the current repository. */
+    static StatCache get() {
+        if (current == null) {
+            current = new StatCache(STAT_CACHE);
+        }
+        return current;
+    }
+
+    /** Forget the current repository's cache, so that the next get reads
+     *  it from its file again. */
+    static void reload() {
+        current = null;
+    }
+
+    /** A cache stored in FILE. */
+    StatCache(File file) {
+        this.file = file;
+        load();
+    }
+
+    /** Return the blob id of the contents of the working file NAME,
+     *  reading it only if it may have changed since it was last hashed,
+     *  or null if there is no such file. */
+    String hash(String name) throws IOException {
+        Path path = Utils.join(CWD, name).toPath();
+        try {
+            BasicFileAttributes attrs =
+                Files.readAttributes(path, BasicFileAttributes.class);
+            return attrs.isRegularFile() ? hash(name, attrs) : null;
+        } catch (NoSuchFileException excp) {
+            return null;
+        }
+    }
+
+    /** Return the blob ids of the contents of those working files in
+     *  NAMES that exist, by name.  The files whose entries are out of
+     *  date are hashed in parallel (see Workers). */
+    Map<String, String> hashAll(List<String> names) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        List<String> stale = new ArrayList<>();
+        List<BasicFileAttributes> staleAttrs = new ArrayList<>();
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (String name : names) {
+            Path path = Utils.join(CWD, name).toPath();
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException excp) {
+                continue;
+            }
+            if (!attrs.isRegularFile()) {
+                continue;
+            }
+            String sha = known(name, attrs);
+            if (sha != null) {
+                result.put(name, sha);
+            } else {
+                stale.add(name);
+                staleAttrs.add(attrs);
+                tasks.add(() -> Blob.hash(path.toFile()));
+            }
+        }
+        List<String> shas = Workers.run(tasks);
+        for (int k = 0; k < stale.size(); k += 1) {
+            record(stale.get(k), staleAttrs.get(k), shas.get(k));
+            result.put(stale.get(k), shas.get(k));
+        }
+        return result;
+    }
+
+    /** Record that working file NAME, just written, has blob id SHA. */
+    void record(String name, String sha) throws IOException {
+        record(name, Files.readAttributes(Utils.join(CWD, name).toPath(),
+                                          BasicFileAttributes.class), sha);
+    }
+
+    /** Forget what is known about the contents of working file NAME,
+     *  which has been deleted. */
+    void forget(String name) {
+        Entry entry = entries.get(name);
+        if (entry != null && entry.sha != null) {
+            forget(name, entry);
+        }
+    }
+
+    /** Add to MODIFICATIONS the names of files with unstaged changes, each
+     *  followed by " (modified)" or " (deleted)", and to UNTRACKED the
+     *  names of working files that are neither staged nor tracked by the
+     *  head commit, both in order.  Each working file is examined with a
+     *  single stat, and read only if its entry is out of date. */
+    void scan(List<String> modifications, List<String> untracked)
+        throws IOException {
+        syncHead();
+        Map<String, String> staged = new HashMap<>();
+        List<String> stagedNames = Utils.plainFilenamesIn(STAGING_DIR);
+        if (stagedNames != null) {
+            for (String name : stagedNames) {
+                staged.put(name, Utils.readContentsAsString(
+                    Utils.join(STAGING_DIR, name)));
+            }
+        }
+        Set<String> removed = new HashSet<>();
+        List<String> removedNames = Utils.plainFilenamesIn(
+            STAGING_DIR_REMOVAL);
+        if (removedNames != null) {
+            removed.addAll(removedNames);
+        }
+        Set<String> present = new HashSet<>();
+        String[] names = CWD.list();
+        for (String name : names == null ? new String[0] : names) {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(Utils.join(CWD, name).toPath(),
+                                             BasicFileAttributes.class);
+            } catch (NoSuchFileException excp) {
+                continue;
+            }
+            if (!attrs.isRegularFile()) {
+                continue;
+            }
+            present.add(name);
+            String expected = expected(name, staged, removed);
+            if (expected == null) {
+                untracked.add(name);
+            } else if (!hash(name, attrs).equals(expected)) {
+                modifications.add(name + " (modified)");
+            }
+        }
+        Set<String> missing = new HashSet<>(staged.keySet());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().head != null || e.getValue().sha != null) {
+                missing.add(e.getKey());
+            }
+        }
+        missing.removeAll(present);
+        for (String name : missing) {
+            if (expected(name, staged, removed) != null) {
+                modifications.add(name + " (deleted)");
+            }
+            Entry entry = entries.get(name);
+            if (entry != null && entry.sha != null) {
+                forget(name, entry);
+            }
+        }
+        modifications.sort(null);
+        untracked.sort(null);
+    }
+
+    /** Return the blob id that working file NAME should have if it has no
+     *  unstaged changes, given the ids of the files STAGED for addition
+     *  and the names of those REMOVED, or null if it is untracked. */
+    private String expected(String name, Map<String, String> staged,
+                            Set<String> removed) {
+        String result = staged.get(name);
+        if (result == null && !removed.contains(name)) {
+            Entry entry = entries.get(name);
+            result = entry == null ? null : entry.head;
+        }
+        return result;
+    }
+
+    /** Write this cache back to its file, if it has changed. */
+    void save() {
+        if (!dirty) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(tmp),
+                                              BUFFER_SIZE))) {
+                out.write(MAGIC);
+                out.writeByte(VERSION);
+                out.write(Utils.fromHex(tree));
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(name.length);
+                    out.write(name);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.mtime);
+                    out.writeByte((entry.sha == null ? 0 : HAS_SHA)
+                                  | (entry.head == null ? 0 : HAS_HEAD));
+                    if (entry.sha != null) {
+                        out.write(Utils.fromHex(entry.sha));
+                    }
+                    if (entry.head != null) {
+                        out.write(Utils.fromHex(entry.head));
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            stamp = Files.getLastModifiedTime(file.toPath())
+                .to(TimeUnit.NANOSECONDS);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        dirty = false;
+    }
+
+    /** Return the blob id of the contents of working file NAME, whose
+     *  attributes are ATTRS, hashing it only if it is not known. */
+    private String hash(String name, BasicFileAttributes attrs)
+        throws IOException {
+        String sha = known(name, attrs);
+        if (sha == null) {
+            sha = Blob.hash(Utils.join(CWD, name));
+            record(name, attrs, sha);
+        }
+        return sha;
+    }
+
+    /** Return the cached blob id of working file NAME, whose attributes
+     *  are ATTRS, or null if its entry is missing, out of date, or
+     *  racy. */
+    private String known(String name, BasicFileAttributes attrs) {
+        long mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        Entry entry = entries.get(name);
+        if (entry != null && entry.sha != null && entry.size == attrs.size()
+            && entry.mtime == mtime && mtime < stamp) {
+            return entry.sha;
+        }
+        return null;
+    }
+
+    /** Record that working file NAME, whose attributes are ATTRS, has
+     *  blob id SHA. */
+    private void record(String name, BasicFileAttributes attrs, String sha) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(name, entry);
+        }
+        entry.sha = sha;
+        entry.size = attrs.size();
+        entry.mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        dirty = true;
+    }
+
+    /** Forget what is known about the contents of working file NAME,
+     *  whose entry is ENTRY. */
+    private void forget(String name, Entry entry) {
+        if (entry.head == null) {
+            entries.remove(name);
+        } else {
+            entry.sha = null;
+            entry.size = -1;
+        }
+        dirty = true;
+    }
+
+    /** Bring the head blob ids up to date with the head commit. */
+    private void syncHead() {
+        String head = ObjectStore.readCommit(getHead()).getTree();
+        if (head.equals(tree)) {
+            return;
+        }
+        for (Tree.Change change : Tree.diff(tree, head)) {
+            Entry entry = entries.get(change.name);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(change.name, entry);
+            }
+            entry.head = change.after;
+            if (entry.head == null && entry.sha == null) {
+                entries.remove(change.name);
+            }
+        }
+        tree = head;
+        dirty = true;
+    }
+
+    /** Read the cache file, if there is a valid one. */
+    private void load() {
+        entries = new HashMap<>();
+        tree = Tree.EMPTY;
+        stamp = 0;
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            stamp = Files.getLastModifiedTime(file.toPath())
+                .to(TimeUnit.NANOSECONDS);
+            ByteBuffer data = ByteBuffer.wrap(Utils.readContents(file));
+            byte[] magic = new byte[MAGIC.length];
+            data.get(magic);
+            if (!Arrays.equals(magic, MAGIC)
+                || data.get() != VERSION) {
+                entries.clear();
+                return;
+            }
+            byte[] sha = new byte[Utils.SHA_BYTES];
+            data.get(sha);
+            String cachedTree = Utils.toHex(sha);
+            int count = data.getInt();
+            for (int k = 0; k < count; k += 1) {
+                byte[] name = new byte[data.getShort() & 0xffff];
+                data.get(name);
+                Entry entry = new Entry();
+                entry.size = data.getLong();
+                entry.mtime = data.getLong();
+                int flags = data.get();
+                if ((flags & HAS_SHA) != 0) {
+                    data.get(sha);
+                    entry.sha = Utils.toHex(sha);
+                }
+                if ((flags & HAS_HEAD) != 0) {
+                    data.get(sha);
+                    entry.head = Utils.toHex(sha);
+                }
+                entries.put(new String(name, StandardCharsets.UTF_8), entry);
+            }
+            tree = cachedTree;
+        } catch (IOException | RuntimeException excp) {
+            entries.clear();
+            tree = Tree.EMPTY;
+        }
+    }
+
+    /** What is known about one file. */
+    private static class Entry {
+        /** Size and modification time of the file when last hashed. */
+        long size = -1, mtime;
+        /** Blob id of the file's contents when last hashed, or null. */
+        String sha;
+        /** Blob id of the file in the head commit, or null. */
+        String head;
+    }
+
+    /** The cache of the current repository, once opened. */
+    private static StatCache current;
+
+    /** Marks the start of the cache file. */
+    private static final byte[] MAGIC = { 'G', 'S', 'T', 'C' };
+    /** Current version of the file format. */
+    private static final byte VERSION = 1;
+    /** Flags saying which blob ids an entry has. */
+    private static final int HAS_SHA = 1, HAS_HEAD = 2;
+    /** Size of the output buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The cache file. */
+    private final File file;
+    /** Entries by file name. */
+    private HashMap<String, Entry> entries;
+    /** Id of the tree whose blob ids the entries hold. */
+    private String tree;
+    /** Modification time of the cache file when it was read or written,
+     *  in nanoseconds; entries modified no earlier are racy. */
+    private long stamp;
+    /** True iff the cache differs from its file. */
+    private boolean dirty;
+}
@@ -0,0 +1,80 @@
+package gitlet;
+
+import java.io.File;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of status and add through the stat cache.
+ *  @author hamza
+ */
+public class StatCacheTest {
+
+    /** Return the lines of the status of DIR after the header of the
+     *  section named SECTION, up to the next blank line. */
+    private static String section(File dir, String section)
+        throws Exception {
+        String status = gitlet(dir, "status");
+        String header = "=== " + section + " ===\n";
+        int start = status.indexOf(header) + header.length();
+        return status.substring(start, status.indexOf("\n\n", start - 1) + 1);
+    }
+
+    /** Write CONTENTS to the file NAME in DIR. */
+    private static void write(File dir, String name, String contents) {
+        Utils.writeContents(Utils.join(dir, name), contents);
+    }
+
+    @Test
+    public void modificationsAndUntracked() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        for (String name : new String[] { "a", "b", "c", "d" }) {
+            write(dir, name + ".txt", name);
+            gitlet(dir, "add", name + ".txt");
+        }
+        gitlet(dir, "commit", "four files");
+        assertEquals("", section(dir, "Modifications Not Staged For Commit"));
+        write(dir, "a.txt", "changed");
+        Utils.join(dir, "b.txt").delete();
+        write(dir, "e.txt", "e");
+        gitlet(dir, "add", "e.txt");
+        write(dir, "e.txt", "E");
+        write(dir, "f.txt", "f");
+        gitlet(dir, "rm", "c.txt");
+        write(dir, "c.txt", "c");
+        assertEquals("a.txt (modified)\nb.txt (deleted)\ne.txt (modified)\n",
+                     section(dir, "Modifications Not Staged For Commit"));
+        assertEquals("c.txt\nf.txt\n", section(dir, "Untracked Files"));
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "add", "e.txt");
+        assertEquals("b.txt (deleted)\n",
+                     section(dir, "Modifications Not Staged For Commit"));
+        write(dir, "a.txt", "a");
+        gitlet(dir, "add", "a.txt");
+        assertEquals("e.txt\n", section(dir, "Staged Files"));
+        Benchmark.clean(dir);
+    }
+
+    /** Same-size changes made right after a status must still be seen,
+     *  however coarse the file system's clock. */
+    @Test
+    public void racyChanges() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        write(dir, "a.txt", "1");
+        gitlet(dir, "add", "a.txt");
+        gitlet(dir, "commit", "one");
+        for (int k = 2; k < 6; k += 1) {
+            write(dir, "a.txt", "" + k);
+            assertEquals("a.txt (modified)\n",
+                         section(dir, "Modifications Not Staged For Commit"));
+            write(dir, "a.txt", "1");
+            assertEquals("",
+                         section(dir, "Modifications Not Staged For Commit"));
+        }
+        Benchmark.clean(dir);
+    }
+
+}
@@ -0,0 +1,79 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/** Utility definitions for use in unit tests.
+ *  @author hamza
+ */
+class TestUtils {
+
+    /** Return a new, empty temporary directory. */
+    static File tempDir() throws IOException {
+        return Files.createTempDirectory("gitlet").toFile();
+    }
+
+    /** Run "java gitlet.Main ARGS" in directory DIR with a maximum heap
+     *  size of HEAP (as for java's -Xmx option), check that it exits
+     *  normally, and return its output. */
+    static String gitletWithHeap(File dir, String heap, String... args)
+        throws IOException, InterruptedException {
+        return java(dir, heap, Main.class, args);
+    }
+
+    /** Run the main program of class MAIN with arguments ARGS in directory
+     *  DIR, with a maximum heap size of HEAP, check that it exits
+     *  normally, and return its output.  This lets tests exercise code
+     *  that works on the repository in the current directory. */
+    static String java(File dir, String heap, Class<?> main, String... args)
+        throws IOException, InterruptedException {
+        return run(dir, 0, List.of("-Xmx" + heap), main, args);
+    }
+
+    /** Run "java gitlet.Main ARGS" in directory DIR with the system
+     *  property gitlet.crash set to POINT, check that it halts there (see
+     *  Durable.crashPoint), and return its output. */
+    static String gitletCrashingAt(File dir, String point, String... args)
+        throws IOException, InterruptedException {
+        return run(dir, Durable.CRASH_STATUS,
+                   List.of("-Xmx64m", "-Dgitlet.crash=" + point),
+                   Main.class, args);
+    }
+
+    /** Run the main program of class MAIN with arguments ARGS in directory
+     *  DIR, with the java options OPTIONS, check that it exits with
+     *  status STATUS, and return its output. */
+    private static String run(File dir, int status, List<String> options,
+                              Class<?> main, String... args)
+        throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Utils.join(System.getProperty("java.home"), "bin",
+                               "java").getPath());
+        command.addAll(options);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(main.getName());
+        command.addAll(Arrays.asList(args));
+        Process proc = new ProcessBuilder(command).directory(dir)
+            .redirectErrorStream(true).start();
+        String output = new String(proc.getInputStream().readAllBytes(),
+                                   StandardCharsets.UTF_8);
+        assertEquals(output, status, proc.waitFor());
+        return output;
+    }
+
+    /** Run "java gitlet.Main ARGS" in directory DIR, as for
+     *  gitletWithHeap with a small default heap. */
+    static String gitlet(File dir, String... args)
+        throws IOException, InterruptedException {
+        return gitletWithHeap(dir, "64m", args);
+    }
+
+}
@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Instrumentation of commands, for the --trace option of Main and for
+ *  Harness.  A command is divided into phases, each timed from phase()
+ *  to the close() of the Phase it returns, and named after the phases
+ *  it is nested in, as in "commit/tree".  The command's own cost is
+ *  measured as the change, over the command, in the counters in IO_STATS
+ *  (on Linux, the number of read and write system calls the process has
+ *  made, and the bytes they moved, and those that reached the disk),
+ *  and in the number of objects deserialized.  The report is written as
+ *  one JSON object per line: one per phase, in the order they ended,
+ *  then one for the whole command.  Only the count of objects is kept
+ *  when tracing is off.
+ *  @author hamza
+ */
+class Trace {
+
+    /** Return true iff commands are being traced. */
+    static boolean enabled() {
+        return enabled;
+    }
+
+    /** Trace commands iff ON, and forget any phases recorded. */
+    static void setEnabled(boolean on) {
+        enabled = on;
+        PHASES.clear();
+        NAMES.clear();
+    }
+
+    /** Start the phase NAME, nested in the phase in progress, if any, and
+     *  return it.  Phases must be started and ended on one thread. */
+    static Phase phase(String name) {
+        if (!enabled) {
+            return NONE;
+        }
+        String full = NAMES.isEmpty() ? name : NAMES.peek() + "/" + name;
+        NAMES.push(full);
+        return new Phase(full);
+    }
+
+    /** Count one object read and deserialized. */
+    static void decoded() {
+        DECODED.incrementAndGet();
+    }
+
+    /** Return the number of objects deserialized so far. */
+    static long decodedCount() {
+        return DECODED.get();
+    }
+
+    /** Return the counters in IO_STATS, by name, in file order, or an
+     *  empty map if it cannot be read. */
+    static Map<String, Long> ioStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        try {
+            for (String line : Files.readAllLines(IO_STATS.toPath())) {
+                String[] fields = line.split(":\\s*");
+                if (fields.length == 2) {
+                    stats.put(fields[0], Long.parseLong(fields[1].trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException excp) {
+            stats.clear();
+        }
+        return stats;
+    }
+
+    /** Run COMMAND, the command ARGS[0], as a traced command, and write
+     *  its report to OUT, even if it fails. */
+    static void run(String[] args, Command command, PrintStream out)
+        throws IOException {
+        Map<String, Long> before = ioStats();
+        long objects = decodedCount(), start = System.nanoTime();
+        try {
+            command.run();
+        } finally {
+            double millis = (System.nanoTime() - start) / 1e6;
+            for (String[] phase : PHASES) {
+                out.printf("{\"phase\": \"%s\", \"ms\": %s}%n",
+                           phase[0], phase[1]);
+            }
+            StringBuilder line = new StringBuilder();
+            line.append(String.format("{\"command\": \"%s\", \"ms\": %.3f",
+                                      args[0], millis));
+            for (Map.Entry<String, Long> e : ioStats().entrySet()) {
+                if (before.containsKey(e.getKey())) {
+                    line.append(String.format(", \"%s\": %d", e.getKey(),
+                                              e.getValue()
+                                              - before.get(e.getKey())));
+                }
+            }
+            line.append(String.format(", \"objects\": %d}",
+                                      decodedCount() - objects));
+            out.println(line);
+            PHASES.clear();
+        }
+    }
+
+    /** A piece of work to trace. */
+    interface Command {
+        /** Do the work. */
+        void run() throws IOException;
+    }
+
+    /** A phase of a command in progress. */
+    static class Phase implements AutoCloseable {
+
+        /** A phase named NAME, starting now. */
+        Phase(String name) {
+            this.name = name;
+            this.start = System.nanoTime();
+        }
+
+        /** End this phase, and record how long it took. */
+        @Override
+        public void close() {
+            if (name != null) {
+                NAMES.pop();
+                PHASES.add(new String[] {
+                    name, String.format("%.3f",
+                                        (System.nanoTime() - start) / 1e6)
+                });
+            }
+        }
+
+        /** Full name of this phase, or null if it is not traced. */
+        private final String name;
+        /** When this phase started, in nanoseconds. */
+        private final long start;
+    }
+
+    /** The Linux file of this process's I/O counters. */
+    private static final File IO_STATS = new File("/proc/self/io");
+
+    /** The phase returned when tracing is off. */
+    private static final Phase NONE = new Phase(null);
+    /** The full names of the phases in progress, innermost first. */
+    private static final Deque<String> NAMES = new ArrayDeque<>();
+    /** The names and times in milliseconds of the phases ended. */
+    private static final List<String[]> PHASES = new ArrayList<>();
+    /** Number of objects deserialized so far. */
+    private static final AtomicLong DECODED = new AtomicLong();
+
+    /** True iff commands are being traced. */
+    private static boolean enabled;
+}
@@ -0,0 +1,79 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of the tracing of commands (see Trace).
+ *  @author hamza
+ */
+public class TraceTest {
+
+    @Test
+    public void phasesNest() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Trace.setEnabled(true);
+        try {
+            Trace.run(new String[] { "work" }, () -> {
+                try (Trace.Phase outer = Trace.phase("outer")) {
+                    try (Trace.Phase inner = Trace.phase("inner")) {
+                        Trace.decoded();
+                    }
+                    Trace.decoded();
+                }
+            }, new PrintStream(bytes, true));
+        } finally {
+            Trace.setEnabled(false);
+        }
+        String[] lines = bytes.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("{\"phase\": \"outer/inner\""));
+        assertTrue(lines[1].startsWith("{\"phase\": \"outer\""));
+        assertTrue(lines[2].startsWith("{\"command\": \"work\""));
+        assertTrue(lines[2].endsWith("\"objects\": 2}"));
+        assertSame(Trace.phase("off"), Trace.phase("off"));
+    }
+
+    @Test
+    public void traceLeavesOutputAlone() throws Exception {
+        File dir = tempDir();
+        gitlet(dir, "init");
+        Utils.writeContents(Utils.join(dir, "f.txt"), "one");
+        gitlet(dir, "add", "f.txt");
+        List<String> trace = new ArrayList<>();
+        String output = withoutTrace(gitlet(dir, "--trace", "commit", "one"),
+                                     trace);
+        assertEquals("", output);
+        assertTrue(trace.stream().anyMatch(
+                       s -> s.startsWith("{\"phase\": \"commit/tree\"")));
+        assertTrue(trace.get(trace.size() - 1)
+                   .startsWith("{\"command\": \"commit\""));
+        trace.clear();
+        assertEquals(gitlet(dir, "log"),
+                     withoutTrace(gitlet(dir, "--trace", "log"), trace));
+        assertEquals("No command with that name exists.\n",
+                     withoutTrace(gitlet(dir, "--trace", "nosuch"), trace));
+        Benchmark.clean(dir);
+    }
+
+    /** Return OUTPUT without its lines of trace, which are added to
+     *  TRACE. */
+    private static String withoutTrace(String output, List<String> trace) {
+        List<String> lines = new ArrayList<>();
+        for (String line : output.split("\n", -1)) {
+            if (line.startsWith("{\"")) {
+                trace.add(line);
+            } else {
+                lines.add(line);
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+}
@@ -0,0 +1,430 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/** Trees: the sets of files (name to blob id) that commits track, kept
+ *  as content-addressed objects so that commits share every part of
+ *  their file sets that they have in common.
+ *
+ *  A tree is a trie of nodes keyed by the hexadecimal digits of the
+ *  SHA-1 of each file name.  A node at depth D holding at most LEAF_MAX
+ *  files is a leaf, which lists them sorted by name.  A larger node is
+ *  an interior node with one child for each value of digit D of the
+ *  names' hashes.  The shape of a tree thus depends only on the files
+ *  in it, and each node's id is the SHA-1 of its encoding,
+ *
+ *      MAGIC VERSION 0 NFILES (NAME BLOB)...          (leaf), or
+ *      MAGIC VERSION 1 (COUNT [CHILD])x16             (interior),
+ *
+ *  where NAME is a length-prefixed UTF-8 string, BLOB and CHILD are
+ *  20-byte binary ids, and COUNT is the number of files under the child
+ *  (CHILD being omitted when it is 0).  Numbers are unsigned
+ *  variable-length integers (see Delta).
+ *
+ *  A commit that changes K files writes only the O(K log N) nodes on the
+ *  paths to them, and comparing two trees descends only into subtrees
+ *  whose ids differ.
+ *  @author hamza
+ */
+class Tree {
+
+    /** One difference between two trees: file NAME has blob id BEFORE
+     *  in the first and AFTER in the second (null where absent). */
+    static class Change {
+        /** A change to NAME from BEFORE to AFTER. */
+        Change(String name, String before, String after) {
+            this.name = name;
+            this.before = before;
+            this.after = after;
+        }
+
+        /** The file name. */
+        final String name;
+        /** The blob ids of the file before and after, or null. */
+        final String before, after;
+    }
+
+    /** Return the id of the blob for file NAME in the tree with id TREE,
+     *  or null if it does not contain NAME. */
+    static String get(String tree, String name) {
+        String hash = Utils.sha1(name);
+        for (int depth = 0; ; depth += 1) {
+            Node node = read(tree);
+            if (node.files != null) {
+                return node.files.get(name);
+            }
+            int k = digit(hash, depth);
+            if (node.counts[k] == 0) {
+                return null;
+            }
+            tree = node.children[k];
+        }
+    }
+
+    /** Return the number of files in the tree with id TREE. */
+    static int size(String tree) {
+        return read(tree).size();
+    }
+
+    /** Return all the files in the tree with id TREE, as a map from
+     *  names to blob ids sorted by name. */
+    static TreeMap<String, String> files(String tree) {
+        TreeMap<String, String> result = new TreeMap<>();
+        collect(tree, result);
+        return result;
+    }
+
+    /** Visit the tree with id TREE: call NODES on the id of each of its
+     *  stored nodes (all but the empty tree), descending only into those
+     *  for which it returns true, and call BLOBS on the blob id of each
+     *  file in the leaves descended into. */
+    static void walk(String tree, Predicate<String> nodes,
+                     Consumer<String> blobs) {
+        if (tree.equals(EMPTY) || !nodes.test(tree)) {
+            return;
+        }
+        Node node = read(tree);
+        if (node.files != null) {
+            node.files.values().forEach(blobs);
+        } else {
+            for (int k = 0; k < FANOUT; k += 1) {
+                walk(node.child(k), nodes, blobs);
+            }
+        }
+    }
+
+    /** Store the tree holding FILES (names to blob ids) and return its
+     *  id. */
+    static String write(Map<String, String> files) {
+        return build(new TreeMap<>(files), 0, null);
+    }
+
+    /** Store the tree that results from applying CHANGES to the tree with
+     *  id TREE, and return its id.  CHANGES maps names to their new blob
+     *  ids, or to null for files to be removed.  Only the nodes on the
+     *  paths to the changed files are read or written. */
+    static String update(String tree, Map<String, String> changes) {
+        Map<String, String> hashes = new HashMap<>();
+        for (String name : changes.keySet()) {
+            hashes.put(name, Utils.sha1(name));
+        }
+        return update(tree, 0, changes, hashes);
+    }
+
+    /** Return the files whose blob ids differ between the trees with ids
+     *  BEFORE and AFTER, sorted by name.  Subtrees with equal ids are
+     *  skipped without being read. */
+    static List<Change> diff(String before, String after) {
+        List<Change> result = new ArrayList<>();
+        diff(before, after, result);
+        result.sort((a, b) -> a.name.compareTo(b.name));
+        return result;
+    }
+
+    /** Add the differences between the subtrees with ids BEFORE and AFTER
+     *  to RESULT. */
+    private static void diff(String before, String after,
+                             List<Change> result) {
+        if (before.equals(after)) {
+            return;
+        }
+        Node a = read(before), b = read(after);
+        if (a.files == null && b.files == null) {
+            for (int k = 0; k < FANOUT; k += 1) {
+                diff(a.child(k), b.child(k), result);
+            }
+            return;
+        }
+        TreeMap<String, String> aFiles = files(before),
+            bFiles = files(after);
+        for (Map.Entry<String, String> e : aFiles.entrySet()) {
+            String other = bFiles.get(e.getKey());
+            if (!e.getValue().equals(other)) {
+                result.add(new Change(e.getKey(), e.getValue(), other));
+            }
+        }
+        for (Map.Entry<String, String> e : bFiles.entrySet()) {
+            if (!aFiles.containsKey(e.getKey())) {
+                result.add(new Change(e.getKey(), null, e.getValue()));
+            }
+        }
+    }
+
+    /** Return the id of the subtree at depth DEPTH that results from
+     *  applying CHANGES to the subtree with id TREE.  HASHES gives the
+     *  hash of each changed name. */
+    private static String update(String tree, int depth,
+                                 Map<String, String> changes,
+                                 Map<String, String> hashes) {
+        if (changes.isEmpty()) {
+            return tree;
+        }
+        Node node = read(tree);
+        if (node.files != null) {
+            TreeMap<String, String> files = new TreeMap<>(node.files);
+            for (Map.Entry<String, String> e : changes.entrySet()) {
+                if (e.getValue() == null) {
+                    files.remove(e.getKey());
+                } else {
+                    files.put(e.getKey(), e.getValue());
+                }
+            }
+            return build(files, depth, null);
+        }
+        List<Map<String, String>> parts = partition(changes, hashes, depth);
+        String[] children = new String[FANOUT];
+        int[] counts = new int[FANOUT];
+        int total = 0;
+        for (int k = 0; k < FANOUT; k += 1) {
+            children[k] = update(node.child(k), depth + 1, parts.get(k),
+                                 hashes);
+            counts[k] = children[k].equals(node.child(k)) ? node.counts[k]
+                : size(children[k]);
+            total += counts[k];
+        }
+        if (total <= LEAF_MAX) {
+            TreeMap<String, String> files = new TreeMap<>();
+            for (String child : children) {
+                collect(child, files);
+            }
+            return build(files, depth, null);
+        }
+        return store(new Node(children, counts));
+    }
+
+    /** Store the subtree at depth DEPTH holding FILES, and return its
+     *  id.  HASHES gives the hashes of the names in FILES, or is null if
+     *  they have yet to be computed. */
+    private static String build(TreeMap<String, String> files, int depth,
+                                Map<String, String> hashes) {
+        if (files.size() <= LEAF_MAX || depth == Utils.UID_LENGTH) {
+            return store(new Node(files));
+        }
+        if (hashes == null) {
+            hashes = new HashMap<>();
+            for (String name : files.keySet()) {
+                hashes.put(name, Utils.sha1(name));
+            }
+        }
+        String[] children = new String[FANOUT];
+        int[] counts = new int[FANOUT];
+        List<Map<String, String>> parts = partition(files, hashes, depth);
+        for (int k = 0; k < FANOUT; k += 1) {
+            children[k] = build(new TreeMap<>(parts.get(k)), depth + 1,
+                                hashes);
+            counts[k] = parts.get(k).size();
+        }
+        return store(new Node(children, counts));
+    }
+
+    /** Split FILES into FANOUT maps by digit DEPTH of the hashes of their
+     *  names, as given by HASHES. */
+    private static List<Map<String, String>> partition(
+        Map<String, String> files, Map<String, String> hashes, int depth) {
+        List<Map<String, String>> result = new ArrayList<>();
+        for (int k = 0; k < FANOUT; k += 1) {
+            result.add(new HashMap<>());
+        }
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            result.get(digit(hashes.get(e.getKey()), depth))
+                .put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    /** Add all files in the subtree with id TREE to RESULT. */
+    private static void collect(String tree, Map<String, String> result) {
+        Node node = read(tree);
+        if (node.files != null) {
+            result.putAll(node.files);
+        } else {
+            for (int k = 0; k < FANOUT; k += 1) {
+                if (node.counts[k] > 0) {
+                    collect(node.children[k], result);
+                }
+            }
+        }
+    }
+
+    /** Return the value of hexadecimal digit DEPTH of HASH. */
+    private static int digit(String hash, int depth) {
+        return Character.digit(hash.charAt(depth), 16);
+    }
+
+    /** Store NODE, if not already present, and return its id. */
+    private static String store(Node node) {
+        byte[] data = node.encode();
+        String id = Utils.sha1(data);
+        if (!id.equals(EMPTY) && !ObjectStore.hasTree(id)) {
+            ObjectStore.writeTree(id, data);
+        }
+        synchronized (NODE_CACHE) {
+            NODE_CACHE.put(id, node);
+        }
+        return id;
+    }
+
+    /** Return the node with id ID. */
+    private static Node read(String id) {
+        if (id.equals(EMPTY)) {
+            return EMPTY_NODE;
+        }
+        synchronized (NODE_CACHE) {
+            Node cached = NODE_CACHE.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Node node = Node.decode(ObjectStore.readTree(id));
+        synchronized (NODE_CACHE) {
+            NODE_CACHE.put(id, node);
+        }
+        return node;
+    }
+
+    /** A decoded tree node.  Exactly one of FILES and CHILDREN is
+     *  non-null. */
+    private static class Node {
+
+        /** A leaf holding FILES. */
+        Node(TreeMap<String, String> files) {
+            this.files = files;
+            this.children = null;
+            this.counts = null;
+        }
+
+        /** An interior node with the given CHILDREN, holding COUNTS[k]
+         *  files under CHILDREN[k]. */
+        Node(String[] children, int[] counts) {
+            this.files = null;
+            this.children = children;
+            this.counts = counts;
+        }
+
+        /** Return the number of files under this node. */
+        int size() {
+            return files != null ? files.size() : Arrays.stream(counts).sum();
+        }
+
+        /** Return the id of child K (the empty tree if there is none). */
+        String child(int k) {
+            return counts[k] == 0 ? EMPTY : children[k];
+        }
+
+        /** Return the encoding of this node. */
+        byte[] encode() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(MAGIC, 0, MAGIC.length);
+            out.write(VERSION);
+            if (files != null) {
+                out.write(LEAF);
+                Delta.writeNum(out, files.size());
+                for (Map.Entry<String, String> e : files.entrySet()) {
+                    byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                    Delta.writeNum(out, name.length);
+                    out.write(name, 0, name.length);
+                    out.write(Utils.fromHex(e.getValue()), 0, Utils.SHA_BYTES);
+                }
+            } else {
+                out.write(INTERIOR);
+                for (int k = 0; k < FANOUT; k += 1) {
+                    Delta.writeNum(out, counts[k]);
+                    if (counts[k] > 0) {
+                        out.write(Utils.fromHex(children[k]), 0,
+                                  Utils.SHA_BYTES);
+                    }
+                }
+            }
+            return out.toByteArray();
+        }
+
+        /** Return the node whose encoding is DATA. */
+        static Node decode(byte[] data) {
+            if (data.length < MAGIC.length + 2
+                || !Arrays.equals(data, 0, MAGIC.length,
+                                  MAGIC, 0, MAGIC.length)) {
+                throw Utils.error("corrupt tree");
+            }
+            if (data[MAGIC.length] != VERSION) {
+                throw Utils.error("unknown tree format version %d",
+                                  data[MAGIC.length]);
+            }
+            int[] pos = { MAGIC.length + 2 };
+            if (data[MAGIC.length + 1] == LEAF) {
+                TreeMap<String, String> files = new TreeMap<>();
+                long n = Delta.readNum(data, pos);
+                for (long i = 0; i < n; i += 1) {
+                    int len = (int) Delta.readNum(data, pos);
+                    String name = new String(data, pos[0], len,
+                                             StandardCharsets.UTF_8);
+                    pos[0] += len;
+                    files.put(name, sha(data, pos));
+                }
+                return new Node(files);
+            }
+            String[] children = new String[FANOUT];
+            int[] counts = new int[FANOUT];
+            for (int k = 0; k < FANOUT; k += 1) {
+                counts[k] = (int) Delta.readNum(data, pos);
+                if (counts[k] > 0) {
+                    children[k] = sha(data, pos);
+                }
+            }
+            return new Node(children, counts);
+        }
+
+        /** Return the 20-byte id in DATA at POS[0] as hexadecimal,
+         *  advancing POS[0] past it. */
+        private static String sha(byte[] data, int[] pos) {
+            if (pos[0] + Utils.SHA_BYTES > data.length) {
+                throw Utils.error("corrupt tree");
+            }
+            String result = Utils.toHex(Arrays.copyOfRange(
+                data, pos[0], pos[0] + Utils.SHA_BYTES));
+            pos[0] += Utils.SHA_BYTES;
+            return result;
+        }
+
+        /** The files of a leaf, or null. */
+        final TreeMap<String, String> files;
+        /** The children of an interior node, or null. */
+        final String[] children;
+        /** The number of files under each child, or null. */
+        final int[] counts;
+    }
+
+    /** Marks the start of an encoded node. */
+    private static final byte[] MAGIC = { 'G', 'L', 'T' };
+    /** Current version of the encoding. */
+    private static final byte VERSION = 1;
+    /** Node kinds. */
+    private static final byte LEAF = 0, INTERIOR = 1;
+    /** Number of children of an interior node. */
+    private static final int FANOUT = 16;
+    /** Largest number of files in a leaf. */
+    static final int LEAF_MAX = 128;
+    /** The empty leaf. */
+    private static final Node EMPTY_NODE = new Node(new TreeMap<>());
+    /** The id of the empty tree, which is never stored. */
+    static final String EMPTY = Utils.sha1(EMPTY_NODE.encode());
+    /** Largest number of decoded nodes kept in memory. */
+    private static final int NODE_CACHE_SIZE = 4096;
+    /** The most recently used nodes, by id. */
+    private static final LinkedHashMap<String, Node> NODE_CACHE =
+        new LinkedHashMap<>(NODE_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Node> e) {
+                return size() > NODE_CACHE_SIZE;
+            }
+        };
+}
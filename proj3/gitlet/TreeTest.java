@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static gitlet.TestUtils.*;
+
+/** Tests of trees.  Trees are stored in the repository in the current
+ *  directory, so each test runs main in a scratch directory.
+ *  @author hamza
+ */
+public class TreeTest {
+
+    @Test
+    public void updates() throws Exception {
+        check("updates");
+    }
+
+    @Test
+    public void diffs() throws Exception {
+        check("diffs");
+    }
+
+    @Test
+    public void sharing() throws Exception {
+        check("sharing");
+    }
+
+    /** Run the check named NAME in a new repository. */
+    private static void check(String name) throws Exception {
+        File dir = tempDir();
+        java(dir, "64m", TreeTest.class, name);
+        Benchmark.clean(dir);
+    }
+
+    /** Initialize a repository in the current directory and run the check
+     *  named ARGS[0] in it. */
+    public static void main(String... args) {
+        Main.initialize();
+        switch (args[0]) {
+        case "updates":
+            checkUpdates();
+            break;
+        case "diffs":
+            checkDiffs();
+            break;
+        case "sharing":
+            checkSharing();
+            break;
+        default:
+            throw new IllegalArgumentException(args[0]);
+        }
+    }
+
+    /** Check that trees built by random updates, growing past and
+     *  shrinking below LEAF_MAX, are the same as those written whole. */
+    static void checkUpdates() {
+        Random rand = new Random(61);
+        TreeMap<String, String> files = new TreeMap<>();
+        String tree = Tree.EMPTY;
+        for (int round = 0; round < 60; round += 1) {
+            Map<String, String> changes = new HashMap<>();
+            boolean grow = round < 40;
+            for (int k = 0; k < 50; k += 1) {
+                String name = "f" + rand.nextInt(2000);
+                String sha = grow || rand.nextInt(4) == 0
+                    ? Utils.sha1(name, "" + round) : null;
+                changes.put(name, sha);
+                if (sha == null) {
+                    files.remove(name);
+                } else {
+                    files.put(name, sha);
+                }
+            }
+            if (!grow) {
+                for (String name : new ArrayList<>(files.keySet())) {
+                    if (rand.nextInt(3) == 0) {
+                        changes.put(name, null);
+                        files.remove(name);
+                    }
+                }
+            }
+            tree = Tree.update(tree, changes);
+            assertEquals(Tree.write(files), tree);
+            assertEquals(files, Tree.files(tree));
+            assertEquals(files.size(), Tree.size(tree));
+        }
+        assertTrue(files.size() < Tree.LEAF_MAX);
+        for (String name : files.keySet()) {
+            assertEquals(files.get(name), Tree.get(tree, name));
+        }
+        assertNull(Tree.get(tree, "missing"));
+        assertEquals(Tree.EMPTY, Tree.write(new HashMap<>()));
+    }
+
+    /** Check Tree.diff against comparing the full file maps. */
+    static void checkDiffs() {
+        Random rand = new Random(61);
+        Map<String, String> before = new HashMap<>();
+        for (int k = 0; k < 3000; k += 1) {
+            before.put("f" + k, Utils.sha1("v0", "" + k));
+        }
+        Map<String, String> after = new HashMap<>(before);
+        for (int k = 0; k < 20; k += 1) {
+            after.put("f" + rand.nextInt(3000), Utils.sha1("v1", "" + k));
+            after.remove("f" + rand.nextInt(3000));
+            after.put("new" + k, Utils.sha1("v2", "" + k));
+        }
+        List<Tree.Change> changes = Tree.diff(Tree.write(before),
+                                              Tree.write(after));
+        TreeMap<String, String> expected = new TreeMap<>();
+        for (String name : before.keySet()) {
+            if (!before.get(name).equals(after.get(name))) {
+                expected.put(name, before.get(name) + after.get(name));
+            }
+        }
+        for (String name : after.keySet()) {
+            if (!before.containsKey(name)) {
+                expected.put(name, null + after.get(name));
+            }
+        }
+        TreeMap<String, String> actual = new TreeMap<>();
+        String last = "";
+        for (Tree.Change c : changes) {
+            assertTrue(c.name.compareTo(last) > 0);
+            last = c.name;
+            actual.put(c.name, c.before + c.after);
+        }
+        assertEquals(expected, actual);
+        assertTrue(Tree.diff(Tree.write(after), Tree.write(after)).isEmpty());
+    }
+
+    /** Check that changing one file of many writes only a few nodes. */
+    static void checkSharing() {
+        Map<String, String> files = new HashMap<>();
+        for (int k = 0; k < 20000; k += 1) {
+            files.put("f" + k, Utils.sha1("v0", "" + k));
+        }
+        String tree = Tree.write(files);
+        int nodes = Main.TREE_DIR.list().length;
+        String tree2 = Tree.update(tree, Map.of("f7", Utils.sha1("new")));
+        assertNotEquals(tree, tree2);
+        int depth = 0;
+        for (int n = 20000; n > Tree.LEAF_MAX; n /= 16) {
+            depth += 1;
+        }
+        assertTrue(Main.TREE_DIR.list().length - nodes <= depth + 1);
+        assertEquals(tree, Tree.update(tree2, Map.of("f7", files.get("f7"))));
+    }
+
+}
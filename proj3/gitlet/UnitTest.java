@@ -12,7 +12,26 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class, PackTest.class,
+                                        DeltaTest.class, ChunkerTest.class,
+                                        CompressionTest.class,
+                                        FormatTest.class,
+                                        BlobTest.class,
+                                        CommitIndexTest.class,
+                                        CommitIdTableTest.class,
+                                        HistoryTest.class,
+                                        CommitCodecTest.class,
+                                        TreeTest.class,
+                                        StatCacheTest.class,
+                                        CheckoutTest.class,
+                                        MergeTest.class,
+                                        CommitGraphTest.class,
+                                        DurableTest.class,
+                                        ServerTest.class,
+                                        PruneTest.class,
+                                        BitmapsTest.class,
+                                        RemoteTest.class,
+                                        TraceTest.class));
     }
 
     /** A dummy test to avoid complaint. */
@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Runs batches of independent file operations on a bounded pool of
+ *  threads.  The size of the pool is the system property gitlet.workers
+ *  if set, and otherwise the number of available processors.  A batch
+ *  either completes in full or reports the failure of the earliest task
+ *  in it (in the order given), whatever order the tasks ran in; once one
+ *  task has failed, tasks not yet started are skipped.
+ *  @author hamza
+ */
+class Workers {
+
+    /** Return the number of threads batches run on. */
+    static int count() {
+        return count;
+    }
+
+    /** Run later batches on N threads (at least one). */
+    static void setCount(int n) {
+        count = Math.max(1, n);
+    }
+
+    /** Run TASKS and return their results, in order.  If any fail,
+     *  throws the failure of the first failed task in TASKS, after all
+     *  started tasks have finished. */
+    static <T> List<T> run(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (count == 1 || tasks.size() <= 1) {
+            for (Callable<T> task : tasks) {
+                results.add(call(task));
+            }
+            return results;
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.min(count, tasks.size()));
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    if (failed.get()) {
+                        throw new Skipped();
+                    }
+                    try {
+                        return task.call();
+                    } catch (Exception | Error excp) {
+                        failed.set(true);
+                        throw excp;
+                    }
+                }));
+            }
+            Throwable first = null;
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException excp) {
+                    if (first == null
+                        && !(excp.getCause() instanceof Skipped)) {
+                        first = excp.getCause();
+                    }
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                    throw Utils.error("interrupted");
+                }
+            }
+            if (first != null) {
+                rethrow(first);
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Return the result of TASK, passing on its IOExceptions and
+     *  unchecked exceptions. */
+    private static <T> T call(Callable<T> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException | RuntimeException excp) {
+            throw excp;
+        } catch (Exception excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Throw EXCP, which a task threw, as an IOException or an unchecked
+     *  exception. */
+    private static void rethrow(Throwable excp) throws IOException {
+        if (excp instanceof IOException) {
+            throw (IOException) excp;
+        } else if (excp instanceof RuntimeException) {
+            throw (RuntimeException) excp;
+        } else if (excp instanceof Error) {
+            throw (Error) excp;
+        }
+        throw new IllegalStateException(excp);
+    }
+
+    /** Thrown by tasks that are skipped after another has failed. */
+    private static class Skipped extends RuntimeException {
+    }
+
+    /** Number of threads batches run on. */
+    private static int count =
+        Math.max(1, Integer.getInteger("gitlet.workers",
+                                       Runtime.getRuntime()
+                                       .availableProcessors()));
+}